@@ -0,0 +1,215 @@
+package com.appcloner.replica;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Random-access reader over a seekable APK. Entries are listed from the central directory, in
+ * the order their data appears in the file, so names, methods, CRCs and sizes are known without
+ * reading any entry data. Entries that are skipped are never read, and raw copies go straight
+ * from this channel into the output file.
+ */
+final class ApkChannelReader implements ApkInput {
+    private static final int EOCD_SIG           = 0x06054b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int LOCAL_HEADER_SIG   = 0x04034b50;
+    private static final int EOCD_LEN           = 22;
+    private static final int CENTRAL_HEADER_LEN = 46;
+    private static final int LOCAL_HEADER_LEN   = 30;
+
+    private final FileChannel channel;
+    private final Closeable owner;
+    private final CloneMetrics metrics;
+    private final List<Located> entries;
+    private int index = -1;
+    private long dataOffset;
+
+    /**
+     * @param owner    closed together with this reader, e.g. the descriptor behind
+     *                 {@code channel}; may be null
+     * @param metrics  bytes read or copied are reported to its active stage; may be null
+     */
+    ApkChannelReader(FileChannel channel, Closeable owner, CloneMetrics metrics) throws IOException {
+        this.channel = channel;
+        this.owner = owner;
+        this.metrics = metrics;
+        this.entries = readCentralDirectory();
+    }
+
+    /** Total size of the stored entry data, for progress reporting. */
+    long totalStoredBytes() {
+        long total = 0;
+        for (Located l : entries) total += l.entry.compressedSize;
+        return total;
+    }
+
+    @Override
+    public ApkEntry next() throws IOException {
+        if (++index >= entries.size()) return null;
+        Located l = entries.get(index);
+        byte[] lh = read(l.localOffset, LOCAL_HEADER_LEN);
+        if (ApkEntryReader.le32(lh, 0) != LOCAL_HEADER_SIG) {
+            throw new ZipException("Bad local header for " + l.entry.name);
+        }
+        dataOffset = l.localOffset + LOCAL_HEADER_LEN
+                + ApkEntryReader.le16(lh, 26) + ApkEntryReader.le16(lh, 28);
+        if (dataOffset + l.entry.compressedSize > channel.size()) {
+            throw new EOFException("Entry data past end of file: " + l.entry.name);
+        }
+        return l.entry;
+    }
+
+    @Override
+    public InputStream rawData() {
+        ApkEntry e = current();
+        InputStream in = new RegionInputStream(dataOffset, e.compressedSize);
+        return metrics != null ? metrics.count(in) : in;
+    }
+
+    @Override
+    public byte[] readData() throws IOException {
+        return ApkEntryReader.readData(current(), rawData());
+    }
+
+    @Override
+    public void copyRawTo(ApkZipWriter zip) throws IOException {
+        ApkEntry e = current();
+        zip.copyRaw(e, channel, dataOffset);
+        if (metrics != null) metrics.addBytes(e.compressedSize);
+    }
+
+    @Override
+    public List<String> names() {
+        List<String> names = new ArrayList<>(entries.size());
+        for (Located l : entries) names.add(l.entry.name);
+        return names;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            if (owner != null) owner.close();
+        }
+    }
+
+    private ApkEntry current() {
+        if (index < 0 || index >= entries.size()) throw new IllegalStateException("No current entry");
+        return entries.get(index).entry;
+    }
+
+    private List<Located> readCentralDirectory() throws IOException {
+        long length = channel.size();
+        if (length < EOCD_LEN) throw new ZipException("Not a ZIP file");
+        // EOCD is followed by a comment of at most 64 KiB
+        int window = (int) Math.min(length, EOCD_LEN + 0xFFFF);
+        byte[] tail = read(length - window, window);
+        int eocd = -1;
+        for (int i = window - EOCD_LEN; i >= 0; i--) {
+            if (ApkEntryReader.le32(tail, i) == EOCD_SIG) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) throw new ZipException("End of central directory not found");
+
+        int count = ApkEntryReader.le16(tail, eocd + 10);
+        long cdSize = ApkEntryReader.le32(tail, eocd + 12);
+        long cdOffset = ApkEntryReader.le32(tail, eocd + 16);
+        if (count == 0xFFFF || cdOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+        if (cdOffset + cdSize > length) throw new ZipException("Central directory out of bounds");
+
+        byte[] cd = read(cdOffset, (int) cdSize);
+        List<Located> list = new ArrayList<>(count);
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_HEADER_LEN > cd.length || ApkEntryReader.le32(cd, pos) != CENTRAL_HEADER_SIG) {
+                throw new ZipException("Bad central directory header at " + (cdOffset + pos));
+            }
+            int nameLen = ApkEntryReader.le16(cd, pos + 28);
+            int extraLen = ApkEntryReader.le16(cd, pos + 30);
+            int commentLen = ApkEntryReader.le16(cd, pos + 32);
+
+            ApkEntry e = new ApkEntry(new String(cd, pos + CENTRAL_HEADER_LEN, nameLen, StandardCharsets.UTF_8));
+            // Sizes come from the central directory, so data-descriptor entries need no scan
+            e.flags = ApkEntryReader.le16(cd, pos + 8) & ~ApkEntry.FLAG_DATA_DESCRIPTOR;
+            e.method = ApkEntryReader.le16(cd, pos + 10);
+            e.dosTime = ApkEntryReader.le16(cd, pos + 12);
+            e.dosDate = ApkEntryReader.le16(cd, pos + 14);
+            e.crc = ApkEntryReader.le32(cd, pos + 16);
+            e.compressedSize = ApkEntryReader.le32(cd, pos + 20);
+            e.size = ApkEntryReader.le32(cd, pos + 24);
+            long localOffset = ApkEntryReader.le32(cd, pos + 42);
+
+            if (e.compressedSize == 0xFFFFFFFFL || e.size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                throw new ZipException("ZIP64 entries are not supported: " + e.name);
+            }
+            if (e.method != ApkEntry.METHOD_STORED && e.method != ApkEntry.METHOD_DEFLATED) {
+                throw new ZipException("Unsupported compression method " + e.method + ": " + e.name);
+            }
+            list.add(new Located(e, localOffset));
+            pos += CENTRAL_HEADER_LEN + nameLen + extraLen + commentLen;
+        }
+        // Archive order, like a sequential read would see it
+        Collections.sort(list, (a, b) -> Long.compare(a.localOffset, b.localOffset));
+        return list;
+    }
+
+    private byte[] read(long offset, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, offset + buf.position());
+            if (n < 0) throw new EOFException("Unexpected end of APK at " + (offset + buf.position()));
+        }
+        return buf.array();
+    }
+
+    private static final class Located {
+        final ApkEntry entry;
+        final long localOffset;
+
+        Located(ApkEntry entry, long localOffset) {
+            this.entry = entry;
+            this.localOffset = localOffset;
+        }
+    }
+
+    /** Positional reads of one region of the channel; does not move the channel position. */
+    private final class RegionInputStream extends InputStream {
+        private long pos;
+        private final long end;
+
+        RegionInputStream(long offset, long length) {
+            this.pos = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pos >= end) return -1;
+            int want = (int) Math.min(len, end - pos);
+            int n = channel.read(ByteBuffer.wrap(b, off, want), pos);
+            if (n < 0) throw new EOFException("Unexpected end of APK at " + pos);
+            pos += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.appcloner.replica;
+
+/**
+ * One ZIP entry as it is stored in the archive: name, compression method, CRC and the sizes
+ * of the stored payload. This is all that is needed to move an entry between APKs without
+ * inflating and re-deflating it.
+ */
+final class ApkEntry {
+    static final int METHOD_STORED   = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    static final int FLAG_UTF8            = 0x0800;
+
+    // 1980-01-01 00:00, the earliest DOS timestamp; used for every entry we create ourselves
+    static final int DOS_DATE_EPOCH = (1 << 5) | 1;
+    static final int DOS_TIME_EPOCH = 0;
+
+    final String name;
+    int flags;
+    int method;
+    int dosTime = DOS_TIME_EPOCH;
+    int dosDate = DOS_DATE_EPOCH;
+    long crc;
+    long compressedSize;
+    long size;
+
+    ApkEntry(String name) {
+        this.name = name;
+    }
+
+    boolean isStored() {
+        return method == METHOD_STORED;
+    }
+
+    boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    @Override
+    public String toString() {
+        return name + " (method=" + method + ", size=" + size + ", compressed=" + compressedSize + ")";
+    }
+}
@@ -0,0 +1,284 @@
+package com.appcloner.replica;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Sequential reader over the local file headers of a ZIP stream. Unlike {@link java.util.zip.ZipInputStream}
+ * it hands out the stored (compressed) bytes of each entry, so unchanged entries can be copied
+ * into another archive as-is.
+ *
+ * Entries written with a data descriptor have no sizes in their local header; for DEFLATED ones
+ * the compressed payload is inflated once to find its end and buffered in memory. A STORED entry
+ * with a data descriptor has nothing that marks its end, so it is rejected with a ZipException
+ * rather than spooled. APK tools do not write such entries, and inputs that can be read at
+ * random go through {@link ApkChannelReader}, which takes the sizes from the central directory.
+ */
+final class ApkEntryReader implements ApkInput {
+    private static final int LOCAL_HEADER_SIG    = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int LOCAL_HEADER_LEN    = 30;
+    private static final int BUF_SIZE            = 8192;
+
+    private final PushbackInputStream in;
+    private final byte[] header = new byte[LOCAL_HEADER_LEN];
+    private ApkEntry current;
+    private InputStream currentRaw;
+
+    ApkEntryReader(InputStream in) {
+        this.in = new PushbackInputStream(new BufferedInputStream(in, 64 * 1024), BUF_SIZE);
+    }
+
+    /**
+     * Advances to the next entry, skipping whatever is left of the current one.
+     *
+     * @return the next entry, or {@code null} once the central directory is reached
+     */
+    @Override
+    public ApkEntry next() throws IOException {
+        if (currentRaw != null) {
+            currentRaw.close();
+            currentRaw = null;
+        }
+        current = null;
+
+        int first = in.read();
+        if (first < 0) return null;
+        header[0] = (byte) first;
+        readFully(header, 1, LOCAL_HEADER_LEN - 1);
+        if (le32(header, 0) != LOCAL_HEADER_SIG) {
+            return null;
+        }
+
+        int flags = le16(header, 6);
+        int nameLen = le16(header, 26);
+        int extraLen = le16(header, 28);
+        byte[] nameBytes = new byte[nameLen];
+        readFully(nameBytes, 0, nameLen);
+        skipFully(extraLen);
+
+        ApkEntry e = new ApkEntry(new String(nameBytes, StandardCharsets.UTF_8));
+        e.flags = flags;
+        e.method = le16(header, 8);
+        e.dosTime = le16(header, 10);
+        e.dosDate = le16(header, 12);
+        e.crc = le32(header, 14);
+        e.compressedSize = le32(header, 18);
+        e.size = le32(header, 22);
+
+        if (e.compressedSize == 0xFFFFFFFFL || e.size == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 entries are not supported: " + e.name);
+        }
+        if (e.method != ApkEntry.METHOD_STORED && e.method != ApkEntry.METHOD_DEFLATED) {
+            throw new ZipException("Unsupported compression method " + e.method + ": " + e.name);
+        }
+
+        if ((flags & ApkEntry.FLAG_DATA_DESCRIPTOR) != 0) {
+            if (e.method != ApkEntry.METHOD_DEFLATED) {
+                throw new ZipException("STORED entry with data descriptor, not readable from a stream: " + e.name);
+            }
+            currentRaw = new ByteArrayInputStream(bufferDeflated(e));
+            e.flags &= ~ApkEntry.FLAG_DATA_DESCRIPTOR;
+        } else {
+            currentRaw = new BoundedInputStream(e.compressedSize);
+        }
+        current = e;
+        return e;
+    }
+
+    @Override
+    public InputStream rawData() {
+        if (current == null) throw new IllegalStateException("No current entry");
+        return currentRaw;
+    }
+
+    @Override
+    public byte[] readData() throws IOException {
+        if (current == null) throw new IllegalStateException("No current entry");
+        return readData(current, currentRaw);
+    }
+
+    @Override
+    public void copyRawTo(ApkZipWriter zip) throws IOException {
+        if (current == null) throw new IllegalStateException("No current entry");
+        zip.copyRaw(current, currentRaw);
+    }
+
+    @Override
+    public List<String> names() {
+        // Local headers are only seen one at a time
+        return null;
+    }
+
+    /** Inflates (or just reads, if STORED) the stored bytes {@code raw} of {@code entry}. */
+    static byte[] readData(ApkEntry entry, InputStream raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(entry.size, Integer.MAX_VALUE - 8));
+        byte[] buf = new byte[BUF_SIZE];
+        if (entry.isStored()) {
+            int n;
+            while ((n = raw.read(buf)) != -1) out.write(buf, 0, n);
+            return out.toByteArray();
+        }
+        Inflater inf = new Inflater(true);
+        try {
+            byte[] chunk = new byte[BUF_SIZE];
+            boolean eof = false;
+            while (!inf.finished()) {
+                if (inf.needsInput()) {
+                    int n = eof ? -1 : raw.read(chunk);
+                    if (n < 0) {
+                        if (eof) throw new EOFException("Truncated entry: " + entry.name);
+                        // nowrap inflaters may want one extra dummy byte at the very end
+                        eof = true;
+                        inf.setInput(new byte[1]);
+                    } else {
+                        inf.setInput(chunk, 0, n);
+                    }
+                }
+                int k = inf.inflate(buf);
+                out.write(buf, 0, k);
+                if (k == 0 && inf.needsDictionary()) {
+                    throw new ZipException("Entry needs a preset dictionary: " + entry.name);
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new ZipException("Corrupt entry " + entry.name + ": " + ex.getMessage());
+        } finally {
+            inf.end();
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Inflates a data-descriptor entry once to find where its compressed bytes end, keeping
+     * those bytes, then fills in CRC and sizes from what was actually read.
+     */
+    private byte[] bufferDeflated(ApkEntry e) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        Inflater inf = new Inflater(true);
+        byte[] buf = new byte[BUF_SIZE];
+        byte[] out = new byte[BUF_SIZE];
+        long inflated = 0;
+        int n = 0;
+        try {
+            while (!inf.finished()) {
+                if (inf.needsInput()) {
+                    if (n > 0) raw.write(buf, 0, n);
+                    n = in.read(buf);
+                    if (n < 0) throw new EOFException("Truncated entry: " + e.name);
+                    inf.setInput(buf, 0, n);
+                }
+                int k = inf.inflate(out);
+                crc.update(out, 0, k);
+                inflated += k;
+                if (k == 0 && inf.needsDictionary()) {
+                    throw new ZipException("Entry needs a preset dictionary: " + e.name);
+                }
+            }
+            int remaining = inf.getRemaining();
+            raw.write(buf, 0, n - remaining);
+            if (remaining > 0) in.unread(buf, n - remaining, remaining);
+        } catch (DataFormatException ex) {
+            throw new ZipException("Corrupt entry " + e.name + ": " + ex.getMessage());
+        } finally {
+            inf.end();
+        }
+
+        // Data descriptor: optional signature, then CRC, compressed and uncompressed size
+        byte[] dd = new byte[16];
+        readFully(dd, 0, 4);
+        int off = 0;
+        if (le32(dd, 0) == DATA_DESCRIPTOR_SIG) {
+            readFully(dd, 4, 12);
+            off = 4;
+        } else {
+            readFully(dd, 4, 8);
+        }
+        if (le32(dd, off) != crc.getValue()) {
+            throw new ZipException("CRC mismatch in " + e.name);
+        }
+
+        e.crc = crc.getValue();
+        e.compressedSize = raw.size();
+        e.size = inflated;
+        return raw.toByteArray();
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = in.read(b, off, len);
+            if (n < 0) throw new EOFException("Unexpected end of ZIP stream");
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void skipFully(long len) throws IOException {
+        while (len > 0) {
+            long n = in.skip(len);
+            if (n <= 0) {
+                if (in.read() < 0) throw new EOFException("Unexpected end of ZIP stream");
+                n = 1;
+            }
+            len -= n;
+        }
+    }
+
+    static int le16(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+    }
+
+    static long le32(byte[] b, int off) {
+        return (le16(b, off) | ((long) le16(b, off + 2) << 16)) & 0xFFFFFFFFL;
+    }
+
+    /** Reads up to {@code remaining} bytes of the underlying stream; closing skips the rest. */
+    private final class BoundedInputStream extends InputStream {
+        private long remaining;
+
+        BoundedInputStream(long remaining) {
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = in.read();
+            if (b < 0) throw new EOFException("Unexpected end of ZIP stream");
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n < 0) throw new EOFException("Unexpected end of ZIP stream");
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            skipFully(remaining);
+            remaining = 0;
+        }
+    }
+}
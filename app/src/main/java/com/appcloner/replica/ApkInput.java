@@ -0,0 +1,38 @@
+package com.appcloner.replica;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The entries of an input APK in archive order, with access to their stored (still
+ * compressed) bytes so unchanged entries can be copied raw.
+ *
+ * {@link ApkEntryReader} walks a plain stream; {@link ApkChannelReader} reads a seekable file
+ * through its central directory and only touches the entries that are actually used.
+ */
+interface ApkInput extends Closeable {
+    /**
+     * Advances to the next entry, skipping whatever is left of the current one.
+     *
+     * @return the next entry, or {@code null} when there are no more
+     */
+    ApkEntry next() throws IOException;
+
+    /** Stored bytes of the current entry, exactly {@code compressedSize} long. */
+    InputStream rawData() throws IOException;
+
+    /** Fully inflated contents of the current entry. Meant for small entries such as the manifest. */
+    byte[] readData() throws IOException;
+
+    /** Copies the current entry into {@code zip} unchanged. */
+    void copyRawTo(ApkZipWriter zip) throws IOException;
+
+    /**
+     * Names of all entries in archive order, or {@code null} when they are only known once
+     * read. Inputs that know them up front also allow {@link #copyRawTo} after {@link #readData}
+     * on the same entry.
+     */
+    List<String> names();
+}
@@ -2,9 +2,16 @@ package com.appcloner.replica;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
 import com.android.apksig.ApkSigner;
+import com.android.apksig.DefaultApkSignerEngine;
+import com.android.apksig.apk.ApkUtils;
+import com.android.apksig.apk.MinSdkVersionException;
+import com.android.apksig.util.DataSink;
+import com.android.apksig.util.DataSource;
+import com.android.apksig.util.DataSources;
 import com.reandroid.arsc.chunk.xml.ResXmlAttribute;
 import com.reandroid.arsc.chunk.xml.ResXmlDocument;
 import com.reandroid.arsc.chunk.xml.ResXmlElement;
@@ -14,16 +21,18 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipFile;
 
 public class ApkProcessor {
     private static final String TAG = "ApkProcessor";
@@ -61,6 +70,15 @@ public class ApkProcessor {
     private static final Pattern DEX_NAME = Pattern.compile(
             "^classes(\\d*)\\.dex$", Pattern.CASE_INSENSITIVE);
 
+    private static final String ASSET_CLONER_JSON = "assets/cloner.json";
+    private static final String ASSET_CLONER_BIN = "assets/cloner.bin";
+    private static final String REPORT_SUFFIX     = ".report.json";
+    private static final String REPORT_DIR        = "clone_reports";
+    private static final String SHRUNK_DEX_DIR    = "hook_dex";
+    private static final long TRANSFER_SLICE      = 8L * 1024 * 1024;
+    private static final String ASSET_APP_DATA    = "assets/app_data_export.zip";
+    private static final String[] INJECTED_ABIS   = { "arm64-v8a", "armeabi-v7a" };
+
     private static final String KEYSTORE_ASSET = "debug.p12";
     private static final String STORE_PWD      = "android";
     private static final String KEY_PWD        = "android";
@@ -86,12 +104,86 @@ public class ApkProcessor {
     // Use a static authority for the provider
     private static final String PROVIDER_AUTHORITY = "com.applisto.appcloner.DefaultProvider";
 
+    private static DefaultApkSignerEngine.SignerConfig cachedSigner;
+
     private final Context ctx;
+    private CloneMetrics.Listener progressListener;
+    private CloneMetrics lastMetrics;
+
+    // Compression of new/modified entries; output is identical for any worker count
+    private int deflateWorkers = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private long deflateMemoryBudget = 64L * 1024 * 1024;
+    // 16 KiB is needed for devices running with 16 KiB memory pages
+    private int nativeLibPageAlignment = ApkZipWriter.PAGE_ALIGNMENT_4K;
+    // v2 chunk digests; the signature is identical for any worker count
+    private int signingWorkers = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private boolean shrinkHookDex = false;
+    private boolean mergeHookDex = false;
+    private boolean baselineProfile = true;
 
     public ApkProcessor(Context ctx) {
         this.ctx = ctx.getApplicationContext();
     }
 
+    /** Maximum number of threads used to deflate new or modified entries (1 = single-threaded). */
+    public void setDeflateWorkers(int workers) {
+        this.deflateWorkers = Math.max(1, workers);
+    }
+
+    /** Upper bound, in bytes, for input and compressed chunks held in flight while deflating. */
+    public void setDeflateMemoryBudget(long bytes) {
+        this.deflateMemoryBudget = bytes;
+    }
+
+    /** Number of threads computing APK Signature Scheme digests (1 = single-threaded). */
+    public void setSigningWorkers(int workers) {
+        this.signingWorkers = Math.max(1, workers);
+    }
+
+    /** Receives per-stage progress of every run; called on the worker thread. */
+    public void setProgressListener(CloneMetrics.Listener listener) {
+        this.progressListener = listener;
+    }
+
+    /** Metrics of the most recent run (also written as a JSON report), or null. */
+    public CloneMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    /**
+     * Whether hook.dex is pruned to the features enabled in {@code cloner.json} (default false).
+     * Only for clones whose config will not change: a pruned clone cannot turn on a removed
+     * feature through {@link #patchEntries} or a config reload, it has to be cloned again.
+     */
+    public void setHookDexShrinking(boolean enabled) {
+        this.shrinkHookDex = enabled;
+    }
+
+    /**
+     * Whether the hook classes are merged into the app's last DEX when they fit under the 64K
+     * reference limits (default false), instead of always being added as a new DEX. Needs an
+     * input whose entries are known up front, i.e. a file or seekable descriptor.
+     */
+    public void setMergeHookDex(boolean enabled) {
+        this.mergeHookDex = enabled;
+    }
+
+    /**
+     * Whether the hook classes are added to the clone's ART baseline profile (default true),
+     * merging with the profile the app already ships, so they are compiled ahead of time.
+     */
+    public void setBaselineProfile(boolean enabled) {
+        this.baselineProfile = enabled;
+    }
+
+    /** Page size uncompressed native libraries are aligned to: 4096 (default) or 16384. */
+    public void setNativeLibPageAlignment(int alignment) {
+        if (alignment != ApkZipWriter.PAGE_ALIGNMENT_4K && alignment != ApkZipWriter.PAGE_ALIGNMENT_16K) {
+            throw new IllegalArgumentException("Unsupported page alignment: " + alignment);
+        }
+        this.nativeLibPageAlignment = alignment;
+    }
+
     public void injectHook(Uri inApk,
                            Uri outApk,
                            File hookDex,
@@ -102,142 +194,275 @@ public class ApkProcessor {
             throw new IllegalArgumentException("Required parameters cannot be null");
         }
 
-        File tempRoot = new File(ctx.getCacheDir(), "apk_" + System.currentTimeMillis());
-        if (!tempRoot.mkdirs()) throw new IOException("mkdir failed: " + tempRoot);
-
-        Set<Integer> dexNumbers = new HashSet<>();
-        Set<String> abiDirs = new HashSet<>();
-        byte[] manifestRaw = null;
-
-        String basePath;
+        CloneMetrics metrics = newMetrics("inject_hook", CloneMetrics.Stage.COPY_ENTRIES,
+                CloneMetrics.Stage.APPEND_PAYLOAD, CloneMetrics.Stage.FINISH_ZIP,
+                CloneMetrics.Stage.SIGN, CloneMetrics.Stage.WRITE_OUTPUT);
         try {
-            basePath = tempRoot.getCanonicalPath() + File.separator;
-        } catch (IOException e) {
-            deleteRec(tempRoot);
+            JSONObject clonerConfig = readClonerConfig(clonerJson);
+            File bundledData = acceptBundledData(bundledDataFile);
+            File dex = hookDexFor(hookDex, Collections.singletonList(clonerConfig));
+
+            // Stream input APK straight into the unsigned output (strip signatures, patch manifest,
+            // capture dex indices). Unchanged entries are copied raw, without inflate/deflate.
+            File unsignedApk = new File(ctx.getCacheDir(), "unsigned_" + System.nanoTime() + ".apk");
+            metrics.setTotal(CloneMetrics.Stage.COPY_ENTRIES, inputSize(inApk));
+            try (ApkInput reader = openInput(inApk, metrics);
+                 ApkZipWriter zip = newZipWriter(unsignedApk)) {
+                writeHookedEntries(reader, zip, dex, nativeLibDir, bundledData, clonerConfig, metrics);
+
+                // Copy cloner.json into assets
+                writeFileEntry(zip, ASSET_CLONER_JSON, clonerJson, metrics);
+                writeCompiledConfig(zip, clonerConfig);
+
+                metrics.begin(CloneMetrics.Stage.FINISH_ZIP);
+                zip.close();
+            } catch (Exception e) {
+                unsignedApk.delete();
+                throw e;
+            }
+
+            signAndDeliver(unsignedApk, outApk, metrics);
+            metrics.finish(null);
+            Log.i(TAG, "APK injection + signing completed successfully");
+        } catch (Exception e) {
+            metrics.finish(e);
             throw e;
+        } finally {
+            saveReport(metrics, reportFileFor(outApk, metrics));
         }
+    }
 
-        // Unpack input APK (strip signatures, capture manifest and dex indices)
-        try (InputStream is = ctx.getContentResolver().openInputStream(inApk);
-             ZipInputStream zis = new ZipInputStream(new BufferedInputStream(is))) {
+    /**
+     * Produces one clone per variant from a single pass over {@code inApk}. The input is parsed
+     * and merged with the hook payload once into a base APK; each variant then only adds its
+     * patched manifest and {@code cloner.json}, copies the base entries raw and is signed.
+     *
+     * A failing variant is reported in its result and does not stop the others.
+     */
+    public List<VariantResult> injectHookBatch(Uri inApk,
+                                               File hookDex,
+                                               File nativeLibDir,
+                                               File bundledDataFile,
+                                               List<CloneVariant> variants) throws Exception {
+        if (inApk == null || hookDex == null || variants == null) {
+            throw new IllegalArgumentException("Required parameters cannot be null");
+        }
 
-            ZipEntry ze;
-            while ((ze = zis.getNextEntry()) != null) {
-                String name = ze.getName();
-                if (name == null || name.isEmpty()) continue;
+        long baseStart = System.nanoTime();
+        CloneMetrics metrics = newMetrics("batch_base", CloneMetrics.Stage.COPY_ENTRIES,
+                CloneMetrics.Stage.APPEND_PAYLOAD, CloneMetrics.Stage.FINISH_ZIP);
+        File bundledData = acceptBundledData(bundledDataFile);
+        // The base is shared, so it carries every feature any variant enables
+        List<JSONObject> configs = new ArrayList<>(variants.size());
+        for (CloneVariant variant : variants) {
+            configs.add(readClonerConfig(variant.clonerJson));
+        }
+        File dex = hookDexFor(hookDex, configs);
+        File baseApk = new File(ctx.getCacheDir(), "base_" + System.nanoTime() + ".apk");
+        byte[] manifest;
+        metrics.setTotal(CloneMetrics.Stage.COPY_ENTRIES, inputSize(inApk));
+        try (ApkInput reader = openInput(inApk, metrics);
+             ApkZipWriter zip = newZipWriter(baseApk)) {
+            manifest = writeHookedEntries(reader, zip, dex, nativeLibDir, bundledData, null, metrics);
+            metrics.begin(CloneMetrics.Stage.FINISH_ZIP);
+            zip.close();
+            metrics.finish(null);
+        } catch (Exception e) {
+            metrics.finish(e);
+            baseApk.delete();
+            throw e;
+        }
+        Log.i(TAG, "Batch base APK built in " + millisSince(baseStart) + " ms");
 
-                // Remove all existing signature files
-                if (SIG_PATH.matcher(name).matches()) continue;
+        List<VariantResult> results = new ArrayList<>(variants.size());
+        try {
+            for (CloneVariant variant : variants) {
+                results.add(buildVariant(baseApk, manifest, variant));
+            }
+        } finally {
+            baseApk.delete();
+        }
+        return results;
+    }
 
-                // Track ABIs
-                if (name.startsWith("lib/") && name.endsWith(".so")) {
-                    int slash = name.indexOf('/', 4);
-                    if (slash > 0) abiDirs.add(name.substring(0, slash + 1));
+    private VariantResult buildVariant(File baseApk, byte[] manifest, CloneVariant variant) {
+        long start = System.nanoTime();
+        long buildMs = 0, signMs = 0;
+        CloneMetrics metrics = newMetrics("batch_variant", CloneMetrics.Stage.PATCH_MANIFEST,
+                CloneMetrics.Stage.COPY_ENTRIES, CloneMetrics.Stage.FINISH_ZIP,
+                CloneMetrics.Stage.SIGN, CloneMetrics.Stage.WRITE_OUTPUT);
+        File unsignedApk = new File(ctx.getCacheDir(), "unsigned_" + System.nanoTime() + ".apk");
+        try {
+            metrics.begin(CloneMetrics.Stage.PATCH_MANIFEST);
+            JSONObject clonerConfig = readClonerConfig(variant.clonerJson);
+            metrics.setTotal(CloneMetrics.Stage.COPY_ENTRIES, baseApk.length());
+            try (ApkInput reader = openInput(baseApk, metrics);
+                 ApkZipWriter zip = newZipWriter(unsignedApk)) {
+                zip.writeEntry(ANDROID_MANIFEST, patchManifestSafely(manifest, clonerConfig), true);
+                writeFileEntry(zip, ASSET_CLONER_JSON, variant.clonerJson);
+                writeCompiledConfig(zip, clonerConfig);
+                metrics.begin(CloneMetrics.Stage.COPY_ENTRIES);
+                ApkEntry ze;
+                while ((ze = reader.next()) != null) {
+                    reader.copyRawTo(zip);
                 }
+                metrics.begin(CloneMetrics.Stage.FINISH_ZIP);
+                zip.close();
+            }
+            buildMs = millisSince(start);
 
-                // Track DEX numbers
-                Matcher m = DEX_NAME.matcher(name);
-                if (m.matches()) {
-                    int idx = m.group(1).isEmpty() ? 1 : Integer.parseInt(m.group(1));
-                    dexNumbers.add(idx);
-                    Log.d(TAG, "Found DEX: " + name + " -> index " + idx);
-                }
+            long signStart = System.nanoTime();
+            signAndDeliver(unsignedApk, variant.outApk, metrics);
+            signMs = millisSince(signStart);
+            metrics.finish(null);
 
-                // Read manifest into memory, don't write original out
-                if (ANDROID_MANIFEST.equals(name)) {
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    copyStream(zis, baos);
-                    manifestRaw = baos.toByteArray();
-                    continue;
-                }
+            long totalMs = millisSince(start);
+            Log.i(TAG, "Variant " + variant.outApk + " done: build=" + buildMs + " ms, sign+write="
+                    + signMs + " ms, total=" + totalMs + " ms");
+            return new VariantResult(variant, buildMs, signMs, totalMs, null);
+        } catch (Exception e) {
+            Log.e(TAG, "Variant " + variant.outApk + " failed", e);
+            metrics.finish(e);
+            unsignedApk.delete();
+            return new VariantResult(variant, buildMs, signMs, millisSince(start), e);
+        } finally {
+            saveReport(metrics, reportFileFor(variant.outApk, metrics));
+        }
+    }
 
-                File out = safeResolve(tempRoot, basePath, name);
-                if (ze.isDirectory()) {
-                    if (!out.exists() && !out.mkdirs()) {
-                        throw new IOException("Failed to create dir: " + out);
-                    }
-                    continue;
+    /**
+     * Streams the input APK into {@code zip} with signatures stripped and the hook DEX, native
+     * libraries and optional bundled data added. The manifest is patched with
+     * {@code clonerConfig} and written in place, or left out entirely when it is null.
+     * {@code cloner.json} is never written here.
+     *
+     * @return the original, unpatched manifest
+     */
+    private byte[] writeHookedEntries(ApkInput reader,
+                                      ApkZipWriter zip,
+                                      File hookDex,
+                                      File nativeLibDir,
+                                      File bundledData,
+                                      JSONObject clonerConfig,
+                                      CloneMetrics metrics) throws IOException {
+        // Entries we are going to (re)write ourselves; the originals are dropped while streaming.
+        Set<String> replacedNames = new HashSet<>();
+        replacedNames.add(ASSET_CLONER_JSON);
+        replacedNames.add(ASSET_CLONER_BIN);
+        if (bundledData != null) replacedNames.add(ASSET_APP_DATA);
+        for (String abi : INJECTED_ABIS) {
+            for (File so : listNativeLibs(nativeLibDir, abi)) {
+                replacedNames.add("lib/" + abi + "/" + so.getName());
+            }
+        }
+
+        Set<Integer> dexNumbers = new HashSet<>();
+        Set<String> abiDirs = new HashSet<>();
+        byte[] manifest = null;
+        String mergeTarget = mergeHookDex ? lastDexName(reader.names()) : null;
+        boolean hookMerged = false;
+        // The app's own profile is held back and rewritten with the hook classes added
+        byte[] appProf = null, appProfm = null;
+        BaselineProfile.Contribution profileContribution = null;
+
+        metrics.begin(CloneMetrics.Stage.COPY_ENTRIES);
+        ApkEntry ze;
+        while ((ze = reader.next()) != null) {
+            String name = ze.name;
+            if (name.isEmpty() || ze.isDirectory()) continue;
+
+            // Remove all existing signature files
+            if (SIG_PATH.matcher(name).matches()) continue;
+
+            // Track ABIs
+            if (name.startsWith("lib/") && name.endsWith(".so")) {
+                int slash = name.indexOf('/', 4);
+                if (slash > 0) abiDirs.add(name.substring(0, slash + 1));
+            }
+
+            // Track DEX numbers
+            Matcher m = DEX_NAME.matcher(name);
+            if (m.matches()) {
+                int idx = m.group(1).isEmpty() ? 1 : Integer.parseInt(m.group(1));
+                dexNumbers.add(idx);
+                Log.d(TAG, "Found DEX: " + name + " -> index " + idx);
+            }
+
+            if (replacedNames.contains(name)) continue;
+            if (baselineProfile && BaselineProfile.PROF_PATH.equals(name)) {
+                appProf = reader.readData();
+                continue;
+            }
+            if (baselineProfile && BaselineProfile.PROFM_PATH.equals(name)) {
+                appProfm = reader.readData();
+                continue;
+            }
+            if (zip.hasEntry(name) || (manifest != null && ANDROID_MANIFEST.equals(name))) {
+                Log.w(TAG, "Skipping duplicate entry: " + name);
+                continue;
+            }
+
+            // Patch manifest in memory and write it in place of the original
+            if (ANDROID_MANIFEST.equals(name)) {
+                manifest = reader.readData();
+                if (clonerConfig != null) {
+                    metrics.begin(CloneMetrics.Stage.PATCH_MANIFEST);
+                    // Manifest can be safely compressed
+                    zip.writeEntry(ANDROID_MANIFEST, patchManifestSafely(manifest, clonerConfig), true);
+                    metrics.begin(CloneMetrics.Stage.COPY_ENTRIES);
                 }
-                File parent = out.getParentFile();
-                if (parent != null && !parent.exists() && !parent.mkdirs()) {
-                    throw new IOException("Failed to create parent: " + parent);
+                continue;
+            }
+
+            if (name.equals(mergeTarget)) {
+                metrics.begin(CloneMetrics.Stage.APPEND_PAYLOAD);
+                byte[] appDex = reader.readData();
+                byte[] merged = mergeIntoDex(appDex, hookDex);
+                if (merged != null && baselineProfile) {
+                    profileContribution = profileFor(name, appDex, merged, hookDex);
                 }
-                try (FileOutputStream fos = new FileOutputStream(out)) {
-                    copyStream(zis, fos);
+                metrics.begin(CloneMetrics.Stage.COPY_ENTRIES);
+                if (merged != null) {
+                    zip.writeEntry(name, merged, ze.method != ApkEntry.METHOD_STORED);
+                    hookMerged = true;
+                    continue;
                 }
             }
+
+            reader.copyRawTo(zip);
         }
 
-        if (manifestRaw == null) {
-            deleteRec(tempRoot);
+        if (manifest == null) {
             throw new IOException("AndroidManifest.xml missing in APK");
         }
 
-        // Read cloner.json
-        JSONObject clonerConfig;
-        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(clonerJson), "UTF-8")) {
-            StringBuilder sb = new StringBuilder();
-            char[] buffer = new char[4096];
-            int read;
-            while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
-                sb.append(buffer, 0, read);
-            }
-            clonerConfig = new JSONObject(sb.toString());
-        } catch (IOException | JSONException e) {
-            Log.e(TAG, "Failed to read or parse cloner.json, using default empty config.", e);
-            clonerConfig = new JSONObject();
+        metrics.begin(CloneMetrics.Stage.APPEND_PAYLOAD);
+        long payloadBytes = (hookMerged ? 0 : hookDex.length()) + (bundledData != null ? bundledData.length() : 0);
+        for (String abi : INJECTED_ABIS) {
+            for (File so : listNativeLibs(nativeLibDir, abi)) payloadBytes += so.length();
         }
+        metrics.setTotal(CloneMetrics.Stage.APPEND_PAYLOAD, payloadBytes);
 
-        // Patch manifest with validation + safe fallback + retry logic
-        byte[] patchedManifest;
-        try {
-            ManifestPatchResult manifestResult = patchManifest(manifestRaw, clonerConfig);
-            patchedManifest = manifestResult.manifestBytes;
-            validateManifest(patchedManifest);
-            Log.d(TAG, "Manifest patched and validated successfully.");
-        } catch (Throwable t) {
-            Log.e(TAG, "Manifest patching/validation failed on first attempt", t);
-            // Try a safer patching approach without icon/label modifications
-            try {
-                Log.d(TAG, "Attempting safe manifest patch without app name modification...");
-                JSONObject safeConfig = clonerConfig != null ? new JSONObject(clonerConfig.toString()) : new JSONObject();
-                safeConfig.remove("app_name");  // Remove app name modification
-                ManifestPatchResult safeResult = patchManifest(manifestRaw, safeConfig);
-                patchedManifest = safeResult.manifestBytes;
-                validateManifest(patchedManifest);
-                Log.d(TAG, "Safe manifest patch succeeded.");
-            } catch (Throwable t2) {
-                Log.e(TAG, "Safe manifest patching also failed; falling back to original manifest", t2);
-                patchedManifest = manifestRaw;
+        // Decide next DEX index and add hook dex, unless it went into the app's last one
+        if (hookMerged) {
+            Log.d(TAG, "Hook classes merged into " + mergeTarget);
+        } else {
+            int nextIdx = dexNumbers.isEmpty() ? 2 : Collections.max(dexNumbers) + 1;
+            String dexName = (nextIdx == 1) ? "classes.dex" : "classes" + nextIdx + ".dex";
+            Log.d(TAG, "Adding hook DEX as: " + dexName + " (nextIdx=" + nextIdx + ")");
+            writeFileEntry(zip, dexName, hookDex, metrics);
+            if (baselineProfile) {
+                profileContribution = profileFor(dexName, null, null, hookDex);
             }
         }
-
-        // Decide next DEX index and add hook dex
-        int nextIdx = dexNumbers.isEmpty() ? 2 : Collections.max(dexNumbers) + 1;
-        String dexName = (nextIdx == 1) ? "classes.dex" : "classes" + nextIdx + ".dex";
-        Log.d(TAG, "Adding hook DEX as: " + dexName + " (nextIdx=" + nextIdx + ")");
-        copyFile(hookDex, new File(tempRoot, dexName));
-
-        // Copy cloner.json into assets
-        File assetsDir = new File(tempRoot, "assets");
-        if (!assetsDir.exists() && !assetsDir.mkdirs()) {
-            deleteRec(tempRoot);
-            throw new IOException("Failed to create assets dir");
+        if (baselineProfile) {
+            writeBaselineProfile(zip, appProf, appProfm, profileContribution);
         }
-        copyFile(clonerJson, new File(assetsDir, "cloner.json"));
 
         // Optional bundled app data
-        if (bundledDataFile != null && bundledDataFile.exists()) {
-            try {
-                if (isProbablyZip(bundledDataFile) && bundledDataFile.length() <= 100L * 1024 * 1024) {
-                    copyFile(bundledDataFile, new File(assetsDir, "app_data_export.zip"));
-                    Log.d(TAG, "App data bundled into assets/app_data_export.zip");
-                } else {
-                    Log.w(TAG, "Bundled data file rejected (not a ZIP or too large). Skipping.");
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Error bundling app data. Skipping.", e);
-            }
+        if (bundledData != null) {
+            writeFileEntry(zip, ASSET_APP_DATA, bundledData, metrics);
+            Log.d(TAG, "App data bundled into " + ASSET_APP_DATA);
         }
 
         // Inject native libs for appropriate ABI(s)
@@ -254,75 +479,461 @@ public class ApkProcessor {
             hasArmV7 = true;
         }
 
-        if (nativeLibDir != null) {
-            // Helper to copy libs for a specific ABI
-            if (hasArm64) {
-                File arm64Source = new File(nativeLibDir, "arm64-v8a");
-                if (arm64Source.exists() && arm64Source.isDirectory()) {
-                    File dstDir = new File(tempRoot, "lib/arm64-v8a/");
-                    if (!dstDir.exists() && !dstDir.mkdirs()) {
-                        deleteRec(tempRoot);
-                        throw new IOException("Failed to create ABI dir: " + dstDir);
-                    }
-                    File[] soFiles = arm64Source.listFiles((d, n) -> n != null && n.endsWith(".so"));
-                    if (soFiles != null) {
-                        for (File so : soFiles) {
-                            copyFile(so, new File(dstDir, so.getName()));
-                        }
-                    }
-                }
+        if (hasArm64) {
+            for (File so : listNativeLibs(nativeLibDir, "arm64-v8a")) {
+                writeFileEntry(zip, "lib/arm64-v8a/" + so.getName(), so, metrics);
+            }
+        }
+        if (hasArmV7) {
+            for (File so : listNativeLibs(nativeLibDir, "armeabi-v7a")) {
+                writeFileEntry(zip, "lib/armeabi-v7a/" + so.getName(), so, metrics);
             }
+        }
+        return manifest;
+    }
 
-            if (hasArmV7) {
-                File armV7Source = new File(nativeLibDir, "armeabi-v7a");
-                if (armV7Source.exists() && armV7Source.isDirectory()) {
-                    File dstDir = new File(tempRoot, "lib/armeabi-v7a/");
-                    if (!dstDir.exists() && !dstDir.mkdirs()) {
-                        deleteRec(tempRoot);
-                        throw new IOException("Failed to create ABI dir: " + dstDir);
-                    }
-                    File[] soFiles = armV7Source.listFiles((d, n) -> n != null && n.endsWith(".so"));
-                    if (soFiles != null) {
-                        for (File so : soFiles) {
-                            copyFile(so, new File(dstDir, so.getName()));
-                        }
-                    }
+    /**
+     * Profile entries for the hook: for its own DEX when {@code appDex} is null, otherwise for
+     * the app DEX it was merged into. Null if the DEX cannot be analysed.
+     */
+    private static BaselineProfile.Contribution profileFor(String dexName, byte[] appDex, byte[] merged,
+                                                           File hookDex) {
+        try {
+            return appDex == null
+                    ? BaselineProfile.Contribution.forHookDex(dexName, hookDex)
+                    : BaselineProfile.Contribution.forMergedDex(dexName, appDex, merged, hookDex);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to build baseline profile for " + dexName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code assets/dexopt/baseline.prof(m)} with the hook added to the app's profile,
+     * or a new profile if the app has none. The app's files are put back unchanged when they
+     * cannot be merged.
+     */
+    private void writeBaselineProfile(ApkZipWriter zip, byte[] appProf, byte[] appProfm,
+                                      BaselineProfile.Contribution contribution) throws IOException {
+        byte[] prof = appProf, profm = appProfm;
+        if (contribution != null && (appProf == null) == (appProfm == null)) {
+            try {
+                BaselineProfile profile = appProf != null
+                        ? BaselineProfile.read(appProf, appProfm)
+                        : new BaselineProfile();
+                profile.add(contribution);
+                prof = profile.toProf();
+                profm = profile.toProfm();
+                Log.d(TAG, (appProf != null ? "Merged hook into" : "Created") + " baseline profile");
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Cannot merge into the app's baseline profile, keeping it as is", e);
+                prof = appProf;
+                profm = appProfm;
+            }
+        } else if (contribution != null) {
+            Log.w(TAG, "Incomplete baseline profile in app, keeping it as is");
+        }
+        // Already compressed inside
+        if (prof != null) zip.writeEntry(BaselineProfile.PROF_PATH, prof, false);
+        if (profm != null) zip.writeEntry(BaselineProfile.PROFM_PATH, profm, false);
+    }
+
+    /** The highest-numbered {@code classesN.dex} among {@code names}, or null. */
+    private static String lastDexName(List<String> names) {
+        if (names == null) return null;
+        String last = null;
+        int lastIdx = 0;
+        for (String name : names) {
+            Matcher m = DEX_NAME.matcher(name);
+            if (!m.matches()) continue;
+            int idx = m.group(1).isEmpty() ? 1 : Integer.parseInt(m.group(1));
+            if (idx > lastIdx) {
+                lastIdx = idx;
+                last = name;
+            }
+        }
+        return last;
+    }
+
+    /** {@code appDex} with the hook classes added, or null to add the hook as its own DEX. */
+    private static byte[] mergeIntoDex(byte[] appDex, File hookDex) {
+        try {
+            return HookDexMerger.merge(appDex, hookDex);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to merge hook DEX, adding it separately", e);
+            return null;
+        }
+    }
+
+    /** The hook DEX to embed for {@code configs}; the full one if shrinking is off or fails. */
+    private File hookDexFor(File hookDex, List<JSONObject> configs) {
+        if (!shrinkHookDex) return hookDex;
+        try {
+            return HookDexShrinker.shrink(hookDex, configs, new File(ctx.getCacheDir(), SHRUNK_DEX_DIR));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to shrink " + hookDex.getName() + ", embedding it unchanged", e);
+            return hookDex;
+        }
+    }
+
+    /** Returns the bundled data file if it may be embedded, or null. */
+    private static File acceptBundledData(File bundledDataFile) {
+        if (bundledDataFile == null || !bundledDataFile.exists()) return null;
+        if (isProbablyZip(bundledDataFile) && bundledDataFile.length() <= 100L * 1024 * 1024) {
+            return bundledDataFile;
+        }
+        Log.w(TAG, "Bundled data file rejected (not a ZIP or too large). Skipping.");
+        return null;
+    }
+
+    /**
+     * Opens the input APK. Plain files and providers that hand out a seekable descriptor (e.g.
+     * an installed app's sourceDir, most SAF documents) are read at random through their central
+     * directory; anything else is streamed.
+     */
+    private ApkInput openInput(Uri uri, CloneMetrics metrics) throws IOException {
+        if ("file".equals(uri.getScheme()) && uri.getPath() != null) {
+            return openInput(new File(uri.getPath()), metrics);
+        }
+        ParcelFileDescriptor pfd = null;
+        try {
+            pfd = ctx.getContentResolver().openFileDescriptor(uri, "r");
+        } catch (FileNotFoundException | UnsupportedOperationException | IllegalArgumentException e) {
+            Log.d(TAG, "No file descriptor for " + uri + ", streaming: " + e.getMessage());
+        }
+        if (pfd != null) {
+            if (pfd.getStatSize() >= 0) {
+                try {
+                    FileChannel channel = new FileInputStream(pfd.getFileDescriptor()).getChannel();
+                    Log.d(TAG, "Reading " + uri + " with random access");
+                    return new ApkChannelReader(channel, pfd, metrics);
+                } catch (IOException e) {
+                    pfd.close();
+                    throw e;
                 }
             }
+            pfd.close();
         }
+        InputStream is = ctx.getContentResolver().openInputStream(uri);
+        if (is == null) {
+            throw new IOException("Cannot open input stream for: " + uri);
+        }
+        return new ApkEntryReader(metrics.count(is));
+    }
 
-        // Repack unsigned APK
-        File unsignedApk = new File(ctx.getCacheDir(), "unsigned_" + System.nanoTime() + ".apk");
-        zipDir(tempRoot, unsignedApk, patchedManifest);
-        deleteRec(tempRoot);
+    private static ApkInput openInput(File apk, CloneMetrics metrics) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(apk, "r");
+        try {
+            return new ApkChannelReader(raf.getChannel(), raf, metrics);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
 
-        // Sign APK
-        File signedApk = new File(ctx.getCacheDir(), "signed_" + System.nanoTime() + ".apk");
+    private ApkZipWriter newZipWriter(File out) throws IOException {
+        ApkZipWriter zip = new ApkZipWriter(out);
+        zip.setLevel(9);
+        zip.setParallelism(deflateWorkers, deflateMemoryBudget);
+        zip.setNativeLibAlignment(nativeLibPageAlignment);
+        return zip;
+    }
+
+    /**
+     * Signs {@code unsignedApk} into {@code outApk} and deletes it. Signs straight into the
+     * destination when its provider hands out a seekable file; otherwise goes through a temp
+     * file that is then copied over.
+     */
+    private void signAndDeliver(File unsignedApk, Uri outApk, CloneMetrics metrics) throws Exception {
         try {
-            signApk(unsignedApk, signedApk);
+            if (!signIntoUri(unsignedApk, outApk, metrics)) {
+                signViaTempFile(unsignedApk, outApk, metrics);
+            }
         } catch (Exception e) {
             Log.e(TAG, "Signing failed", e);
+            throw e;
+        } finally {
+            // Delete unsigned file
             unsignedApk.delete();
+        }
+    }
+
+    /**
+     * Opens {@code outApk} read/write and lets apksig write into it through a positional
+     * {@link FileChannel}, so the signed APK is written exactly once.
+     *
+     * @return false, without touching the destination, if it is not a seekable regular file
+     */
+    private boolean signIntoUri(File unsignedApk, Uri outApk, CloneMetrics metrics) throws Exception {
+        ParcelFileDescriptor pfd;
+        try {
+            // Not "rwt": the destination is truncated only once it is known to be a regular file
+            pfd = ctx.getContentResolver().openFileDescriptor(outApk, "rw");
+        } catch (FileNotFoundException | UnsupportedOperationException | IllegalArgumentException e) {
+            Log.d(TAG, "Output does not support read/write access, using temp file: " + e.getMessage());
+            return false;
+        }
+        if (pfd == null) return false;
+
+        // Streams built from a FileDescriptor do not own it; the pfd closes it last
+        try (ParcelFileDescriptor fd = pfd;
+             FileOutputStream os = new FileOutputStream(fd.getFileDescriptor());
+             FileInputStream is = new FileInputStream(fd.getFileDescriptor())) {
+            if (fd.getStatSize() < 0) {
+                Log.d(TAG, "Output is not a regular file, using temp file");
+                return false;
+            }
+            FileChannel out = os.getChannel();
+            FileChannel in = is.getChannel();
+            out.truncate(0);
+            // Signing writes the destination itself; there is no separate copy
+            metrics.skip(CloneMetrics.Stage.WRITE_OUTPUT);
+            FileChannelDataSink sink = new FileChannelDataSink(out);
+            signApk(unsignedApk, null, sink, DataSources.asDataSource(in), metrics);
+            out.truncate(sink.size());
+            Log.d(TAG, "Signed directly into " + outApk + " (" + sink.size() + " bytes)");
+            checkAlignment(in);
+        }
+        return true;
+    }
+
+    private void signViaTempFile(File unsignedApk, Uri outApk, CloneMetrics metrics) throws Exception {
+        File signedApk = new File(ctx.getCacheDir(), "signed_" + System.nanoTime() + ".apk");
+        try {
+            signApk(unsignedApk, signedApk, metrics);
+            checkAlignment(signedApk);
+
+            // Write to output Uri
+            metrics.begin(CloneMetrics.Stage.WRITE_OUTPUT);
+            metrics.setTotal(CloneMetrics.Stage.WRITE_OUTPUT, signedApk.length());
+            try (OutputStream os = ctx.getContentResolver().openOutputStream(outApk)) {
+                if (os == null) {
+                    throw new IOException("Cannot open output stream for: " + outApk);
+                }
+                transferFile(signedApk, os, metrics);
+            } catch (Exception e) {
+                Log.e(TAG, "Error writing output APK", e);
+                throw e;
+            }
+        } finally {
             signedApk.delete();
+        }
+    }
+
+    /** Copies {@code source} with {@link FileChannel#transferTo}, letting the kernel move the bytes where it can. */
+    private static void transferFile(File source, OutputStream dest, CloneMetrics metrics) throws IOException {
+        try (FileInputStream in = new FileInputStream(source)) {
+            FileChannel src = in.getChannel();
+            WritableByteChannel dst = dest instanceof FileOutputStream
+                    ? ((FileOutputStream) dest).getChannel()
+                    : Channels.newChannel(dest);
+            long size = src.size();
+            long pos = 0;
+            while (pos < size) {
+                // Bounded slices so progress keeps moving on large files
+                long n = src.transferTo(pos, Math.min(TRANSFER_SLICE, size - pos), dst);
+                if (n <= 0) throw new IOException("transferTo made no progress at " + pos);
+                pos += n;
+                metrics.addBytes(n);
+            }
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // --- Metrics ---
+
+    private CloneMetrics newMetrics(String operation, CloneMetrics.Stage... plan) {
+        CloneMetrics metrics = new CloneMetrics(operation, progressListener, plan);
+        lastMetrics = metrics;
+        return metrics;
+    }
+
+    /** Size of the input behind {@code uri}, or -1 if the provider does not report it. */
+    private long inputSize(Uri uri) {
+        try (ParcelFileDescriptor pfd = ctx.getContentResolver().openFileDescriptor(uri, "r")) {
+            return pfd != null ? pfd.getStatSize() : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The JSON report goes next to the output when that is a plain file; SAF outputs get it in
+     * the app's external files dir instead, since a sibling document cannot be created there.
+     */
+    private File reportFileFor(Uri outApk, CloneMetrics metrics) {
+        if ("file".equals(outApk.getScheme()) && outApk.getPath() != null) {
+            return new File(outApk.getPath() + REPORT_SUFFIX);
+        }
+        File base = ctx.getExternalFilesDir(null);
+        if (base == null) base = ctx.getFilesDir();
+        return new File(new File(base, REPORT_DIR), "clone_" + System.currentTimeMillis() + REPORT_SUFFIX);
+    }
+
+    private static void saveReport(CloneMetrics metrics, File file) {
+        if (metrics.writeReport(file)) {
+            Log.i(TAG, "Clone report written to " + file);
+        }
+    }
+
+    /**
+     * Rebuilds {@code inApk} with some entries replaced or added and re-signs it into
+     * {@code outApk}. Every other entry, including the already patched manifest and DEX files,
+     * is copied raw, so only the replacements are compressed.
+     *
+     * @param replacements entry name to new content; names missing from the input are appended
+     */
+    public void patchEntries(File inApk, File outApk, Map<String, File> replacements) throws Exception {
+        Log.d(TAG, "Patching " + replacements.keySet() + " in " + inApk);
+        CloneMetrics metrics = newMetrics("patch_entries", CloneMetrics.Stage.COPY_ENTRIES,
+                CloneMetrics.Stage.FINISH_ZIP, CloneMetrics.Stage.SIGN);
+        try {
+            patchEntries(inApk, outApk, replacements, metrics);
+            metrics.finish(null);
+        } catch (Exception e) {
+            metrics.finish(e);
             throw e;
+        } finally {
+            saveReport(metrics, new File(outApk.getPath() + REPORT_SUFFIX));
         }
-        // Delete unsigned file
-        unsignedApk.delete();
+    }
+
+    private void patchEntries(File inApk, File outApk, Map<String, File> replacements,
+                              CloneMetrics metrics) throws Exception {
+        File unsignedApk = new File(ctx.getCacheDir(), "unsigned_patch_" + System.nanoTime() + ".apk");
+        metrics.setTotal(CloneMetrics.Stage.COPY_ENTRIES, inApk.length());
+        metrics.begin(CloneMetrics.Stage.COPY_ENTRIES);
+        // The hook prefers cloner.bin over cloner.json, so a new cloner.json needs a new one
+        File newClonerJson = replacements.get(ASSET_CLONER_JSON);
+        boolean recompileConfig = newClonerJson != null && !replacements.containsKey(ASSET_CLONER_BIN);
+        try (ApkInput reader = openInput(inApk, metrics);
+             ApkZipWriter zip = newZipWriter(unsignedApk)) {
+            boolean manifestFound = false;
+            ApkEntry ze;
+            while ((ze = reader.next()) != null) {
+                String name = ze.name;
+                if (ze.isDirectory() || SIG_PATH.matcher(name).matches()) continue;
+                if (recompileConfig && ASSET_CLONER_BIN.equals(name)) continue;
+                if (zip.hasEntry(name)) {
+                    Log.w(TAG, "Skipping duplicate entry: " + name);
+                    continue;
+                }
+                if (ANDROID_MANIFEST.equals(name)) manifestFound = true;
 
-        // Write to output Uri
-        try (OutputStream os = ctx.getContentResolver().openOutputStream(outApk)) {
-            if (os == null) {
-                throw new IOException("Cannot open output stream for: " + outApk);
+                File replacement = replacements.get(name);
+                if (replacement != null) {
+                    writeFileEntry(zip, name, replacement);
+                } else {
+                    reader.copyRawTo(zip);
+                }
+            }
+            if (!manifestFound) {
+                throw new IOException("AndroidManifest.xml missing in APK");
+            }
+            for (Map.Entry<String, File> r : replacements.entrySet()) {
+                if (!zip.hasEntry(r.getKey())) {
+                    writeFileEntry(zip, r.getKey(), r.getValue());
+                }
+            }
+            if (recompileConfig) {
+                // Left out if the new cloner.json does not parse; the hook then reads the JSON
+                writeCompiledConfig(zip, readClonerConfig(newClonerJson));
             }
-            copyFileToStream(signedApk, os);
+            metrics.begin(CloneMetrics.Stage.FINISH_ZIP);
+            zip.close();
         } catch (Exception e) {
-            Log.e(TAG, "Error writing output APK", e);
-            signedApk.delete();
+            unsignedApk.delete();
             throw e;
         }
 
-        signedApk.delete();
-        Log.i(TAG, "APK injection + signing completed successfully");
+        try {
+            signApk(unsignedApk, outApk, metrics);
+        } catch (Exception e) {
+            Log.e(TAG, "Signing failed", e);
+            outApk.delete();
+            throw e;
+        } finally {
+            unsignedApk.delete();
+        }
+        checkAlignment(outApk);
+        Log.i(TAG, "APK entry patch + signing completed successfully");
+    }
+
+    /** Best-effort zipalign check of the signed APK; problems are logged, not fatal. */
+    private void checkAlignment(File apk) {
+        try (RandomAccessFile raf = new RandomAccessFile(apk, "r")) {
+            checkAlignment(raf.getChannel());
+        } catch (IOException e) {
+            Log.w(TAG, "Alignment check failed", e);
+        }
+    }
+
+    private void checkAlignment(FileChannel apk) {
+        try {
+            List<String> problems = ZipAlignment.findMisaligned(apk, nativeLibPageAlignment);
+            if (problems.isEmpty()) {
+                Log.d(TAG, "APK alignment verified");
+            } else {
+                for (String p : problems) Log.w(TAG, "Misaligned entry: " + p);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Alignment check failed", e);
+        }
+    }
+
+    private JSONObject readClonerConfig(File clonerJson) {
+        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(clonerJson), "UTF-8")) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return new JSONObject(sb.toString());
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to read or parse cloner.json, using default empty config.", e);
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Writes the config precompiled by {@link ClonerConfigCompiler} next to cloner.json. It is
+     * stored uncompressed so the hook can map it straight out of the APK.
+     */
+    private void writeCompiledConfig(ApkZipWriter zip, JSONObject clonerConfig) throws IOException {
+        // Empty when cloner.json did not parse; the hook then reports it when reading the JSON
+        if (clonerConfig.length() == 0) return;
+        zip.writeEntry(ASSET_CLONER_BIN, ClonerConfigCompiler.compile(clonerConfig), false);
+    }
+
+    // Patch manifest with validation + safe fallback + retry logic
+    private byte[] patchManifestSafely(byte[] manifestRaw, JSONObject clonerConfig) {
+        try {
+            ManifestPatchResult manifestResult = patchManifest(manifestRaw, clonerConfig);
+            byte[] patchedManifest = manifestResult.manifestBytes;
+            validateManifest(patchedManifest);
+            Log.d(TAG, "Manifest patched and validated successfully.");
+            return patchedManifest;
+        } catch (Throwable t) {
+            Log.e(TAG, "Manifest patching/validation failed on first attempt", t);
+            // Try a safer patching approach without icon/label modifications
+            try {
+                Log.d(TAG, "Attempting safe manifest patch without app name modification...");
+                JSONObject safeConfig = clonerConfig != null ? new JSONObject(clonerConfig.toString()) : new JSONObject();
+                safeConfig.remove("app_name");  // Remove app name modification
+                ManifestPatchResult safeResult = patchManifest(manifestRaw, safeConfig);
+                byte[] patchedManifest = safeResult.manifestBytes;
+                validateManifest(patchedManifest);
+                Log.d(TAG, "Safe manifest patch succeeded.");
+                return patchedManifest;
+            } catch (Throwable t2) {
+                Log.e(TAG, "Safe manifest patching also failed; falling back to original manifest", t2);
+                return manifestRaw;
+            }
+        }
     }
 
     private ManifestPatchResult patchManifest(byte[] raw, JSONObject clonerConfig) throws IOException {
@@ -864,116 +1475,83 @@ public class ApkProcessor {
 
     // --- ZIP packing ---
 
-    private void zipDir(File root, File outFile, byte[] manifestBytes) throws IOException {
-        if (manifestBytes == null || manifestBytes.length == 0) {
-            throw new IOException("Manifest bytes are null/empty when zipping APK");
-        }
-        try (OutputStream os = new FileOutputStream(outFile);
-             ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(os))) {
-            zos.setLevel(9);
-            writeZip(root, zos, manifestBytes);
-        }
+    // Store resources.arsc and native libs uncompressed; everything else deflated.
+    private static boolean isStoredEntry(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        return lower.endsWith(".arsc") ||
+               (lower.startsWith("lib/") && lower.endsWith(".so"));
     }
 
-    private void writeZip(File root, ZipOutputStream zos, byte[] manifestBytes) throws IOException {
-        // Write manifest first
-        ZipEntry manifestEntry = createZipEntry(ANDROID_MANIFEST, manifestBytes);
-        zos.putNextEntry(manifestEntry);
-        zos.write(manifestBytes);
-        zos.closeEntry();
-
-        // Then all other files
-        addRec(root, root.getAbsolutePath(), zos);
+    private void writeFileEntry(ApkZipWriter zip, String name, File file) throws IOException {
+        zip.writeEntry(name, file, !isStoredEntry(name));
     }
 
-    private void addRec(File node, String base, ZipOutputStream zos) throws IOException {
-        if (node.isDirectory()) {
-            File[] kids = node.listFiles();
-            if (kids != null) {
-                for (File k : kids) {
-                    addRec(k, base, zos);
-                }
-            }
-            return;
-        }
-
-        String rel = node.getAbsolutePath()
-                .substring(base.length() + 1)
-                .replace(File.separatorChar, '/');
-
-        // Manifest already written
-        if (ANDROID_MANIFEST.equals(rel)) return;
-
-        ZipEntry entry = createZipEntry(rel, node);
-        zos.putNextEntry(entry);
-        try (FileInputStream fis = new FileInputStream(node)) {
-            copyStream(fis, zos);
-        }
-        zos.closeEntry();
+    private void writeFileEntry(ApkZipWriter zip, String name, File file, CloneMetrics metrics) throws IOException {
+        writeFileEntry(zip, name, file);
+        metrics.addBytes(file.length());
     }
 
-    private ZipEntry createZipEntry(String name, byte[] data) {
-        ZipEntry e = new ZipEntry(name);
-        e.setTime(0L);
-        // Manifest can be safely compressed
-        e.setMethod(ZipEntry.DEFLATED);
-        return e;
+    private static List<File> listNativeLibs(File nativeLibDir, String abi) {
+        if (nativeLibDir == null) return Collections.emptyList();
+        File abiDir = new File(nativeLibDir, abi);
+        File[] soFiles = abiDir.isDirectory()
+                ? abiDir.listFiles((d, n) -> n != null && n.endsWith(".so"))
+                : null;
+        if (soFiles == null) return Collections.emptyList();
+        Arrays.sort(soFiles);
+        return Arrays.asList(soFiles);
     }
 
-    private ZipEntry createZipEntry(String name, File file) throws IOException {
-        ZipEntry e = new ZipEntry(name);
-        e.setTime(0L);
-        String lower = name.toLowerCase(Locale.US);
+    // --- Signing ---
 
-        // Store resources.arsc and native libs uncompressed; everything else deflated.
-        boolean store = lower.endsWith(".arsc") ||
-                        (lower.startsWith("lib/") && lower.endsWith(".so"));
-
-        if (store) {
-            e.setMethod(ZipEntry.STORED);
-            long size = file.length();
-            e.setSize(size);
-            e.setCompressedSize(size);
-
-            CRC32 crc = new CRC32();
-            try (InputStream in = new FileInputStream(file)) {
-                byte[] buf = new byte[8192];
-                int r;
-                while ((r = in.read(buf)) != -1) {
-                    crc.update(buf, 0, r);
-                }
-            }
-            e.setCrc(crc.getValue());
-        } else {
-            e.setMethod(ZipEntry.DEFLATED);
-        }
-        return e;
+    private void signApk(File in, File out, CloneMetrics metrics) throws Exception {
+        signApk(in, out, null, null, metrics);
     }
 
-    // --- Signing ---
-
-    private void signApk(File in, File out) throws Exception {
+    /**
+     * Signs {@code in} into either {@code outFile} or the {@code outSink}/{@code outSource}
+     * pair, which must refer to the same (initially empty) destination.
+     */
+    private void signApk(File in, File outFile, DataSink outSink, DataSource outSource,
+                         CloneMetrics metrics) throws Exception {
+        metrics.begin(CloneMetrics.Stage.SIGN);
+        metrics.setTotal(CloneMetrics.Stage.SIGN, in.length());
         Log.d(TAG, "Loading signer config...");
-        ApkSigner.SignerConfig signer = loadSignerConfig();
-        Log.d(TAG, "Signer config loaded. Building ApkSigner...");
-
-        ApkSigner apkSigner = new ApkSigner.Builder(Collections.singletonList(signer))
-                .setInputApk(in)
-                .setOutputApk(out)
-                .setV1SigningEnabled(true)
-                .setV2SigningEnabled(true)
-                .setV3SigningEnabled(false)   // Enable V3 as well
-                .build();
-
-        Log.d(TAG, "Calling apkSigner.sign()...");
-        apkSigner.sign();
+        DefaultApkSignerEngine.SignerConfig signer = loadSignerConfig();
+        // Same minSdkVersion ApkSigner would derive itself, so the v1 digest choice is unchanged
+        int minSdk = readMinSdkVersion(in);
+        Log.d(TAG, "Signer config loaded. Building signer engine (minSdk=" + minSdk
+                + ", workers=" + signingWorkers + ")...");
+
+        try (RandomAccessFile inFile = new RandomAccessFile(in, "r");
+             DefaultApkSignerEngine engine = new DefaultApkSignerEngine.Builder(
+                     Collections.singletonList(signer), minSdk)
+                     .setV1SigningEnabled(true)
+                     .setV2SigningEnabled(true)
+                     .setV3SigningEnabled(false)
+                     .build()) {
+            engine.setExecutor(new SigningExecutor(signingWorkers));
+            ApkSigner.Builder builder = new ApkSigner.Builder(engine)
+                    .setInputApk(new CountingDataSource(mapInput(inFile), metrics));
+            if (outFile != null) {
+                builder.setOutputApk(outFile);
+            } else {
+                builder.setOutputApk(outSink, outSource);
+            }
+            ApkSigner apkSigner = builder.build();
+
+            Log.d(TAG, "Calling apkSigner.sign()...");
+            apkSigner.sign();
+        }
         Log.d(TAG, "APK signed successfully.");
 
         // Best-effort verification (for logging only)
         try {
             Log.d(TAG, "Attempting APK verification...");
             Class<?> builderClass = Class.forName("com.android.apksig.ApkVerifier$Builder");
-            Object builderInstance = builderClass.getConstructor(File.class).newInstance(out);
+            Object builderInstance = outFile != null
+                    ? builderClass.getConstructor(File.class).newInstance(outFile)
+                    : builderClass.getConstructor(DataSource.class).newInstance(outSource);
             Object apkVerifierInstance = builderClass.getMethod("build").invoke(builderInstance);
             Object vRes = apkVerifierInstance.getClass().getMethod("verify").invoke(apkVerifierInstance);
             Boolean isVerified = (Boolean) vRes.getClass().getMethod("isVerified").invoke(vRes);
@@ -988,7 +1566,22 @@ public class ApkProcessor {
         Log.d(TAG, "Signing process completed.");
     }
 
-    private ApkSigner.SignerConfig loadSignerConfig() throws Exception {
+    /**
+     * Decodes the signing key once per process. The keystore is an asset, so it can only change
+     * with an app update, which restarts the process anyway.
+     */
+    private DefaultApkSignerEngine.SignerConfig loadSignerConfig() throws Exception {
+        synchronized (ApkProcessor.class) {
+            if (cachedSigner == null) {
+                cachedSigner = decodeSignerConfig();
+            } else {
+                Log.d(TAG, "Using cached signer config for alias: " + ALIAS);
+            }
+            return cachedSigner;
+        }
+    }
+
+    private DefaultApkSignerEngine.SignerConfig decodeSignerConfig() throws Exception {
         Log.d(TAG, "Loading keystore: " + KEYSTORE_ASSET + " with alias: " + ALIAS);
         try (InputStream ksStream = ctx.getAssets().open(KEYSTORE_ASSET)) {
             KeyStore ks = KeyStore.getInstance("PKCS12");
@@ -1003,21 +1596,34 @@ public class ApkProcessor {
                 throw new IllegalStateException("Certificate is null for alias: " + ALIAS);
             }
 
-            return new ApkSigner.SignerConfig.Builder(ALIAS, key, Collections.singletonList(cert)).build();
+            return new DefaultApkSignerEngine.SignerConfig.Builder(ALIAS, key, Collections.singletonList(cert)).build();
         }
     }
 
-    // --- Utils ---
+    /** Memory-maps the APK for apksig; falls back to file reads if it is too large to map. */
+    private static DataSource mapInput(RandomAccessFile file) throws IOException {
+        FileChannel channel = file.getChannel();
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            return DataSources.asDataSource(file);
+        }
+        return DataSources.asDataSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
 
-    private static File safeResolve(File root, String basePath, String entryName) throws IOException {
-        File out = new File(root, entryName);
-        String outPath = out.getCanonicalPath();
-        if (!outPath.startsWith(basePath)) {
-            throw new IOException("Blocked zip path traversal: " + entryName);
+    private static int readMinSdkVersion(File apk) throws IOException, MinSdkVersionException {
+        try (ZipFile zf = new ZipFile(apk)) {
+            ZipEntry manifest = zf.getEntry(ANDROID_MANIFEST);
+            if (manifest == null) throw new IOException("AndroidManifest.xml missing in APK");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (InputStream in = zf.getInputStream(manifest)) {
+                copyStream(in, bytes);
+            }
+            return ApkUtils.getMinSdkVersionFromBinaryAndroidManifest(ByteBuffer.wrap(bytes.toByteArray()));
         }
-        return out;
     }
 
+    // --- Utils ---
+
     private static boolean isProbablyZip(File f) {
         if (!f.isFile() || f.length() < 4) return false;
         try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
@@ -1033,37 +1639,6 @@ public class ApkProcessor {
         }
     }
 
-    private static void copyFile(File source, File dest) throws IOException {
-        if (source == null || dest == null) {
-            throw new IllegalArgumentException("Source and destination files cannot be null");
-        }
-        if (!source.exists() || !source.isFile()) {
-            throw new IOException("Source file does not exist: " + source);
-        }
-
-        File parent = dest.getParentFile();
-        if (parent != null && !parent.exists() && !parent.mkdirs()) {
-            throw new IOException("Failed to create directory: " + parent);
-        }
-
-        try (InputStream in = new FileInputStream(source);
-             OutputStream out = new FileOutputStream(dest)) {
-            copyStream(in, out);
-        }
-    }
-
-    private static void copyFileToStream(File source, OutputStream dest) throws IOException {
-        if (source == null || dest == null) {
-            throw new IllegalArgumentException("Source file and destination stream cannot be null");
-        }
-        if (!source.exists() || !source.isFile()) {
-            throw new IOException("Source file does not exist: " + source);
-        }
-        try (InputStream in = new FileInputStream(source)) {
-            copyStream(in, dest);
-        }
-    }
-
     private static void copyStream(InputStream in, OutputStream out) throws IOException {
         byte[] buf = new byte[8192];
         int n;
@@ -1072,17 +1647,6 @@ public class ApkProcessor {
         }
     }
 
-    private static void deleteRec(File f) {
-        if (f.isDirectory()) {
-            File[] kids = f.listFiles();
-            if (kids != null) {
-                for (File k : kids) deleteRec(k);
-            }
-        }
-        //noinspection ResultOfMethodCallIgnored
-        f.delete();
-    }
-
     private void removeAttribute(ResXmlElement element, String name) {
         if (element == null || name == null) return;
         ResXmlAttribute attr = element.searchAttributeByName(name);
@@ -1091,6 +1655,38 @@ public class ApkProcessor {
         }
     }
 
+    /** One clone of a batch: its settings and where the signed APK goes. */
+    public static class CloneVariant {
+        public final File clonerJson;
+        public final Uri outApk;
+
+        public CloneVariant(File clonerJson, Uri outApk) {
+            this.clonerJson = clonerJson;
+            this.outApk = outApk;
+        }
+    }
+
+    /** Outcome and timings of one batch variant; {@code error} is null on success. */
+    public static class VariantResult {
+        public final CloneVariant variant;
+        public final long buildMs;
+        public final long signMs;
+        public final long totalMs;
+        public final Exception error;
+
+        VariantResult(CloneVariant variant, long buildMs, long signMs, long totalMs, Exception error) {
+            this.variant = variant;
+            this.buildMs = buildMs;
+            this.signMs = signMs;
+            this.totalMs = totalMs;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
     private static class ManifestPatchResult {
         byte[] manifestBytes;
     }
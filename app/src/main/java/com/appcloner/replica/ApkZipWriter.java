@@ -0,0 +1,486 @@
+package com.appcloner.replica;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Minimal ZIP writer for APK output. Entries are either copied raw from another archive
+ * ({@link #copyRaw}) or compressed here ({@link #writeEntry}). Local headers are written with
+ * the final CRC and sizes (patched in place once the payload is known), so the output never
+ * uses data descriptors.
+ *
+ * Compressed entries go through a {@link ParallelDeflater}. Their chunks are queued and written
+ * strictly in submission order, so consecutive compressed entries (and the chunks of one large
+ * entry) are deflated concurrently while the archive layout stays deterministic. The memory
+ * held by queued chunks is capped by the configured budget.
+ *
+ * STORED entries are aligned like zipalign does it: a {@code 0xd935} extra field in the local
+ * header pads the data to a 4-byte boundary, or to a page boundary for native libraries, so the
+ * platform can mmap them in place. apksig reads the same field and keeps the alignment when it
+ * re-writes entries during signing.
+ */
+final class ApkZipWriter implements Closeable {
+    private static final int LOCAL_HEADER_SIG   = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int EOCD_SIG           = 0x06054b50;
+    private static final int LOCAL_HEADER_LEN   = 30;
+    private static final int CENTRAL_HEADER_LEN = 46;
+    private static final int EOCD_LEN           = 22;
+    private static final int BUF_SIZE           = 64 * 1024;
+
+    static final int ALIGNMENT_EXTRA_ID       = 0xd935;
+    static final int STORED_ALIGNMENT         = 4;
+    static final int PAGE_ALIGNMENT_4K        = 4096;
+    static final int PAGE_ALIGNMENT_16K       = 16384;
+
+    private final RandomAccessFile file;
+    private final CountingOutputStream out;
+    private final List<Record> records = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final byte[] buf = new byte[BUF_SIZE];
+    private final ArrayDeque<PendingChunk> pending = new ArrayDeque<>();
+    private ParallelDeflater deflater;
+    private int level = 9;
+    private int maxWorkers = 1;
+    private long memoryBudget = 4L * ParallelDeflater.CHUNK_SIZE;
+    private long inFlight;
+    private int nativeLibAlignment = PAGE_ALIGNMENT_4K;
+    private boolean closed;
+
+    ApkZipWriter(File outFile) throws IOException {
+        this.file = new RandomAccessFile(outFile, "rw");
+        this.file.setLength(0);
+        this.out = new CountingOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file.getFD()), BUF_SIZE));
+    }
+
+    void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Deflate on up to {@code maxWorkers} threads, keeping at most {@code memoryBudget} bytes of
+     * input and compressed chunks in flight. Must be called before the first entry is written.
+     */
+    void setParallelism(int maxWorkers, long memoryBudget) {
+        this.maxWorkers = Math.max(1, maxWorkers);
+        this.memoryBudget = Math.max(memoryBudget, 2 * ParallelDeflater.chunkCost(ParallelDeflater.CHUNK_SIZE));
+    }
+
+    /** Page size native libraries are aligned to: {@link #PAGE_ALIGNMENT_4K} or {@link #PAGE_ALIGNMENT_16K}. */
+    void setNativeLibAlignment(int alignment) {
+        if (alignment != PAGE_ALIGNMENT_4K && alignment != PAGE_ALIGNMENT_16K) {
+            throw new IllegalArgumentException("Unsupported page alignment: " + alignment);
+        }
+        this.nativeLibAlignment = alignment;
+    }
+
+    boolean hasEntry(String name) {
+        return names.contains(name);
+    }
+
+    /** Copies an entry's stored bytes unchanged: same method, CRC and sizes. */
+    void copyRaw(ApkEntry src, InputStream raw) throws IOException {
+        drainAll();
+        ApkEntry e = rawCopyOf(src);
+        beginEntry(e);
+        long remaining = e.compressedSize;
+        while (remaining > 0) {
+            int n = raw.read(buf, 0, (int) Math.min(buf.length, remaining));
+            if (n < 0) throw new EOFException("Truncated raw data for " + e.name);
+            out.write(buf, 0, n);
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Like {@link #copyRaw(ApkEntry, InputStream)}, but moves the stored bytes found at
+     * {@code dataOffset} in {@code channel} with {@link FileChannel#transferTo}, without
+     * passing them through the Java heap.
+     */
+    void copyRaw(ApkEntry src, FileChannel channel, long dataOffset) throws IOException {
+        drainAll();
+        ApkEntry e = rawCopyOf(src);
+        beginEntry(e);
+        // The buffered stream and the file channel share the descriptor's offset
+        out.flush();
+        FileChannel target = file.getChannel();
+        long done = 0;
+        while (done < e.compressedSize) {
+            long n = channel.transferTo(dataOffset + done, e.compressedSize - done, target);
+            if (n <= 0) throw new EOFException("Truncated raw data for " + e.name);
+            done += n;
+        }
+        out.skipped(done);
+    }
+
+    private static ApkEntry rawCopyOf(ApkEntry src) {
+        ApkEntry e = new ApkEntry(src.name);
+        e.flags = src.flags & ~ApkEntry.FLAG_DATA_DESCRIPTOR;
+        e.method = src.method;
+        e.dosTime = src.dosTime;
+        e.dosDate = src.dosDate;
+        e.crc = src.crc;
+        e.compressedSize = src.compressedSize;
+        e.size = src.size;
+        return e;
+    }
+
+    void writeEntry(String name, byte[] data, boolean compress) throws IOException {
+        writeEntry(name, new ByteArrayInputStream(data), compress);
+    }
+
+    void writeEntry(String name, File file, boolean compress) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            writeEntry(name, in, compress);
+        }
+    }
+
+    /**
+     * Writes a new entry, deflating it unless {@code compress} is false. Compressed entries may
+     * still be queued when this returns; {@code data} is fully consumed either way.
+     */
+    void writeEntry(String name, InputStream data, boolean compress) throws IOException {
+        ApkEntry e = new ApkEntry(name);
+        if (compress) {
+            e.method = ApkEntry.METHOD_DEFLATED;
+            queueDeflated(e, data);
+            return;
+        }
+
+        drainAll();
+        e.method = ApkEntry.METHOD_STORED;
+        Record r = beginEntry(e);
+        CRC32 crc = new CRC32();
+        long size = 0;
+        int n;
+        while ((n = data.read(buf)) != -1) {
+            crc.update(buf, 0, n);
+            size += n;
+            out.write(buf, 0, n);
+        }
+        e.crc = crc.getValue();
+        e.size = size;
+        e.compressedSize = size;
+        patchLocalHeader(r);
+    }
+
+    private void queueDeflated(ApkEntry e, InputStream data) throws IOException {
+        checkName(e.name);
+        if (deflater == null) {
+            deflater = new ParallelDeflater(level, maxWorkers);
+        }
+        Record r = new Record(e, e.name.getBytes(StandardCharsets.UTF_8));
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] prev = null;
+        int prevLen = 0;
+        byte[] cur = new byte[ParallelDeflater.CHUNK_SIZE];
+        int curLen = readChunk(data, cur);
+        boolean first = true;
+        while (true) {
+            byte[] next = null;
+            int nextLen = 0;
+            if (curLen == cur.length) {
+                next = new byte[ParallelDeflater.CHUNK_SIZE];
+                nextLen = readChunk(data, next);
+            }
+            boolean last = nextLen == 0;
+
+            crc.update(cur, 0, curLen);
+            size += curLen;
+            if (last) {
+                e.crc = crc.getValue();
+                e.size = size;
+            }
+
+            long cost = ParallelDeflater.chunkCost(curLen);
+            while (!pending.isEmpty() && inFlight + cost > memoryBudget) {
+                drainOne();
+            }
+            Future<byte[]> f = deflater.submit(cur, curLen, prev, prevLen, last);
+            pending.add(new PendingChunk(r, f, cost, first, last));
+            inFlight += cost;
+            if (!deflater.isParallel()) {
+                drainAll();
+            }
+            if (last) break;
+
+            first = false;
+            prev = cur;
+            prevLen = curLen;
+            cur = next;
+            curLen = nextLen;
+        }
+    }
+
+    private void drainOne() throws IOException {
+        PendingChunk c = pending.poll();
+        if (c == null) return;
+        Record r = c.record;
+        if (c.first) {
+            writeLocalHeader(r);
+            r.dataStart = out.position;
+        }
+        byte[] compressed;
+        try {
+            compressed = c.data.get();
+        } catch (ExecutionException ex) {
+            throw new IOException("Compression failed for " + r.entry.name, ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing " + r.entry.name, ex);
+        }
+        out.write(compressed);
+        inFlight -= c.cost;
+        if (c.last) {
+            r.entry.compressedSize = out.position - r.dataStart;
+            patchLocalHeader(r);
+        }
+    }
+
+    private void drainAll() throws IOException {
+        while (!pending.isEmpty()) {
+            drainOne();
+        }
+    }
+
+    private static int readChunk(InputStream in, byte[] chunk) throws IOException {
+        int off = 0;
+        while (off < chunk.length) {
+            int n = in.read(chunk, off, chunk.length - off);
+            if (n < 0) break;
+            off += n;
+        }
+        return off;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            drainAll();
+            long cdOffset = out.position;
+            for (Record r : records) {
+                writeCentralHeader(r);
+            }
+            long cdSize = out.position - cdOffset;
+            if (records.size() > 0xFFFF || cdOffset > 0xFFFFFFFFL || cdSize > 0xFFFFFFFFL) {
+                throw new ZipException("APK too large, ZIP64 is not supported");
+            }
+            ByteBuffer eocd = le(EOCD_LEN);
+            eocd.putInt(EOCD_SIG);
+            eocd.putShort((short) 0);
+            eocd.putShort((short) 0);
+            eocd.putShort((short) records.size());
+            eocd.putShort((short) records.size());
+            eocd.putInt((int) cdSize);
+            eocd.putInt((int) cdOffset);
+            eocd.putShort((short) 0);
+            out.write(eocd.array());
+            out.flush();
+        } finally {
+            if (deflater != null) deflater.close();
+            file.close();
+        }
+    }
+
+    private void checkName(String name) throws IOException {
+        if (closed) throw new IOException("Writer closed");
+        if (!names.add(name)) throw new ZipException("Duplicate entry: " + name);
+    }
+
+    private Record beginEntry(ApkEntry e) throws IOException {
+        checkName(e.name);
+        Record r = new Record(e, e.name.getBytes(StandardCharsets.UTF_8));
+        writeLocalHeader(r);
+        return r;
+    }
+
+    private void writeLocalHeader(Record r) throws IOException {
+        ApkEntry e = r.entry;
+        if (!isAscii(e.name)) e.flags |= ApkEntry.FLAG_UTF8;
+        r.offset = out.position;
+        if (r.offset > 0xFFFFFFFFL) throw new ZipException("APK too large, ZIP64 is not supported");
+        records.add(r);
+        byte[] extra = alignmentExtra(e, r.offset + LOCAL_HEADER_LEN + r.nameBytes.length);
+
+        ByteBuffer h = le(LOCAL_HEADER_LEN);
+        h.putInt(LOCAL_HEADER_SIG);
+        h.putShort((short) versionNeeded(e));
+        h.putShort((short) e.flags);
+        h.putShort((short) e.method);
+        h.putShort((short) e.dosTime);
+        h.putShort((short) e.dosDate);
+        h.putInt((int) e.crc);
+        h.putInt((int) e.compressedSize);
+        h.putInt((int) e.size);
+        h.putShort((short) r.nameBytes.length);
+        h.putShort((short) extra.length);
+        out.write(h.array());
+        out.write(r.nameBytes);
+        out.write(extra);
+    }
+
+    /** Alignment required for an entry's data: 1 (none) for compressed entries. */
+    int alignmentFor(ApkEntry e) {
+        if (!e.isStored()) return 1;
+        return isNativeLib(e.name) ? nativeLibAlignment : STORED_ALIGNMENT;
+    }
+
+    static boolean isNativeLib(String name) {
+        return name.startsWith("lib/") && name.endsWith(".so");
+    }
+
+    /**
+     * Builds the zipalign-style extra field that pushes the data of {@code e}, which would
+     * otherwise start at {@code dataOffset}, onto its alignment boundary.
+     */
+    private byte[] alignmentExtra(ApkEntry e, long dataOffset) {
+        int alignment = alignmentFor(e);
+        if (alignment <= 1) return new byte[0];
+        // id + size + alignment multiple, then zero padding
+        long unpadded = dataOffset + 6;
+        int padding = (int) ((alignment - (unpadded % alignment)) % alignment);
+        ByteBuffer x = le(6 + padding);
+        x.putShort((short) ALIGNMENT_EXTRA_ID);
+        x.putShort((short) (2 + padding));
+        x.putShort((short) alignment);
+        return x.array();
+    }
+
+    private void patchLocalHeader(Record r) throws IOException {
+        if (r.entry.compressedSize > 0xFFFFFFFFL || r.entry.size > 0xFFFFFFFFL) {
+            throw new ZipException("Entry too large, ZIP64 is not supported: " + r.entry.name);
+        }
+        out.flush();
+        ByteBuffer b = le(12);
+        b.putInt((int) r.entry.crc);
+        b.putInt((int) r.entry.compressedSize);
+        b.putInt((int) r.entry.size);
+        b.flip();
+        file.getChannel().write(b, r.offset + 14);
+    }
+
+    private void writeCentralHeader(Record r) throws IOException {
+        ApkEntry e = r.entry;
+        ByteBuffer h = le(CENTRAL_HEADER_LEN);
+        h.putInt(CENTRAL_HEADER_SIG);
+        h.putShort((short) versionNeeded(e));
+        h.putShort((short) versionNeeded(e));
+        h.putShort((short) e.flags);
+        h.putShort((short) e.method);
+        h.putShort((short) e.dosTime);
+        h.putShort((short) e.dosDate);
+        h.putInt((int) e.crc);
+        h.putInt((int) e.compressedSize);
+        h.putInt((int) e.size);
+        h.putShort((short) r.nameBytes.length);
+        h.putShort((short) 0);   // extra
+        h.putShort((short) 0);   // comment
+        h.putShort((short) 0);   // disk number
+        h.putShort((short) 0);   // internal attributes
+        h.putInt(0);             // external attributes
+        h.putInt((int) r.offset);
+        out.write(h.array());
+        out.write(r.nameBytes);
+    }
+
+    private static int versionNeeded(ApkEntry e) {
+        return e.method == ApkEntry.METHOD_DEFLATED ? 20 : 10;
+    }
+
+    private static ByteBuffer le(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private static final class Record {
+        final ApkEntry entry;
+        final byte[] nameBytes;
+        long offset;
+        long dataStart;
+
+        Record(ApkEntry entry, byte[] nameBytes) {
+            this.entry = entry;
+            this.nameBytes = nameBytes;
+        }
+    }
+
+    private static final class PendingChunk {
+        final Record record;
+        final Future<byte[]> data;
+        final long cost;
+        final boolean first;
+        final boolean last;
+
+        PendingChunk(Record record, Future<byte[]> data, long cost, boolean first, boolean last) {
+            this.record = record;
+            this.data = data;
+            this.cost = cost;
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        long position;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            position += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /** Accounts for {@code n} bytes written to the file directly, bypassing this stream. */
+        void skipped(long n) {
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package com.appcloner.replica;
+
+import org.jf.dexlib2.DexFileFactory;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
+import org.jf.dexlib2.dexbacked.raw.HeaderItem;
+import org.jf.dexlib2.iface.reference.MethodReference;
+import org.jf.dexlib2.util.ReferenceUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * ART baseline profile as shipped in {@code assets/dexopt/}: {@code baseline.prof} in the
+ * version 010 (Android P) format and its {@code baseline.profm} metadata in version 002. These
+ * are the files AGP generates and androidx.profileinstaller transcodes for the device.
+ *
+ * Every DEX is keyed by its name in the APK (e.g. {@code classes3.dex}) and lists startup
+ * classes by type index and profiled methods by method index, together with the checksum
+ * and id counts of the DEX they belong to. Inline caches of existing entries are not kept.
+ */
+final class BaselineProfile {
+    static final String PROF_PATH  = "assets/dexopt/baseline.prof";
+    static final String PROFM_PATH = "assets/dexopt/baseline.profm";
+
+    private static final byte[] PROF_MAGIC    = {'p', 'r', 'o', 0};
+    private static final byte[] PROF_VERSION  = {'0', '1', '0', 0};
+    private static final byte[] PROFM_MAGIC   = {'p', 'r', 'm', 0};
+    private static final byte[] PROFM_VERSION = {'0', '0', '2', 0};
+
+    static final int FLAG_HOT          = 1;
+    static final int FLAG_STARTUP      = 2;
+    static final int FLAG_POST_STARTUP = 4;
+
+    private static final int INLINE_CACHE_MISSING_TYPES = 6;
+    private static final int INLINE_CACHE_MEGAMORPHIC   = 7;
+
+    /** Profile data of one DEX. */
+    static final class Dex {
+        String key;
+        long checksum;
+        int numMethodIds;
+        long numTypeIds;
+        final TreeSet<Integer> classes = new TreeSet<>();
+        final TreeMap<Integer, Integer> methods = new TreeMap<>();
+
+        Dex(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * What the hook adds to one DEX of the clone. When the hook was merged into an app DEX,
+     * the remap tables move that DEX's existing profile to the indices of the merged file.
+     */
+    static final class Contribution {
+        final String dexName;
+        final long checksum;
+        final int numMethodIds;
+        final int numTypeIds;
+        final int[] classes;
+        final int[] methods;
+        final int[] methodRemap;
+        final int[] typeRemap;
+
+        private Contribution(String dexName, long checksum, int numMethodIds, int numTypeIds,
+                             int[] classes, int[] methods, int[] methodRemap, int[] typeRemap) {
+            this.dexName = dexName;
+            this.checksum = checksum;
+            this.numMethodIds = numMethodIds;
+            this.numTypeIds = numTypeIds;
+            this.classes = classes;
+            this.methods = methods;
+            this.methodRemap = methodRemap;
+            this.typeRemap = typeRemap;
+        }
+
+        /** The hook added as its own DEX named {@code dexName}: every class and method is startup. */
+        static Contribution forHookDex(String dexName, File hookDex) throws IOException {
+            byte[] bytes;
+            try (InputStream in = new FileInputStream(hookDex)) {
+                bytes = readBytes(in, (int) hookDex.length());
+            }
+            DexBackedDexFile dex = load(bytes);
+            return build(dexName, bytes, dex, null, null, null);
+        }
+
+        /** The hook classes of {@code hookDex} merged into the app DEX {@code before}, giving {@code after}. */
+        static Contribution forMergedDex(String dexName, byte[] before, byte[] after, File hookDex)
+                throws IOException {
+            Set<String> hookTypes = new HashSet<>();
+            for (DexBackedClassDef c : DexFileFactory.loadDexFile(hookDex, Opcodes.getDefault()).getClasses()) {
+                hookTypes.add(c.getType());
+            }
+            DexBackedDexFile old = load(before);
+            DexBackedDexFile merged = load(after);
+
+            Map<String, Integer> newMethods = new HashMap<>();
+            List<? extends MethodReference> mergedMethods = merged.getMethodSection();
+            for (int i = 0; i < mergedMethods.size(); i++) {
+                newMethods.put(ReferenceUtil.getMethodDescriptor(mergedMethods.get(i)), i);
+            }
+            List<? extends MethodReference> oldMethods = old.getMethodSection();
+            int[] methodRemap = new int[oldMethods.size()];
+            for (int i = 0; i < methodRemap.length; i++) {
+                Integer idx = newMethods.get(ReferenceUtil.getMethodDescriptor(oldMethods.get(i)));
+                methodRemap[i] = idx != null ? idx : -1;
+            }
+
+            Map<String, Integer> newTypes = indexOf(merged.getTypeSection());
+            List<String> oldTypes = old.getTypeSection();
+            int[] typeRemap = new int[oldTypes.size()];
+            for (int i = 0; i < typeRemap.length; i++) {
+                Integer idx = newTypes.get(oldTypes.get(i));
+                typeRemap[i] = idx != null ? idx : -1;
+            }
+            return build(dexName, after, merged, hookTypes, methodRemap, typeRemap);
+        }
+
+        private static Contribution build(String dexName, byte[] bytes, DexBackedDexFile dex,
+                                          Set<String> hookTypes, int[] methodRemap, int[] typeRemap) {
+            Map<String, Integer> typeIndex = indexOf(dex.getTypeSection());
+            List<Integer> classes = new ArrayList<>();
+            List<Integer> methods = new ArrayList<>();
+            for (DexBackedClassDef c : dex.getClasses()) {
+                if (hookTypes != null && !hookTypes.contains(c.getType())) continue;
+                classes.add(typeIndex.get(c.getType()));
+                for (DexBackedMethod m : c.getMethods()) {
+                    if (m.getImplementation() != null) methods.add(m.methodIndex);
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            return new Contribution(dexName, crc.getValue(), dex.getMethodSection().size(),
+                    dex.getTypeSection().size(), toArray(classes), toArray(methods), methodRemap, typeRemap);
+        }
+    }
+
+    private final Map<String, Dex> dexes = new LinkedHashMap<>();
+
+    /** Parses an existing {@code baseline.prof} and its {@code baseline.profm}. */
+    static BaselineProfile read(byte[] prof, byte[] profm) throws IOException {
+        BaselineProfile profile = new BaselineProfile();
+        profile.readProf(prof);
+        profile.readProfm(profm);
+        return profile;
+    }
+
+    /** Adds {@code c}, remapping an existing entry of the same DEX first when needed. */
+    void add(Contribution c) {
+        String key = keyFor(c.dexName);
+        Dex dex = dexes.get(key);
+        if (dex == null) {
+            dex = new Dex(key);
+            dexes.put(key, dex);
+        } else if (c.methodRemap != null) {
+            remap(dex, c);
+        } else if (dex.checksum != c.checksum) {
+            // Entry for a different DEX of the same name; ours replaces it
+            dex.classes.clear();
+            dex.methods.clear();
+        }
+        dex.checksum = c.checksum;
+        dex.numMethodIds = c.numMethodIds;
+        dex.numTypeIds = c.numTypeIds;
+        for (int t : c.classes) dex.classes.add(t);
+        for (int m : c.methods) dex.methods.put(m, flags(dex, m) | FLAG_HOT | FLAG_STARTUP);
+    }
+
+    byte[] toProf() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Dex d : dexes.values()) {
+            byte[] key = d.key.getBytes(StandardCharsets.UTF_8);
+            writeU16(body, key.length);
+            writeU16(body, d.classes.size());
+            writeU32(body, hotCount(d) * 4L);
+            writeU32(body, d.checksum);
+            writeU32(body, d.numMethodIds);
+            body.write(key);
+        }
+        for (Dex d : dexes.values()) {
+            int last = 0;
+            for (Map.Entry<Integer, Integer> e : d.methods.entrySet()) {
+                if ((e.getValue() & FLAG_HOT) == 0) continue;
+                writeU16(body, e.getKey() - last);
+                writeU16(body, 0); // no inline caches
+                last = e.getKey();
+            }
+            writeClasses(body, d.classes);
+            byte[] bitmap = new byte[bitmapSize(d.numMethodIds)];
+            for (Map.Entry<Integer, Integer> e : d.methods.entrySet()) {
+                int m = e.getKey();
+                if ((e.getValue() & FLAG_STARTUP) != 0) setBit(bitmap, m);
+                if ((e.getValue() & FLAG_POST_STARTUP) != 0) setBit(bitmap, m + d.numMethodIds);
+            }
+            body.write(bitmap);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(PROF_MAGIC);
+        out.write(PROF_VERSION);
+        out.write(dexes.size());
+        writeCompressed(out, body.toByteArray());
+        return out.toByteArray();
+    }
+
+    byte[] toProfm() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Dex d : dexes.values()) {
+            byte[] key = d.key.getBytes(StandardCharsets.UTF_8);
+            writeU16(body, key.length);
+            body.write(key);
+            writeU32(body, d.numTypeIds);
+            writeU16(body, d.classes.size());
+            writeClasses(body, d.classes);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(PROFM_MAGIC);
+        out.write(PROFM_VERSION);
+        writeU16(out, dexes.size());
+        writeCompressed(out, body.toByteArray());
+        return out.toByteArray();
+    }
+
+    private void readProf(byte[] prof) throws IOException {
+        InputStream in = new ByteArrayInputStream(prof);
+        expect(in, PROF_MAGIC, "baseline.prof magic");
+        expect(in, PROF_VERSION, "baseline.prof version");
+        int count = readU8(in);
+        InputStream body = new ByteArrayInputStream(readCompressed(in));
+
+        Dex[] order = new Dex[count];
+        int[] classCounts = new int[count];
+        long[] hotSizes = new long[count];
+        for (int i = 0; i < count; i++) {
+            int keyLen = readU16(body);
+            classCounts[i] = readU16(body);
+            hotSizes[i] = readU32(body);
+            long checksum = readU32(body);
+            int numMethodIds = (int) readU32(body);
+            Dex d = new Dex(new String(readBytes(body, keyLen), StandardCharsets.UTF_8));
+            d.checksum = checksum;
+            d.numMethodIds = numMethodIds;
+            order[i] = d;
+            dexes.put(d.key, d);
+        }
+        for (int i = 0; i < count; i++) {
+            Dex d = order[i];
+            InputStream hot = new ByteArrayInputStream(readBytes(body, (int) hotSizes[i]));
+            int last = 0;
+            while (hot.available() > 0) {
+                last += readU16(hot);
+                int caches = readU16(hot);
+                for (int c = 0; c < caches; c++) skipInlineCache(hot);
+                d.methods.put(last, FLAG_HOT);
+            }
+            int cls = 0;
+            for (int c = 0; c < classCounts[i]; c++) {
+                cls += readU16(body);
+                d.classes.add(cls);
+            }
+            byte[] bitmap = readBytes(body, bitmapSize(d.numMethodIds));
+            for (int m = 0; m < d.numMethodIds; m++) {
+                int flags = 0;
+                if (getBit(bitmap, m)) flags |= FLAG_STARTUP;
+                if (getBit(bitmap, m + d.numMethodIds)) flags |= FLAG_POST_STARTUP;
+                if (flags != 0) d.methods.put(m, flags(d, m) | flags);
+            }
+        }
+    }
+
+    private void readProfm(byte[] profm) throws IOException {
+        InputStream in = new ByteArrayInputStream(profm);
+        expect(in, PROFM_MAGIC, "baseline.profm magic");
+        expect(in, PROFM_VERSION, "baseline.profm version");
+        int count = readU16(in);
+        InputStream body = new ByteArrayInputStream(readCompressed(in));
+        for (int i = 0; i < count; i++) {
+            String key = new String(readBytes(body, readU16(body)), StandardCharsets.UTF_8);
+            long numTypeIds = readU32(body);
+            int classCount = readU16(body);
+            Dex d = dexes.get(key);
+            if (d == null) throw new IOException("baseline.profm lists unknown DEX " + key);
+            d.numTypeIds = numTypeIds;
+            // Same classes as in baseline.prof; kept for the S+ transcoding
+            int cls = 0;
+            for (int c = 0; c < classCount; c++) {
+                cls += readU16(body);
+                d.classes.add(cls);
+            }
+        }
+    }
+
+    /** Follows the naming of existing keys, e.g. {@code base.apk!classes2.dex}. */
+    private String keyFor(String dexName) {
+        for (String key : dexes.keySet()) {
+            int sep = key.lastIndexOf('!');
+            if (sep >= 0) return key.substring(0, sep + 1) + dexName;
+        }
+        return dexName;
+    }
+
+    private static void remap(Dex dex, Contribution c) {
+        TreeSet<Integer> classes = new TreeSet<>();
+        for (int t : dex.classes) {
+            if (t < c.typeRemap.length && c.typeRemap[t] >= 0) classes.add(c.typeRemap[t]);
+        }
+        TreeMap<Integer, Integer> methods = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> e : dex.methods.entrySet()) {
+            int m = e.getKey();
+            if (m < c.methodRemap.length && c.methodRemap[m] >= 0) methods.put(c.methodRemap[m], e.getValue());
+        }
+        dex.classes.clear();
+        dex.classes.addAll(classes);
+        dex.methods.clear();
+        dex.methods.putAll(methods);
+    }
+
+    private static int flags(Dex d, int method) {
+        Integer f = d.methods.get(method);
+        return f != null ? f : 0;
+    }
+
+    private static int hotCount(Dex d) {
+        int n = 0;
+        for (int f : d.methods.values()) if ((f & FLAG_HOT) != 0) n++;
+        return n;
+    }
+
+    private static void skipInlineCache(InputStream in) throws IOException {
+        readU16(in); // dex pc
+        int pcMapSize = readU8(in);
+        if (pcMapSize == INLINE_CACHE_MISSING_TYPES || pcMapSize == INLINE_CACHE_MEGAMORPHIC) return;
+        for (int i = 0; i < pcMapSize; i++) {
+            readU8(in); // profile index
+            int classes = readU8(in);
+            for (int c = 0; c < classes; c++) readU16(in);
+        }
+    }
+
+    private static void writeClasses(OutputStream out, Set<Integer> classes) throws IOException {
+        int last = 0;
+        for (int t : classes) {
+            writeU16(out, t - last);
+            last = t;
+        }
+    }
+
+    /** Two bits per method: startup, then post-startup. */
+    private static int bitmapSize(int numMethodIds) {
+        return (numMethodIds * 2 + 7) / 8;
+    }
+
+    private static void setBit(byte[] bitmap, int bit) {
+        bitmap[bit / 8] |= (byte) (1 << (bit % 8));
+    }
+
+    private static boolean getBit(byte[] bitmap, int bit) {
+        return (bitmap[bit / 8] & (1 << (bit % 8))) != 0;
+    }
+
+    private static void writeCompressed(OutputStream out, byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(compressed, deflater)) {
+            dos.write(body);
+        } finally {
+            deflater.end();
+        }
+        writeU32(out, body.length);
+        writeU32(out, compressed.size());
+        compressed.writeTo(out);
+    }
+
+    private static byte[] readCompressed(InputStream in) throws IOException {
+        int uncompressed = (int) readU32(in);
+        int compressed = (int) readU32(in);
+        byte[] data = readBytes(in, compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[uncompressed];
+            int n = 0;
+            while (n < uncompressed && !inflater.finished()) {
+                int k = inflater.inflate(out, n, uncompressed - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += k;
+            }
+            if (n != uncompressed) throw new IOException("Truncated profile data");
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt profile data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static DexBackedDexFile load(byte[] dex) {
+        return new DexBackedDexFile(Opcodes.forDexVersion(HeaderItem.getVersion(dex, 0)), dex);
+    }
+
+    private static Map<String, Integer> indexOf(List<String> types) {
+        Map<String, Integer> map = new HashMap<>(types.size() * 2);
+        for (int i = 0; i < types.size(); i++) map.put(types.get(i), i);
+        return map;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] a = new int[list.size()];
+        for (int i = 0; i < a.length; i++) a[i] = list.get(i);
+        Arrays.sort(a);
+        return a;
+    }
+
+    private static void expect(InputStream in, byte[] expected, String what) throws IOException {
+        if (!Arrays.equals(readBytes(in, expected.length), expected)) {
+            throw new IOException("Unsupported " + what);
+        }
+    }
+
+    private static byte[] readBytes(InputStream in, int len) throws IOException {
+        byte[] b = new byte[len];
+        int n = 0;
+        while (n < len) {
+            int k = in.read(b, n, len - n);
+            if (k < 0) throw new EOFException("Truncated profile");
+            n += k;
+        }
+        return b;
+    }
+
+    private static int readU8(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException("Truncated profile");
+        return b;
+    }
+
+    private static int readU16(InputStream in) throws IOException {
+        return readU8(in) | (readU8(in) << 8);
+    }
+
+    private static long readU32(InputStream in) throws IOException {
+        return readU16(in) | ((long) readU16(in) << 16);
+    }
+
+    private static void writeU16(OutputStream out, int v) throws IOException {
+        out.write(v & 0xff);
+        out.write((v >>> 8) & 0xff);
+    }
+
+    private static void writeU32(OutputStream out, long v) throws IOException {
+        writeU16(out, (int) (v & 0xffff));
+        writeU16(out, (int) ((v >>> 16) & 0xffff));
+    }
+}
@@ -0,0 +1,264 @@
+package com.appcloner.replica;
+
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Timings and byte counters for one run of the clone pipeline, split into {@link Stage}s.
+ *
+ * Exactly one stage is active at a time; {@link #begin} closes the previous one. A stage may
+ * be entered more than once (e.g. manifest patching in the middle of the entry copy) and its
+ * time and bytes accumulate. Progress is pushed to an optional {@link Listener}, throttled so
+ * the UI is not flooded, and the whole run can be written out as a JSON report.
+ *
+ * Not thread-safe: a run is driven from a single worker thread.
+ */
+public final class CloneMetrics {
+    private static final String TAG = "CloneMetrics";
+
+    public enum Stage {
+        COPY_ENTRIES("copy_entries", "Copying entries"),
+        PATCH_MANIFEST("patch_manifest", "Patching manifest"),
+        APPEND_PAYLOAD("append_payload", "Adding hook payload"),
+        FINISH_ZIP("finish_zip", "Finishing archive"),
+        SIGN("sign", "Signing"),
+        WRITE_OUTPUT("write_output", "Writing output");
+
+        final String key;
+        final String label;
+
+        Stage(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    /** Receives progress on the worker thread; post to the UI thread before touching views. */
+    public interface Listener {
+        void onProgress(CloneMetrics metrics);
+    }
+
+    private static final long NOTIFY_INTERVAL_NANOS = 200_000_000L;
+
+    private final String operation;
+    private Stage[] plan;
+    private final Listener listener;
+    private final long startedAtMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final long[] nanos = new long[Stage.values().length];
+    private final long[] bytes = new long[Stage.values().length];
+    private final long[] totals = new long[Stage.values().length];
+
+    private Stage current;
+    private long stageStart;
+    private long lastNotify;
+    private long finishedNanos = -1;
+    private int lastPercent;
+    private String error;
+
+    /**
+     * @param plan the stages this run goes through, in order; used for the overall percentage
+     */
+    public CloneMetrics(String operation, Listener listener, Stage... plan) {
+        this.operation = operation;
+        this.listener = listener;
+        this.plan = plan;
+    }
+
+    /** Ends the active stage and starts {@code stage}. */
+    public void begin(Stage stage) {
+        long now = System.nanoTime();
+        if (current != null) {
+            nanos[current.ordinal()] += now - stageStart;
+        }
+        current = stage;
+        stageStart = now;
+        notifyListener(true);
+    }
+
+    /**
+     * Takes a stage this run turns out not to need out of the plan, so the overall percentage
+     * still reaches 100 without it.
+     */
+    public void skip(Stage stage) {
+        int n = 0;
+        Stage[] rest = new Stage[plan.length];
+        for (Stage s : plan) {
+            if (s != stage) rest[n++] = s;
+        }
+        plan = Arrays.copyOf(rest, n);
+    }
+
+    /** Expected byte count of a stage, for its percentage; unknown (0) by default. */
+    public void setTotal(Stage stage, long total) {
+        totals[stage.ordinal()] = Math.max(0, total);
+    }
+
+    /** Adds bytes processed by the active stage. */
+    public void addBytes(long n) {
+        if (current == null || n <= 0) return;
+        bytes[current.ordinal()] += n;
+        notifyListener(false);
+    }
+
+    public void finish(Throwable failure) {
+        if (finishedNanos >= 0) return;
+        long now = System.nanoTime();
+        if (current != null) {
+            nanos[current.ordinal()] += now - stageStart;
+        }
+        finishedNanos = now - startNanos;
+        if (failure != null) {
+            error = failure.getClass().getSimpleName() + ": " + failure.getMessage();
+        }
+        notifyListener(true);
+    }
+
+    public Stage currentStage() {
+        return current;
+    }
+
+    public boolean isFinished() {
+        return finishedNanos >= 0;
+    }
+
+    /**
+     * Overall progress 0–100: finished planned stages plus the fraction of the active one.
+     * Never goes backwards; stages outside the plan keep the last value.
+     */
+    public int overallPercent() {
+        if (isFinished()) return 100;
+        if (current == null || plan.length == 0) return lastPercent;
+        int index = 0;
+        while (index < plan.length && plan[index] != current) index++;
+        if (index < plan.length) {
+            int percent = (int) Math.min(99, (index + stageFraction(current)) * 100 / plan.length);
+            lastPercent = Math.max(lastPercent, percent);
+        }
+        return lastPercent;
+    }
+
+    /** Throughput of the active stage so far, or 0 when unknown. */
+    public long bytesPerSecond() {
+        if (current == null) return 0;
+        long elapsed = nanos[current.ordinal()] + (isFinished() ? 0 : System.nanoTime() - stageStart);
+        return rate(bytes[current.ordinal()], elapsed);
+    }
+
+    /** One-line human readable status, e.g. "Signing… 62% (48.1 MB/s)". */
+    public String describe() {
+        if (isFinished()) {
+            return (error == null ? "Done" : "Failed") + " in " + (finishedNanos / 1_000_000) + " ms";
+        }
+        if (current == null) return "Starting…";
+        StringBuilder sb = new StringBuilder(current.label).append("… ").append(overallPercent()).append('%');
+        long bps = bytesPerSecond();
+        if (bps > 0) {
+            sb.append(String.format(Locale.US, " (%.1f MB/s)", bps / (1024.0 * 1024.0)));
+        }
+        return sb.toString();
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("operation", operation);
+        o.put("started_at", startedAtMillis);
+        o.put("total_ms", (finishedNanos >= 0 ? finishedNanos : System.nanoTime() - startNanos) / 1_000_000);
+        o.put("success", isFinished() && error == null);
+        if (error != null) o.put("error", error);
+
+        JSONObject device = new JSONObject();
+        device.put("manufacturer", Build.MANUFACTURER);
+        device.put("model", Build.MODEL);
+        device.put("sdk_int", Build.VERSION.SDK_INT);
+        device.put("cpus", Runtime.getRuntime().availableProcessors());
+        o.put("device", device);
+
+        JSONArray stages = new JSONArray();
+        for (Stage s : Stage.values()) {
+            int i = s.ordinal();
+            if (nanos[i] == 0 && bytes[i] == 0) continue;
+            JSONObject st = new JSONObject();
+            st.put("name", s.key);
+            st.put("ms", nanos[i] / 1_000_000);
+            st.put("bytes", bytes[i]);
+            st.put("bytes_per_sec", rate(bytes[i], nanos[i]));
+            stages.put(st);
+        }
+        o.put("stages", stages);
+        return o;
+    }
+
+    /** Writes {@link #toJson()} to {@code file}; failures are reported, never thrown. */
+    public boolean writeReport(File file) {
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory()) parent.mkdirs();
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(toJson().toString(2).getBytes(StandardCharsets.UTF_8));
+            }
+            return true;
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to write report " + file, e);
+            return false;
+        }
+    }
+
+    /** Counts bytes read through {@code in} towards the active stage. */
+    public InputStream count(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) addBytes(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                addBytes(n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long k = super.skip(n);
+                addBytes(k);
+                return k;
+            }
+        };
+    }
+
+    private double stageFraction(Stage s) {
+        long total = totals[s.ordinal()];
+        if (total <= 0) return 0;
+        return Math.min(1.0, (double) bytes[s.ordinal()] / total);
+    }
+
+    private void notifyListener(boolean force) {
+        if (listener == null) return;
+        long now = System.nanoTime();
+        if (!force && now - lastNotify < NOTIFY_INTERVAL_NANOS) return;
+        lastNotify = now;
+        listener.onProgress(this);
+    }
+
+    private static long rate(long bytes, long nanos) {
+        return nanos > 0 ? (long) (bytes * 1e9 / nanos) : 0;
+    }
+}
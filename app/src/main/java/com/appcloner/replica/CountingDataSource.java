@@ -0,0 +1,53 @@
+package com.appcloner.replica;
+
+import com.android.apksig.util.DataSink;
+import com.android.apksig.util.DataSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * apksig input source that counts the bytes the signer reads towards the active
+ * {@link CloneMetrics} stage, so signing reports progress while it runs. Slices count too.
+ *
+ * ApkSigner reads its input on the thread that calls {@code sign()}, which is the pipeline
+ * worker driving the metrics.
+ */
+final class CountingDataSource implements DataSource {
+    private final DataSource source;
+    private final CloneMetrics metrics;
+
+    CountingDataSource(DataSource source, CloneMetrics metrics) {
+        this.source = source;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public long size() {
+        return source.size();
+    }
+
+    @Override
+    public void feed(long offset, long size, DataSink sink) throws IOException {
+        source.feed(offset, size, sink);
+        metrics.addBytes(size);
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer(long offset, int size) throws IOException {
+        ByteBuffer buf = source.getByteBuffer(offset, size);
+        metrics.addBytes(size);
+        return buf;
+    }
+
+    @Override
+    public void copyTo(long offset, int size, ByteBuffer dest) throws IOException {
+        source.copyTo(offset, size, dest);
+        metrics.addBytes(size);
+    }
+
+    @Override
+    public DataSource slice(long offset, long size) {
+        return new CountingDataSource(source.slice(offset, size), metrics);
+    }
+}
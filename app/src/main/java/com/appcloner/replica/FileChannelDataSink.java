@@ -0,0 +1,38 @@
+package com.appcloner.replica;
+
+import com.android.apksig.util.DataSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * apksig output sink that appends to a {@link FileChannel} with positional writes, starting at
+ * offset 0. Lets the signer write straight into a seekable destination such as a SAF document
+ * opened through a {@link android.os.ParcelFileDescriptor}.
+ */
+final class FileChannelDataSink implements DataSink {
+    private final FileChannel channel;
+    private long position;
+
+    FileChannelDataSink(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void consume(byte[] buf, int offset, int length) throws IOException {
+        consume(ByteBuffer.wrap(buf, offset, length));
+    }
+
+    @Override
+    public void consume(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    /** Number of bytes written so far. */
+    long size() {
+        return position;
+    }
+}
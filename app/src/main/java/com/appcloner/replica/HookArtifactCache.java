@@ -0,0 +1,226 @@
+package com.appcloner.replica;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Materialises the hook payload (hook.dex and the injected native libraries) from assets into
+ * a directory named after the SHA-256 of its contents, and reuses it across clones.
+ *
+ * The assets are only re-read and re-hashed when this app is installed or updated (its
+ * {@code lastUpdateTime} changes). A changed payload hashes to a new directory, and older
+ * directories are removed, so a stale payload is never handed out.
+ */
+final class HookArtifactCache {
+    private static final String TAG = "HookArtifactCache";
+
+    static final String HOOK_DEX = "hook.dex";
+    static final String LIB_DIR  = "lib";
+
+    private static final String[] NATIVE_LIBS = {
+            "lib/arm64-v8a/libpine.so",
+            "lib/arm64-v8a/libsandhook.so",
+            "lib/armeabi-v7a/libpine.so",
+            "lib/armeabi-v7a/libsandhook.so",
+    };
+
+    private static final String ROOT_DIR   = "hook_artifacts";
+    private static final String INDEX_FILE = "index";
+
+    private static HookArtifactCache instance;
+
+    private final Context ctx;
+    private final File root;
+    private String fingerprint;
+    private File current;
+
+    private HookArtifactCache(Context ctx) {
+        this.ctx = ctx.getApplicationContext();
+        this.root = new File(this.ctx.getFilesDir(), ROOT_DIR);
+    }
+
+    static synchronized HookArtifactCache get(Context ctx) {
+        if (instance == null) {
+            instance = new HookArtifactCache(ctx);
+        }
+        return instance;
+    }
+
+    /** The cached hook.dex, materialising the payload first if needed. */
+    File hookDex() throws IOException {
+        return new File(ensure(), HOOK_DEX);
+    }
+
+    /** Directory holding {@code <abi>/<lib>.so}, as expected by {@link ApkProcessor#injectHook}. */
+    File nativeLibDir() throws IOException {
+        return new File(ensure(), LIB_DIR);
+    }
+
+    private synchronized File ensure() throws IOException {
+        String fp = appFingerprint();
+        if (current != null && fp.equals(fingerprint) && isComplete(current)) {
+            return current;
+        }
+
+        // Same app install as last time: trust the recorded content hash
+        File indexFile = new File(root, INDEX_FILE);
+        String[] index = readIndex(indexFile);
+        if (index != null && index[0].equals(fp)) {
+            File dir = new File(root, index[1]);
+            if (isComplete(dir)) {
+                return remember(fp, dir);
+            }
+        }
+
+        File dir = materialise();
+        writeIndex(indexFile, fp, dir.getName());
+        removeOthers(dir);
+        return remember(fp, dir);
+    }
+
+    private File remember(String fp, File dir) {
+        fingerprint = fp;
+        current = dir;
+        return dir;
+    }
+
+    /** Copies every payload asset while hashing it, then moves the copy to its content address. */
+    private File materialise() throws IOException {
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IOException("Failed to create " + root);
+        }
+        File tmp = new File(root, "tmp_" + System.nanoTime());
+        MessageDigest sha = sha256();
+        try {
+            copyHashed(HOOK_DEX, new File(tmp, HOOK_DEX), sha);
+            for (String lib : NATIVE_LIBS) {
+                copyHashed(lib, new File(tmp, lib), sha);
+            }
+            String hash = toHex(sha.digest());
+            File dir = new File(root, hash);
+            if (isComplete(dir)) {
+                // Same payload as a previous install; keep the existing copy
+                deleteRec(tmp);
+            } else {
+                deleteRec(dir);
+                if (!tmp.renameTo(dir)) {
+                    throw new IOException("Failed to move " + tmp + " to " + dir);
+                }
+            }
+            Log.i(TAG, "Hook payload ready at " + dir.getName());
+            return dir;
+        } catch (IOException e) {
+            deleteRec(tmp);
+            throw e;
+        }
+    }
+
+    private void copyHashed(String asset, File dst, MessageDigest sha) throws IOException {
+        File parent = dst.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create " + parent);
+        }
+        // Names are part of the hash so moving a library to another ABI changes the address
+        sha.update(asset.getBytes(StandardCharsets.UTF_8));
+        sha.update((byte) 0);
+        try (InputStream in = ctx.getAssets().open(asset);
+             OutputStream out = new FileOutputStream(dst)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                sha.update(buf, 0, n);
+                out.write(buf, 0, n);
+            }
+        }
+    }
+
+    private static boolean isComplete(File dir) {
+        if (!new File(dir, HOOK_DEX).isFile()) return false;
+        for (String lib : NATIVE_LIBS) {
+            if (!new File(dir, lib).isFile()) return false;
+        }
+        return true;
+    }
+
+    private void removeOthers(File keep) {
+        File[] kids = root.listFiles();
+        if (kids == null) return;
+        for (File k : kids) {
+            if (k.isDirectory() && !k.equals(keep)) {
+                Log.d(TAG, "Removing stale hook payload " + k.getName());
+                deleteRec(k);
+            }
+        }
+    }
+
+    private String appFingerprint() {
+        try {
+            PackageInfo pi = ctx.getPackageManager().getPackageInfo(ctx.getPackageName(), 0);
+            return String.valueOf(pi.lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            // Cannot happen for our own package; forces a re-hash every process
+            return "unknown-" + System.identityHashCode(this);
+        }
+    }
+
+    private static String[] readIndex(File f) {
+        if (!f.isFile()) return null;
+        try (BufferedReader r = new BufferedReader(
+                new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String fp = r.readLine();
+            String hash = r.readLine();
+            return fp != null && hash != null ? new String[]{fp, hash} : null;
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable cache index, rebuilding", e);
+            return null;
+        }
+    }
+
+    private static void writeIndex(File f, String fp, String hash) throws IOException {
+        File tmp = new File(f.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write((fp + "\n" + hash + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        if (!tmp.renameTo(f)) {
+            throw new IOException("Failed to write " + f);
+        }
+    }
+
+    private static void deleteRec(File f) {
+        if (f.isDirectory()) {
+            File[] kids = f.listFiles();
+            if (kids != null) for (File k : kids) deleteRec(k);
+        }
+        f.delete();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
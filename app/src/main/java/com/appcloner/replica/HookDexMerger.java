@@ -0,0 +1,99 @@
+package com.appcloner.replica;
+
+import android.util.Log;
+
+import org.jf.dexlib2.DexFileFactory;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.raw.HeaderItem;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.writer.io.MemoryDataStore;
+import org.jf.dexlib2.writer.pool.DexPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Merges the hook classes into one of the app's own DEX files, so a clone does not pay for
+ * an extra DEX to open and verify at cold start.
+ *
+ * The merged DEX keeps the app DEX's format version and must stay within the 64K limits on
+ * method, field and type references. Classes the app already defines in that DEX are a conflict.
+ * In both cases nothing is merged and the caller adds the hook as a separate DEX instead.
+ */
+final class HookDexMerger {
+    private static final String TAG = "HookDexMerger";
+
+    private static final int MAX_REFERENCES = 65536;
+
+    private HookDexMerger() {}
+
+    /**
+     * @return the merged DEX, reread and checked, or {@code null} if the hook does not fit
+     */
+    static byte[] merge(byte[] appDex, File hookDex) throws IOException {
+        long start = System.nanoTime();
+        if (!HeaderItem.verifyMagic(appDex, 0)) {
+            Log.w(TAG, "Not a DEX file, not merging");
+            return null;
+        }
+        Opcodes opcodes = Opcodes.forDexVersion(HeaderItem.getVersion(appDex, 0));
+        DexBackedDexFile app = new DexBackedDexFile(opcodes, appDex);
+        DexBackedDexFile hook = DexFileFactory.loadDexFile(hookDex, opcodes);
+
+        Set<String> appTypes = new HashSet<>();
+        for (ClassDef c : app.getClasses()) appTypes.add(c.getType());
+        for (ClassDef c : hook.getClasses()) {
+            if (appTypes.contains(c.getType())) {
+                Log.w(TAG, "App already defines " + c.getType() + ", not merging");
+                return null;
+            }
+        }
+
+        DexPool pool = new DexPool(opcodes);
+        for (ClassDef c : app.getClasses()) pool.internClass(c);
+        for (ClassDef c : hook.getClasses()) pool.internClass(c);
+        if (pool.hasOverflowed(MAX_REFERENCES)) {
+            Log.i(TAG, "Hook does not fit into the app DEX (64K references), not merging");
+            return null;
+        }
+
+        MemoryDataStore store = new MemoryDataStore(appDex.length + (int) hookDex.length());
+        pool.writeTo(store);
+        byte[] merged = store.getData();
+
+        int expected = app.getClasses().size() + hook.getClasses().size();
+        if (!verify(merged, opcodes, hook, expected)) {
+            return null;
+        }
+        Log.i(TAG, "Merged " + hook.getClasses().size() + " hook classes into app DEX ("
+                + appDex.length + " -> " + merged.length + " bytes) in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return merged;
+    }
+
+    /** Rereads the written DEX and checks every class made it. */
+    private static boolean verify(byte[] merged, Opcodes opcodes, DexBackedDexFile hook, int expected) {
+        try {
+            DexBackedDexFile check = new DexBackedDexFile(opcodes, merged);
+            Set<String> types = new HashSet<>();
+            for (ClassDef c : check.getClasses()) types.add(c.getType());
+            if (types.size() != expected) {
+                Log.w(TAG, "Merged DEX has " + types.size() + " classes, expected " + expected);
+                return false;
+            }
+            for (ClassDef c : hook.getClasses()) {
+                if (!types.contains(c.getType())) {
+                    Log.w(TAG, "Merged DEX lost " + c.getType());
+                    return false;
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Merged DEX does not read back", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.appcloner.replica;
+
+import android.util.Log;
+
+import com.applisto.appcloner.HookConditions;
+
+import org.jf.dexlib2.DexFileFactory;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.iface.ExceptionHandler;
+import org.jf.dexlib2.iface.Field;
+import org.jf.dexlib2.iface.Method;
+import org.jf.dexlib2.iface.MethodImplementation;
+import org.jf.dexlib2.iface.TryBlock;
+import org.jf.dexlib2.iface.instruction.Instruction;
+import org.jf.dexlib2.iface.instruction.ReferenceInstruction;
+import org.jf.dexlib2.iface.reference.FieldReference;
+import org.jf.dexlib2.iface.reference.MethodReference;
+import org.jf.dexlib2.iface.reference.Reference;
+import org.jf.dexlib2.iface.reference.StringReference;
+import org.jf.dexlib2.iface.reference.TypeReference;
+import org.jf.dexlib2.immutable.ImmutableDexFile;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes the classes of disabled features from hook.dex at clone time.
+ *
+ * {@code DefaultProvider.onCreate} sets up the hooks listed in {@code HookRegistry}, each one
+ * behind a guard that skips it when its class is missing. {@link HookConditions}, compiled into
+ * both the hook and this app from one source file, maps each hook class to the
+ * {@code cloner.json} keys that switch it on. The shrinker walks type, field, method and
+ * class-name string references from the manifest components, but does not follow the edge from
+ * {@code DefaultProvider} or {@code HookRegistry} to a disabled hook. A hook that is also
+ * referenced from another kept class is therefore kept. Library code (okhttp, dnsjava, the
+ * hooking framework) is kept or dropped one library at a time, because it may be looked up by
+ * name from native or reflective code.
+ *
+ * The result is cached next to the input DEX, keyed by the set of enabled hooks.
+ */
+final class HookDexShrinker {
+    private static final String TAG = "HookDexShrinker";
+
+    private static final String HOOK_PACKAGE = "Lcom/applisto/appcloner/";
+    private static final String PROVIDER = HOOK_PACKAGE + "DefaultProvider;";
+    private static final String PROVIDER_NESTED = HOOK_PACKAGE + "DefaultProvider$";
+    private static final String REGISTRY = HOOK_PACKAGE + "HookRegistry;";
+    private static final String REGISTRY_NESTED = HOOK_PACKAGE + "HookRegistry$";
+
+    /** Components declared in the patched manifest; the system instantiates them by name. */
+    private static final String[] ROOTS = {
+            PROVIDER,
+            HOOK_PACKAGE + "DataExportReceiver;",
+            HOOK_PACKAGE + "CameraControlReceiver;",
+            HOOK_PACKAGE + "FakeCameraActivity;",
+            HOOK_PACKAGE + "InternalBrowserActivity;",
+    };
+
+    // Top-level packages whose second segment names the library, e.g. org/xbill
+    private static final Set<String> DOMAIN_PREFIXES = new HashSet<>(Arrays.asList(
+            "com", "org", "net", "io", "de", "me", "top", "android", "androidx"));
+
+    private HookDexShrinker() {}
+
+    /**
+     * @param configs every {@code cloner.json} the DEX will ship with; a hook is kept when
+     *                any of them enables it
+     * @return the pruned DEX, or {@code hookDex} itself when nothing can be removed
+     */
+    static File shrink(File hookDex, Collection<JSONObject> configs, File outDir) throws IOException {
+        Set<String> disabled = new HashSet<>();
+        StringBuilder mask = new StringBuilder(HookConditions.HOOKS.length);
+        for (HookConditions.Hook h : HookConditions.HOOKS) {
+            boolean on = false;
+            for (JSONObject config : configs) {
+                if (config != null && h.isEnabled(config)) {
+                    on = true;
+                    break;
+                }
+            }
+            if (!on) disabled.add(HOOK_PACKAGE + h.name + ";");
+            mask.append(on ? '1' : '0');
+        }
+        if (disabled.isEmpty()) return hookDex;
+
+        String base = hookDex.getName().replaceFirst("\\.dex$", "");
+        File out = new File(outDir, base + "." + mask + ".dex");
+        if (out.isFile() && out.length() > 0 && out.lastModified() >= hookDex.lastModified()) {
+            return out;
+        }
+
+        long start = System.nanoTime();
+        DexBackedDexFile dex = DexFileFactory.loadDexFile(hookDex, Opcodes.getDefault());
+        List<ClassDef> kept = reachable(dex.getClasses(), disabled);
+        int total = dex.getClasses().size();
+        if (kept.size() == total) {
+            Log.d(TAG, "Nothing to remove from " + hookDex.getName());
+            return hookDex;
+        }
+
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("Failed to create " + outDir);
+        }
+        File tmp = new File(outDir, out.getName() + ".tmp");
+        DexFileFactory.writeDexFile(tmp.getPath(), new ImmutableDexFile(dex.getOpcodes(), kept));
+        if (!tmp.renameTo(out)) {
+            tmp.delete();
+            throw new IOException("Failed to move " + tmp + " to " + out);
+        }
+        Log.i(TAG, "Shrunk " + hookDex.getName() + ": " + kept.size() + "/" + total + " classes, "
+                + hookDex.length() + " -> " + out.length() + " bytes in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return out;
+    }
+
+    /** Classes reachable from {@link #ROOTS} without entering a hook of {@code disabled}. */
+    static List<ClassDef> reachable(Collection<? extends ClassDef> classes, Set<String> disabled) {
+        Map<String, ClassDef> byType = new HashMap<>();
+        Map<String, List<String>> byLibrary = new HashMap<>();
+        Map<String, List<String>> nested = new HashMap<>();
+        for (ClassDef c : classes) {
+            String type = c.getType();
+            byType.put(type, c);
+            if (!type.startsWith(HOOK_PACKAGE)) {
+                listFor(byLibrary, libraryOf(type)).add(type);
+            }
+            int dollar = type.indexOf('$');
+            if (dollar > 0) {
+                listFor(nested, type.substring(0, dollar) + ";").add(type);
+            }
+        }
+
+        Set<String> seen = new HashSet<>();
+        Set<String> libraries = new HashSet<>();
+        Deque<String> work = new ArrayDeque<>();
+        for (String root : ROOTS) {
+            if (byType.containsKey(root)) work.add(root);
+        }
+
+        Set<String> refs = new HashSet<>();
+        while (!work.isEmpty()) {
+            String type = work.poll();
+            if (!seen.add(type)) continue;
+            ClassDef c = byType.get(type);
+
+            refs.clear();
+            collectReferences(c, refs);
+            // Nested and synthetic classes go with their outer class
+            List<String> inner = nested.get(type);
+            if (inner != null) refs.addAll(inner);
+            // Only the provider and its hook registry guard hooks; every other edge is a hard dependency
+            boolean guarded = type.equals(PROVIDER) || type.startsWith(PROVIDER_NESTED)
+                    || type.equals(REGISTRY) || type.startsWith(REGISTRY_NESTED);
+
+            for (String ref : refs) {
+                if (!byType.containsKey(ref) || seen.contains(ref)) continue;
+                if (guarded && disabled.contains(ref)) continue;
+                if (ref.startsWith(HOOK_PACKAGE)) {
+                    work.add(ref);
+                } else if (libraries.add(libraryOf(ref))) {
+                    work.addAll(byLibrary.get(libraryOf(ref)));
+                }
+            }
+        }
+
+        List<ClassDef> kept = new ArrayList<>(seen.size());
+        for (ClassDef c : classes) {
+            if (seen.contains(c.getType())) kept.add(c);
+        }
+        return kept;
+    }
+
+    private static void collectReferences(ClassDef c, Set<String> out) {
+        addType(out, c.getSuperclass());
+        for (String itf : c.getInterfaces()) addType(out, itf);
+        for (Field f : c.getFields()) addType(out, f.getType());
+        for (Method m : c.getMethods()) {
+            addType(out, m.getReturnType());
+            for (CharSequence p : m.getParameterTypes()) addType(out, p.toString());
+            MethodImplementation impl = m.getImplementation();
+            if (impl == null) continue;
+            for (Instruction insn : impl.getInstructions()) {
+                if (insn instanceof ReferenceInstruction) {
+                    addReference(out, ((ReferenceInstruction) insn).getReference());
+                }
+            }
+            for (TryBlock<? extends ExceptionHandler> tb : impl.getTryBlocks()) {
+                for (ExceptionHandler h : tb.getExceptionHandlers()) {
+                    addType(out, h.getExceptionType());
+                }
+            }
+        }
+    }
+
+    private static void addReference(Set<String> out, Reference ref) {
+        if (ref instanceof TypeReference) {
+            addType(out, ((TypeReference) ref).getType());
+        } else if (ref instanceof FieldReference) {
+            FieldReference f = (FieldReference) ref;
+            addType(out, f.getDefiningClass());
+            addType(out, f.getType());
+        } else if (ref instanceof MethodReference) {
+            MethodReference m = (MethodReference) ref;
+            addType(out, m.getDefiningClass());
+            addType(out, m.getReturnType());
+            for (CharSequence p : m.getParameterTypes()) addType(out, p.toString());
+        } else if (ref instanceof StringReference) {
+            // Class.forName / setClassName targets
+            String s = ((StringReference) ref).getString();
+            if (s.indexOf('.') > 0 && s.indexOf(' ') < 0 && s.length() < 256) {
+                out.add("L" + s.replace('.', '/') + ";");
+            }
+        }
+    }
+
+    private static void addType(Set<String> out, String type) {
+        if (type == null) return;
+        int i = 0;
+        while (i < type.length() && type.charAt(i) == '[') i++;
+        if (i < type.length() && type.charAt(i) == 'L') {
+            out.add(i == 0 ? type : type.substring(i));
+        }
+    }
+
+    /** {@code Lokhttp3/internal/Util;} -> {@code okhttp3/}, {@code Lorg/xbill/DNS/Name;} -> {@code org/xbill/}. */
+    private static String libraryOf(String type) {
+        int first = type.indexOf('/');
+        if (first < 0) return type;
+        String top = type.substring(1, first);
+        if (DOMAIN_PREFIXES.contains(top)) {
+            int second = type.indexOf('/', first + 1);
+            if (second > 0) return type.substring(1, second + 1);
+        }
+        return top + "/";
+    }
+
+    private static List<String> listFor(Map<String, List<String>> map, String key) {
+        List<String> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        return list;
+    }
+}
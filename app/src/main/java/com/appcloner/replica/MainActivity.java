@@ -34,38 +34,24 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.FileProvider;
-import com.android.apksig.ApkSigner;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import java.io.*;
 import java.math.BigDecimal;
-import java.nio.channels.FileChannel;
-import java.security.KeyStore;
-import java.security.PrivateKey;
 import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
 import java.util.*;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Pattern;
-import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final String INJECTED_PROVIDER_SUFFIX = ".com.applisto.appcloner.DefaultProvider";
-    private static final Pattern SIG_PATH = Pattern.compile(
-            "^META-INF/(.+\\.(RSA|DSA|EC|SF)|MANIFEST\\.MF)$", Pattern.CASE_INSENSITIVE);
-    private static final String ANDROID_MANIFEST = "AndroidManifest.xml";
-    private static final String KEYSTORE_ASSET = "debug.keystore";
-    private static final String STORE_PWD      = "appklown";
-    private static final String KEY_PWD        = "appklown";
-    private static final String ALIAS          = "Harrygp";
     private static final String IPC_PERMISSION = "com.appcloner.replica.permission.REPLICA_IPC";
     private static final String BUNDLE_DATA_SETTING_KEY = "bundle_app_data";
     private static final String CLONING_MODE_KEY = "cloning_mode";
@@ -2647,25 +2633,18 @@ public class MainActivity extends AppCompatActivity {
                     clearSelection();
                     return;
                 }
-                File cachedApkDir = new File(getCacheDir(), "apk_cache");
-                cachedApkDir.mkdirs();
-                File cachedApkFile = new File(cachedApkDir, app.packageName + "_source.apk");
-                try (FileInputStream fis = new FileInputStream(sourceApkFile);
-                     FileOutputStream fos = new FileOutputStream(cachedApkFile);
-                     FileChannel inChannel = fis.getChannel();
-                     FileChannel outChannel = fos.getChannel()) {
-                    inChannel.transferTo(0, inChannel.size(), outChannel);
-                    inputApkUri = Uri.fromFile(cachedApkFile);
-                    selectedAppInfo = new SelectedAppInfo(app.packageName, app.appName, cachedApkFile);
-                    selectedTxt.setText("Selected App: " + app.appName);
-                    statusTxt.setText("App selected. Ready to process.");
-                    Toast.makeText(MainActivity.this, "Selected: " + app.appName, Toast.LENGTH_SHORT).show();
-                } catch (IOException e) {
-                    Log.e(TAG, "Failed to copy APK to cache", e);
+                if (!sourceApkFile.canRead()) {
+                    Log.e(TAG, "Source APK is not readable: " + sourceApkPath);
                     Toast.makeText(MainActivity.this, "Error: Failed to access app APK.", Toast.LENGTH_SHORT).show();
                     clearSelection();
-                    cachedApkFile.delete();
+                    return;
                 }
+                // Read the installed APK in place; ApkProcessor opens file inputs with random access
+                inputApkUri = Uri.fromFile(sourceApkFile);
+                selectedAppInfo = new SelectedAppInfo(app.packageName, app.appName, null);
+                selectedTxt.setText("Selected App: " + app.appName);
+                statusTxt.setText("App selected. Ready to process.");
+                Toast.makeText(MainActivity.this, "Selected: " + app.appName, Toast.LENGTH_SHORT).show();
             } catch (PackageManager.NameNotFoundException e) {
                 Log.e(TAG, "App not found: " + app.packageName, e);
                 Toast.makeText(MainActivity.this, "Error: App not found", Toast.LENGTH_SHORT).show();
@@ -3126,10 +3105,10 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         try {
-            File hookDex    = new File(getCacheDir(), "hook.dex");
-            File libWorkDir = new File(getCacheDir(), "hook_libs");
-            libWorkDir.mkdirs();
-            copyAsset("hook.dex", hookDex);
+            // Materialised once per app install and shared by all clones
+            HookArtifactCache artifacts = HookArtifactCache.get(this);
+            File hookDex    = artifacts.hookDex();
+            File libWorkDir = artifacts.nativeLibDir();
             if (!clonerJsonFile.exists()) {
                 CloneSettings.generateClonerJson(this, clonerJsonFile);
             }
@@ -3151,22 +3130,11 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
 
-            // Copy arm64-v8a libs
-            File arm64Dir = new File(libWorkDir, "arm64-v8a");
-            arm64Dir.mkdirs();
-            copyAsset("lib/arm64-v8a/libpine.so",     new File(arm64Dir, "libpine.so"));
-            copyAsset("lib/arm64-v8a/libsandhook.so", new File(arm64Dir, "libsandhook.so"));
-
-            // Copy armeabi-v7a libs
-            File armDir = new File(libWorkDir, "armeabi-v7a");
-            armDir.mkdirs();
-            copyAsset("lib/armeabi-v7a/libpine.so",     new File(armDir, "libpine.so"));
-            copyAsset("lib/armeabi-v7a/libsandhook.so", new File(armDir, "libsandhook.so"));
-
             new Thread(() -> {
                 try {
-                    // Ensure ApkProcessor.java is present in the correct package location
-                    new ApkProcessor(MainActivity.this).injectHook(
+                    ApkProcessor processor = new ApkProcessor(MainActivity.this);
+                    processor.setProgressListener(this::showPipelineProgress);
+                    processor.injectHook(
                             inputApkUri, outputApkUri, hookDex, clonerJsonFile, libWorkDir, bundledDataFileForCloning);
                     runOnUiThread(() -> {
                         statusTxt.setText("Done");
@@ -3218,6 +3186,13 @@ public class MainActivity extends AppCompatActivity {
             outputApkUri = null;
         }
     }
+    /** Mirrors clone/update pipeline progress into the status line; called off the UI thread. */
+    private void showPipelineProgress(CloneMetrics metrics) {
+        if (metrics.isFinished()) return;
+        String status = metrics.describe();
+        runOnUiThread(() -> statusTxt.setText(status));
+    }
+
     private void proceedWithInstallation(Uri apkUri) {
         boolean installerLaunched = launchInstallerForUri(
                 apkUri,
@@ -3299,48 +3274,6 @@ public class MainActivity extends AppCompatActivity {
             return false;
         }
     }
-    private void copyAsset(String assetPath, File dst) throws IOException {
-        if (assetPath == null || assetPath.isEmpty()) {
-            throw new IllegalArgumentException("Asset path cannot be null or empty");
-        }
-        if (dst == null) {
-            throw new IllegalArgumentException("Destination file cannot be null");
-        }
-        try (InputStream in = getAssets().open(assetPath);
-             OutputStream out = new FileOutputStream(dst)) {
-            byte[] buf = new byte[8_192];
-            int n;
-            while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
-        }
-    }
-
-    private static void copyFile(File source, File dest) throws IOException {
-        if (source == null || dest == null) {
-            throw new IllegalArgumentException("Source and destination files cannot be null");
-        }
-        if (!source.exists() || !source.isFile()) {
-            throw new IOException("Source file does not exist: " + source);
-        }
-        File parent = dest.getParentFile();
-        if (parent != null && !parent.exists() && !parent.mkdirs()) {
-            throw new IOException("Failed to create directory: " + parent);
-        }
-        try (InputStream in = new FileInputStream(source);
-             OutputStream out = new FileOutputStream(dest)) {
-            copyStream(in, out);
-        }
-    }
-
-    private static byte[] readAllBytes(File file) throws IOException {
-        if (file == null || !file.exists() || !file.isFile()) {
-            throw new IOException("File does not exist: " + file);
-        }
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             InputStream in = new FileInputStream(file)) {
-            copyStream(in, baos);
-            return baos.toByteArray();
-        }
-    }
     private String readString(File file) throws IOException {
         if (file == null || !file.exists()) {
             throw new IOException("File does not exist: " + file);
@@ -3466,59 +3399,17 @@ public class MainActivity extends AppCompatActivity {
     private void injectUpdatedJsonAndInstall(File updatedClonerJson, File sourceApkFile, AppInfo clonedApp) {
         statusTxt.setText("Updating & Installing...");
         new Thread(() -> {
-            File tempRoot = new File(getCacheDir(), "update_" + System.currentTimeMillis());
+            File signedApk = new File(getCacheDir(), "signed_updated_" + System.nanoTime() + ".apk");
             try {
-                if (!tempRoot.mkdirs()) throw new IOException("Failed to create temp directory: " + tempRoot);
-                String basePath = tempRoot.getCanonicalPath() + File.separator;
-                boolean manifestFound = false;
-                try (ZipInputStream zis = new ZipInputStream(new FileInputStream(sourceApkFile))) {
-                    ZipEntry ze;
-                    while ((ze = zis.getNextEntry()) != null) {
-                        String name = ze.getName();
-                        if (name == null || name.isEmpty()) continue;
-                        if (SIG_PATH.matcher(name).matches()) continue;
-                        if ("assets/cloner.json".equals(name)) continue;
-                        if (ANDROID_MANIFEST.equals(name)) {
-                            manifestFound = true;
-                        }
-                        File outFile = safeResolve(tempRoot, basePath, name);
-                        if (ze.isDirectory()) {
-                            if (!outFile.exists() && !outFile.mkdirs()) {
-                                throw new IOException("Failed to mkdirs: " + outFile);
-                            }
-                            continue;
-                        }
-                        File parent = outFile.getParentFile();
-                        if (parent != null && !parent.exists() && !parent.mkdirs()) {
-                            throw new IOException("Failed to create parent: " + parent);
-                        }
-                        try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                            copyStream(zis, fos);
-                        }
-                    }
-                }
-                if (!manifestFound) {
-                    throw new IOException("AndroidManifest.xml not found in source APK");
-                }
-                File assetsDir = new File(tempRoot, "assets");
-                if (!assetsDir.exists() && !assetsDir.mkdirs()) {
-                    throw new IOException("Failed to create assets dir");
-                }
-                copyFile(updatedClonerJson, new File(assetsDir, "cloner.json"));
-                File unsignedApk = new File(getCacheDir(), "unsigned_updated_" + System.nanoTime() + ".apk");
-                File manifestFile = new File(tempRoot, ANDROID_MANIFEST);
-                byte[] manifestBytes = readAllBytes(manifestFile);
-                zipDir(tempRoot, unsignedApk, manifestBytes);
-                File signedApk = new File(getCacheDir(), "signed_updated_" + System.nanoTime() + ".apk");
-                try {
-                    signUpdatedApk(unsignedApk, signedApk);
-                } finally {
-                    unsignedApk.delete();
-                    deleteRec(tempRoot);
-                }
+                // Only cloner.json changes; all other entries are copied raw from the installed APK
+                ApkProcessor processor = new ApkProcessor(MainActivity.this);
+                processor.setProgressListener(this::showPipelineProgress);
+                processor.patchEntries(sourceApkFile, signedApk,
+                        Collections.singletonMap("assets/cloner.json", updatedClonerJson));
                 runOnUiThread(() -> installApk(signedApk, clonedApp));
             } catch (Exception e) {
                 Log.e(TAG, "Error updating/cloning app: " + clonedApp.packageName, e);
+                signedApk.delete();
                 runOnUiThread(() -> {
                     statusTxt.setText("Update Error: " + e.getMessage());
                     Toast.makeText(MainActivity.this, "Failed to update " + clonedApp.appName + ": " + e.getMessage(), Toast.LENGTH_LONG).show();
@@ -3527,33 +3418,9 @@ public class MainActivity extends AppCompatActivity {
                     }
                     hideSettingsEditor();
                 });
-                deleteRec(tempRoot);
             }
         }).start();
     }
-    private void signUpdatedApk(File unsignedApk, File signedApk) throws Exception {
-        ApkSigner.SignerConfig signer = loadSignerConfigForUpdate();
-        ApkSigner apkSigner = new ApkSigner.Builder(Collections.singletonList(signer))
-                .setInputApk(unsignedApk)
-                .setOutputApk(signedApk)
-                .setV1SigningEnabled(true)
-                .setV2SigningEnabled(true)
-                .setV3SigningEnabled(false)  // Disabled for better compatibility
-                .build();
-        apkSigner.sign();
-        try {
-            Class<?> builderClass = Class.forName("com.android.apksig.ApkVerifier$Builder");
-            Object builderInstance = builderClass.getConstructor(File.class).newInstance(signedApk);
-            Object apkVerifierInstance = builderClass.getMethod("build").invoke(builderInstance);
-            Object vRes = apkVerifierInstance.getClass().getMethod("verify").invoke(apkVerifierInstance);
-            Boolean isVerified = (Boolean) vRes.getClass().getMethod("isVerified").invoke(vRes);
-            if (isVerified != null && !isVerified) {
-                Log.w(TAG, "Updated APK verification result: NOT VERIFIED (continuing)");
-            }
-        } catch (Throwable t) {
-            Log.w(TAG, "Verification skipped due to error", t);
-        }
-    }
     private void installApk(File apkToInstall, AppInfo clonedApp) {
         Log.d(TAG, "Preparing to install updated APK: " + apkToInstall.getName());
         try {
@@ -3574,98 +3441,11 @@ public class MainActivity extends AppCompatActivity {
             apkToInstall.delete();
         }
     }
-    private ApkSigner.SignerConfig loadSignerConfigForUpdate() throws Exception {
-        try (InputStream ksStream = getAssets().open(KEYSTORE_ASSET)) {
-            KeyStore ks = KeyStore.getInstance("BKS");
-            ks.load(ksStream, STORE_PWD.toCharArray());
-            PrivateKey key = (PrivateKey) ks.getKey(ALIAS, KEY_PWD.toCharArray());
-            if (key == null) throw new IllegalStateException("Private key is null for alias: " + ALIAS);
-            X509Certificate cert = (X509Certificate) ks.getCertificate(ALIAS);
-            if (cert == null) throw new IllegalStateException("Certificate is null for alias: " + ALIAS);
-            return new ApkSigner.SignerConfig.Builder(ALIAS, key, Collections.singletonList(cert)).build();
-        }
-    }
     private static void copyStream(InputStream in, OutputStream out) throws IOException {
         byte[] buf = new byte[8192];
         int n;
         while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
     }
-    private static void deleteRec(File f) {
-        if (f.isDirectory()) {
-            File[] kids = f.listFiles();
-            if (kids != null) for (File k : kids) deleteRec(k);
-        }
-        f.delete();
-    }
-    private void zipDir(File root, File outFile, byte[] manifestBytes) throws IOException {
-        try (OutputStream os = new FileOutputStream(outFile);
-             ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(os))) {
-            zos.setLevel(9);
-            writeZip(root, zos, manifestBytes);
-        }
-    }
-    private void writeZip(File root, ZipOutputStream zos, byte[] manifestBytes) throws IOException {
-        ZipEntry manifestEntry = createZipEntry(ANDROID_MANIFEST, manifestBytes);
-        zos.putNextEntry(manifestEntry);
-        zos.write(manifestBytes);
-        zos.closeEntry();
-        addRec(root, root.getAbsolutePath(), zos);
-    }
-    private void addRec(File node, String base, ZipOutputStream zos) throws IOException {
-        if (node.isDirectory()) {
-            File[] kids = node.listFiles();
-            if (kids != null) for (File k : kids) addRec(k, base, zos);
-            return;
-        }
-        String rel = node.getAbsolutePath().substring(base.length() + 1).replace(File.separatorChar, '/');
-        if (ANDROID_MANIFEST.equals(rel)) return;
-        ZipEntry entry = createZipEntry(rel, node);
-        zos.putNextEntry(entry);
-        try (FileInputStream fis = new FileInputStream(node)) {
-            copyStream(fis, zos);
-        }
-        zos.closeEntry();
-    }
-    private ZipEntry createZipEntry(String name, byte[] data) {
-        ZipEntry e = new ZipEntry(name);
-        e.setTime(0L);
-        e.setMethod(ZipEntry.STORED);
-        e.setSize(data.length);
-        CRC32 crc = new CRC32();
-        crc.update(data);
-        e.setCrc(crc.getValue());
-        return e;
-    }
-    private ZipEntry createZipEntry(String name, File file) throws IOException {
-        ZipEntry e = new ZipEntry(name);
-        e.setTime(0L);
-        String lower = name.toLowerCase(Locale.US);
-        boolean store = lower.endsWith(".so") || lower.endsWith(".arsc") || lower.endsWith(".dex");
-        if (store) {
-            e.setMethod(ZipEntry.STORED);
-            e.setSize(file.length());
-            CRC32 crc = new CRC32();
-            try (InputStream in = new FileInputStream(file)) {
-                byte[] buf = new byte[8192];
-                int r;
-                while ((r = in.read(buf)) != -1) {
-                    crc.update(buf, 0, r);
-                }
-            }
-            e.setCrc(crc.getValue());
-        } else {
-            e.setMethod(ZipEntry.DEFLATED);
-        }
-        return e;
-    }
-    private static File safeResolve(File root, String basePath, String entryName) throws IOException {
-        File out = new File(root, entryName);
-        String outPath = out.getCanonicalPath();
-        if (!outPath.startsWith(basePath)) {
-            throw new IOException("Blocked zip path traversal: " + entryName);
-        }
-        return out;
-    }
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
@@ -3704,6 +3484,91 @@ public class MainActivity extends AppCompatActivity {
             Toast.makeText(this, "Failed to request export from " + targetPackageName + ". Is the app correctly cloned?", Toast.LENGTH_LONG).show();
         }
     }
+    /**
+     * Fetches what each injected hook cost when the clone last started, from its provider's
+     * "startup_profile" call. Calling the provider starts the clone's process if needed.
+     */
+    private void showStartupProfile(AppInfo appInfo) {
+        final String pkg = appInfo.packageName;
+        final String title = "Startup Profile: " + (appInfo.appName != null ? appInfo.appName : pkg);
+        new Thread(() -> {
+            String text;
+            try {
+                Uri uri = Uri.parse("content://" + pkg + INJECTED_PROVIDER_SUFFIX);
+                Bundle res = getContentResolver().call(uri, "startup_profile", null, null);
+                if (res == null || !res.getBoolean("ok", false)) {
+                    String error = res != null ? res.getString("error") : null;
+                    text = "Profile not available" + (error != null ? ": " + error : "");
+                } else {
+                    text = formatStartupProfile(new JSONObject(res.getString("profile", "{}")));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to fetch startup profile from " + pkg, e);
+                text = "Failed to contact " + pkg + ". Is the app correctly cloned?\n\n" + e.getMessage();
+            }
+            final String message = text;
+            runOnUiThread(() -> {
+                TextView view = new TextView(this);
+                view.setText(message);
+                view.setTypeface(android.graphics.Typeface.MONOSPACE);
+                view.setTextIsSelectable(true);
+                int pad = (int) (16 * getResources().getDisplayMetrics().density);
+                view.setPadding(pad, pad, pad, pad);
+                ScrollView scroll = new ScrollView(this);
+                scroll.addView(view);
+                new AlertDialog.Builder(this)
+                        .setTitle(title)
+                        .setView(scroll)
+                        .setPositiveButton("OK", null)
+                        .show();
+            });
+        }).start();
+    }
+
+    /** Hooks slowest first, then the startup milestones. */
+    private static String formatStartupProfile(JSONObject profile) {
+        List<JSONObject> hooks = new ArrayList<>();
+        JSONArray arr = profile.optJSONArray("hooks");
+        for (int i = 0; arr != null && i < arr.length(); i++) {
+            JSONObject o = arr.optJSONObject(i);
+            if (o != null) hooks.add(o);
+        }
+        Collections.sort(hooks, (a, b) -> Long.compare(b.optLong("duration_ms"), a.optLong("duration_ms")));
+
+        StringBuilder sb = new StringBuilder();
+        long total = 0;
+        for (JSONObject o : hooks) {
+            total += o.optLong("duration_ms");
+            sb.append(String.format(Locale.US, "%-26s %5d ms %3d hooks  %s%n",
+                    o.optString("name"), o.optLong("duration_ms"), o.optInt("hook_methods"),
+                    o.optString("thread")));
+            String status = o.optString("status");
+            if (!"installed".equals(status)) {
+                sb.append("    ").append(status);
+                if (o.has("error")) sb.append(": ").append(o.optString("error"));
+                sb.append('\n');
+            } else if (o.optInt("hook_failures") > 0) {
+                sb.append("    ").append(o.optInt("hook_failures")).append(" methods failed to hook\n");
+            }
+        }
+        sb.append(String.format(Locale.US, "%nSum of hook times: %d ms%n", total));
+
+        JSONObject phases = profile.optJSONObject("phases");
+        if (phases != null) {
+            Iterator<String> keys = phases.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                sb.append(String.format(Locale.US, "%-26s at %5d ms%n", key, phases.optLong(key)));
+            }
+        }
+        int late = profile.optInt("late_hook_methods");
+        if (late > 0) {
+            sb.append(String.format(Locale.US, "%nMethods hooked after startup: %d (%d failed)%n",
+                    late, profile.optInt("late_hook_failures")));
+        }
+        return sb.toString();
+    }
+
     private void confirmAndUninstallApp(AppInfo appInfo) {
         if (appInfo == null || appInfo.packageName == null || appInfo.packageName.trim().isEmpty()) {
             Toast.makeText(this, "Unable to determine which package to uninstall.", Toast.LENGTH_LONG).show();
@@ -3849,6 +3714,8 @@ public class MainActivity extends AppCompatActivity {
                                             startActivity(i);
                                         } else if (itemId == R.id.action_export_data) {
                                             triggerExportData(clickedApp.packageName);
+                                        } else if (itemId == R.id.action_startup_profile) {
+                                            showStartupProfile(clickedApp);
                                         } else if (itemId == R.id.action_uninstall) {
                                             confirmAndUninstallApp(clickedApp);
                                         }
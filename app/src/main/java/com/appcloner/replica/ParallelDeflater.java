@@ -0,0 +1,115 @@
+package com.appcloner.replica;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Deflates data in fixed-size chunks on a bounded worker pool (pigz style). Every chunk is
+ * primed with the last 32 KiB of the chunk before it and ends on a sync flush, so the chunks
+ * concatenate into one valid raw deflate stream.
+ *
+ * The output depends only on the input, the level and {@link #CHUNK_SIZE}, never on the number
+ * of workers, so a parallel run is byte-identical to a single-threaded one.
+ */
+final class ParallelDeflater implements Closeable {
+    static final int CHUNK_SIZE = 512 * 1024;
+    private static final int DICT_SIZE = 32 * 1024;
+
+    private final int level;
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param maxWorkers number of compression threads; 1 or less compresses on the calling thread
+     */
+    ParallelDeflater(int level, int maxWorkers) {
+        this.level = level;
+        if (maxWorkers > 1) {
+            pool = new ThreadPoolExecutor(maxWorkers, maxWorkers, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new WorkerFactory());
+            pool.allowCoreThreadTimeOut(true);
+        } else {
+            pool = null;
+        }
+    }
+
+    boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Compresses {@code data[0, len)}. {@code prev} is the previous chunk of the same entry (or
+     * null for the first one); its tail is used as the preset dictionary. Neither array may be
+     * modified until the returned future completes.
+     */
+    Future<byte[]> submit(byte[] data, int len, byte[] prev, int prevLen, boolean last) {
+        Callable<byte[]> task = () -> deflateChunk(data, len, prev, prevLen, last);
+        if (pool != null) {
+            return pool.submit(task);
+        }
+        FutureTask<byte[]> inline = new FutureTask<>(task);
+        inline.run();
+        return inline;
+    }
+
+    /** Upper bound on the memory one chunk of {@code len} bytes holds while in flight. */
+    static long chunkCost(int len) {
+        return 2L * len + 1024;
+    }
+
+    private byte[] deflateChunk(byte[] data, int len, byte[] prev, int prevLen, boolean last) {
+        Deflater def = new Deflater(level, true);
+        try {
+            if (prev != null && prevLen > 0) {
+                int dictLen = Math.min(DICT_SIZE, prevLen);
+                def.setDictionary(prev, prevLen - dictLen, dictLen);
+            }
+            def.setInput(data, 0, len);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(len / 2 + 64);
+            byte[] buf = new byte[64 * 1024];
+            if (last) {
+                def.finish();
+                while (!def.finished()) {
+                    int n = def.deflate(buf);
+                    out.write(buf, 0, n);
+                }
+            } else {
+                // A full output buffer means the flush is not complete yet
+                int n;
+                do {
+                    n = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    out.write(buf, 0, n);
+                } while (n == buf.length);
+            }
+            return out.toByteArray();
+        } finally {
+            def.end();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "apk-deflate-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.appcloner.replica;
+
+import com.android.apksig.util.RunnablesExecutor;
+import com.android.apksig.util.RunnablesProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs apksig's digest workers on several threads. Each runnable handed out by apksig pulls
+ * 1 MiB chunks from a shared supplier and stores every digest at the chunk's index, so the
+ * resulting signature does not depend on the number of workers.
+ */
+final class SigningExecutor implements RunnablesExecutor {
+    private final int workers;
+
+    /**
+     * @param workers number of digest threads, including the calling thread; 1 or less digests
+     *                on the calling thread only
+     */
+    SigningExecutor(int workers) {
+        this.workers = Math.max(1, workers);
+    }
+
+    @Override
+    public void execute(RunnablesProvider provider) {
+        if (workers == 1) {
+            provider.createRunnable().run();
+            return;
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers - 1, r -> {
+            Thread t = new Thread(r, "apk-sign-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers - 1);
+            for (int i = 0; i < workers - 1; i++) {
+                futures.add(pool.submit(provider.createRunnable()));
+            }
+            // The calling thread works too instead of just waiting
+            provider.createRunnable().run();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while computing APK digests", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException("APK digest computation failed", cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.appcloner.replica;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Checks the data alignment of STORED entries in an APK, the way {@code zipalign -c} does:
+ * every STORED entry must start on a 4-byte boundary and every native library on a page
+ * boundary. Plain Java with no Android dependencies, so it can also run in a JVM test.
+ */
+final class ZipAlignment {
+    private static final int EOCD_SIG           = 0x06054b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int LOCAL_HEADER_SIG   = 0x04034b50;
+    private static final int EOCD_LEN           = 22;
+    private static final int CENTRAL_HEADER_LEN = 46;
+    private static final int LOCAL_HEADER_LEN   = 30;
+
+    private ZipAlignment() {}
+
+    /**
+     * @param pageAlignment required alignment for {@code lib/**.so}, e.g. 4096 or 16384
+     * @return one line per misaligned entry; empty when the APK is fully aligned
+     */
+    static List<String> findMisaligned(File apk, int pageAlignment) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(apk, "r")) {
+            return findMisaligned(raf.getChannel(), pageAlignment);
+        }
+    }
+
+    /** Same as {@link #findMisaligned(File, int)} for an APK read through {@code channel}. */
+    static List<String> findMisaligned(FileChannel channel, int pageAlignment) throws IOException {
+        List<String> problems = new ArrayList<>();
+        long eocd = findEocd(channel);
+        byte[] eocdBytes = read(channel, eocd, EOCD_LEN);
+        int count = ApkEntryReader.le16(eocdBytes, 10);
+        long cdOffset = ApkEntryReader.le32(eocdBytes, 16);
+
+        long pos = cdOffset;
+        for (int i = 0; i < count; i++) {
+            byte[] ch = read(channel, pos, CENTRAL_HEADER_LEN);
+            if (ApkEntryReader.le32(ch, 0) != CENTRAL_HEADER_SIG) {
+                throw new ZipException("Bad central directory header at " + pos);
+            }
+            int method = ApkEntryReader.le16(ch, 10);
+            int nameLen = ApkEntryReader.le16(ch, 28);
+            int extraLen = ApkEntryReader.le16(ch, 30);
+            int commentLen = ApkEntryReader.le16(ch, 32);
+            long localOffset = ApkEntryReader.le32(ch, 42);
+            String name = new String(read(channel, pos + CENTRAL_HEADER_LEN, nameLen), StandardCharsets.UTF_8);
+            pos += CENTRAL_HEADER_LEN + nameLen + extraLen + commentLen;
+
+            if (method != ApkEntry.METHOD_STORED || name.endsWith("/")) continue;
+
+            byte[] lh = read(channel, localOffset, LOCAL_HEADER_LEN);
+            if (ApkEntryReader.le32(lh, 0) != LOCAL_HEADER_SIG) {
+                throw new ZipException("Bad local header for " + name);
+            }
+            long dataOffset = localOffset + LOCAL_HEADER_LEN
+                    + ApkEntryReader.le16(lh, 26) + ApkEntryReader.le16(lh, 28);
+            int required = ApkZipWriter.isNativeLib(name) ? pageAlignment : ApkZipWriter.STORED_ALIGNMENT;
+            if (dataOffset % required != 0) {
+                problems.add(name + " at offset " + dataOffset + " is not " + required + "-byte aligned");
+            }
+        }
+        return problems;
+    }
+
+    private static long findEocd(FileChannel channel) throws IOException {
+        long length = channel.size();
+        if (length < EOCD_LEN) throw new ZipException("Not a ZIP file");
+        // EOCD is followed by a comment of at most 64 KiB
+        int window = (int) Math.min(length, EOCD_LEN + 0xFFFF);
+        byte[] tail = read(channel, length - window, window);
+        for (int i = window - EOCD_LEN; i >= 0; i--) {
+            if (ApkEntryReader.le32(tail, i) == EOCD_SIG) {
+                return length - window + i;
+            }
+        }
+        throw new ZipException("End of central directory not found");
+    }
+
+    private static byte[] read(FileChannel channel, long offset, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, offset + buf.position());
+            if (n < 0) throw new EOFException("Unexpected end of APK at " + (offset + buf.position()));
+        }
+        return buf.array();
+    }
+}
@@ -0,0 +1,56 @@
+package com.appcloner.replica;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Where the benchmarks keep their inputs, and the byte counts {@link BenchmarkReport} turns
+ * into MB/s. JMH only knows time per operation, so every benchmark records how many bytes one
+ * operation processes under {@code <Class>.<method>:<param>=<value>}.
+ */
+final class BenchEnv {
+    private static final String BYTES_FILE = "bytes.properties";
+
+    private BenchEnv() {}
+
+    static File dir() {
+        File dir = new File(System.getProperty("bench.dir", "build/bench"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    static File keystore() {
+        File ks = new File(System.getProperty("bench.keystore", "../app/src/main/assets/debug.p12"));
+        if (!ks.isFile()) throw new IllegalStateException("Keystore not found: " + ks);
+        return ks;
+    }
+
+    /** A fresh scratch file in {@link #dir()}, deleted when the JVM exits. */
+    static File scratch(String name) {
+        File f = new File(dir(), name);
+        f.deleteOnExit();
+        return f;
+    }
+
+    /** Records that one operation of {@code benchmark} processes {@code bytes} bytes. */
+    static synchronized void recordBytes(String benchmark, String param, long bytes) throws IOException {
+        File file = new File(dir(), BYTES_FILE);
+        Properties props = new Properties();
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                props.load(in);
+            }
+        }
+        props.setProperty(benchmark + ":" + param, Long.toString(bytes));
+        try (OutputStream out = new FileOutputStream(file)) {
+            props.store(out, "Bytes processed per benchmark operation");
+        }
+    }
+}
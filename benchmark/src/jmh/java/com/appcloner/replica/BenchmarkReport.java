@@ -0,0 +1,241 @@
+package com.appcloner.replica;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a JMH result file into a per-stage table of time, throughput and allocation, and
+ * compares it with a checked-in baseline.
+ *
+ * Usage: {@code BenchmarkReport <results.json> <bytes.properties> <baseline.json> <tolerance> [--update | --allow-missing-baseline]}
+ *
+ * A stage regresses when its time or its allocation per operation exceeds the baseline by more
+ * than {@code tolerance} (a fraction, 0.10 = 10%), or allocates when its baseline does not
+ * (under 1 B/op, e.g. the hook pass-through checks). Regressions are listed and the process exits
+ * with status 1. {@code --update} writes the current results as the new baseline instead.
+ *
+ * A missing baseline file also fails the check, so a run cannot pass only because there was
+ * nothing to compare with. {@code --allow-missing-baseline} opts out of that for a run that
+ * only wants the table.
+ */
+public final class BenchmarkReport {
+    private static final String ALLOC_RATE = "gc.alloc.rate";
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+    // Below this many bytes per operation a stage counts as not allocating; the gc profiler
+    // reports a few hundredths of a byte of noise for code that allocates nothing
+    private static final double NO_ALLOCATION = 1;
+
+    private BenchmarkReport() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: BenchmarkReport <results.json> <bytes.properties> <baseline.json> <tolerance> [--update | --allow-missing-baseline]");
+            System.exit(2);
+        }
+        File results = new File(args[0]);
+        File baselineFile = new File(args[2]);
+        double tolerance = Double.parseDouble(args[3]);
+        boolean update = false, allowMissingBaseline = false;
+        for (int i = 4; i < args.length; i++) {
+            if ("--update".equals(args[i])) {
+                update = true;
+            } else if ("--allow-missing-baseline".equals(args[i])) {
+                allowMissingBaseline = true;
+            } else {
+                System.err.println("Unknown option " + args[i]);
+                System.exit(2);
+            }
+        }
+        if (!results.isFile()) {
+            System.err.println("No JMH results at " + results);
+            System.exit(2);
+        }
+
+        Properties bytes = new Properties();
+        File bytesFile = new File(args[1]);
+        if (bytesFile.isFile()) {
+            try (InputStream in = new FileInputStream(bytesFile)) {
+                bytes.load(in);
+            }
+        }
+
+        TreeMap<String, Row> rows = new TreeMap<>();
+        JSONArray runs = new JSONArray(read(results));
+        for (int i = 0; i < runs.length(); i++) {
+            Row row = Row.of(runs.getJSONObject(i), bytes);
+            rows.put(row.key, row);
+        }
+        JSONObject baseline = baselineFile.isFile() ? new JSONObject(read(baselineFile)) : new JSONObject();
+
+        System.out.println(String.format(Locale.US, "%-48s %16s %10s %12s %14s  %s",
+                "stage", "time", "MB/s", "alloc MB/s", "alloc B/op", "vs baseline"));
+        List<String> regressions = new ArrayList<>();
+        for (Row row : rows.values()) {
+            JSONObject base = baseline.optJSONObject(row.key);
+            String delta = "new";
+            if (base != null) {
+                double time = change(row.msPerOp, base.optDouble("msPerOp", Double.NaN));
+                double baseAlloc = base.optDouble("allocBytesPerOp", Double.NaN);
+                double alloc = change(row.allocBytesPerOp, baseAlloc);
+                delta = String.format(Locale.US, "time %+.1f%%, alloc %+.1f%%", time * 100, alloc * 100);
+                if (time > tolerance) {
+                    regressions.add(row.key + ": " + String.format(Locale.US, "%.1f%% slower", time * 100));
+                }
+                if (alloc > tolerance) {
+                    regressions.add(row.key + ": " + String.format(Locale.US, "%.1f%% more allocation", alloc * 100));
+                } else if (baseAlloc < NO_ALLOCATION && row.allocBytesPerOp >= NO_ALLOCATION) {
+                    regressions.add(row.key + ": " + String.format(Locale.US, "allocates %.0f B/op, baseline none", row.allocBytesPerOp));
+                }
+            }
+            System.out.println(String.format(Locale.US, "%-48s %16s %10s %12.1f %14.0f  %s",
+                    row.key, String.format(Locale.US, "%.2f %s", row.score, row.scoreUnit),
+                    Double.isNaN(row.mbPerSec) ? "-" : String.format(Locale.US, "%.1f", row.mbPerSec),
+                    row.allocMbPerSec, row.allocBytesPerOp, delta));
+        }
+
+        if (update) {
+            JSONObject out = new JSONObject();
+            for (Row row : rows.values()) out.put(row.key, row.toJson());
+            // Keep stages that were not part of this run
+            for (String key : baseline.keySet()) {
+                if (!out.has(key)) out.put(key, baseline.get(key));
+            }
+            write(baselineFile, out.toString(2));
+            System.out.println("Baseline updated: " + baselineFile);
+            return;
+        }
+        if (!baselineFile.isFile()) {
+            if (allowMissingBaseline) {
+                System.out.println("No baseline at " + baselineFile + "; not checked (-PallowMissingBaseline)");
+                return;
+            }
+            System.err.println("No baseline at " + baselineFile + "; run with -PupdateBaseline to create one,"
+                    + " or -PallowMissingBaseline to skip the check");
+            System.exit(1);
+        }
+        if (!regressions.isEmpty()) {
+            System.err.println("Regressions beyond " + Math.round(tolerance * 100) + "%:");
+            for (String r : regressions) System.err.println("  " + r);
+            System.exit(1);
+        }
+    }
+
+    /** Relative change of {@code current} over {@code base}; 0 when there is nothing to compare. */
+    private static double change(double current, double base) {
+        if (Double.isNaN(current) || Double.isNaN(base) || base <= 0) return 0;
+        return current / base - 1;
+    }
+
+    private static String read(File file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buf = new byte[8192];
+            for (int n; (n = in.read(buf)) > 0; ) out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Milliseconds in one {@code unit} of a JMH time score such as "ns/op", or NaN for a
+     * throughput or other score that is not a time per operation.
+     */
+    private static double millisPer(String unit) {
+        if (!unit.endsWith("/op")) return Double.NaN;
+        switch (unit.substring(0, unit.length() - 3)) {
+            case "ns": return 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
+            case "us": return 1.0 / TimeUnit.MILLISECONDS.toMicros(1);
+            case "ms": return 1;
+            case "s": return TimeUnit.SECONDS.toMillis(1);
+            case "min": return TimeUnit.MINUTES.toMillis(1);
+            default: return Double.NaN;
+        }
+    }
+
+    /** One benchmark at one parameter value. */
+    private static final class Row {
+        final String key;
+        // As JMH reported it, in the benchmark's own output time unit
+        final double score;
+        final String scoreUnit;
+        // Normalized for the baseline, so a benchmark can change its unit without a false regression
+        final double msPerOp;
+        final double mbPerSec;
+        final double allocMbPerSec;
+        final double allocBytesPerOp;
+
+        private Row(String key, double score, String scoreUnit, double mbPerSec, double allocMbPerSec,
+                    double allocBytesPerOp) {
+            this.key = key;
+            this.score = score;
+            this.scoreUnit = scoreUnit;
+            this.msPerOp = score * millisPer(scoreUnit);
+            this.mbPerSec = mbPerSec;
+            this.allocMbPerSec = allocMbPerSec;
+            this.allocBytesPerOp = allocBytesPerOp;
+        }
+
+        static Row of(JSONObject run, Properties bytes) {
+            // "com.appcloner.replica.ZipBenchmark.copyRaw" -> "ZipBenchmark.copyRaw:sizeMb=100"
+            String name = run.getString("benchmark");
+            int dot = name.lastIndexOf('.', name.lastIndexOf('.') - 1);
+            StringBuilder key = new StringBuilder(name.substring(dot + 1));
+            JSONObject params = run.optJSONObject("params");
+            if (params != null) {
+                String sep = ":";
+                for (String p : new TreeMap<>(params.toMap()).keySet()) {
+                    key.append(sep).append(p).append('=').append(params.getString(p));
+                    sep = ",";
+                }
+            }
+
+            JSONObject primary = run.getJSONObject("primaryMetric");
+            double score = primary.getDouble("score");
+            String unit = primary.getString("scoreUnit");
+            double ms = score * millisPer(unit);
+            String processed = bytes.getProperty(key.toString());
+            double mbPerSec = processed == null || !(ms > 0)
+                    ? Double.NaN
+                    : Long.parseLong(processed) / (1024.0 * 1024.0) / (ms / 1000.0);
+
+            JSONObject secondary = run.optJSONObject("secondaryMetrics");
+            double allocRate = Double.NaN, allocNorm = Double.NaN;
+            if (secondary != null) {
+                JSONObject rate = secondary.optJSONObject(ALLOC_RATE);
+                JSONObject norm = secondary.optJSONObject(ALLOC_NORM);
+                if (rate != null) allocRate = rate.getDouble("score");
+                if (norm != null) allocNorm = norm.getDouble("score");
+            }
+            return new Row(key.toString(), score, unit, mbPerSec, allocRate, allocNorm);
+        }
+
+        JSONObject toJson() {
+            JSONObject o = new JSONObject();
+            if (!Double.isNaN(msPerOp)) o.put("msPerOp", msPerOp);
+            if (!Double.isNaN(mbPerSec)) o.put("mbPerSec", mbPerSec);
+            if (!Double.isNaN(allocBytesPerOp)) o.put("allocBytesPerOp", allocBytesPerOp);
+            return o;
+        }
+    }
+}
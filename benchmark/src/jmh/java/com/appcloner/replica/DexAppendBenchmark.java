@@ -0,0 +1,55 @@
+package com.appcloner.replica;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding the hook DEX to a clone: merged into the app's last DEX by {@link HookDexMerger}, or
+ * written as its own compressed classesN.dex entry.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DexAppendBenchmark {
+    @Param({"500", "3000"})
+    public int appClasses;
+
+    private byte[] appDex;
+    private File hookDex;
+    private File out;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        appDex = SyntheticApk.appDex(appClasses);
+        hookDex = BenchEnv.scratch("hook.dex");
+        SyntheticApk.writeFile(hookDex, SyntheticApk.hookDex());
+        out = BenchEnv.scratch("dex-out.zip");
+        if (HookDexMerger.merge(appDex, hookDex) == null) {
+            throw new IllegalStateException("Synthetic hook DEX does not merge into the app DEX");
+        }
+        String param = "appClasses=" + appClasses;
+        BenchEnv.recordBytes("DexAppendBenchmark.merge", param, appDex.length + hookDex.length());
+        BenchEnv.recordBytes("DexAppendBenchmark.separate", param, hookDex.length());
+    }
+
+    @Benchmark
+    public byte[] merge() throws IOException {
+        return HookDexMerger.merge(appDex, hookDex);
+    }
+
+    @Benchmark
+    public long separate() throws IOException {
+        try (ApkZipWriter zip = new ApkZipWriter(out)) {
+            zip.writeEntry("classes2.dex", hookDex, true);
+        }
+        return out.length();
+    }
+}
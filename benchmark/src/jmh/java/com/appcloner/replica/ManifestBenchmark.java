@@ -0,0 +1,78 @@
+package com.appcloner.replica;
+
+import com.reandroid.arsc.chunk.xml.ResXmlAttribute;
+import com.reandroid.arsc.chunk.xml.ResXmlDocument;
+import com.reandroid.arsc.chunk.xml.ResXmlElement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manifest patching through ARSCLib, with the same calls ApkProcessor makes: parse, rename
+ * the package, inject the provider and receivers, scan the activities and serialize.
+ * {@code activities} stands in for app size, since the manifest does not grow with the APK.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ManifestBenchmark {
+    private static final int ID_ANDROID_NAME        = 0x01010003;
+    private static final int ID_ANDROID_EXPORTED    = 0x01010010;
+    private static final int ID_ANDROID_AUTHORITIES = 0x01010018;
+
+    @Param({"50", "300", "2000"})
+    public int activities;
+
+    private byte[] manifest;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        manifest = SyntheticApk.manifest(activities);
+        BenchEnv.recordBytes("ManifestBenchmark.patch", "activities=" + activities, manifest.length);
+    }
+
+    @Benchmark
+    public byte[] patch() throws IOException {
+        ResXmlDocument doc = new ResXmlDocument();
+        doc.readBytes(new ByteArrayInputStream(manifest));
+        ResXmlElement root = doc.getDocumentElement();
+        ResXmlAttribute pkg = root.searchAttributeByName("package");
+        pkg.setValueAsString(SyntheticApk.PACKAGE + ".clone");
+
+        ResXmlElement app = root.getElement("application");
+        ResXmlElement prov = app.newElement("provider");
+        prov.getOrCreateAndroidAttribute("name", ID_ANDROID_NAME)
+                .setValueAsString("com.applisto.appcloner.DefaultProvider");
+        prov.getOrCreateAndroidAttribute("authorities", ID_ANDROID_AUTHORITIES)
+                .setValueAsString(SyntheticApk.PACKAGE + ".clone.com.applisto.appcloner.DefaultProvider");
+        prov.getOrCreateAndroidAttribute("exported", ID_ANDROID_EXPORTED)
+                .setValueAsBoolean(true);
+
+        ResXmlElement receiver = app.newElement("receiver");
+        receiver.getOrCreateAndroidAttribute("name", ID_ANDROID_NAME)
+                .setValueAsString("com.applisto.appcloner.DataExportReceiver");
+        receiver.getOrCreateAndroidAttribute("exported", ID_ANDROID_EXPORTED)
+                .setValueAsBoolean(true);
+        receiver.newElement("intent-filter").newElement("action")
+                .getOrCreateAndroidAttribute("name", ID_ANDROID_NAME)
+                .setValueAsString("com.applisto.appcloner.ACTION_EXPORT_DATA");
+
+        for (ResXmlElement a : app.listElements("activity")) {
+            ResXmlAttribute name = a.searchAttributeByResourceId(ID_ANDROID_NAME);
+            if (name != null && name.getValueAsString().endsWith("Activity0")) {
+                a.getOrCreateAndroidAttribute("exported", ID_ANDROID_EXPORTED).setValueAsBoolean(true);
+            }
+        }
+
+        doc.refresh();
+        return doc.getBytes();
+    }
+}
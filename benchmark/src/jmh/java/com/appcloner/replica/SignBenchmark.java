@@ -0,0 +1,84 @@
+package com.appcloner.replica;
+
+import com.android.apksig.ApkSigner;
+import com.android.apksig.DefaultApkSignerEngine;
+import com.android.apksig.util.DataSources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * v1 + v2 signing with apksig, set up like ApkProcessor.signApk: memory-mapped input, digests
+ * on {@link SigningExecutor} threads.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SignBenchmark {
+    private static final String ALIAS = "key0";
+    private static final String PASSWORD = "android";
+
+    @Param({"10", "100", "500"})
+    public int sizeMb;
+
+    private DefaultApkSignerEngine.SignerConfig signer;
+    private File unsigned;
+    private File out;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        KeyStore ks = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(BenchEnv.keystore())) {
+            ks.load(in, PASSWORD.toCharArray());
+        }
+        PrivateKey key = (PrivateKey) ks.getKey(ALIAS, PASSWORD.toCharArray());
+        X509Certificate cert = (X509Certificate) ks.getCertificate(ALIAS);
+        signer = new DefaultApkSignerEngine.SignerConfig.Builder(
+                ALIAS, key, Collections.singletonList(cert)).build();
+
+        // Signing input as the pipeline produces it: rewritten by ApkZipWriter, so aligned
+        unsigned = BenchEnv.scratch("sign-in-" + sizeMb + ".apk");
+        try (ApkChannelReader in = ZipBenchmark.open(SyntheticApk.get(sizeMb));
+             ApkZipWriter zip = new ApkZipWriter(unsigned)) {
+            for (ApkEntry e = in.next(); e != null; e = in.next()) in.copyRawTo(zip);
+        }
+        out = BenchEnv.scratch("sign-out-" + sizeMb + ".apk");
+        BenchEnv.recordBytes("SignBenchmark.sign", "sizeMb=" + sizeMb, unsigned.length());
+    }
+
+    @Benchmark
+    public long sign() throws Exception {
+        try (RandomAccessFile inFile = new RandomAccessFile(unsigned, "r");
+             DefaultApkSignerEngine engine = new DefaultApkSignerEngine.Builder(
+                     Collections.singletonList(signer), 21)
+                     .setV1SigningEnabled(true)
+                     .setV2SigningEnabled(true)
+                     .setV3SigningEnabled(false)
+                     .build()) {
+            engine.setExecutor(new SigningExecutor(Runtime.getRuntime().availableProcessors()));
+            FileChannel channel = inFile.getChannel();
+            new ApkSigner.Builder(engine)
+                    .setInputApk(DataSources.asDataSource(
+                            channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())))
+                    .setOutputApk(out)
+                    .build()
+                    .sign();
+        }
+        return out.length();
+    }
+}
@@ -0,0 +1,408 @@
+package com.appcloner.replica;
+
+import org.jf.dexlib2.AccessFlags;
+import org.jf.dexlib2.Opcode;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.immutable.ImmutableClassDef;
+import org.jf.dexlib2.immutable.ImmutableDexFile;
+import org.jf.dexlib2.immutable.ImmutableMethod;
+import org.jf.dexlib2.immutable.ImmutableMethodImplementation;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction10x;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction35c;
+import org.jf.dexlib2.immutable.reference.ImmutableMethodReference;
+import org.jf.dexlib2.writer.io.MemoryDataStore;
+import org.jf.dexlib2.writer.pool.DexPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates a deterministic APK of roughly the requested size with the entry mix of a real
+ * app: a binary manifest, several DEX files (the last one a real DEX for the merge
+ * benchmark), a stored resources.arsc, thousands of stored images, compressed layouts and
+ * assets, and stored native libraries. Compressible entries use word-like text so deflate
+ * sees realistic ratios.
+ *
+ * APKs are cached in the benchmark directory; bump {@link #VERSION} when the mix changes.
+ */
+final class SyntheticApk {
+    static final String PACKAGE = "com.example.synthetic";
+    private static final int VERSION = 1;
+    private static final int ACTIVITIES = 300;
+
+    private static final String[] WORDS = {
+            "android", "view", "layout", "width", "height", "match_parent", "wrap_content",
+            "string", "color", "primary", "button", "text", "image", "onClick", "public",
+            "static", "final", "return", "void", "int", "class", "import", "package", "java",
+            "lang", "Object", "super", "this", "new", "null", "true", "false", "if", "else",
+    };
+
+    private SyntheticApk() {}
+
+    /** The cached APK of {@code sizeMb} MiB, generated on first use. */
+    static File get(int sizeMb) throws IOException {
+        File apk = new File(BenchEnv.dir(), "synthetic-v" + VERSION + "-" + sizeMb + "mb.apk");
+        if (!apk.isFile()) {
+            File tmp = new File(apk.getPath() + ".tmp");
+            write(tmp, sizeMb * 1024L * 1024L, sizeMb);
+            if (!tmp.renameTo(apk)) throw new IOException("Failed to move " + tmp + " to " + apk);
+        }
+        return apk;
+    }
+
+    private static void write(File out, long target, long seed) throws IOException {
+        Random rnd = new Random(seed);
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(out))) {
+            deflated(zip, "AndroidManifest.xml", manifest(ACTIVITIES));
+
+            // ~15% DEX: a few pseudo DEX files and one real last DEX
+            long dexBudget = target * 15 / 100;
+            byte[] realDex = appDex(Math.max(200, (int) (dexBudget / 20 / 1024)));
+            int dexCount = (int) Math.max(1, Math.min(8, dexBudget / (8L * 1024 * 1024)));
+            for (int i = 1; i <= dexCount; i++) {
+                deflated(zip, i == 1 ? "classes.dex" : "classes" + i + ".dex",
+                        text(rnd, (int) Math.max(64 * 1024, (dexBudget - realDex.length) / dexCount)));
+            }
+            deflated(zip, "classes" + (dexCount + 1) + ".dex", realDex);
+
+            stored(zip, "resources.arsc", noise(rnd, (int) Math.max(64 * 1024, target * 3 / 100)));
+
+            // ~25% images: incompressible, stored
+            long images = target * 25 / 100;
+            for (int i = 0; images > 0; i++) {
+                int size = 2 * 1024 + rnd.nextInt(200 * 1024);
+                stored(zip, "res/drawable-xxhdpi/img_" + i + ".png", noise(rnd, size));
+                images -= size;
+            }
+
+            // ~5% layouts: small, compressible
+            long layouts = target * 5 / 100;
+            for (int i = 0; layouts > 0; i++) {
+                int size = 512 + rnd.nextInt(4 * 1024);
+                deflated(zip, "res/layout/layout_" + i + ".xml", text(rnd, size));
+                layouts -= size;
+            }
+
+            // ~20% assets: mixed text and binary
+            long assets = target * 20 / 100;
+            for (int i = 0; assets > 0; i++) {
+                int size = 16 * 1024 + rnd.nextInt(1024 * 1024);
+                boolean binary = i % 3 == 0;
+                deflated(zip, "assets/data_" + i + (binary ? ".bin" : ".json"),
+                        binary ? noise(rnd, size) : text(rnd, size));
+                assets -= size;
+            }
+
+            // ~30% native libraries, stored as on modern APKs
+            long libs = target * 30 / 100;
+            String[] abis = {"arm64-v8a", "armeabi-v7a"};
+            for (int i = 0; libs > 0; i++) {
+                int size = (int) Math.min(libs, 256 * 1024 + rnd.nextInt(8 * 1024 * 1024));
+                stored(zip, "lib/" + abis[i % 2] + "/libsynthetic" + i + ".so", library(rnd, size));
+                libs -= size;
+            }
+        }
+    }
+
+    /** A real DEX with {@code classes} classes, used as the app's last DEX. */
+    static byte[] appDex(int classes) throws IOException {
+        return dex("Lcom/example/synthetic/C", classes, 10);
+    }
+
+    /** A hook-sized DEX that does not clash with {@link #appDex}. */
+    static byte[] hookDex() throws IOException {
+        return dex("Lcom/applisto/appcloner/H", 60, 20);
+    }
+
+    private static byte[] dex(String prefix, int classes, int methodsPerClass) throws IOException {
+        List<ClassDef> defs = new ArrayList<>(classes);
+        for (int c = 0; c < classes; c++) {
+            String type = prefix + c + ";";
+            List<ImmutableMethod> methods = new ArrayList<>(methodsPerClass);
+            for (int m = 0; m < methodsPerClass; m++) {
+                // Each method calls the next one so the DEX has method references
+                List<ImmutableInstruction> code = new ArrayList<>(2);
+                code.add(new ImmutableInstruction35c(Opcode.INVOKE_STATIC, 0, 0, 0, 0, 0, 0,
+                        new ImmutableMethodReference(type, "m" + ((m + 1) % methodsPerClass),
+                                Collections.<String>emptyList(), "V")));
+                code.add(new ImmutableInstruction10x(Opcode.RETURN_VOID));
+                methods.add(new ImmutableMethod(type, "m" + m, null, "V",
+                        AccessFlags.PUBLIC.getValue() | AccessFlags.STATIC.getValue(), null, null,
+                        new ImmutableMethodImplementation(1, code, null, null)));
+            }
+            defs.add(new ImmutableClassDef(type, AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;",
+                    null, null, null, null, methods));
+        }
+        MemoryDataStore store = new MemoryDataStore();
+        DexPool.writeTo(store, new ImmutableDexFile(Opcodes.forApi(21), defs));
+        return store.getData();
+    }
+
+    /** Binary AndroidManifest.xml with {@code activities} activities. */
+    static byte[] manifest(int activities) {
+        BinaryXml xml = new BinaryXml();
+        xml.start("manifest")
+                .attr("package", PACKAGE)
+                .androidInt("versionCode", 0x0101021b, 1)
+                .androidString("versionName", 0x0101021c, "1.0");
+        xml.start("uses-sdk")
+                .androidInt("minSdkVersion", 0x0101020c, 21)
+                .androidInt("targetSdkVersion", 0x01010270, 33);
+        xml.end();
+        xml.start("application")
+                .androidString("label", 0x01010001, "Synthetic")
+                .androidString("name", 0x01010003, PACKAGE + ".App");
+        for (int i = 0; i < activities; i++) {
+            xml.start("activity")
+                    .androidString("name", 0x01010003, PACKAGE + ".Activity" + i)
+                    .androidBoolean("exported", 0x01010010, i == 0);
+            xml.end();
+        }
+        xml.end();
+        xml.end();
+        return xml.toByteArray();
+    }
+
+    private static byte[] text(Random rnd, int size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 16);
+        while (out.size() < size) {
+            byte[] w = WORDS[rnd.nextInt(WORDS.length)].getBytes(StandardCharsets.US_ASCII);
+            out.write(w, 0, w.length);
+            out.write(rnd.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        byte[] b = out.toByteArray();
+        return b.length == size ? b : Arrays.copyOf(b, size);
+    }
+
+    private static byte[] noise(Random rnd, int size) {
+        byte[] b = new byte[size];
+        rnd.nextBytes(b);
+        return b;
+    }
+
+    /** Random code with zero-filled sections, like a stripped shared library. */
+    private static byte[] library(Random rnd, int size) {
+        byte[] b = noise(rnd, size);
+        for (int off = 0; off < size; off += 64 * 1024) {
+            int zeros = Math.min(size - off, 4 * 1024 + rnd.nextInt(16 * 1024));
+            Arrays.fill(b, off, off + zeros, (byte) 0);
+        }
+        return b;
+    }
+
+    private static void deflated(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        ZipEntry e = new ZipEntry(name);
+        e.setMethod(ZipEntry.DEFLATED);
+        zip.putNextEntry(e);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    private static void stored(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        ZipEntry e = new ZipEntry(name);
+        e.setMethod(ZipEntry.STORED);
+        e.setSize(data.length);
+        e.setCompressedSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        e.setCrc(crc.getValue());
+        zip.putNextEntry(e);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    /**
+     * Minimal Android binary XML encoder: UTF-16 string pool, resource map for the android
+     * attributes, one android namespace and plain elements. Enough for ARSCLib and apksig.
+     */
+    static final class BinaryXml {
+        private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+        private static final int TYPE_STRING = 0x03;
+        private static final int TYPE_INT_DEC = 0x10;
+        private static final int TYPE_INT_BOOLEAN = 0x12;
+
+        // Attribute names with a resource id come first in the pool, in resource map order
+        private final Map<String, Integer> resIds = new LinkedHashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Object[]> events = new ArrayList<>();
+        private final List<String> open = new ArrayList<>();
+        private List<int[]> pendingAttrs;
+        private List<String> pendingRaw;
+
+        BinaryXml start(String tag) {
+            flush();
+            open.add(tag);
+            pendingAttrs = new ArrayList<>();
+            pendingRaw = new ArrayList<>();
+            events.add(new Object[]{"start", tag, pendingAttrs, pendingRaw});
+            return this;
+        }
+
+        BinaryXml end() {
+            flush();
+            events.add(new Object[]{"end", open.remove(open.size() - 1)});
+            return this;
+        }
+
+        BinaryXml attr(String name, String value) {
+            return add(false, name, 0, TYPE_STRING, value, 0);
+        }
+
+        BinaryXml androidString(String name, int resId, String value) {
+            return add(true, name, resId, TYPE_STRING, value, 0);
+        }
+
+        BinaryXml androidInt(String name, int resId, int value) {
+            return add(true, name, resId, TYPE_INT_DEC, null, value);
+        }
+
+        BinaryXml androidBoolean(String name, int resId, boolean value) {
+            return add(true, name, resId, TYPE_INT_BOOLEAN, null, value ? -1 : 0);
+        }
+
+        private BinaryXml add(boolean android, String name, int resId, int type, String raw, int data) {
+            if (android) resIds.put(name, resId);
+            // Filled in once the string pool is laid out: ns, name, raw, type, data, resId
+            pendingAttrs.add(new int[]{android ? 1 : 0, 0, 0, type, data, resId});
+            pendingRaw.add(name + "\u0000" + (raw != null ? raw : ""));
+            return this;
+        }
+
+        private void flush() {
+            pendingAttrs = null;
+            pendingRaw = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        byte[] toByteArray() {
+            List<String> pool = new ArrayList<>(resIds.keySet());
+            Map<String, Integer> index = new LinkedHashMap<>();
+            for (int i = 0; i < pool.size(); i++) index.put(pool.get(i), i);
+            intern(pool, index, "android");
+            intern(pool, index, ANDROID_NS);
+            for (Object[] ev : events) {
+                intern(pool, index, (String) ev[1]);
+                if ("start".equals(ev[0])) {
+                    List<int[]> attrs = (List<int[]>) ev[2];
+                    List<String> raw = (List<String>) ev[3];
+                    for (int i = 0; i < attrs.size(); i++) {
+                        int[] a = attrs.get(i);
+                        String[] nv = raw.get(i).split("\u0000", -1);
+                        a[1] = intern(pool, index, nv[0]);
+                        a[2] = a[3] == TYPE_STRING ? intern(pool, index, nv[1]) : -1;
+                        if (a[3] == TYPE_STRING) a[4] = a[2];
+                    }
+                    // Android expects attributes ordered by resource id
+                    attrs.sort((x, y) -> Integer.compareUnsigned(x[5], y[5]));
+                }
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeStringPool(body, pool);
+            ByteBuffer map = le(8 + 4 * resIds.size());
+            map.putShort((short) 0x0180).putShort((short) 8).putInt(map.capacity());
+            for (int id : resIds.values()) map.putInt(id);
+            body.write(map.array(), 0, map.capacity());
+
+            int prefix = index.get("android"), uri = index.get(ANDROID_NS);
+            body.write(namespace(0x0100, prefix, uri), 0, 24);
+            for (Object[] ev : events) {
+                int name = index.get((String) ev[1]);
+                if ("start".equals(ev[0])) {
+                    List<int[]> attrs = (List<int[]>) ev[2];
+                    ByteBuffer b = le(36 + 20 * attrs.size());
+                    b.putShort((short) 0x0102).putShort((short) 16).putInt(b.capacity());
+                    b.putInt(1).putInt(-1);
+                    b.putInt(-1).putInt(name);
+                    b.putShort((short) 20).putShort((short) 20).putShort((short) attrs.size());
+                    b.putShort((short) 0).putShort((short) 0).putShort((short) 0);
+                    for (int[] a : attrs) {
+                        b.putInt(a[0] == 1 ? uri : -1).putInt(a[1]).putInt(a[2]);
+                        b.putShort((short) 8).put((byte) 0).put((byte) a[3]).putInt(a[4]);
+                    }
+                    body.write(b.array(), 0, b.capacity());
+                } else {
+                    ByteBuffer b = le(24);
+                    b.putShort((short) 0x0103).putShort((short) 16).putInt(24);
+                    b.putInt(1).putInt(-1).putInt(-1).putInt(name);
+                    body.write(b.array(), 0, 24);
+                }
+            }
+            body.write(namespace(0x0101, prefix, uri), 0, 24);
+
+            ByteBuffer header = le(8);
+            header.putShort((short) 0x0003).putShort((short) 8).putInt(8 + body.size());
+            byte[] bytes = body.toByteArray();
+            byte[] out = Arrays.copyOf(header.array(), 8 + bytes.length);
+            System.arraycopy(bytes, 0, out, 8, bytes.length);
+            return out;
+        }
+
+        private static int intern(List<String> pool, Map<String, Integer> index, String s) {
+            Integer i = index.get(s);
+            if (i != null) return i;
+            index.put(s, pool.size());
+            pool.add(s);
+            return pool.size() - 1;
+        }
+
+        private static byte[] namespace(int type, int prefix, int uri) {
+            ByteBuffer b = le(24);
+            b.putShort((short) type).putShort((short) 16).putInt(24);
+            b.putInt(1).putInt(-1).putInt(prefix).putInt(uri);
+            return b.array();
+        }
+
+        private static void writeStringPool(ByteArrayOutputStream out, List<String> pool) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int[] offsets = new int[pool.size()];
+            for (int i = 0; i < pool.size(); i++) {
+                offsets[i] = data.size();
+                String s = pool.get(i);
+                ByteBuffer b = le(2 + 2 * s.length() + 2);
+                b.putShort((short) s.length());
+                for (int c = 0; c < s.length(); c++) b.putChar(s.charAt(c));
+                b.putShort((short) 0);
+                data.write(b.array(), 0, b.capacity());
+            }
+            while (data.size() % 4 != 0) data.write(0);
+            int headerSize = 28;
+            int stringsStart = headerSize + 4 * pool.size();
+            ByteBuffer b = le(stringsStart);
+            b.putShort((short) 0x0001).putShort((short) headerSize).putInt(stringsStart + data.size());
+            b.putInt(pool.size()).putInt(0).putInt(0).putInt(stringsStart).putInt(0);
+            for (int off : offsets) b.putInt(off);
+            out.write(b.array(), 0, b.capacity());
+            out.write(data.toByteArray(), 0, data.size());
+        }
+
+        private static ByteBuffer le(int size) {
+            return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /** Writes {@code data} to {@code file}. */
+    static void writeFile(File file, byte[] data) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.appcloner.replica;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and rewriting the input APK: walking the entries, copying them raw the way
+ * unchanged entries are cloned, and inflating plus re-deflating all of them.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ZipBenchmark {
+    @Param({"10", "100", "500"})
+    public int sizeMb;
+
+    private File apk;
+    private File out;
+    private final byte[] buf = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        apk = SyntheticApk.get(sizeMb);
+        out = BenchEnv.scratch("zip-out-" + sizeMb + ".apk");
+        long stored;
+        try (ApkChannelReader in = open(apk)) {
+            stored = in.totalStoredBytes();
+        }
+        BenchEnv.recordBytes("ZipBenchmark.readEntries", "sizeMb=" + sizeMb, stored);
+        BenchEnv.recordBytes("ZipBenchmark.copyRaw", "sizeMb=" + sizeMb, stored);
+        BenchEnv.recordBytes("ZipBenchmark.recompress", "sizeMb=" + sizeMb, uncompressedSize(apk));
+    }
+
+    @Benchmark
+    public void readEntries(Blackhole bh) throws IOException {
+        try (ApkChannelReader in = open(apk)) {
+            for (ApkEntry e = in.next(); e != null; e = in.next()) {
+                InputStream raw = in.rawData();
+                for (int n; (n = raw.read(buf)) > 0; ) bh.consume(n);
+            }
+        }
+    }
+
+    @Benchmark
+    public long copyRaw() throws IOException {
+        try (ApkChannelReader in = open(apk); ApkZipWriter zip = new ApkZipWriter(out)) {
+            for (ApkEntry e = in.next(); e != null; e = in.next()) {
+                in.copyRawTo(zip);
+            }
+        }
+        return out.length();
+    }
+
+    @Benchmark
+    public long recompress() throws IOException {
+        try (ApkChannelReader in = open(apk); ApkZipWriter zip = new ApkZipWriter(out)) {
+            zip.setParallelism(Runtime.getRuntime().availableProcessors(), 64L * 1024 * 1024);
+            for (ApkEntry e = in.next(); e != null; e = in.next()) {
+                zip.writeEntry(e.name, in.readData(), !e.isStored());
+            }
+        }
+        return out.length();
+    }
+
+    static ApkChannelReader open(File apk) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(apk, "r");
+        return new ApkChannelReader(file.getChannel(), file, null);
+    }
+
+    private static long uncompressedSize(File apk) throws IOException {
+        long total = 0;
+        try (ApkChannelReader in = open(apk)) {
+            for (ApkEntry e = in.next(); e != null; e = in.next()) total += e.size;
+        }
+        return total;
+    }
+}
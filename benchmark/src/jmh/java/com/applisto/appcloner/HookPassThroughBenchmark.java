@@ -0,0 +1,79 @@
+package com.applisto.appcloner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The checks hooked methods make on every call, compiled from the hook sources: a
+ * SystemProperties read without an override, and a request header or URL that does not name
+ * the clone. Both must allocate nothing; run with the gc profiler (the default here) and read
+ * {@code gc.alloc.rate.norm}, which BenchmarkReport shows as alloc B/op. The hit cases are
+ * for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class HookPassThroughBenchmark {
+    private PropertyOverrides overrides;
+    private ValueReplacer replacer;
+
+    // Fields, not constants, so the JIT cannot fold the lookups away
+    private String missingProperty = "ro.debuggable";
+    private String overriddenProperty = "ro.product.model";
+    private String otherHeader = "Accept-Encoding";
+    private String userAgentHeader = "User-Agent";
+    private String plainUserAgent = "Mozilla/5.0 (Linux; Android 13; Pixel 7 Build/TQ3A.230805.001; wv) "
+            + "AppleWebKit/537.36 (KHTML, like Gecko) Version/4.0 Chrome/116.0.5845.163 Mobile Safari/537.36";
+    private String plainUrl = "https://api.example.com/v2/feed?locale=en_US&limit=20&cursor=a8f3c1";
+    private String cloneUrl = "https://api.example.com/v2/feed?app=com.example.app.clone1&v=1203";
+
+    @Setup(Level.Trial)
+    public void setup() {
+        overrides = new PropertyOverrides();
+        String[] keys = {
+                "ro.product.manufacturer", "ro.product.model", "ro.product.name", "ro.product.brand",
+                "ro.product.device", "ro.build.fingerprint", "ro.build.display.id", "ro.product.board",
+                "ro.board.platform", "ro.hardware", "ro.build.version.sdk", "ro.build.version.release",
+        };
+        for (String key : keys) overrides.put(key, "spoofed-" + key);
+        replacer = new ValueReplacer("com.example.app.clone1", "com.example.app", 1203, 1204, "3.1.0", "3.1.0-clone");
+    }
+
+    @Benchmark
+    public String propertyMiss() {
+        return overrides.lookup(missingProperty);
+    }
+
+    @Benchmark
+    public String propertyHit() {
+        return overrides.lookup(overriddenProperty);
+    }
+
+    @Benchmark
+    public boolean otherHeader() {
+        return ValueReplacer.isIdentityHeader(otherHeader);
+    }
+
+    @Benchmark
+    public String userAgentMiss() {
+        return ValueReplacer.isIdentityHeader(userAgentHeader) ? replacer.replace(plainUserAgent) : plainUserAgent;
+    }
+
+    @Benchmark
+    public String urlMiss() {
+        return replacer.replace(plainUrl);
+    }
+
+    @Benchmark
+    public String urlHit() {
+        return replacer.replace(cloneUrl);
+    }
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+/** JVM stand-in for {@code android.os.Build}, describing the host instead of a device. */
+public final class Build {
+    public static final String MANUFACTURER = System.getProperty("java.vendor", "");
+    public static final String MODEL = System.getProperty("os.name", "") + " " + System.getProperty("os.arch", "");
+
+    private Build() {}
+
+    public static final class VERSION {
+        public static final int SDK_INT = 0;
+
+        private VERSION() {}
+    }
+}
@@ -0,0 +1,28 @@
+package android.util;
+
+/**
+ * JVM stand-in for {@code android.util.Log} so the pipeline sources compile and run in the
+ * benchmark. Warnings and errors go to stderr; everything else is dropped to keep logging
+ * out of the measurements.
+ */
+public final class Log {
+    private Log() {}
+
+    public static int v(String tag, String msg) { return 0; }
+    public static int d(String tag, String msg) { return 0; }
+    public static int d(String tag, String msg, Throwable tr) { return 0; }
+    public static int i(String tag, String msg) { return 0; }
+    public static int i(String tag, String msg, Throwable tr) { return 0; }
+
+    public static int w(String tag, String msg) { return print("W", tag, msg, null); }
+    public static int w(String tag, String msg, Throwable tr) { return print("W", tag, msg, tr); }
+    public static int w(String tag, Throwable tr) { return print("W", tag, "", tr); }
+    public static int e(String tag, String msg) { return print("E", tag, msg, null); }
+    public static int e(String tag, String msg, Throwable tr) { return print("E", tag, msg, tr); }
+
+    private static int print(String level, String tag, String msg, Throwable tr) {
+        System.err.println(level + "/" + tag + ": " + msg);
+        if (tr != null) tr.printStackTrace();
+        return 0;
+    }
+}
@@ -0,0 +1,170 @@
+package com.appcloner.replica;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Entry data offsets of APKs written by ApkZipWriter, read back from the local headers: STORED
+ * entries on 4 bytes, STORED {@code lib/**.so} on the page size, DEFLATED entries anywhere.
+ */
+public class ApkZipWriterAlignmentTest {
+    private static final int LOCAL_HEADER_LEN = 30;
+
+    private final Random random = new Random(42);
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (File f : files) f.delete();
+    }
+
+    @Test
+    public void writtenEntriesAre4KAligned() throws IOException {
+        checkWrittenEntries(ApkZipWriter.PAGE_ALIGNMENT_4K);
+    }
+
+    @Test
+    public void writtenEntriesAre16KAligned() throws IOException {
+        checkWrittenEntries(ApkZipWriter.PAGE_ALIGNMENT_16K);
+    }
+
+    @Test
+    public void rawCopiesAreRealigned() throws IOException {
+        File in = writeSample(ApkZipWriter.PAGE_ALIGNMENT_4K);
+        File out = tempFile();
+        try (RandomAccessFile file = new RandomAccessFile(in, "r");
+             ApkChannelReader reader = new ApkChannelReader(file.getChannel(), file, null);
+             ApkZipWriter zip = new ApkZipWriter(out)) {
+            zip.setNativeLibAlignment(ApkZipWriter.PAGE_ALIGNMENT_16K);
+            // Shifts every copied entry by an odd number of bytes
+            zip.writeEntry("a", random(3), false);
+            for (ApkEntry e = reader.next(); e != null; e = reader.next()) {
+                reader.copyRawTo(zip);
+            }
+        }
+        assertAligned(out, ApkZipWriter.PAGE_ALIGNMENT_16K);
+        assertSameContent(in, out);
+    }
+
+    private void checkWrittenEntries(int pageAlignment) throws IOException {
+        File apk = writeSample(pageAlignment);
+        int checked = assertAligned(apk, pageAlignment);
+        assertEquals(10, checked);
+    }
+
+    /** Names of every length mod 4 and sizes that leave the next header unaligned. */
+    private File writeSample(int pageAlignment) throws IOException {
+        File apk = tempFile();
+        try (ApkZipWriter zip = new ApkZipWriter(apk)) {
+            zip.setNativeLibAlignment(pageAlignment);
+            zip.writeEntry("AndroidManifest.xml", random(1001), true);
+            zip.writeEntry("resources.arsc", random(4097), false);
+            zip.writeEntry("res/a.png", random(13), false);
+            zip.writeEntry("res/ab.png", random(14), false);
+            zip.writeEntry("classes.dex", random(70_000), true);
+            zip.writeEntry("lib/arm64-v8a/libfoo.so", random(5000), false);
+            zip.writeEntry("lib/x86/libb.so", random(1), false);
+            zip.writeEntry("lib/x86/libdeflated.so", random(3000), true);
+            zip.writeEntry("assets/empty.bin", new byte[0], false);
+            zip.writeEntry("lib/armeabi-v7a/libbar.so", random(8191), false);
+        }
+        return apk;
+    }
+
+    /**
+     * Checks {@code (localHeaderOffset + 30 + nameLen + extraLen) % align == 0} for every entry.
+     *
+     * @return the number of entries checked
+     */
+    private static int assertAligned(File apk, int pageAlignment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(apk, "r")) {
+            ByteBuffer eocd = read(file, file.length() - 22, 22);
+            int count = eocd.getShort(10) & 0xFFFF;
+            long cdOffset = eocd.getInt(16) & 0xFFFFFFFFL;
+            long pos = cdOffset;
+            for (int i = 0; i < count; i++) {
+                ByteBuffer cd = read(file, pos, 46);
+                assertEquals(0x02014b50, cd.getInt(0));
+                int method = cd.getShort(10) & 0xFFFF;
+                int nameLen = cd.getShort(28) & 0xFFFF;
+                int cdExtraLen = cd.getShort(30) & 0xFFFF;
+                int commentLen = cd.getShort(32) & 0xFFFF;
+                long localOffset = cd.getInt(42) & 0xFFFFFFFFL;
+                String name = new String(read(file, pos + 46, nameLen).array(), "UTF-8");
+
+                ByteBuffer local = read(file, localOffset, LOCAL_HEADER_LEN);
+                assertEquals(0x04034b50, local.getInt(0));
+                assertEquals(nameLen, local.getShort(26) & 0xFFFF);
+                int extraLen = local.getShort(28) & 0xFFFF;
+                long dataOffset = localOffset + LOCAL_HEADER_LEN + nameLen + extraLen;
+
+                int align;
+                if (method == ZipEntry.DEFLATED) {
+                    align = 1;
+                } else {
+                    assertEquals(name, ZipEntry.STORED, method);
+                    align = ApkZipWriter.isNativeLib(name) ? pageAlignment : ApkZipWriter.STORED_ALIGNMENT;
+                }
+                assertEquals(name + " data at " + dataOffset + ", alignment " + align, 0, dataOffset % align);
+                pos += 46 + nameLen + cdExtraLen + commentLen;
+            }
+            return count;
+        }
+    }
+
+    private static void assertSameContent(File expected, File actual) throws IOException {
+        try (ZipFile a = new ZipFile(expected); ZipFile b = new ZipFile(actual)) {
+            for (ZipEntry e : Collections.list(a.entries())) {
+                ZipEntry copy = b.getEntry(e.getName());
+                assertTrue(e.getName(), copy != null);
+                assertEquals(e.getName(), e.getMethod(), copy.getMethod());
+                assertArrayEquals(e.getName(), readAll(a, e), readAll(b, copy));
+            }
+        }
+    }
+
+    private static byte[] readAll(ZipFile zip, ZipEntry e) throws IOException {
+        try (InputStream in = zip.getInputStream(e)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static ByteBuffer read(RandomAccessFile file, long offset, int len) throws IOException {
+        byte[] b = new byte[len];
+        file.seek(offset);
+        file.readFully(b);
+        return ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private byte[] random(int size) {
+        // Half random, half zeros: compressible, but not to nothing
+        byte[] b = new byte[size];
+        byte[] noise = new byte[size / 2];
+        random.nextBytes(noise);
+        System.arraycopy(noise, 0, b, 0, noise.length);
+        return b;
+    }
+
+    private File tempFile() throws IOException {
+        File f = File.createTempFile("align", ".apk");
+        files.add(f);
+        return f;
+    }
+}
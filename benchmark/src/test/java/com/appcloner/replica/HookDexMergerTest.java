@@ -0,0 +1,177 @@
+package com.appcloner.replica;
+
+import org.jf.dexlib2.AccessFlags;
+import org.jf.dexlib2.Opcode;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.raw.HeaderItem;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.immutable.ImmutableClassDef;
+import org.jf.dexlib2.immutable.ImmutableDexFile;
+import org.jf.dexlib2.immutable.ImmutableMethod;
+import org.jf.dexlib2.immutable.ImmutableMethodImplementation;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction10x;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction21c;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction35c;
+import org.jf.dexlib2.immutable.reference.ImmutableFieldReference;
+import org.jf.dexlib2.immutable.reference.ImmutableMethodReference;
+import org.jf.dexlib2.writer.io.MemoryDataStore;
+import org.jf.dexlib2.writer.pool.DexPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Merges small generated DEX files with {@link HookDexMerger} and rereads the result with
+ * dexlib2.
+ */
+public class HookDexMergerTest {
+    private static final String APP = "Lcom/example/app/C";
+    private static final String HOOK = "Lcom/applisto/appcloner/H";
+    private static final int MAX_REFERENCES = 65536;
+
+    private File hookDex;
+
+    @Before
+    public void setUp() throws IOException {
+        hookDex = File.createTempFile("hook", ".dex");
+    }
+
+    @After
+    public void tearDown() {
+        hookDex.delete();
+    }
+
+    @Test
+    public void mergedDexHasEveryClassOnce() throws IOException {
+        byte[] app = dex(APP, 40, 10, 35);
+        writeHookDex(dex(HOOK, 12, 5, 35));
+
+        byte[] merged = HookDexMerger.merge(app, hookDex);
+
+        assertNotNull(merged);
+        assertEquals(HeaderItem.getVersion(app, 0), HeaderItem.getVersion(merged, 0));
+        DexBackedDexFile result = read(merged);
+        List<String> types = new ArrayList<>();
+        for (ClassDef c : result.getClasses()) types.add(c.getType());
+        Set<String> unique = new HashSet<>(types);
+        assertEquals("duplicate class definitions", types.size(), unique.size());
+
+        Set<String> expected = new HashSet<>();
+        for (ClassDef c : read(app).getClasses()) expected.add(c.getType());
+        for (ClassDef c : read(readHookDex()).getClasses()) expected.add(c.getType());
+        assertEquals(52, expected.size());
+        assertEquals(expected, unique);
+    }
+
+    @Test
+    public void mergedDexStaysWithinReferenceLimits() throws IOException {
+        byte[] app = dex(APP, 40, 10, 35);
+        writeHookDex(dex(HOOK, 12, 5, 35));
+
+        DexBackedDexFile appFile = read(app);
+        DexBackedDexFile hookFile = read(readHookDex());
+        DexBackedDexFile result = read(HookDexMerger.merge(app, hookDex));
+
+        int methods = result.getMethodSection().size();
+        int fields = result.getFieldSection().size();
+        int types = result.getTypeSection().size();
+        assertTrue(methods <= MAX_REFERENCES);
+        assertTrue(fields <= MAX_REFERENCES);
+        assertTrue(types <= MAX_REFERENCES);
+        assertEquals(appFile.getMethodSection().size() + hookFile.getMethodSection().size(), methods);
+        // Both inputs read System.out; the merged DEX has one field reference for it
+        assertEquals(2, appFile.getFieldSection().size() + hookFile.getFieldSection().size());
+        assertEquals(1, fields);
+    }
+
+    @Test
+    public void hookThatOverflowsMethodReferencesIsNotMerged() throws IOException {
+        // 65,000 app method references and 1,200 hook ones
+        byte[] app = dex(APP, 650, 100, 35);
+        writeHookDex(dex(HOOK, 60, 20, 35));
+
+        assertTrue(read(app).getMethodSection().size() <= MAX_REFERENCES);
+        assertNull(HookDexMerger.merge(app, hookDex));
+    }
+
+    @Test
+    public void classDefinedByBothIsNotMerged() throws IOException {
+        byte[] app = dex(APP, 10, 2, 35);
+        writeHookDex(dex(APP, 1, 2, 35));
+
+        assertNull(HookDexMerger.merge(app, hookDex));
+    }
+
+    @Test
+    public void newerHookDexTakesTheAppVersion() throws IOException {
+        byte[] app = dex(APP, 10, 2, 35);
+        writeHookDex(dex(HOOK, 4, 2, 38));
+
+        byte[] merged = HookDexMerger.merge(app, hookDex);
+
+        assertNotNull(merged);
+        assertEquals(35, HeaderItem.getVersion(merged, 0));
+        assertEquals(14, read(merged).getClasses().size());
+    }
+
+    /**
+     * {@code classes} classes of {@code methodsPerClass} static methods. Each method reads
+     * System.out and calls the next method, so the DEX has field and method references.
+     */
+    private static byte[] dex(String prefix, int classes, int methodsPerClass, int dexVersion) throws IOException {
+        ImmutableFieldReference out = new ImmutableFieldReference("Ljava/lang/System;", "out", "Ljava/io/PrintStream;");
+        List<ClassDef> defs = new ArrayList<>(classes);
+        for (int c = 0; c < classes; c++) {
+            String type = prefix + c + ";";
+            List<ImmutableMethod> methods = new ArrayList<>(methodsPerClass);
+            for (int m = 0; m < methodsPerClass; m++) {
+                List<ImmutableInstruction> code = new ArrayList<>(3);
+                code.add(new ImmutableInstruction21c(Opcode.SGET_OBJECT, 0, out));
+                code.add(new ImmutableInstruction35c(Opcode.INVOKE_STATIC, 0, 0, 0, 0, 0, 0,
+                        new ImmutableMethodReference(type, "m" + ((m + 1) % methodsPerClass),
+                                Collections.<String>emptyList(), "V")));
+                code.add(new ImmutableInstruction10x(Opcode.RETURN_VOID));
+                methods.add(new ImmutableMethod(type, "m" + m, null, "V",
+                        AccessFlags.PUBLIC.getValue() | AccessFlags.STATIC.getValue(), null, null,
+                        new ImmutableMethodImplementation(1, code, null, null)));
+            }
+            defs.add(new ImmutableClassDef(type, AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;",
+                    null, null, null, null, methods));
+        }
+        MemoryDataStore store = new MemoryDataStore();
+        DexPool.writeTo(store, new ImmutableDexFile(Opcodes.forDexVersion(dexVersion), defs));
+        return store.getData();
+    }
+
+    private static DexBackedDexFile read(byte[] dex) {
+        return new DexBackedDexFile(Opcodes.forDexVersion(HeaderItem.getVersion(dex, 0)), dex);
+    }
+
+    private void writeHookDex(byte[] dex) throws IOException {
+        try (OutputStream os = new FileOutputStream(hookDex)) {
+            os.write(dex);
+        }
+    }
+
+    private byte[] readHookDex() throws IOException {
+        return Files.readAllBytes(hookDex.toPath());
+    }
+}
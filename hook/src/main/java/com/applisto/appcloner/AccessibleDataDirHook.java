@@ -27,7 +27,7 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -47,7 +47,7 @@ public class AccessibleDataDirHook {
     private volatile long advancedIntervalSec = 60;
 
     private Context appContext;
-    private ScheduledThreadPoolExecutor scheduler;
+    private ScheduledFuture<?> advancedTask;
 
     // Names/prefixes we DO NOT relax (left owner-only). Extend as needed.
     private final Set<String> restrictedNamePrefixes = new LinkedHashSet<>(Arrays.asList(
@@ -151,7 +151,7 @@ public class AccessibleDataDirHook {
     public void setAdvancedIntervalSeconds(long seconds) {
         this.advancedIntervalSec = Math.max(10, seconds);
         Log.i(TAG, "Advanced interval = " + this.advancedIntervalSec + "s");
-        if (scheduler != null) {
+        if (advancedTask != null) {
             stopAdvancedMode();
             startAdvancedMode();
         }
@@ -172,7 +172,7 @@ public class AccessibleDataDirHook {
             return;
         }
         
-        new Thread(() -> {
+        HookRuntime.io(() -> {
             synchronized (PERMISSION_LOCK) {
                 long t0 = System.currentTimeMillis();
                 try {
@@ -215,7 +215,7 @@ public class AccessibleDataDirHook {
                     Log.e(TAG, "Error applying accessibility", t);
                 }
             }
-        }, "AccessibleDataDirHook-apply").start();
+        });
     }
     
     /**
@@ -225,7 +225,7 @@ public class AccessibleDataDirHook {
     public void ensureSharedPrefsAccessible() {
         if (appContext == null || !internalEnabled) return;
         
-        new Thread(() -> {
+        HookRuntime.io(() -> {
             synchronized (PERMISSION_LOCK) {
                 if (shouldSkipModifications()) return;
                 
@@ -248,31 +248,25 @@ public class AccessibleDataDirHook {
                     Log.w(TAG, "Error ensuring SharedPrefs accessible", t);
                 }
             }
-        }, "AccessibleDataDirHook-prefs").start();
+        });
     }
 
     // Internals
 
     private void startAdvancedMode() {
-        if (scheduler != null) return;
+        if (advancedTask != null) return;
         if (appContext == null) {
             Log.w(TAG, "startAdvancedMode() called before init; ignoring.");
             return;
         }
-        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
-            Thread t = new Thread(r, "AccessibleDataDirHook-adv");
-            t.setDaemon(true);
-            return t;
-        });
-        scheduler.setRemoveOnCancelPolicy(true);
-        scheduler.scheduleWithFixedDelay(this::safeApplyOnce, advancedIntervalSec, advancedIntervalSec, TimeUnit.SECONDS);
+        advancedTask = HookRuntime.scheduleWithFixedDelay(this::safeApplyOnce, advancedIntervalSec, advancedIntervalSec, TimeUnit.SECONDS);
         Log.i(TAG, "Advanced mode started (every " + advancedIntervalSec + "s).");
     }
 
     private void stopAdvancedMode() {
-        if (scheduler != null) {
-            scheduler.shutdownNow();
-            scheduler = null;
+        if (advancedTask != null) {
+            advancedTask.cancel(true);
+            advancedTask = null;
             Log.i(TAG, "Advanced mode stopped.");
         }
     }
@@ -9,7 +9,6 @@ import android.util.Log;
 import java.lang.reflect.Method;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public class AndroidIdHook {
 
@@ -26,26 +25,31 @@ public class AndroidIdHook {
 
         Log.i(TAG, "Installing Android-ID hook → " + fakeId);
 
-        hookSettingsMethod(Settings.Secure.class, fakeId);
-        hookSettingsMethod(Settings.System.class, fakeId);
-        hookSettingsMethod(Settings.Global.class, fakeId);
+        // One callback for all three classes; getString is hot, so it only compares the key
+        XC_MethodHook callback = new XC_MethodHook() {
+            private volatile boolean logged;
+
+            @Override
+            public void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                if (!Settings.Secure.ANDROID_ID.equals(param.args[1])) return;
+                param.setResult(fakeId);
+                if (!logged) {
+                    logged = true;
+                    Log.d(TAG, "Returning fake ANDROID_ID from " + param.method.getDeclaringClass().getSimpleName());
+                }
+            }
+        };
+        hookSettingsMethod(Settings.Secure.class, callback);
+        hookSettingsMethod(Settings.System.class, callback);
+        hookSettingsMethod(Settings.Global.class, callback);
     }
 
-    private void hookSettingsMethod(Class<?> settingsClass, final String fakeId) {
+    private void hookSettingsMethod(Class<?> settingsClass, XC_MethodHook callback) {
         try {
             Method target = settingsClass.getDeclaredMethod(
                     "getString", ContentResolver.class, String.class);
 
-            XposedBridge.hookMethod(target, new XC_MethodHook() {
-                @Override
-                public void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                    String key = (String) param.args[1];
-                    if (Settings.Secure.ANDROID_ID.equals(key)) {
-                        Log.d(TAG, "Returning fake ANDROID_ID for " + settingsClass.getSimpleName() + ": " + fakeId);
-                        param.setResult(fakeId);
-                    }
-                }
-            });
+            SmartHooking.hookMethod(target, callback);
             Log.d(TAG, "Hooked " + settingsClass.getSimpleName() + ".getString");
 
         } catch (Throwable t) {
@@ -19,7 +19,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * BackgroundMediaHook - Enables media playback to continue when app goes to background.
@@ -191,7 +190,7 @@ public final class BackgroundMediaHook {
         // Fallback: configure when attached to window
         try {
             Method onAttach = View.class.getDeclaredMethod("onAttachedToWindow");
-            XposedBridge.hookMethod(onAttach, new XC_MethodHook() {
+            SmartHooking.hookMethod(onAttach, new XC_MethodHook() {
                 @Override 
                 public void afterHookedMethod(MethodHookParam param) {
                     if (param.thisObject instanceof WebView) {
@@ -206,7 +205,7 @@ public final class BackgroundMediaHook {
         // Hook onWindowVisibilityChanged to prevent background pauses
         try {
             Method onWvc = WebView.class.getDeclaredMethod("onWindowVisibilityChanged", int.class);
-            XposedBridge.hookMethod(onWvc, new XC_MethodHook() {
+            SmartHooking.hookMethod(onWvc, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
@@ -222,7 +221,7 @@ public final class BackgroundMediaHook {
         // Hook View.setVisibility to prevent WebView from being hidden
         try {
             Method setVis = View.class.getDeclaredMethod("setVisibility", int.class);
-            XposedBridge.hookMethod(setVis, new XC_MethodHook() {
+            SmartHooking.hookMethod(setVis, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground && param.thisObject instanceof WebView) {
@@ -245,7 +244,7 @@ public final class BackgroundMediaHook {
     private void hookWebViewConstructor(Class<?>... paramTypes) {
         try {
             Constructor<WebView> ctor = WebView.class.getDeclaredConstructor(paramTypes);
-            XposedBridge.hookMethod(ctor, new XC_MethodHook() {
+            SmartHooking.hookMethod(ctor, new XC_MethodHook() {
                 @Override 
                 public void afterHookedMethod(MethodHookParam param) {
                     configureWebView((WebView) param.thisObject);
@@ -293,7 +292,7 @@ public final class BackgroundMediaHook {
         // Hook WebView.onPause
         try {
             Method onPause = WebView.class.getDeclaredMethod("onPause");
-            XposedBridge.hookMethod(onPause, new XC_MethodHook() {
+            SmartHooking.hookMethod(onPause, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
@@ -309,7 +308,7 @@ public final class BackgroundMediaHook {
         // Hook WebView.pauseTimers
         try {
             Method pauseTimers = WebView.class.getDeclaredMethod("pauseTimers");
-            XposedBridge.hookMethod(pauseTimers, new XC_MethodHook() {
+            SmartHooking.hookMethod(pauseTimers, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
@@ -340,7 +339,7 @@ public final class BackgroundMediaHook {
         // Hook release() - be more careful with this one
         try {
             Method release = mediaPlayerClass.getDeclaredMethod("release");
-            XposedBridge.hookMethod(release, new XC_MethodHook() {
+            SmartHooking.hookMethod(release, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
@@ -360,7 +359,7 @@ public final class BackgroundMediaHook {
     private void hookMediaPlayerMethod(Class<?> mpClass, String methodName) {
         try {
             Method method = mpClass.getDeclaredMethod(methodName);
-            XposedBridge.hookMethod(method, new XC_MethodHook() {
+            SmartHooking.hookMethod(method, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
@@ -429,7 +428,7 @@ public final class BackgroundMediaHook {
                 method = playerClass.getDeclaredMethod(methodName);
             }
             
-            XposedBridge.hookMethod(method, new XC_MethodHook() {
+            SmartHooking.hookMethod(method, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (!enabled || !appInBackground) return;
@@ -492,7 +491,7 @@ public final class BackgroundMediaHook {
                 int.class, 
                 int.class
             );
-            XposedBridge.hookMethod(requestFocus, new XC_MethodHook() {
+            SmartHooking.hookMethod(requestFocus, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
@@ -511,7 +510,7 @@ public final class BackgroundMediaHook {
                 "abandonAudioFocus", 
                 AudioManager.OnAudioFocusChangeListener.class
             );
-            XposedBridge.hookMethod(abandonFocus, new XC_MethodHook() {
+            SmartHooking.hookMethod(abandonFocus, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
@@ -535,7 +534,7 @@ public final class BackgroundMediaHook {
                 "requestAudioFocus", 
                 AudioFocusRequest.class
             );
-            XposedBridge.hookMethod(requestFocus, new XC_MethodHook() {
+            SmartHooking.hookMethod(requestFocus, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
@@ -553,7 +552,7 @@ public final class BackgroundMediaHook {
                 "abandonAudioFocusRequest", 
                 AudioFocusRequest.class
             );
-            XposedBridge.hookMethod(abandonFocus, new XC_MethodHook() {
+            SmartHooking.hookMethod(abandonFocus, new XC_MethodHook() {
                 @Override 
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (enabled && appInBackground) {
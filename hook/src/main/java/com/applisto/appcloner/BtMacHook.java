@@ -9,7 +9,6 @@ import java.lang.reflect.Method;
 import java.util.Random;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * Hook for spoofing Bluetooth MAC address.
@@ -41,7 +40,7 @@ public final class BtMacHook {
     private void hookGetAddress() {
         try {
             Method m = BluetoothAdapter.class.getDeclaredMethod("getAddress");
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     Object orig = param.getResult();
                     // Only replace if result is not null (i.e. BT is enabled)
@@ -66,7 +65,7 @@ public final class BtMacHook {
             Method getStringMethod = settingsSecureClass.getDeclaredMethod("getString", 
                     android.content.ContentResolver.class, String.class);
             
-            XposedBridge.hookMethod(getStringMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(getStringMethod, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     Object[] args = param.args;
                     if (args.length >= 2 && args[1] != null) {
@@ -19,7 +19,6 @@ import java.util.Random;
 import java.util.Set;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * Enhanced BuildPropsHook that dynamically changes device build properties.
@@ -45,8 +44,10 @@ public final class BuildPropsHook {
     private static boolean sRandomizeFingerprint = false;
     private static String sDevicePreset = null;
     
-    // Property overrides map for SystemProperties hook
-    private static final Map<String, String> sPropertyOverrides = new HashMap<>();
+    // Property overrides for SystemProperties hook
+    private static final PropertyOverrides sPropertyOverrides = new PropertyOverrides();
+    // Keys that came from "system_properties", replaced when the settings are reloaded
+    private static Set<String> sConfigProperties = new HashSet<>();
     
     // Original values backup
     private static final Map<String, Object> sOriginalBuildValues = new HashMap<>();
@@ -288,49 +289,34 @@ public final class BuildPropsHook {
      */
     private void hookSystemProperties() {
         try {
-            // Load property overrides from config
-            if (sConfig.has("system_properties")) {
-                JSONObject props = sConfig.optJSONObject("system_properties");
-                if (props != null) {
-                    for (Iterator<String> it = props.keys(); it.hasNext(); ) {
-                        String key = it.next();
-                        sPropertyOverrides.put(key, props.optString(key));
-                    }
-                }
-            }
-            
-            // Also add build properties to the map
-            addBuildPropertiesToMap();
+            // Load property overrides from config, and follow later changes to it
+            applyConfigProperties(sConfig);
+            ClonerSettings.addListener(settings -> {
+                applyConfigProperties(settings.raw());
+                Log.i(TAG, "system_properties reloaded, " + sConfigProperties.size() + " from config");
+            });
             
-            // Hook SystemProperties.get(String)
             Class<?> systemPropsClass = Class.forName("android.os.SystemProperties");
             
-            Method getMethod = systemPropsClass.getMethod("get", String.class);
-            XposedBridge.hookMethod(getMethod, new XC_MethodHook() {
+            // Every SystemProperties read in the process lands here; keep the miss path to
+            // one map lookup, without logging or allocating
+            XC_MethodHook spoofProperty = new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
-                    String key = (String) param.args[0];
-                    if (sPropertyOverrides.containsKey(key)) {
-                        String spoofedValue = sPropertyOverrides.get(key);
+                    String spoofedValue = sPropertyOverrides.lookup(param.args[0]);
+                    if (spoofedValue != null) {
                         param.setResult(spoofedValue);
-                        Log.v(TAG, "Spoofed property: " + key + " = " + spoofedValue);
                     }
                 }
-            });
+            };
+            
+            // Hook SystemProperties.get(String)
+            Method getMethod = systemPropsClass.getMethod("get", String.class);
+            SmartHooking.hookMethod(getMethod, spoofProperty);
             
             // Hook SystemProperties.get(String, String) - with default value
             Method getWithDefaultMethod = systemPropsClass.getMethod("get", String.class, String.class);
-            XposedBridge.hookMethod(getWithDefaultMethod, new XC_MethodHook() {
-                @Override
-                public void afterHookedMethod(MethodHookParam param) {
-                    String key = (String) param.args[0];
-                    if (sPropertyOverrides.containsKey(key)) {
-                        String spoofedValue = sPropertyOverrides.get(key);
-                        param.setResult(spoofedValue);
-                        Log.v(TAG, "Spoofed property (with default): " + key + " = " + spoofedValue);
-                    }
-                }
-            });
+            SmartHooking.hookMethod(getWithDefaultMethod, spoofProperty);
             
             Log.i(TAG, "SystemProperties hooks installed. " + sPropertyOverrides.size() + " properties will be spoofed.");
             
@@ -341,10 +327,33 @@ public final class BuildPropsHook {
         }
     }
     
+    /**
+     * Replace the "system_properties" overrides with the ones in {@code config}. The Build
+     * field values are added again after them, as they take precedence.
+     */
+    private static synchronized void applyConfigProperties(JSONObject config) {
+        for (String key : sConfigProperties) {
+            sPropertyOverrides.remove(key);
+        }
+        Set<String> keys = new HashSet<>();
+        JSONObject props = config.optJSONObject("system_properties");
+        if (props != null) {
+            for (Iterator<String> it = props.keys(); it.hasNext(); ) {
+                String key = it.next();
+                sPropertyOverrides.put(key, props.optString(key));
+                keys.add(key);
+            }
+        }
+        sConfigProperties = keys;
+
+        // Also add build properties to the map
+        addBuildPropertiesToMap();
+    }
+
     /**
      * Add current Build field values to property overrides map
      */
-    private void addBuildPropertiesToMap() {
+    private static void addBuildPropertiesToMap() {
         try {
             sPropertyOverrides.put("ro.product.manufacturer", Build.MANUFACTURER);
             sPropertyOverrides.put("ro.product.model", Build.MODEL);
@@ -531,7 +540,11 @@ public final class BuildPropsHook {
      * @param value The new value
      */
     public static void updateSystemProperty(String propName, String value) {
-        sPropertyOverrides.put(propName, value);
+        if (value != null) {
+            sPropertyOverrides.put(propName, value);
+        } else {
+            sPropertyOverrides.remove(propName);
+        }
         
         // Also save to SharedPreferences for persistence
         if (sContext != null) {
@@ -1,322 +1,574 @@
 package com.applisto.appcloner;
 
 import android.content.Context;
+import android.os.FileObserver;
 import android.util.Log;
 
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * The clone's cloner.json, parsed once into final fields. Accessors only read a field, so
+ * hooks can call them from callbacks without a map lookup or type coercion.
+ *
+ * The config comes from, in order: a runtime override in files/cloner.json, the compiled
+ * assets/cloner.bin the cloner writes (see {@link CompiledConfig}), then assets/cloner.json.
+ *
+ * A running clone picks up a new config without a restart: {@link #watch} reloads it when the
+ * runtime override is written or removed, and DefaultProvider's {@code update_config} call
+ * pushes one directly. Each load is a new immutable snapshot with a higher {@link #version()},
+ * published through a volatile field. Readers never lock; hooks that keep their own copies of
+ * settings refresh them from a {@link Listener}.
+ */
 public final class ClonerSettings {
+    private static final String TAG = "ClonerSettings";
     private static final String ASSET_FILE   = "cloner.json";
     private static final String RUNTIME_FILE = "cloner.json"; // inside /data/data/<pkg>/files/
-    private static ClonerSettings INSTANCE;
+    private static volatile ClonerSettings INSTANCE;
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static FileObserver sObserver; // kept reachable, it stops watching when collected
 
+    /** Called on the reloading thread after a new snapshot is published. */
+    public interface Listener {
+        void onSettingsChanged(ClonerSettings settings);
+    }
+
+    private final long version;
     private final JSONObject cfg;
 
-    private ClonerSettings(Context c) {
-        try {
-            Context appContext = c.getApplicationContext();
-
-            // 1) Try runtime override first (for root/adb push)
-            File runtime = new File(appContext.getFilesDir(), RUNTIME_FILE);
-            if (runtime.exists()) {
-                try (InputStream in = appContext.openFileInput(RUNTIME_FILE)) {
-                    byte[] buf = new byte[(int) runtime.length()];
-                    int read = in.read(buf);
-                    if (read > 0) {
-                        cfg = new JSONObject(new String(buf, 0, read));
-                    } else {
-                        cfg = new JSONObject();
-                    }
-                    Log.i("ClonerSettings", "Loaded runtime JSON");
-                    return;
-                }
-            }
+    private final String androidId;
+    private final String wifiMac;
+    private final String bluetoothMac;
+    private final String userAgent;
+
+    private final boolean socksProxy;
+    private final String socksProxyHost;
+    private final int socksProxyPort;
+    private final String socksProxyUser;
+    private final String socksProxyPass;
+
+    private final boolean accessibleDataDirInternalEnabled;
+    private final boolean accessibleDataDirExternalEnabled;
+    private final String accessibleDataDirMode;
+    private final boolean accessibleDataDirAdvancedMode;
+    private final long accessibleDataDirAdvancedInterval;
+    private final boolean bundleAppData;
+    private final boolean internalBrowserEnabled;
+
+    private final boolean fakeCalculatorEnabled;
+    private final String fakeCalculatorPasscode;
+    private final boolean fakeCalculatorAskOnce;
+
+    private final boolean buildPropsEnabled;
+    private final boolean buildPropsHookSystemProperties;
+    private final boolean buildPropsRandomizeFingerprint;
+    private final String buildPropsDevicePreset;
+
+    private final boolean fakeCameraEnabled;
+    private final boolean fakeCameraAlternativeMode;
+    private final boolean fakeCameraAppSupport;
+    private final boolean fakeCameraCloseStreamWorkaround;
+    private final boolean fakeCameraFixOrientation;
+    private final boolean fakeCameraFlipHorizontally;
+    private final boolean fakeCameraOpenStreamWorkaround;
+    private final boolean fakeCameraRandomizeImage;
+    private final int fakeCameraRandomizeStrength;
+    private final boolean fakeCameraResizeImage;
+    private final String fakeCameraRotation;
+    private final boolean fakeCameraUseOriginalImageFile;
+    private final String fakeCameraImagePath;
+    private final boolean fakeCameraAddExifAttributes;
+    private final boolean fakeCameraAddSpoofedLocation;
+
+    private final String serialNumber;
+    private final String imei;
+    private final String imsi;
+
+    private final boolean dialogBlockerEnabled;
+    private final boolean blockUpdateDialogs;
+    private final boolean blockRatingDialogs;
+    private final boolean blockAdDialogs;
+    private final boolean blockSubscriptionDialogs;
+    private final String dialogBlockKeywords;
+
+    private final boolean spoofLocationEnabled;
+    private final double spoofLocationLatitude;
+    private final double spoofLocationLongitude;
+    private final double spoofLocationAltitude;
+    private final float spoofLocationAccuracy;
+    private final boolean spoofLocationRandomize;
+    private final boolean spoofLocationUseIp;
+
+    private final boolean hookMetrics;
+    private final String logLevel;
+
+    private ClonerSettings(JSONObject cfg, long version) {
+        this.cfg = cfg;
+        this.version = version;
+
+        androidId = cfg.optString("android_id");
+        wifiMac = cfg.optString("wifi_mac");
+        bluetoothMac = cfg.optString("bluetooth_mac");
+        userAgent = cfg.optString("user_agent");
+
+        socksProxy = cfg.optBoolean("socks_proxy", false);
+        socksProxyHost = cfg.optString("socks_proxy_host");
+        socksProxyPort = cfg.optInt("socks_proxy_port", 1080);
+        socksProxyUser = cfg.optString("socks_proxy_user");
+        socksProxyPass = cfg.optString("socks_proxy_pass");
 
-            // 2) Fall back to the asset (normal case)
-            try (InputStream in = appContext.getAssets().open(ASSET_FILE)) {
-                byte[] buf = new byte[in.available()];
+        accessibleDataDirInternalEnabled = cfg.optBoolean("accessible_data_dir_internal", true);
+        accessibleDataDirExternalEnabled = cfg.optBoolean("accessible_data_dir_external", true);
+        accessibleDataDirMode = cfg.optString("accessible_data_dir_mode", "READ_ONLY");
+        accessibleDataDirAdvancedMode = cfg.optBoolean("accessible_data_dir_advanced_mode", false);
+        accessibleDataDirAdvancedInterval = cfg.optLong("accessible_data_dir_advanced_interval", 60L);
+        bundleAppData = cfg.optBoolean("bundle_app_data", false);
+        internalBrowserEnabled = cfg.optBoolean("internal_browser", false);
+
+        fakeCalculatorEnabled = cfg.optBoolean("fake_calculator_enabled", false);
+        fakeCalculatorPasscode = cfg.optString("fake_calculator_passcode", "1234");
+        fakeCalculatorAskOnce = cfg.optBoolean("fake_calculator_ask_once", false);
+
+        buildPropsEnabled = cfg.optBoolean("build_props_enabled", true);
+        buildPropsHookSystemProperties = cfg.optBoolean("build_props_hook_system_properties", true);
+        buildPropsRandomizeFingerprint = cfg.optBoolean("build_props_randomize_fingerprint", false);
+        buildPropsDevicePreset = cfg.optString("build_props_device_preset", null);
+
+        fakeCameraEnabled = cfg.optBoolean("FakeCamera", false);
+        fakeCameraAlternativeMode = cfg.optBoolean("FakeCameraAlternativeMode", false) ||
+                cfg.optBoolean("AlternativeMode", false); // Legacy support
+        fakeCameraAppSupport = cfg.optBoolean("FakeCameraAppSupport", false);
+        fakeCameraCloseStreamWorkaround = cfg.optBoolean("FakeCameraCloseStreamWorkaround", false);
+        fakeCameraFixOrientation = cfg.optBoolean("FakeCameraFixOrientation", false);
+        fakeCameraFlipHorizontally = cfg.optBoolean("FlipHorizontally", false);
+        fakeCameraOpenStreamWorkaround = cfg.optBoolean("FakeCameraOpenStreamWorkaround", false) ||
+                cfg.optBoolean("OpenStreamWorkaround", false); // Legacy support
+        fakeCameraRandomizeImage = cfg.optBoolean("RandomizeImage", false);
+        fakeCameraRandomizeStrength = cfg.optInt("RandomizeStrength", 25);
+        fakeCameraResizeImage = cfg.optBoolean("ResizeImage", false);
+        fakeCameraRotation = cfg.optString("FakeCameraRotation", "NO_CHANGE");
+        fakeCameraUseOriginalImageFile = cfg.optBoolean("FakeCameraUseOriginalImageFile", false);
+        fakeCameraImagePath = cfg.optString("FakeCameraImagePath", "fake_camera.jpg");
+        fakeCameraAddExifAttributes = cfg.optBoolean("AddExifAttributes", true);
+        fakeCameraAddSpoofedLocation = cfg.optBoolean("AddSpoofedLocation", false);
+
+        serialNumber = cfg.optString("serial_number", "");
+        imei = cfg.optString("imei", "");
+        imsi = cfg.optString("imsi", "");
+
+        dialogBlockerEnabled = cfg.optBoolean("dialog_blocker_enabled", false);
+        blockUpdateDialogs = cfg.optBoolean("block_update_dialogs", true);
+        blockRatingDialogs = cfg.optBoolean("block_rating_dialogs", true);
+        blockAdDialogs = cfg.optBoolean("block_ad_dialogs", true);
+        blockSubscriptionDialogs = cfg.optBoolean("block_subscription_dialogs", false);
+        dialogBlockKeywords = cfg.optString("dialog_block_keywords", "");
+
+        spoofLocationEnabled = cfg.optBoolean("SpoofLocation", false);
+        spoofLocationLatitude = cfg.optDouble("SpoofLocationLatitude", 0.0);
+        spoofLocationLongitude = cfg.optDouble("SpoofLocationLongitude", 0.0);
+        spoofLocationAltitude = cfg.optDouble("SpoofLocationAltitude", 10.0);
+        spoofLocationAccuracy = (float) cfg.optDouble("SpoofLocationAccuracy", 5.0);
+        spoofLocationRandomize = cfg.optBoolean("SpoofLocationRandomize", false);
+        spoofLocationUseIp = cfg.optBoolean("SpoofLocationUseIp", false);
+
+        hookMetrics = cfg.optBoolean("hook_metrics", true);
+        logLevel = cfg.optString("log_level", "info");
+    }
+
+    private static JSONObject load(Context appContext) throws Exception {
+        // 1) Try runtime override first (for root/adb push)
+        File runtime = new File(appContext.getFilesDir(), RUNTIME_FILE);
+        if (runtime.exists()) {
+            try (InputStream in = appContext.openFileInput(RUNTIME_FILE)) {
+                byte[] buf = new byte[(int) runtime.length()];
                 int read = in.read(buf);
-                if (read > 0) {
-                    cfg = new JSONObject(new String(buf, 0, read));
-                } else {
-                    cfg = new JSONObject();
-                }
-                Log.i("ClonerSettings", "Loaded asset JSON");
+                Log.i(TAG, "Loaded runtime JSON");
+                return read > 0 ? new JSONObject(new String(buf, 0, read)) : new JSONObject();
+            }
+        }
+
+        // 2) The compiled asset, if the cloner wrote one
+        try {
+            JSONObject compiled = CompiledConfig.load(appContext.getAssets());
+            if (compiled != null) {
+                Log.i(TAG, "Loaded compiled config");
+                return compiled;
             }
+        } catch (IOException e) {
+            Log.w(TAG, "Compiled config unreadable, falling back to JSON", e);
+        }
+
+        // 3) Fall back to the JSON asset
+        try (InputStream in = appContext.getAssets().open(ASSET_FILE)) {
+            byte[] buf = new byte[in.available()];
+            int read = in.read(buf);
+            Log.i(TAG, "Loaded asset JSON");
+            return read > 0 ? new JSONObject(new String(buf, 0, read)) : new JSONObject();
+        }
+    }
 
+    private static JSONObject loadOrThrow(Context c) {
+        try {
+            return load(c.getApplicationContext());
         } catch (Exception e) {
             throw new RuntimeException("Cannot load config", e);
         }
     }
 
-    public static synchronized ClonerSettings get(Context c) {
-        if (INSTANCE == null) {
-            INSTANCE = new ClonerSettings(c);
+    public static ClonerSettings get(Context c) {
+        ClonerSettings settings = INSTANCE;
+        if (settings == null) {
+            synchronized (ClonerSettings.class) {
+                settings = INSTANCE;
+                if (settings == null) {
+                    settings = new ClonerSettings(loadOrThrow(c), 1);
+                    INSTANCE = settings;
+                }
+            }
         }
-        return INSTANCE;
+        return settings;
+    }
+
+    /** Re-reads the config from the same sources as the first load and publishes it. */
+    public static ClonerSettings reload(Context c) {
+        return publish(loadOrThrow(c));
+    }
+
+    /** Publishes {@code config} as the current settings, e.g. one pushed over IPC. */
+    public static ClonerSettings update(JSONObject config) {
+        return publish(config);
     }
 
+    private static ClonerSettings publish(JSONObject config) {
+        ClonerSettings settings;
+        // Writers are serialised so versions only go up; readers never take this lock
+        synchronized (ClonerSettings.class) {
+            ClonerSettings old = INSTANCE;
+            settings = new ClonerSettings(config, old != null ? old.version + 1 : 1);
+            INSTANCE = settings;
+        }
+        Log.i(TAG, "Published config version " + settings.version);
+        for (Listener l : LISTENERS) {
+            try {
+                l.onSettingsChanged(settings);
+            } catch (Throwable t) {
+                Log.e(TAG, "Settings listener failed", t);
+            }
+        }
+        return settings;
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Reloads the settings whenever files/cloner.json is written, moved into place or
+     * deleted. Deleting it falls back to the config in the APK.
+     */
+    public static synchronized void watch(Context c) {
+        if (sObserver != null) return;
+        Context appContext = c.getApplicationContext();
+        File dir = appContext.getFilesDir();
+        sObserver = new FileObserver(dir.getPath(),
+                FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.DELETE) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (!RUNTIME_FILE.equals(path)) return;
+                try {
+                    reload(appContext);
+                } catch (RuntimeException e) {
+                    // A half-written or invalid file; keep the current snapshot
+                    Log.w(TAG, "Ignoring unreadable " + RUNTIME_FILE, e);
+                }
+            }
+        };
+        sObserver.startWatching();
+        Log.i(TAG, "Watching " + new File(dir, RUNTIME_FILE) + " for changes");
+    }
+
+    /** Increases with every published config, starting at 1. */
+    public long version()            { return version; }
+
     /* existing helpers */
-    public String androidId()        { return cfg.optString("android_id"); }
-    public String wifiMac()          { return cfg.optString("wifi_mac");   }
-    public String bluetoothMac()     { return cfg.optString("bluetooth_mac"); }
-    public String userAgent()        { return cfg.optString("user_agent"); }
+    public String androidId()        { return androidId; }
+    public String wifiMac()          { return wifiMac; }
+    public String bluetoothMac()     { return bluetoothMac; }
+    public String userAgent()        { return userAgent; }
+
+    /**
+     * The parsed config, for keys without an accessor. Shared by every caller, so treat it as
+     * read-only.
+     */
     public JSONObject raw()          { return cfg; }
 
-    public boolean socksProxy()      { return cfg.optBoolean("socks_proxy", false); }
-    public String socksProxyHost()   { return cfg.optString("socks_proxy_host"); }
-    public int    socksProxyPort()   { return cfg.optInt("socks_proxy_port", 1080); }
-    public String socksProxyUser()   { return cfg.optString("socks_proxy_user"); }
-    public String socksProxyPass()   { return cfg.optString("socks_proxy_pass"); }
+    public boolean socksProxy()      { return socksProxy; }
+    public String socksProxyHost()   { return socksProxyHost; }
+    public int    socksProxyPort()   { return socksProxyPort; }
+    public String socksProxyUser()   { return socksProxyUser; }
+    public String socksProxyPass()   { return socksProxyPass; }
 
     /* NEW: settings for AccessibleDataDirHook
      *
      * Adjust the JSON keys ("accessible_data_dir_...") if your cloner.json
      * uses different names.
      */
-
     // Enable making the internal data directory accessible (default: true)
     public boolean accessibleDataDirInternalEnabled() {
-        return cfg.optBoolean("accessible_data_dir_internal", true);
+        return accessibleDataDirInternalEnabled;
     }
 
     // Enable making the external data directory accessible (default: true)
     public boolean accessibleDataDirExternalEnabled() {
-        return cfg.optBoolean("accessible_data_dir_external", true);
+        return accessibleDataDirExternalEnabled;
     }
 
     // Access mode: "READ_ONLY" or "READ_WRITE" (default: "READ_ONLY")
     public String accessibleDataDirMode() {
-        return cfg.optString("accessible_data_dir_mode", "READ_ONLY");
+        return accessibleDataDirMode;
     }
 
     // Periodic re-apply enabled? (default: false)
     public boolean accessibleDataDirAdvancedMode() {
-        return cfg.optBoolean("accessible_data_dir_advanced_mode", false);
+        return accessibleDataDirAdvancedMode;
     }
 
     // Interval in seconds for advanced mode (default: 60)
     public long accessibleDataDirAdvancedInterval() {
-        return cfg.optLong("accessible_data_dir_advanced_interval", 60L);
+        return accessibleDataDirAdvancedInterval;
     }
 
     // Enable restoring bundled app data from assets on startup (default: false)
     public boolean bundleAppData() {
-        return cfg.optBoolean("bundle_app_data", false);
+        return bundleAppData;
     }
 
     // Enable internal browser for http/https links (default: false)
     public boolean internalBrowserEnabled() {
-        return cfg.optBoolean("internal_browser", false);
+        return internalBrowserEnabled;
     }
 
     /* Fake Calculator Settings */
     
     // Enable fake calculator entrance (default: false)
     public boolean fakeCalculatorEnabled() {
-        return cfg.optBoolean("fake_calculator_enabled", false);
+        return fakeCalculatorEnabled;
     }
     
     // Passcode to access the real app (default: "1234")
     public String fakeCalculatorPasscode() {
-        return cfg.optString("fake_calculator_passcode", "1234");
+        return fakeCalculatorPasscode;
     }
 
     // Ask once for passcode (default: false)
     public boolean fakeCalculatorAskOnce() {
-        return cfg.optBoolean("fake_calculator_ask_once", false);
+        return fakeCalculatorAskOnce;
     }
     
     /* Build Props Hook Settings */
     
     // Enable build props override (default: true)
     public boolean buildPropsEnabled() {
-        return cfg.optBoolean("build_props_enabled", true);
+        return buildPropsEnabled;
     }
     
     // Hook SystemProperties.get() for complete spoofing (default: true)
     public boolean buildPropsHookSystemProperties() {
-        return cfg.optBoolean("build_props_hook_system_properties", true);
+        return buildPropsHookSystemProperties;
     }
     
     // Randomize fingerprint on each launch (default: false)
     public boolean buildPropsRandomizeFingerprint() {
-        return cfg.optBoolean("build_props_randomize_fingerprint", false);
+        return buildPropsRandomizeFingerprint;
     }
     
     // Device preset to use (e.g., "samsung_s24_ultra", "pixel_8_pro")
     public String buildPropsDevicePreset() {
-        return cfg.optString("build_props_device_preset", null);
+        return buildPropsDevicePreset;
     }
     
     /* Fake Camera Settings - organized to match screenshot categories */
     
     // Enable fake camera (default: false)
     public boolean fakeCameraEnabled() {
-        return cfg.optBoolean("FakeCamera", false);
+        return fakeCameraEnabled;
     }
     
     // Alternative Mode (default: false)
     public boolean fakeCameraAlternativeMode() {
-        return cfg.optBoolean("FakeCameraAlternativeMode", false) ||
-               cfg.optBoolean("AlternativeMode", false); // Legacy support
+        return fakeCameraAlternativeMode;
     }
     
     // App Support - hooks for camera-using apps (default: false)
     public boolean fakeCameraAppSupport() {
-        return cfg.optBoolean("FakeCameraAppSupport", false);
+        return fakeCameraAppSupport;
     }
     
     // Close Stream Workaround (default: false)
     public boolean fakeCameraCloseStreamWorkaround() {
-        return cfg.optBoolean("FakeCameraCloseStreamWorkaround", false);
+        return fakeCameraCloseStreamWorkaround;
     }
     
     // Fix Orientation (default: false)
     public boolean fakeCameraFixOrientation() {
-        return cfg.optBoolean("FakeCameraFixOrientation", false);
+        return fakeCameraFixOrientation;
     }
     
     // Flip Horizontally (default: false)
     public boolean fakeCameraFlipHorizontally() {
-        return cfg.optBoolean("FlipHorizontally", false);
+        return fakeCameraFlipHorizontally;
     }
     
     // Open Stream Workaround (default: false)
     public boolean fakeCameraOpenStreamWorkaround() {
-        return cfg.optBoolean("FakeCameraOpenStreamWorkaround", false) ||
-               cfg.optBoolean("OpenStreamWorkaround", false); // Legacy support
+        return fakeCameraOpenStreamWorkaround;
     }
     
     // Randomize the fake image slightly (default: false)
     public boolean fakeCameraRandomizeImage() {
-        return cfg.optBoolean("RandomizeImage", false);
+        return fakeCameraRandomizeImage;
     }
     
     // Randomization strength (default: 25)
     public int fakeCameraRandomizeStrength() {
-        return cfg.optInt("RandomizeStrength", 25);
+        return fakeCameraRandomizeStrength;
     }
     
     // Resize Picture (default: false)
     public boolean fakeCameraResizeImage() {
-        return cfg.optBoolean("ResizeImage", false);
+        return fakeCameraResizeImage;
     }
     
     // Rotation setting (default: "NO_CHANGE")
     public String fakeCameraRotation() {
-        return cfg.optString("FakeCameraRotation", "NO_CHANGE");
+        return fakeCameraRotation;
     }
     
     // Use Original Image File (default: false)
     public boolean fakeCameraUseOriginalImageFile() {
-        return cfg.optBoolean("FakeCameraUseOriginalImageFile", false);
+        return fakeCameraUseOriginalImageFile;
     }
     
     // Legacy settings for backward compatibility
     
     // Fake camera image path (default: "fake_camera.jpg")
     public String fakeCameraImagePath() {
-        return cfg.optString("FakeCameraImagePath", "fake_camera.jpg");
+        return fakeCameraImagePath;
     }
     
     // Add EXIF attributes to fake photos (default: true)
     public boolean fakeCameraAddExifAttributes() {
-        return cfg.optBoolean("AddExifAttributes", true);
+        return fakeCameraAddExifAttributes;
     }
     
     // Add spoofed location to EXIF (default: false)
     public boolean fakeCameraAddSpoofedLocation() {
-        return cfg.optBoolean("AddSpoofedLocation", false);
+        return fakeCameraAddSpoofedLocation;
     }
 
     /* Device Identity Spoofing Settings */
     
     // Serial number spoofing (empty means keep original)
     public String serialNumber() {
-        return cfg.optString("serial_number", "");
+        return serialNumber;
     }
     
     // IMEI spoofing (empty means keep original)
     public String imei() {
-        return cfg.optString("imei", "");
+        return imei;
     }
     
     // IMSI spoofing (empty means keep original)
     public String imsi() {
-        return cfg.optString("imsi", "");
+        return imsi;
     }
 
     /* Dialog Blocker Settings */
     
     // Enable dialog blocking (default: false)
     public boolean dialogBlockerEnabled() {
-        return cfg.optBoolean("dialog_blocker_enabled", false);
+        return dialogBlockerEnabled;
     }
     
     // Block update dialogs (default: true when blocker enabled)
     public boolean blockUpdateDialogs() {
-        return cfg.optBoolean("block_update_dialogs", true);
+        return blockUpdateDialogs;
     }
     
     // Block rating dialogs (default: true when blocker enabled)
     public boolean blockRatingDialogs() {
-        return cfg.optBoolean("block_rating_dialogs", true);
+        return blockRatingDialogs;
     }
     
     // Block ad dialogs (default: true when blocker enabled)
     public boolean blockAdDialogs() {
-        return cfg.optBoolean("block_ad_dialogs", true);
+        return blockAdDialogs;
     }
     
     // Block subscription/premium dialogs (default: false)
     public boolean blockSubscriptionDialogs() {
-        return cfg.optBoolean("block_subscription_dialogs", false);
+        return blockSubscriptionDialogs;
     }
     
     // Custom keywords to block (comma-separated)
     public String dialogBlockKeywords() {
-        return cfg.optString("dialog_block_keywords", "");
+        return dialogBlockKeywords;
     }
     
     /* Location Spoofing Settings */
     
     // Enable location spoofing (default: false)
     public boolean spoofLocationEnabled() {
-        return cfg.optBoolean("SpoofLocation", false);
+        return spoofLocationEnabled;
     }
     
     // Spoofed latitude
     public double spoofLocationLatitude() {
-        return cfg.optDouble("SpoofLocationLatitude", 0.0);
+        return spoofLocationLatitude;
     }
     
     // Spoofed longitude
     public double spoofLocationLongitude() {
-        return cfg.optDouble("SpoofLocationLongitude", 0.0);
+        return spoofLocationLongitude;
     }
     
     // Spoofed altitude
     public double spoofLocationAltitude() {
-        return cfg.optDouble("SpoofLocationAltitude", 10.0);
+        return spoofLocationAltitude;
     }
     
     // Location accuracy
     public float spoofLocationAccuracy() {
-        return (float) cfg.optDouble("SpoofLocationAccuracy", 5.0);
+        return spoofLocationAccuracy;
     }
     
     // Randomize location
     public boolean spoofLocationRandomize() {
-        return cfg.optBoolean("SpoofLocationRandomize", false);
+        return spoofLocationRandomize;
     }
     
     // Use IP-based location
     public boolean spoofLocationUseIp() {
-        return cfg.optBoolean("SpoofLocationUseIp", false);
+        return spoofLocationUseIp;
+    }
+
+    /** Whether HookMetrics records hook calls; on unless cloner.json sets hook_metrics false. */
+    public boolean hookMetrics() {
+        return hookMetrics;
+    }
+
+    /** Level name for HookLog: verbose, debug, info (default), warn, error or off. */
+    public String logLevel() {
+        return logLevel;
     }
     
     /**
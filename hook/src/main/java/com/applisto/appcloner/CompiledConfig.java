@@ -0,0 +1,154 @@
+package com.applisto.appcloner;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads {@code assets/cloner.bin}, the binary form of cloner.json the cloner writes next to
+ * it (see ClonerConfigCompiler in the app). It saves tokenizing the JSON text and parsing its
+ * numbers at startup; the result is still a JSONObject, which ClonerSettings reads as usual.
+ *
+ * This is the one specification of the format; ClonerConfigCompiler writes it. Big-endian:
+ * the magic {@code ACFG}, a version byte, then one tagged value. A value is a tag byte
+ * followed by its payload: 0 null, 1 false, 2 true, 3 long (8 bytes), 4 double (8 bytes),
+ * 5 string (u32 length + UTF-8), 6 array (u32 count + values), 7 object (u32 count + pairs of
+ * an untagged string key and a value). Bump VERSION here and in the compiler on a change.
+ */
+final class CompiledConfig {
+    static final String ASSET = "cloner.bin";
+
+    private static final int MAGIC = 0x41434647; // "ACFG"
+    private static final int VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int ARRAY = 6;
+    private static final int OBJECT = 7;
+
+    private CompiledConfig() {}
+
+    /**
+     * Loads the compiled config from the assets.
+     *
+     * @return null if the clone has no cloner.bin
+     */
+    static JSONObject load(AssetManager assets) throws IOException {
+        ByteBuffer buf;
+        try {
+            buf = map(assets);
+        } catch (IOException e) {
+            // Not in the APK, or compressed so it cannot be mapped
+            buf = read(assets);
+        }
+        return buf != null ? decode(buf) : null;
+    }
+
+    /** Maps the asset straight out of the APK; the cloner stores it uncompressed. */
+    private static ByteBuffer map(AssetManager assets) throws IOException {
+        try (AssetFileDescriptor fd = assets.openFd(ASSET);
+             FileInputStream in = fd.createInputStream()) {
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+        }
+    }
+
+    private static ByteBuffer read(AssetManager assets) throws IOException {
+        InputStream in;
+        try {
+            in = assets.open(ASSET);
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 256));
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                out.write(chunk, 0, n);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    static JSONObject decode(ByteBuffer buf) throws IOException {
+        try {
+            if (buf.getInt() != MAGIC) throw new IOException("Not a compiled config");
+            int version = buf.get();
+            if (version != VERSION) throw new IOException("Unsupported compiled config version " + version);
+            Object root = readValue(buf);
+            if (!(root instanceof JSONObject)) throw new IOException("Compiled config is not an object");
+            return (JSONObject) root;
+        } catch (JSONException e) {
+            throw new IOException("Corrupt compiled config", e);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and friends on a truncated file
+            throw new IOException("Corrupt compiled config", e);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buf) throws IOException, JSONException {
+        int tag = buf.get();
+        switch (tag) {
+            case NULL:
+                return JSONObject.NULL;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case LONG:
+                long l = buf.getLong();
+                // Same boxing as the JSON parser, so values compare equal either way
+                return l == (int) l ? (Object) (int) l : (Object) l;
+            case DOUBLE:
+                return buf.getDouble();
+            case STRING:
+                return readString(buf);
+            case ARRAY:
+                int length = buf.getInt();
+                JSONArray array = new JSONArray();
+                for (int i = 0; i < length; i++) {
+                    array.put(readValue(buf));
+                }
+                return array;
+            case OBJECT:
+                int count = buf.getInt();
+                JSONObject object = new JSONObject();
+                for (int i = 0; i < count; i++) {
+                    String key = readString(buf);
+                    object.put(key, readValue(buf));
+                }
+                return object;
+            default:
+                throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (buf.hasArray()) {
+            String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+            return s;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
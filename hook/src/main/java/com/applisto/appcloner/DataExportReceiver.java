@@ -6,10 +6,11 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Binder;
 import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -27,9 +28,6 @@ public class DataExportReceiver extends BroadcastReceiver {
     
     // Time when export started
     private static volatile long sExportStartTime = 0;
-    
-    // Handler for timeout checks
-    private static final Handler sHandler = new Handler(Looper.getMainLooper());
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -65,7 +63,9 @@ public class DataExportReceiver extends BroadcastReceiver {
             final PendingResult pendingResult = goAsync();
             final Context appContext = context.getApplicationContext();
 
-            Thread exportThread = new Thread(() -> {
+            // Set by whichever of the task and the timeout ends this export first
+            final AtomicBoolean finished = new AtomicBoolean(false);
+            Runnable exportTask = () -> {
                 try {
                     performExport(appContext, senderPackage);
                 } catch (Throwable t) {
@@ -73,34 +73,52 @@ public class DataExportReceiver extends BroadcastReceiver {
                     // Send error broadcast
                     sendErrorBroadcast(appContext, senderPackage, t.getMessage());
                 } finally {
-                    sIsExporting.set(false);
-                    sExportStartTime = 0;
-                    try {
-                        pendingResult.finish();
-                    } catch (Exception e) {
-                        Log.w(TAG, "Error finishing pending result", e);
-                    }
+                    endExport(pendingResult, finished);
                 }
-            });
-            exportThread.setName("DataExportThread");
-            exportThread.start();
+            };
+            // Exports are long; keep them off the io pool that provider calls wait on
+            final Future<?> export;
+            try {
+                export = HookRuntime.submitLong(Executors.callable(exportTask));
+            } catch (RejectedExecutionException e) {
+                Log.e(TAG, "Cannot start export, runtime busy", e);
+                endExport(pendingResult, finished);
+                return;
+            }
             
-            // Schedule a timeout check
-            sHandler.postDelayed(() -> {
-                if (sIsExporting.get() && exportThread.isAlive()) {
-                    Log.w(TAG, "Export timeout reached, interrupting thread");
-                    exportThread.interrupt();
-                    // Force reset after a grace period
-                    sHandler.postDelayed(() -> {
-                        if (sIsExporting.get()) {
+            // Schedule a timeout check. Both steps run on the timer thread, not the io pool,
+            // which could drop them when full and leave the broadcast unfinished.
+            HookRuntime.onTimer(() -> {
+                if (!export.isDone()) {
+                    Log.w(TAG, "Export timeout reached, interrupting export");
+                    export.cancel(true);
+                    // Force the end after a grace period, for a task cancelled before it ran or
+                    // one that ignores the interrupt
+                    HookRuntime.onTimer(() -> {
+                        if (endExport(pendingResult, finished)) {
                             Log.w(TAG, "Force resetting export state after timeout");
-                            sIsExporting.set(false);
-                            sExportStartTime = 0;
                         }
-                    }, 5000);
+                    }, 5000, TimeUnit.MILLISECONDS);
                 }
-            }, EXPORT_TIMEOUT_MS);
+            }, EXPORT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Clear the export state and finish the broadcast, unless this export already ended
+     *
+     * @return false if it had already ended
+     */
+    private static boolean endExport(PendingResult pendingResult, AtomicBoolean finished) {
+        if (!finished.compareAndSet(false, true)) return false;
+        sIsExporting.set(false);
+        sExportStartTime = 0;
+        try {
+            pendingResult.finish();
+        } catch (Exception e) {
+            Log.w(TAG, "Error finishing pending result", e);
         }
+        return true;
     }
     
     /**
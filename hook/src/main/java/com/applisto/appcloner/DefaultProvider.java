@@ -1,5 +1,7 @@
 package com.applisto.appcloner;
 
+import android.app.Activity;
+import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
@@ -10,18 +12,26 @@ import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 
+import org.json.JSONObject;
+
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeoutException;
 
 public class DefaultProvider extends AbstractContentProvider {
     private static final String TAG = "DefaultProvider";
 
+    private static final int MAX_INSTALL_THREADS = 3;
+    private static final long CRITICAL_HOOKS_TIMEOUT_MS = 10_000;
+    private static final long ALL_HOOKS_TIMEOUT_MS = 10_000;
+
     @Override
     public boolean onCreate() {
         Context context = getContext();
@@ -31,6 +41,7 @@ public class DefaultProvider extends AbstractContentProvider {
         }
 
         Log.i(TAG, "Initializing hooks...");
+        StartupProfile.phase("provider_created");
 
         // Register DataExportReceiver
         try {
@@ -45,6 +56,7 @@ public class DefaultProvider extends AbstractContentProvider {
         }
 
         // Handle bundled app data restore
+        StartupProfile.Entry bundleProfile = StartupProfile.begin("BundledAppData");
         try {
              ClonerSettings settings = ClonerSettings.get(context);
              if (settings.bundleAppData()) {
@@ -52,86 +64,81 @@ public class DefaultProvider extends AbstractContentProvider {
                  AppDataManager dataManager = new AppDataManager(context, context.getPackageName(), false);
                  dataManager.importBundledAppDataIfAvailable();
              }
+             StartupProfile.end(bundleProfile, StartupProfile.INSTALLED, null);
         } catch (Throwable t) {
+             StartupProfile.end(bundleProfile, StartupProfile.FAILED, t);
              Log.e(TAG, "Failed to handle bundled app data", t);
         }
 
 
         /* 1.  initialise the smart engine once */
         SmartHooking.init(context);   // <-- NEW
-        
-        new Socks5ProxyHook().init(context);
-        
-       // new ClonerSettings.get(context);
-
-        /* 2.  all your existing hooks stay identical */
-        new AndroidIdHook().init(context);
-        new WifiMacHook().init(context);
-        new BuildPropsHook().init(context);
-        new WebViewUrlDataFilterHook().init(getContext());
-        new UserAgentHook().init(context);
-        // Add after other hooks in onCreate()
-        new BackgroundMediaHook().init(context);
-        
-        FakeCameraHook hook = new FakeCameraHook();
-        hook.init(context);
-
-        // Initialize Fake Calculator Hook
-        FakeCalculatorHook calculatorHook = new FakeCalculatorHook(context);
-        calculatorHook.install(context);
-
-        // Initialize Internal Browser Hook
-        new InternalBrowserHook(context).init();
-
-        new WebViewFilterHook().init(context);
-
-        // Initialize location spoofing hook
-        SpoofLocationHook locationHook = new SpoofLocationHook();
-        locationHook.init(context);
-        // Optional: Set custom location
-        // SpoofLocationHook.setSpoofedLocation(40.7128, -74.0060); // New York
-        // SpoofLocationHook.enableLocationSpoofing(true);
-
-        // Device Identity Hooks
-        new ImsiHook().init(context);
-        new ImeiHook().init(context);  // NEW: IMEI spoofing
-        new SerialHook().init(context);
-        new BtMacHook().init(context);
-
-        // Dialog Intercept and Blocker
-        new DialogInterceptHook().init(context);
-
-        new FloatingAppHook().init(context);
-        AccessibleDataDirHook accessibleDirHook = new AccessibleDataDirHook();
-        accessibleDirHook.init(context);
-
-        ForcedBackCameraHook.install(context);
-        ScreenshotDetectionBlocker.install(context);
+        try {
+            HookLog.init(ClonerSettings.get(context));
+            HookMetrics.init(ClonerSettings.get(context));
+        } catch (Throwable t) {
+            Log.e(TAG, "Failed to configure hook logging and metrics", t);
+        }
 
-        // New: UserAgent Workaround hooks for HTTP header/URL modifications
+        /* 2.  install the enabled hooks in parallel; only the critical ones hold up app
+         *     startup. Disabled hooks are never loaded. */
+        HookInstaller hooks = new HookInstaller();
         try {
-            ClonerSettings settings = ClonerSettings.get(context);
-            boolean uriSchemeWorkaround = settings.raw().optBoolean("uri_scheme_workaround", false);
-            UserAgentWorkaround.Utils.initPackageNames(context);
-            UserAgentWorkaround.install(context, uriSchemeWorkaround);
-            Log.i(TAG, "UserAgentWorkaround installed");
+            HookRegistry.schedule(hooks, ClonerSettings.get(context).raw(), context);
         } catch (Throwable t) {
-            Log.e(TAG, "Failed to install UserAgentWorkaround", t);
+            Log.e(TAG, "Failed to read hook config, no hooks installed", t);
         }
+        hooks.start(installThreads());
+        hooks.awaitCritical(CRITICAL_HOOKS_TIMEOUT_MS);
+        awaitHooksBeforeFirstActivity(context, hooks);
 
-        // New: Firebase workaround warnings
+        /* 3.  apply later edits of files/cloner.json to the running hooks */
         try {
-            UserAgentWorkaroundWarning.install();
-            UserAgentWorkaroundWarning.installAnalyticsWorkaround();
-            UserAgentWorkaroundWarning.installCrashlyticsWorkaround();
-            Log.i(TAG, "UserAgentWorkaroundWarning installed");
+            ClonerSettings.watch(context);
         } catch (Throwable t) {
-            Log.e(TAG, "Failed to install UserAgentWorkaroundWarning", t);
+            Log.e(TAG, "Failed to watch runtime config", t);
         }
 
         return true;
     }
 
+    private static int installThreads() {
+        return Math.max(1, Math.min(MAX_INSTALL_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * The optional hooks may still be installing when Application.onCreate returns. They
+     * affect activities, windows and dialogs, so the first activity waits for them.
+     */
+    private static void awaitHooksBeforeFirstActivity(Context context, HookInstaller hooks) {
+        Context app = context.getApplicationContext();
+        if (!(app instanceof Application)) {
+            hooks.awaitAll(ALL_HOOKS_TIMEOUT_MS);
+            return;
+        }
+        ((Application) app).registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            private boolean done;
+
+            private void await() {
+                if (!done) {
+                    done = true;
+                    hooks.awaitAll(ALL_HOOKS_TIMEOUT_MS);
+                    ((Application) app).unregisterActivityLifecycleCallbacks(this);
+                }
+            }
+
+            // API 29+: before Activity.onCreate runs at all
+            @Override public void onActivityPreCreated(Activity activity, Bundle savedInstanceState) { await(); }
+            @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) { await(); }
+            @Override public void onActivityStarted(Activity activity) {}
+            @Override public void onActivityResumed(Activity activity) {}
+            @Override public void onActivityPaused(Activity activity) {}
+            @Override public void onActivityStopped(Activity activity) {}
+            @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
+            @Override public void onActivityDestroyed(Activity activity) {}
+        });
+    }
+
     // IPC permission for secure operations
     private static final String IPC_PERMISSION = "com.appcloner.replica.permission.REPLICA_IPC";
 
@@ -160,6 +167,16 @@ public class DefaultProvider extends AbstractContentProvider {
                 return executeWithTimeout(() -> removePref(removeExtras), 5000);
             } else if ("request_export".equals(method)) {
                 return requestExport(extras);
+            } else if ("startup_profile".equals(method)) {
+                return startupProfile();
+            } else if ("hook_metrics".equals(method)) {
+                return hookMetrics(arg);
+            } else if ("hook_log".equals(method)) {
+                return hookLog(arg);
+            } else if ("update_config".equals(method)) {
+                return updateConfig(arg);
+            } else if ("reload_config".equals(method)) {
+                return reloadConfig();
             }
         } catch (Exception e) {
             Log.e(TAG, "call() error for method: " + method, e);
@@ -179,35 +196,27 @@ public class DefaultProvider extends AbstractContentProvider {
     }
     
     private Bundle executeWithTimeout(BundleCallable callable, long timeoutMs) {
-        final AtomicReference<Bundle> resultRef = new AtomicReference<>();
-        final AtomicReference<Throwable> errorRef = new AtomicReference<>();
-        final CountDownLatch latch = new CountDownLatch(1);
-        
-        Thread worker = new Thread(() -> {
-            try {
-                resultRef.set(callable.call());
-            } catch (Throwable t) {
-                errorRef.set(t);
-            } finally {
-                latch.countDown();
-            }
-        });
-        worker.start();
+        Future<Bundle> worker;
+        try {
+            // Bursts of calls reuse the runtime's io threads instead of a thread per call
+            worker = HookRuntime.submitIo(callable::call);
+        } catch (RejectedExecutionException e) {
+            Bundle busyResult = new Bundle();
+            busyResult.putBoolean("ok", false);
+            busyResult.putString("error", "Too many pending operations");
+            return busyResult;
+        }
         
         try {
-            if (latch.await(timeoutMs, TimeUnit.MILLISECONDS)) {
-                if (errorRef.get() != null) {
-                    throw new RuntimeException("Operation failed", errorRef.get());
-                }
-                return resultRef.get();
-            } else {
-                // Timeout occurred
-                worker.interrupt();
-                Bundle timeoutResult = new Bundle();
-                timeoutResult.putBoolean("ok", false);
-                timeoutResult.putString("error", "Operation timed out after " + timeoutMs + "ms");
-                return timeoutResult;
-            }
+            return worker.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Operation failed", e.getCause());
+        } catch (TimeoutException e) {
+            worker.cancel(true);
+            Bundle timeoutResult = new Bundle();
+            timeoutResult.putBoolean("ok", false);
+            timeoutResult.putString("error", "Operation timed out after " + timeoutMs + "ms");
+            return timeoutResult;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             Bundle interruptResult = new Bundle();
@@ -251,6 +260,96 @@ public class DefaultProvider extends AbstractContentProvider {
         return result;
     }
 
+    /**
+     * Per-hook install times, threads, hooked method counts and failures of this process, as
+     * JSON in "profile". See {@link StartupProfile}.
+     */
+    private Bundle startupProfile() {
+        Bundle result = new Bundle();
+        try {
+            result.putString("profile", StartupProfile.toJson().toString());
+            result.putBoolean("ok", true);
+        } catch (Throwable t) {
+            Log.e(TAG, "startupProfile error", t);
+            result.putBoolean("ok", false);
+            result.putString("error", t.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Call counts, main thread calls and latency histograms of every hooked method, as JSON in
+     * "metrics", and the thread use of {@link HookRuntime} in "runtime". With {@code arg}
+     * "reset" the counters are cleared after reading. See {@link HookMetrics}.
+     */
+    private Bundle hookMetrics(String arg) {
+        Bundle result = new Bundle();
+        try {
+            result.putString("metrics", HookMetrics.toJson().toString());
+            result.putString("runtime", HookRuntime.describe());
+            if ("reset".equals(arg)) HookMetrics.reset();
+            result.putBoolean("ok", true);
+        } catch (Throwable t) {
+            Log.e(TAG, "hookMetrics error", t);
+            result.putBoolean("ok", false);
+            result.putString("error", t.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * The last lines logged through {@link HookLog}, oldest first, as text in "log". With
+     * {@code arg} "clear" the buffer is emptied after reading.
+     */
+    private Bundle hookLog(String arg) {
+        Bundle result = new Bundle();
+        result.putString("log", HookLog.dump());
+        if ("clear".equals(arg)) HookLog.clear();
+        result.putBoolean("ok", true);
+        return result;
+    }
+
+    /**
+     * Publish a complete cloner.json, passed as {@code arg}, to the running hooks. It lasts
+     * until the process exits or files/cloner.json changes.
+     */
+    private Bundle updateConfig(String json) {
+        Bundle result = new Bundle();
+        if (json == null) {
+            result.putBoolean("ok", false);
+            result.putString("error", "Config is null");
+            return result;
+        }
+        try {
+            ClonerSettings settings = ClonerSettings.update(new JSONObject(json));
+            result.putBoolean("ok", true);
+            result.putLong("version", settings.version());
+        } catch (Throwable t) {
+            Log.e(TAG, "updateConfig error", t);
+            result.putBoolean("ok", false);
+            result.putString("error", t.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Re-read the config from files/cloner.json or the APK, e.g. where file events are not
+     * delivered.
+     */
+    private Bundle reloadConfig() {
+        Bundle result = new Bundle();
+        try {
+            ClonerSettings settings = ClonerSettings.reload(getContext());
+            result.putBoolean("ok", true);
+            result.putLong("version", settings.version());
+        } catch (Throwable t) {
+            Log.e(TAG, "reloadConfig error", t);
+            result.putBoolean("ok", false);
+            result.putString("error", t.getMessage());
+        }
+        return result;
+    }
+
     /**
      * Check if caller has IPC permission or is calling from within the same app.
      * This allows both the app cloner (with IPC permission) and internal hooks
@@ -20,7 +20,6 @@ import java.util.Locale;
 import java.util.Set;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * Powerful Dialog Intercept and Blocker Hook
@@ -135,7 +134,7 @@ public final class DialogInterceptHook {
     private void hookAlertDialogShow() {
         try {
             Method showMethod = AlertDialog.class.getDeclaredMethod("show");
-            XposedBridge.hookMethod(showMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(showMethod, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     AlertDialog dialog = (AlertDialog) param.thisObject;
@@ -162,7 +161,7 @@ public final class DialogInterceptHook {
     private void hookDialogShow() {
         try {
             Method showMethod = Dialog.class.getDeclaredMethod("show");
-            XposedBridge.hookMethod(showMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(showMethod, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     Dialog dialog = (Dialog) param.thisObject;
@@ -199,7 +198,7 @@ public final class DialogInterceptHook {
                 // Hook show(FragmentManager, String)
                 for (Method m : clazz.getDeclaredMethods()) {
                     if ("show".equals(m.getName())) {
-                        XposedBridge.hookMethod(m, new XC_MethodHook() {
+                        SmartHooking.hookMethod(m, new XC_MethodHook() {
                             @Override
                             public void beforeHookedMethod(MethodHookParam param) {
                                 Object fragment = param.thisObject;
@@ -10,15 +10,16 @@ import android.os.IBinder;
 import android.util.Log;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public abstract class ExecStartActivityHook {
     private static final String TAG = "ExecStartActivityHook";
-    private static final List<ExecStartActivityHook> sHooks = new ArrayList<>();
+    // Read on every startActivity on the main thread, added to from the hook install pool
+    private static final List<ExecStartActivityHook> sHooks = new CopyOnWriteArrayList<>();
+    // Guarded by ExecStartActivityHook.class
     private static boolean sInstalled;
 
     public static class ExecStartActivityArgs {
@@ -33,6 +34,15 @@ public abstract class ExecStartActivityHook {
 
     public void install(Context context) {
         Log.i(TAG, "install; ");
+        // Several hooks register from the install pool at once; hook the method only once
+        synchronized (ExecStartActivityHook.class) {
+            installOnce();
+        }
+        sHooks.add(this);
+        Log.i(TAG, "install; installed ExecStartActivityHook: " + this.getClass());
+    }
+
+    private static void installOnce() {
         if (!sInstalled) {
             try {
                 // Hook Instrumentation.execStartActivity
@@ -47,7 +57,7 @@ public abstract class ExecStartActivityHook {
                     Context.class, IBinder.class, IBinder.class, Activity.class,
                     Intent.class, int.class, Bundle.class);
 
-                XposedBridge.hookMethod(execStartActivityMethod, new XC_MethodHook() {
+                SmartHooking.hookMethod(execStartActivityMethod, new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) {
                         try {
@@ -83,8 +93,6 @@ public abstract class ExecStartActivityHook {
                 Log.w(TAG, "Failed to hook execStartActivity", e);
             }
         }
-        sHooks.add(this);
-        Log.i(TAG, "install; installed ExecStartActivityHook: " + this.getClass());
     }
 
     protected abstract boolean onExecStartActivity(ExecStartActivityArgs args) throws ActivityNotFoundException;
@@ -49,16 +49,18 @@ import java.util.Locale;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.ConcurrentHashMap;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public final class FakeCameraHook {
     private static final String TAG = "FakeCameraHook";
+
+    // Per-frame events, logged once every that many frames
+    private static final HookLog.Sampler ACQUIRE_LOG = new HookLog.Sampler(100);
+    private static final HookLog.Sampler PLANES_LOG = new HookLog.Sampler(100);
+    private static final HookLog.Sampler OVERWRITE_LOG = new HookLog.Sampler(100);
     private static volatile boolean sHooked = false;
 
     /* ---------- Settings loaded from cloner.json ---------- */
@@ -89,9 +91,6 @@ public final class FakeCameraHook {
     private static List<Bitmap> sFakeBitmaps = new ArrayList<>();
     private static int sCurrentImageIndex = 0;
     
-    // Thread pool for async bitmap operations
-    private static final ExecutorService sBitmapExecutor = Executors.newFixedThreadPool(2);
-    
     // Bitmap cache to avoid recomputation
     private static final ConcurrentHashMap<String, Bitmap> sBitmapCache = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<String, byte[]> sJpegCache = new ConcurrentHashMap<>();
@@ -185,7 +184,7 @@ public final class FakeCameraHook {
             sJpegCache.clear();
             
             // Convert to JPEG asynchronously to avoid blocking
-            sBitmapExecutor.execute(() -> {
+            HookRuntime.cpu(() -> {
                 sFakeJpegData = bitmapToJpeg(bitmap);
                 // Pre-cache some common resolutions
                 preCacheCommonResolutions(bitmap);
@@ -516,7 +515,7 @@ public final class FakeCameraHook {
             sFakeJpegData = bitmapToJpeg(sFakeBitmap);
             
             // Pre-cache common resolutions asynchronously
-            sBitmapExecutor.execute(() -> preCacheCommonResolutions(sFakeBitmap));
+            HookRuntime.cpu(() -> preCacheCommonResolutions(sFakeBitmap));
 
             Log.d(TAG, "Loaded fake image: " + sFakeBitmap.getWidth() + "x" + sFakeBitmap.getHeight());
         }
@@ -595,7 +594,7 @@ public final class FakeCameraHook {
     private void hookCamera1APIs() throws Exception {
         // Hook Camera.startPreview
         Method startPreviewMethod = Camera.class.getMethod("startPreview");
-        XposedBridge.hookMethod(startPreviewMethod, new XC_MethodHook() {
+        SmartHooking.hookMethod(startPreviewMethod, new XC_MethodHook() {
             @Override
             public void beforeHookedMethod(MethodHookParam param) {
                 Log.d(TAG, "Camera.startPreview hooked");
@@ -604,7 +603,7 @@ public final class FakeCameraHook {
 
         // Hook Camera.release
         Method releaseMethod = Camera.class.getMethod("release");
-        XposedBridge.hookMethod(releaseMethod, new XC_MethodHook() {
+        SmartHooking.hookMethod(releaseMethod, new XC_MethodHook() {
             @Override
             public void beforeHookedMethod(MethodHookParam param) {
                 Log.d(TAG, "Camera.release hooked");
@@ -615,7 +614,7 @@ public final class FakeCameraHook {
         Method takePictureMethod = Camera.class.getMethod("takePicture",
                 ShutterCallback.class, PictureCallback.class, PictureCallback.class);
 
-        XposedBridge.hookMethod(takePictureMethod, new XC_MethodHook() {
+        SmartHooking.hookMethod(takePictureMethod, new XC_MethodHook() {
             @Override
             public void beforeHookedMethod(MethodHookParam param) {
                 Camera camera = (Camera) param.thisObject;
@@ -732,7 +731,7 @@ public final class FakeCameraHook {
             }
         }
 
-        XposedBridge.hookMethod(openCameraMethod, new XC_MethodHook() {
+        SmartHooking.hookMethod(openCameraMethod, new XC_MethodHook() {
             @Override
             public void beforeHookedMethod(MethodHookParam param) {
                 String cameraId = (String) param.args[0];
@@ -743,7 +742,7 @@ public final class FakeCameraHook {
         try {
             Class<?> cameraDeviceImplClass = Class.forName("android.hardware.camera2.impl.CameraDeviceImpl");
             Method closeMethod = cameraDeviceImplClass.getMethod("close");
-            XposedBridge.hookMethod(closeMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(closeMethod, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     Log.d(TAG, "CameraDeviceImpl.close hooked");
@@ -757,10 +756,10 @@ public final class FakeCameraHook {
     /* ---------- ImageReader API Hooking ---------- */
     private void hookImageReaderAPIs() throws Exception {
         Method acquireLatestImageMethod = ImageReader.class.getMethod("acquireLatestImage");
-        XposedBridge.hookMethod(acquireLatestImageMethod, new XC_MethodHook() {
+        SmartHooking.hookMethod(acquireLatestImageMethod, new XC_MethodHook() {
             @Override
             public void afterHookedMethod(MethodHookParam param) {
-                Log.d(TAG, "ImageReader.acquireLatestImage hooked (afterCall)");
+                ACQUIRE_LOG.d(TAG, "ImageReader.acquireLatestImage hooked (afterCall)");
                 Image realImage = (Image) param.getResult();
                 if (realImage != null) {
                     overwriteImageWithFakeData(realImage);
@@ -769,10 +768,10 @@ public final class FakeCameraHook {
         });
 
         Method acquireNextImageMethod = ImageReader.class.getMethod("acquireNextImage");
-        XposedBridge.hookMethod(acquireNextImageMethod, new XC_MethodHook() {
+        SmartHooking.hookMethod(acquireNextImageMethod, new XC_MethodHook() {
             @Override
             public void afterHookedMethod(MethodHookParam param) {
-                Log.d(TAG, "ImageReader.acquireNextImage hooked (afterCall)");
+                ACQUIRE_LOG.d(TAG, "ImageReader.acquireNextImage hooked (afterCall)");
                 Image realImage = (Image) param.getResult();
                 if (realImage != null) {
                     overwriteImageWithFakeData(realImage);
@@ -784,7 +783,7 @@ public final class FakeCameraHook {
         try {
             Method newInstanceMethod = ImageReader.class.getMethod("newInstance", 
                     int.class, int.class, int.class, int.class);
-            XposedBridge.hookMethod(newInstanceMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(newInstanceMethod, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
                     int width = (int) param.args[0];
@@ -805,10 +804,10 @@ public final class FakeCameraHook {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
                 // ImageReader.acquireNextImageNoThrowISE (API 29+)
                 Method acquireNextImageNoThrowMethod = ImageReader.class.getMethod("acquireNextImageNoThrowISE");
-                XposedBridge.hookMethod(acquireNextImageNoThrowMethod, new XC_MethodHook() {
+                SmartHooking.hookMethod(acquireNextImageNoThrowMethod, new XC_MethodHook() {
                     @Override
                     public void afterHookedMethod(MethodHookParam param) {
-                        Log.d(TAG, "ImageReader.acquireNextImageNoThrowISE hooked (afterCall)");
+                        ACQUIRE_LOG.d(TAG, "ImageReader.acquireNextImageNoThrowISE hooked (afterCall)");
                         Image realImage = (Image) param.getResult();
                         if (realImage != null) {
                             overwriteImageWithFakeData(realImage);
@@ -826,14 +825,14 @@ public final class FakeCameraHook {
         // Hook Image.getPlanes to intercept plane data access
         try {
             Method getPlanesMethod = Image.class.getMethod("getPlanes");
-            XposedBridge.hookMethod(getPlanesMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(getPlanesMethod, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
+                    if (!HookLog.isLoggable(Log.DEBUG)) return;
                     Image image = (Image) param.thisObject;
                     if (image != null) {
-                        int format = image.getFormat();
-                        Log.d(TAG, "Image.getPlanes called for format: " + 
-                                   ImageUtils.getFormatName(format));
+                        PLANES_LOG.d(TAG, "Image.getPlanes called for format: {}",
+                                ImageUtils.getFormatName(image.getFormat()));
                     }
                 }
             });
@@ -847,7 +846,7 @@ public final class FakeCameraHook {
         Method openFileDescriptorMethod = ContentResolver.class.getMethod("openFileDescriptor",
                 Uri.class, String.class, CancellationSignal.class);
 
-        XposedBridge.hookMethod(openFileDescriptorMethod, new XC_MethodHook() {
+        SmartHooking.hookMethod(openFileDescriptorMethod, new XC_MethodHook() {
             @Override
             public void beforeHookedMethod(MethodHookParam param) {
                 Uri uri = (Uri) param.args[0];
@@ -856,7 +855,7 @@ public final class FakeCameraHook {
         });
 
         Method openInputStreamMethod = ContentResolver.class.getMethod("openInputStream", Uri.class);
-        XposedBridge.hookMethod(openInputStreamMethod, new XC_MethodHook() {
+        SmartHooking.hookMethod(openInputStreamMethod, new XC_MethodHook() {
             @Override
             public void beforeHookedMethod(MethodHookParam param) {
                 Uri uri = (Uri) param.args[0];
@@ -873,7 +872,7 @@ public final class FakeCameraHook {
     private void hookVideoRecordingAPIs() throws Exception {
         try {
             Method startMethod = MediaRecorder.class.getMethod("start");
-            XposedBridge.hookMethod(startMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(startMethod, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     Log.d(TAG, "MediaRecorder.start hooked - starting video recording");
@@ -881,7 +880,7 @@ public final class FakeCameraHook {
             });
             
             Method stopMethod = MediaRecorder.class.getMethod("stop");
-            XposedBridge.hookMethod(stopMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(stopMethod, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
                     Log.d(TAG, "MediaRecorder.stop hooked - video recording stopped");
@@ -889,7 +888,7 @@ public final class FakeCameraHook {
             });
             
             Method setOutputFileMethod = MediaRecorder.class.getMethod("setOutputFile", String.class);
-            XposedBridge.hookMethod(setOutputFileMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(setOutputFileMethod, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     String path = (String) param.args[0];
@@ -907,7 +906,7 @@ public final class FakeCameraHook {
             Class<?> surfaceTextureClass = Class.forName("android.graphics.SurfaceTexture");
             
             Method updateTexImageMethod = surfaceTextureClass.getMethod("updateTexImage");
-            XposedBridge.hookMethod(updateTexImageMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(updateTexImageMethod, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
                     if (sSystemCameraWorkaroundActive) {
@@ -917,7 +916,7 @@ public final class FakeCameraHook {
             });
             
             Method getTransformMatrixMethod = surfaceTextureClass.getMethod("getTransformMatrix", float[].class);
-            XposedBridge.hookMethod(getTransformMatrixMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(getTransformMatrixMethod, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
                     if (sSystemCameraWorkaroundActive) {
@@ -953,7 +952,7 @@ public final class FakeCameraHook {
         try {
             Method decodeByteArrayMethod = BitmapFactory.class.getMethod("decodeByteArray", 
                     byte[].class, int.class, int.class);
-            XposedBridge.hookMethod(decodeByteArrayMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(decodeByteArrayMethod, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
                     // Only intercept during active camera capture
@@ -990,7 +989,7 @@ public final class FakeCameraHook {
     private void hookLowLevelCameraAPIs() throws Exception {
         try {
             Method nativeSetupMethod = Camera.class.getDeclaredMethod("native_setup", Object.class);
-            XposedBridge.hookMethod(nativeSetupMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(nativeSetupMethod, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     Log.d(TAG, "Camera.native_setup hooked");
@@ -999,7 +998,7 @@ public final class FakeCameraHook {
             
             Class<?> cameraServiceClass = Class.forName("android.hardware.camera2.CameraManager$CameraServiceBinderDecorator");
             Method binderDecorateMethod = cameraServiceClass.getMethod("decorate", Object.class);
-            XposedBridge.hookMethod(binderDecorateMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(binderDecorateMethod, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
                     Log.d(TAG, "CameraService binder decorate hooked");
@@ -1019,7 +1018,7 @@ public final class FakeCameraHook {
             Class<?> packageManagerClass = Class.forName("android.content.pm.PackageManager");
             Method hasSystemFeatureMethod = packageManagerClass.getMethod("hasSystemFeature", String.class);
             
-            XposedBridge.hookMethod(hasSystemFeatureMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(hasSystemFeatureMethod, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     String feature = (String) param.args[0];
@@ -1039,10 +1038,10 @@ public final class FakeCameraHook {
             Method getMemoryInfoMethod = activityManagerClass.getMethod("getMemoryInfo", 
                 Class.forName("android.app.ActivityManager$MemoryInfo"));
             
-            XposedBridge.hookMethod(getMemoryInfoMethod, new XC_MethodHook() {
+            SmartHooking.hookMethod(getMemoryInfoMethod, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
-                    Log.d(TAG, "ActivityManager.getMemoryInfo intercepted");
+                    HookLog.d(TAG, "ActivityManager.getMemoryInfo intercepted");
                 }
             });
         } catch (Exception e) {
@@ -1071,8 +1070,8 @@ public final class FakeCameraHook {
                     boolean success = ImageUtils.writeRGBAToPlanes(resizedBitmap, planes, 
                                                                     image.getWidth(), image.getHeight());
                     if (success) {
-                        Log.d(TAG, "Successfully overwrote image using RGBA fallback for format: " + 
-                                   ImageUtils.getFormatName(format));
+                        OVERWRITE_LOG.d(TAG, "Successfully overwrote image using RGBA fallback for format: {}",
+                                ImageUtils.getFormatName(format));
                         return;
                     }
                 }
@@ -1082,8 +1081,8 @@ public final class FakeCameraHook {
                     try {
                         byte[] yuvData = ImageUtils.bitmapToNV21(resizedBitmap);
                         ImageUtils.writeYuvToPlanes(yuvData, image.getWidth(), image.getHeight(), planes);
-                        Log.d(TAG, "Successfully overwrote image using YUV fallback for format: " + 
-                                   ImageUtils.getFormatName(format));
+                        OVERWRITE_LOG.d(TAG, "Successfully overwrote image using YUV fallback for format: {}",
+                                ImageUtils.getFormatName(format));
                         return;
                     } catch (Exception e) {
                         Log.w(TAG, "YUV fallback failed", e);
@@ -1108,8 +1107,8 @@ public final class FakeCameraHook {
         boolean success = ImageUtils.writeFakeDataToImage(image, resizedBitmap);
         
         if (success) {
-            Log.d(TAG, "Successfully overwrote Image buffer with fake " + 
-                       ImageUtils.getFormatName(format) + " data.");
+            OVERWRITE_LOG.d(TAG, "Successfully overwrote Image buffer with fake {} data.",
+                    ImageUtils.getFormatName(format));
         } else {
             Log.e(TAG, "Failed to overwrite Image buffer for format: " + 
                        ImageUtils.getFormatName(format));
@@ -1169,14 +1168,14 @@ public final class FakeCameraHook {
         String cacheKey = targetWidth + "x" + targetHeight;
         Bitmap cached = sBitmapCache.get(cacheKey);
         if (cached != null && !cached.isRecycled()) {
-            Log.d(TAG, "Using cached bitmap for resolution: " + cacheKey);
+            HookLog.d(TAG, "Using cached bitmap for resolution: {}", cacheKey);
             return cached;
         }
         
         // Check if the cached resized bitmap matches
         if (sCachedResizedBitmap != null && !sCachedResizedBitmap.isRecycled() &&
             sCachedWidth == targetWidth && sCachedHeight == targetHeight) {
-            Log.d(TAG, "Using pre-cached resized bitmap");
+            HookLog.d(TAG, "Using pre-cached resized bitmap");
             return sCachedResizedBitmap;
         }
 
@@ -1190,7 +1189,7 @@ public final class FakeCameraHook {
         sBitmapCache.put(cacheKey, resultBitmap);
         
         // Cache JPEG version asynchronously
-        sBitmapExecutor.execute(() -> {
+        HookRuntime.cpu(() -> {
             if (!sJpegCache.containsKey(cacheKey)) {
                 sJpegCache.put(cacheKey, bitmapToJpeg(resultBitmap));
             }
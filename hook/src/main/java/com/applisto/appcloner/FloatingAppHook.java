@@ -12,7 +12,6 @@ import android.view.WindowManager;
 import java.lang.reflect.Method;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * FloatingAppHook - Enables floating window support for cloned applications.
@@ -116,7 +115,7 @@ public class FloatingAppHook {
             Method addView = windowManagerImplClass.getDeclaredMethod(
                 "addView", View.class, android.view.ViewGroup.LayoutParams.class);
             
-            XposedBridge.hookMethod(addView, new XC_MethodHook() {
+            SmartHooking.hookMethod(addView, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (!sEnabled) return;
@@ -151,7 +150,7 @@ public class FloatingAppHook {
                 Method updateViewLayout = windowManagerImplClass.getDeclaredMethod(
                     "updateViewLayout", View.class, android.view.ViewGroup.LayoutParams.class);
                 
-                XposedBridge.hookMethod(updateViewLayout, new XC_MethodHook() {
+                SmartHooking.hookMethod(updateViewLayout, new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) {
                         if (!sEnabled) return;
@@ -192,7 +191,7 @@ public class FloatingAppHook {
             Method setRequestedOrientation = activityClass.getDeclaredMethod(
                 "setRequestedOrientation", int.class);
             
-            XposedBridge.hookMethod(setRequestedOrientation, new XC_MethodHook() {
+            SmartHooking.hookMethod(setRequestedOrientation, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     if (!sEnabled) return;
@@ -205,7 +204,7 @@ public class FloatingAppHook {
             Method onWindowFocusChanged = activityClass.getDeclaredMethod(
                 "onWindowFocusChanged", boolean.class);
             
-            XposedBridge.hookMethod(onWindowFocusChanged, new XC_MethodHook() {
+            SmartHooking.hookMethod(onWindowFocusChanged, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
                     if (!sEnabled) return;
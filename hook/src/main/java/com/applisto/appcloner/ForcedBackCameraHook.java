@@ -12,7 +12,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public final class ForcedBackCameraHook {
     private static final String TAG = "ForcedBackCamera";
@@ -75,7 +74,7 @@ public final class ForcedBackCameraHook {
     private static void hookCamera1() {
         try {
             // Don't change camera count - report actual number
-            XposedBridge.hookMethod(Camera.class.getDeclaredMethod("getNumberOfCameras"), new XC_MethodHook() {
+            SmartHooking.hookMethod(Camera.class.getDeclaredMethod("getNumberOfCameras"), new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) {
                     Integer count = (Integer) param.getResult();
@@ -88,7 +87,7 @@ public final class ForcedBackCameraHook {
             });
 
             // Hook getCameraInfo - keep front camera info intact
-            XposedBridge.hookMethod(Camera.class.getDeclaredMethod("getCameraInfo", int.class, Camera.CameraInfo.class),
+            SmartHooking.hookMethod(Camera.class.getDeclaredMethod("getCameraInfo", int.class, Camera.CameraInfo.class),
                 new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) {
@@ -98,7 +97,7 @@ public final class ForcedBackCameraHook {
                 });
 
             // Hook Camera.open(int) - this is where we swap
-            XposedBridge.hookMethod(Camera.class.getDeclaredMethod("open", int.class), new XC_MethodHook() {
+            SmartHooking.hookMethod(Camera.class.getDeclaredMethod("open", int.class), new XC_MethodHook() {
                 private int originalRequestedId = -1;
                 
                 @Override
@@ -141,7 +140,7 @@ public final class ForcedBackCameraHook {
                                             "getSupportedVideoSizes"}) {
                 try {
                     Method m = parametersClass.getDeclaredMethod(method);
-                    XposedBridge.hookMethod(m, new XC_MethodHook() {
+                    SmartHooking.hookMethod(m, new XC_MethodHook() {
                         @Override
                         public void afterHookedMethod(MethodHookParam param) {
                             // Check if this is a swapped camera
@@ -163,7 +162,7 @@ public final class ForcedBackCameraHook {
     private static void hookCamera2() {
         try {
             // Don't hide cameras in getCameraIdList
-            XposedBridge.hookMethod(CameraManager.class.getDeclaredMethod("getCameraIdList"),
+            SmartHooking.hookMethod(CameraManager.class.getDeclaredMethod("getCameraIdList"),
                 new XC_MethodHook() {
                     @Override
                     public void afterHookedMethod(MethodHookParam param) {
@@ -178,7 +177,7 @@ public final class ForcedBackCameraHook {
 
             // Keep camera characteristics reporting correct info
             // This allows apps to detect front camera
-            XposedBridge.hookMethod(CameraManager.class.getDeclaredMethod("getCameraCharacteristics", String.class),
+            SmartHooking.hookMethod(CameraManager.class.getDeclaredMethod("getCameraCharacteristics", String.class),
                 new XC_MethodHook() {
                     @Override
                     public void afterHookedMethod(MethodHookParam param) {
@@ -191,7 +190,7 @@ public final class ForcedBackCameraHook {
             Method openCamera = CameraManager.class.getDeclaredMethod("openCamera", 
                 String.class, CameraDevice.StateCallback.class, android.os.Handler.class);
                 
-            XposedBridge.hookMethod(openCamera, new XC_MethodHook() {
+            SmartHooking.hookMethod(openCamera, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     String cameraId = (String) param.args[0];
@@ -209,7 +208,7 @@ public final class ForcedBackCameraHook {
                     String.class, java.util.concurrent.Executor.class, 
                     CameraDevice.StateCallback.class);
                     
-                XposedBridge.hookMethod(openCamera2, new XC_MethodHook() {
+                SmartHooking.hookMethod(openCamera2, new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) {
                         String cameraId = (String) param.args[0];
@@ -234,7 +233,7 @@ public final class ForcedBackCameraHook {
             Class<?> cameraSelectorBuilder = Class.forName("androidx.camera.core.CameraSelector$Builder");
             Method requireLensFacing = cameraSelectorBuilder.getDeclaredMethod("requireLensFacing", int.class);
             
-            XposedBridge.hookMethod(requireLensFacing, new XC_MethodHook() {
+            SmartHooking.hookMethod(requireLensFacing, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     int facing = (int) param.args[0];
@@ -251,7 +250,7 @@ public final class ForcedBackCameraHook {
                 Method hasCamera = cameraX.getDeclaredMethod("hasCamera", 
                     Class.forName("androidx.camera.core.CameraSelector"));
                     
-                XposedBridge.hookMethod(hasCamera, new XC_MethodHook() {
+                SmartHooking.hookMethod(hasCamera, new XC_MethodHook() {
                     @Override
                     public void afterHookedMethod(MethodHookParam param) {
                         // Always return true - cameras are available
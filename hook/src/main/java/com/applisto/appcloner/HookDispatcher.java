@@ -0,0 +1,180 @@
+package com.applisto.appcloner;
+
+import android.util.Log;
+
+import java.lang.reflect.Member;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.robv.android.xposed.HookCallbacks;
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * One backend hook per method. Several hooks patch the same framework methods, e.g. WebView
+ * loadUrl or URLConnection.setRequestProperty; instead of stacking a trampoline per callback,
+ * {@link SmartHooking#hookMethod} adds the callback to the method's dispatcher, which runs
+ * the chain itself.
+ *
+ * The chain behaves like Xposed: higher priority callbacks run their before callback first
+ * and their after callback last, equal priorities run in the order they were added. A
+ * before callback that sets a result or throwable skips the remaining before callbacks and
+ * the original method, and only the callbacks whose before callback ran get the after call.
+ * A callback that throws is logged and its change to the result undone; the others still run.
+ */
+final class HookDispatcher extends XC_MethodHook {
+    private static final String TAG = "HookDispatcher";
+
+    private static final Map<Member, HookDispatcher> DISPATCHERS = new HashMap<>();
+    private static final XC_MethodHook[] NONE = new XC_MethodHook[0];
+    private static final ThreadLocal<Frames> FRAMES = new ThreadLocal<Frames>() {
+        @Override
+        protected Frames initialValue() {
+            return new Frames();
+        }
+    };
+
+    final Member target;
+    // Sorted by descending priority; replaced, never modified, so a call sees one snapshot
+    private volatile XC_MethodHook[] chain = NONE;
+
+    /** A callback in a dispatcher chain. */
+    static final class Handle {
+        private final HookDispatcher dispatcher;
+        private final XC_MethodHook callback;
+
+        private Handle(HookDispatcher dispatcher, XC_MethodHook callback) {
+            this.dispatcher = dispatcher;
+            this.callback = callback;
+        }
+
+        /** Removes the callback; the backend hook stays, with an empty chain it only forwards. */
+        void unhook() {
+            dispatcher.remove(callback);
+            HookMetrics.remove(callback);
+        }
+    }
+
+    private HookDispatcher(Member target) {
+        super(PRIORITY_DEFAULT);
+        this.target = target;
+    }
+
+    /**
+     * Adds {@code callback} to the chain of {@code target}, hooking the method on first use.
+     * Throws whatever the backend throws if the method cannot be hooked.
+     */
+    static Handle add(Member target, XC_MethodHook callback) {
+        HookDispatcher dispatcher;
+        synchronized (DISPATCHERS) {
+            dispatcher = DISPATCHERS.get(target);
+            if (dispatcher == null) {
+                dispatcher = new HookDispatcher(target);
+                XposedBridge.hookMethod(target, dispatcher);
+                DISPATCHERS.put(target, dispatcher);
+            }
+            dispatcher.insert(callback);
+        }
+        return new Handle(dispatcher, callback);
+    }
+
+    /** Number of methods with a backend hook. */
+    static int hookedMethods() {
+        synchronized (DISPATCHERS) {
+            return DISPATCHERS.size();
+        }
+    }
+
+    private void insert(XC_MethodHook callback) {
+        XC_MethodHook[] old = chain;
+        int i = 0;
+        while (i < old.length && old[i].priority >= callback.priority) i++;
+        XC_MethodHook[] next = new XC_MethodHook[old.length + 1];
+        System.arraycopy(old, 0, next, 0, i);
+        next[i] = callback;
+        System.arraycopy(old, i, next, i + 1, old.length - i);
+        chain = next;
+    }
+
+    private void remove(XC_MethodHook callback) {
+        synchronized (DISPATCHERS) {
+            XC_MethodHook[] old = chain;
+            for (int i = 0; i < old.length; i++) {
+                if (old[i] != callback) continue;
+                XC_MethodHook[] next = Arrays.copyOf(old, old.length - 1);
+                System.arraycopy(old, i + 1, next, i, old.length - i - 1);
+                chain = next;
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected void beforeHookedMethod(MethodHookParam param) {
+        XC_MethodHook[] callbacks = chain;
+        int ran = 0;
+        while (ran < callbacks.length) {
+            XC_MethodHook callback = callbacks[ran++];
+            try {
+                HookCallbacks.before(callback, param);
+            } catch (Throwable t) {
+                Log.e(TAG, "before callback " + callback.getClass().getName() + " failed on " + target, t);
+                HookCallbacks.clearResult(param);
+                continue;
+            }
+            if (HookCallbacks.returnsEarly(param)) break;
+        }
+        FRAMES.get().push(callbacks, ran);
+    }
+
+    @Override
+    protected void afterHookedMethod(MethodHookParam param) {
+        Frames frames = FRAMES.get();
+        XC_MethodHook[] callbacks = frames.topChain();
+        int ran = frames.pop();
+        for (int i = ran - 1; i >= 0; i--) {
+            Object lastResult = param.getResult();
+            Throwable lastThrowable = param.getThrowable();
+            try {
+                HookCallbacks.after(callbacks[i], param);
+            } catch (Throwable t) {
+                Log.e(TAG, "after callback " + callbacks[i].getClass().getName() + " failed on " + target, t);
+                if (lastThrowable == null) {
+                    param.setResult(lastResult);
+                } else {
+                    param.setThrowable(lastThrowable);
+                }
+            }
+        }
+    }
+
+    /**
+     * The chain snapshot and the number of before callbacks that ran, per hooked call on this
+     * thread, until its after call. A stack because hooked methods can call each other.
+     */
+    private static final class Frames {
+        private XC_MethodHook[][] chains = new XC_MethodHook[8][];
+        private int[] counts = new int[8];
+        private int depth;
+
+        void push(XC_MethodHook[] chain, int count) {
+            if (depth == counts.length) {
+                chains = Arrays.copyOf(chains, depth * 2);
+                counts = Arrays.copyOf(counts, depth * 2);
+            }
+            chains[depth] = chain;
+            counts[depth++] = count;
+        }
+
+        XC_MethodHook[] topChain() {
+            return depth > 0 ? chains[depth - 1] : NONE;
+        }
+
+        int pop() {
+            if (depth == 0) return 0;
+            chains[--depth] = null;
+            return counts[depth];
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.applisto.appcloner;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Installs hooks on a small thread pool instead of one after another on the main thread.
+ *
+ * Each hook names the hooks it has to run after, for example because both hook the same
+ * method and the callback order matters, or because they share static state. Hooks whose
+ * dependencies are done run in parallel. Critical hooks must be in place before app code
+ * runs: {@link #awaitCritical} blocks until they are done, everything else finishes in the
+ * background. A hook that other critical hooks depend on is critical as well.
+ *
+ * Hooks that must run on the main thread are run by the thread in {@link #awaitCritical},
+ * which therefore has to be the main thread. They are always critical.
+ */
+final class HookInstaller {
+    private static final String TAG = "HookInstaller";
+
+    private static final Task WAKE = new Task("", false, false, null, new String[0]);
+
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final BlockingQueue<Task> mainThreadQueue = new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingCritical = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private ExecutorService pool;
+    private long startTime;
+
+    /** Adds a hook that may install on any thread. */
+    HookInstaller add(String name, boolean critical, Runnable setup, String... after) {
+        return add(new Task(name, critical, false, setup, after));
+    }
+
+    /** Adds a critical hook that installs on the thread calling {@link #awaitCritical}. */
+    HookInstaller addOnMainThread(String name, Runnable setup, String... after) {
+        return add(new Task(name, true, true, setup, after));
+    }
+
+    private HookInstaller add(Task task) {
+        if (pool != null) throw new IllegalStateException("Already started");
+        if (tasks.put(task.name, task) != null) {
+            throw new IllegalArgumentException("Duplicate hook: " + task.name);
+        }
+        return this;
+    }
+
+    /** Starts every hook without dependencies; the rest follow as their dependencies finish. */
+    void start(int threads) {
+        if (pool != null) throw new IllegalStateException("Already started");
+        startTime = SystemClock.elapsedRealtime();
+        StartupProfile.phase("hooks_started");
+        for (Task t : tasks.values()) {
+            for (String dep : t.after) {
+                Task d = tasks.get(dep);
+                if (d == null) throw new IllegalArgumentException(t.name + " depends on unknown hook " + dep);
+                d.dependents.add(t);
+            }
+            t.waitingFor.set(t.after.length);
+        }
+        for (Task t : tasks.values()) {
+            if (t.critical) markCritical(t);
+        }
+        checkAcyclic();
+
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "HookInstaller-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        pending.set(tasks.size());
+        for (Task t : tasks.values()) {
+            if (t.critical) pendingCritical.incrementAndGet();
+        }
+        if (tasks.isEmpty()) {
+            finished();
+            return;
+        }
+        // Critical hooks go first so they are not queued behind slow optional ones
+        List<Task> ready = new ArrayList<>();
+        for (Task t : tasks.values()) {
+            if (t.after.length == 0 && t.critical) ready.add(t);
+        }
+        for (Task t : tasks.values()) {
+            if (t.after.length == 0 && !t.critical) ready.add(t);
+        }
+        for (Task t : ready) schedule(t);
+    }
+
+    /**
+     * Runs the main-thread hooks and waits until every critical hook is installed.
+     *
+     * @return false if that took longer than {@code timeoutMs}; the hooks still finish later
+     */
+    boolean awaitCritical(long timeoutMs) {
+        if (!runMainThreadHooksUntilZero(pendingCritical, timeoutMs)) {
+            Log.w(TAG, "Critical hooks not ready after " + timeoutMs + " ms, continuing");
+            return false;
+        }
+        StartupProfile.phase("critical_hooks_ready");
+        Log.i(TAG, "Critical hooks ready in " + (SystemClock.elapsedRealtime() - startTime) + " ms");
+        return true;
+    }
+
+    /**
+     * Waits until every hook is installed, running main-thread hooks left over from an
+     * {@link #awaitCritical} that timed out. Must be called on the main thread.
+     *
+     * @return false if that took longer than {@code timeoutMs}
+     */
+    boolean awaitAll(long timeoutMs) {
+        if (!runMainThreadHooksUntilZero(pending, timeoutMs)) {
+            Log.w(TAG, "Hooks not installed after " + timeoutMs + " ms, continuing");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean runMainThreadHooksUntilZero(AtomicInteger counter, long timeoutMs) {
+        long deadline = SystemClock.elapsedRealtime() + timeoutMs;
+        try {
+            while (counter.get() > 0) {
+                long left = deadline - SystemClock.elapsedRealtime();
+                if (left <= 0) return false;
+                Task t = mainThreadQueue.poll(left, TimeUnit.MILLISECONDS);
+                if (t != null && t != WAKE) run(t);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void schedule(Task t) {
+        if (t.mainThread) {
+            mainThreadQueue.add(t);
+        } else {
+            pool.execute(() -> run(t));
+        }
+    }
+
+    private void run(Task t) {
+        StartupProfile.Entry profile = StartupProfile.begin(t.name);
+        try {
+            t.setup.run();
+            StartupProfile.end(profile, StartupProfile.INSTALLED, null);
+            Log.d(TAG, t.name + " installed in " + profile.durationMs + " ms on " + profile.thread);
+        } catch (NoClassDefFoundError e) {
+            // The cloner leaves hooks of disabled features out of hook.dex
+            StartupProfile.end(profile, StartupProfile.SKIPPED, e);
+            Log.i(TAG, t.name + " not included in this clone, skipped");
+        } catch (Throwable e) {
+            StartupProfile.end(profile, StartupProfile.FAILED, e);
+            Log.e(TAG, "Failed to install " + t.name, e);
+        }
+
+        for (Task d : t.dependents) {
+            if (d.waitingFor.decrementAndGet() == 0) schedule(d);
+        }
+        if (t.critical && pendingCritical.decrementAndGet() == 0) {
+            mainThreadQueue.add(WAKE);
+        }
+        if (pending.decrementAndGet() == 0) finished();
+    }
+
+    private void finished() {
+        StartupProfile.phase("all_hooks_installed");
+        pool.shutdown();
+        mainThreadQueue.add(WAKE);
+        Log.i(TAG, tasks.size() + " hooks installed in " + (SystemClock.elapsedRealtime() - startTime) + " ms");
+    }
+
+    private void markCritical(Task t) {
+        for (String dep : t.after) {
+            Task d = tasks.get(dep);
+            if (!d.critical) {
+                d.critical = true;
+                markCritical(d);
+            }
+        }
+    }
+
+    /** Fails fast on a dependency cycle, which would otherwise leave its hooks uninstalled. */
+    private void checkAcyclic() {
+        Map<String, Integer> state = new LinkedHashMap<>();
+        for (Task t : tasks.values()) visit(t, state);
+    }
+
+    private void visit(Task t, Map<String, Integer> state) {
+        Integer s = state.get(t.name);
+        if (s != null) {
+            if (s == 1) throw new IllegalStateException("Dependency cycle through " + t.name);
+            return;
+        }
+        state.put(t.name, 1);
+        for (String dep : t.after) visit(tasks.get(dep), state);
+        state.put(t.name, 2);
+    }
+
+    private static final class Task {
+        final String name;
+        final boolean mainThread;
+        final Runnable setup;
+        final String[] after;
+        final List<Task> dependents = new ArrayList<>();
+        final AtomicInteger waitingFor = new AtomicInteger();
+        boolean critical;
+
+        Task(String name, boolean critical, boolean mainThread, Runnable setup, String[] after) {
+            this.name = name;
+            this.critical = critical;
+            this.mainThread = mainThread;
+            this.setup = setup;
+            this.after = after;
+        }
+    }
+}
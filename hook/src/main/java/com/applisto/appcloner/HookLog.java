@@ -0,0 +1,187 @@
+package com.applisto.appcloner;
+
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Logging for code that runs inside hooked methods, where android.util.Log with string
+ * concatenation costs on every frame or request.
+ *
+ * The level comes from {@code log_level} in cloner.json ("verbose", "debug", "info", "warn",
+ * "error" or "off", default "info") and follows config reloads. A call below the level is one
+ * volatile read and a branch: messages use {@code {}} placeholders and are only formatted
+ * when logged. Arguments are still boxed at the call site, so hot paths with primitive
+ * arguments check {@link #isLoggable} first. Per-frame and per-request events go through a
+ * {@link Sampler}.
+ *
+ * Everything logged also goes to a ring buffer of the last {@value #RING_SIZE} lines, which
+ * DefaultProvider returns from {@code call("hook_log")}.
+ */
+final class HookLog {
+    static final int OFF = Integer.MAX_VALUE;
+
+    private static final int RING_SIZE = 512;
+    private static final String LEVELS = "??VDIWEA";
+
+    private static volatile int sLevel = Log.INFO;
+
+    // Ring buffer, guarded by itself
+    private static final long[] sTimes = new long[RING_SIZE];
+    private static final int[] sLevels = new int[RING_SIZE];
+    private static final String[] sTags = new String[RING_SIZE];
+    private static final String[] sMessages = new String[RING_SIZE];
+    private static int sNext;
+    private static int sCount;
+
+    private HookLog() {}
+
+    /** Takes the level from the config and follows later changes of it. */
+    static void init(ClonerSettings settings) {
+        sLevel = parseLevel(settings.logLevel());
+        ClonerSettings.addListener(s -> sLevel = parseLevel(s.logLevel()));
+    }
+
+    static int parseLevel(String name) {
+        switch (name == null ? "" : name.toLowerCase(Locale.ROOT)) {
+            case "verbose": return Log.VERBOSE;
+            case "debug":   return Log.DEBUG;
+            case "warn":    return Log.WARN;
+            case "error":   return Log.ERROR;
+            case "off":     return OFF;
+            default:        return Log.INFO;
+        }
+    }
+
+    static boolean isLoggable(int level) {
+        return level >= sLevel;
+    }
+
+    static void v(String tag, String msg, Object arg) {
+        if (Log.VERBOSE >= sLevel) log(Log.VERBOSE, tag, format(msg, arg), null);
+    }
+
+    static void d(String tag, String msg) {
+        if (Log.DEBUG >= sLevel) log(Log.DEBUG, tag, msg, null);
+    }
+
+    static void d(String tag, String msg, Object arg) {
+        if (Log.DEBUG >= sLevel) log(Log.DEBUG, tag, format(msg, arg), null);
+    }
+
+    static void d(String tag, String msg, Object arg1, Object arg2) {
+        if (Log.DEBUG >= sLevel) log(Log.DEBUG, tag, format(msg, arg1, arg2), null);
+    }
+
+    static void i(String tag, String msg) {
+        if (Log.INFO >= sLevel) log(Log.INFO, tag, msg, null);
+    }
+
+    static void i(String tag, String msg, Object arg) {
+        if (Log.INFO >= sLevel) log(Log.INFO, tag, format(msg, arg), null);
+    }
+
+    static void w(String tag, String msg, Throwable t) {
+        if (Log.WARN >= sLevel) log(Log.WARN, tag, msg, t);
+    }
+
+    static void e(String tag, String msg, Throwable t) {
+        if (Log.ERROR >= sLevel) log(Log.ERROR, tag, msg, t);
+    }
+
+    /**
+     * Logs the first of every {@code every} events at debug level, with the running count, for
+     * events that fire per frame or per request.
+     */
+    static final class Sampler {
+        private final int every;
+        private final AtomicInteger count = new AtomicInteger();
+
+        Sampler(int every) {
+            this.every = every;
+        }
+
+        void d(String tag, String msg) {
+            if (Log.DEBUG >= sLevel && take()) log(Log.DEBUG, tag, msg + suffix(), null);
+        }
+
+        void d(String tag, String msg, Object arg) {
+            if (Log.DEBUG >= sLevel && take()) log(Log.DEBUG, tag, format(msg, arg) + suffix(), null);
+        }
+
+        void d(String tag, String msg, Object arg1, Object arg2) {
+            if (Log.DEBUG >= sLevel && take()) log(Log.DEBUG, tag, format(msg, arg1, arg2) + suffix(), null);
+        }
+
+        /** Counts the event; true for the ones to log. */
+        private boolean take() {
+            return count.getAndIncrement() % every == 0;
+        }
+
+        private String suffix() {
+            return " (" + count.get() + " so far, 1 in " + every + " logged)";
+        }
+    }
+
+    /** The ring buffer, oldest line first, in logcat's threadtime-like layout. */
+    static String dump() {
+        SimpleDateFormat time = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        StringBuilder sb = new StringBuilder();
+        synchronized (sTimes) {
+            int start = (sNext - sCount + RING_SIZE) % RING_SIZE;
+            for (int i = 0; i < sCount; i++) {
+                int k = (start + i) % RING_SIZE;
+                sb.append(time.format(new Date(sTimes[k]))).append(' ')
+                        .append(LEVELS.charAt(sLevels[k])).append('/').append(sTags[k]).append(": ")
+                        .append(sMessages[k]).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    static void clear() {
+        synchronized (sTimes) {
+            for (int i = 0; i < RING_SIZE; i++) {
+                sTags[i] = null;
+                sMessages[i] = null;
+            }
+            sNext = 0;
+            sCount = 0;
+        }
+    }
+
+    private static void log(int level, String tag, String msg, Throwable t) {
+        switch (level) {
+            case Log.VERBOSE: Log.v(tag, msg); break;
+            case Log.DEBUG:   Log.d(tag, msg); break;
+            case Log.INFO:    Log.i(tag, msg); break;
+            case Log.WARN:    if (t != null) Log.w(tag, msg, t); else Log.w(tag, msg); break;
+            default:          if (t != null) Log.e(tag, msg, t); else Log.e(tag, msg); break;
+        }
+        synchronized (sTimes) {
+            sTimes[sNext] = System.currentTimeMillis();
+            sLevels[sNext] = level;
+            sTags[sNext] = tag;
+            sMessages[sNext] = t != null ? msg + ": " + t : msg;
+            sNext = (sNext + 1) % RING_SIZE;
+            if (sCount < RING_SIZE) sCount++;
+        }
+    }
+
+    /** Replaces each {@code {}} in {@code msg} with the next argument. */
+    static String format(String msg, Object... args) {
+        if (args == null || args.length == 0) return msg;
+        StringBuilder sb = new StringBuilder(msg.length() + 32 * args.length);
+        int from = 0;
+        int a = 0;
+        int at;
+        while (a < args.length && (at = msg.indexOf("{}", from)) >= 0) {
+            sb.append(msg, from, at).append(args[a++]);
+            from = at + 2;
+        }
+        return sb.append(msg, from, msg.length()).toString();
+    }
+}
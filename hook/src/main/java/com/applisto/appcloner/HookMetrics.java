@@ -0,0 +1,205 @@
+package com.applisto.appcloner;
+
+import android.os.Looper;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import de.robv.android.xposed.HookCallbacks;
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * How often each hook callback runs and how long it takes, per hooked method.
+ * {@link SmartHooking#hookMethod} wraps every callback in a {@link Metered} hook; DefaultProvider
+ * returns the numbers from {@code call("hook_metrics")}.
+ *
+ * Recording a call is two {@code nanoTime()} reads and a few atomic adds, without allocating
+ * or locking. The counters are striped by thread so busy hooks on several threads do not
+ * contend on one cache line. Latencies go into fixed power-of-two buckets: bucket 0 is under
+ * 1 µs, bucket {@code i} is [2^(i-1), 2^i) µs and the last one is everything longer.
+ * Setting {@code hook_metrics} to false in cloner.json stops the recording, also at runtime.
+ */
+final class HookMetrics {
+    static final int BUCKETS = 20;
+
+    private static final int STRIPES = 8; // power of two
+    // Per stripe: calls, main thread calls, failures, before ns, after ns, then both histograms
+    private static final int CALLS = 0;
+    private static final int MAIN_THREAD = 1;
+    private static final int FAILURES = 2;
+    private static final int BEFORE_NANOS = 3;
+    private static final int AFTER_NANOS = 4;
+    private static final int BEFORE_BUCKETS = 5;
+    private static final int AFTER_BUCKETS = BEFORE_BUCKETS + BUCKETS;
+    // Padded to a multiple of 8 longs so stripes start on separate cache lines
+    private static final int STRIDE = (AFTER_BUCKETS + BUCKETS + 7) & ~7;
+
+    private static final Thread MAIN = Looper.getMainLooper().getThread();
+    private static final List<Metered> ALL = new CopyOnWriteArrayList<>();
+    private static volatile boolean sEnabled = true;
+
+    private HookMetrics() {}
+
+    /** Turns recording on or off and follows later changes of the config. */
+    static void init(ClonerSettings settings) {
+        sEnabled = settings.hookMetrics();
+        ClonerSettings.addListener(s -> sEnabled = s.hookMetrics());
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /** Wraps {@code callback} so its calls on {@code target} are measured. */
+    static XC_MethodHook wrap(Member target, XC_MethodHook callback) {
+        Metered m = new Metered(target, callback);
+        ALL.add(m);
+        return m;
+    }
+
+    /**
+     * Stops reporting a wrapper from {@link #wrap} once it is unhooked, so a hook that is
+     * removed and installed again is listed once; anything else is ignored.
+     */
+    static void remove(XC_MethodHook metered) {
+        ALL.remove(metered);
+    }
+
+    static final class Metered extends XC_MethodHook {
+        final Member target;
+        final XC_MethodHook callback;
+        private final AtomicLongArray counters = new AtomicLongArray(STRIPES * STRIDE);
+
+        Metered(Member target, XC_MethodHook callback) {
+            super(callback.priority);
+            this.target = target;
+            this.callback = callback;
+        }
+
+        @Override
+        protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+            if (!sEnabled) {
+                HookCallbacks.before(callback, param);
+                return;
+            }
+            Thread thread = Thread.currentThread();
+            int base = (int) (thread.getId() & (STRIPES - 1)) * STRIDE;
+            counters.incrementAndGet(base + CALLS);
+            if (thread == MAIN) counters.incrementAndGet(base + MAIN_THREAD);
+            long start = System.nanoTime();
+            boolean ok = false;
+            try {
+                HookCallbacks.before(callback, param);
+                ok = true;
+            } finally {
+                record(base, BEFORE_NANOS, BEFORE_BUCKETS, System.nanoTime() - start, ok);
+            }
+        }
+
+        @Override
+        protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+            if (!sEnabled) {
+                HookCallbacks.after(callback, param);
+                return;
+            }
+            int base = (int) (Thread.currentThread().getId() & (STRIPES - 1)) * STRIDE;
+            long start = System.nanoTime();
+            boolean ok = false;
+            try {
+                HookCallbacks.after(callback, param);
+                ok = true;
+            } finally {
+                record(base, AFTER_NANOS, AFTER_BUCKETS, System.nanoTime() - start, ok);
+            }
+        }
+
+        private void record(int base, int nanosSlot, int buckets, long nanos, boolean ok) {
+            counters.addAndGet(base + nanosSlot, nanos);
+            counters.incrementAndGet(base + buckets + bucket(nanos));
+            if (!ok) counters.incrementAndGet(base + FAILURES);
+        }
+
+        private long sum(int slot) {
+            long total = 0;
+            for (int s = 0; s < STRIPES; s++) total += counters.get(s * STRIDE + slot);
+            return total;
+        }
+
+        private JSONArray histogram(int buckets) {
+            JSONArray arr = new JSONArray();
+            for (int b = 0; b < BUCKETS; b++) arr.put(sum(buckets + b));
+            return arr;
+        }
+
+        private void reset() {
+            for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject o = new JSONObject();
+            o.put("method", describe(target));
+            o.put("callback", callbackName(callback));
+            o.put("calls", sum(CALLS));
+            o.put("main_thread_calls", sum(MAIN_THREAD));
+            o.put("failures", sum(FAILURES));
+            o.put("before_ns", sum(BEFORE_NANOS));
+            o.put("after_ns", sum(AFTER_NANOS));
+            o.put("before_us_log2", histogram(BEFORE_BUCKETS));
+            o.put("after_us_log2", histogram(AFTER_BUCKETS));
+            return o;
+        }
+    }
+
+    static int bucket(long nanos) {
+        long micros = nanos >> 10; // close enough to µs for a log scale, without a division
+        int b = 64 - Long.numberOfLeadingZeros(micros);
+        return b < BUCKETS ? b : BUCKETS - 1;
+    }
+
+    /** Every measured callback that has run at least once, busiest first. */
+    static JSONObject toJson() throws JSONException {
+        List<JSONObject> hooks = new ArrayList<>();
+        for (Metered m : ALL) {
+            JSONObject o = m.toJson();
+            if (o.getLong("calls") > 0) hooks.add(o);
+        }
+        Collections.sort(hooks, (a, b) -> Long.compare(b.optLong("calls"), a.optLong("calls")));
+        JSONObject root = new JSONObject();
+        root.put("enabled", sEnabled);
+        root.put("hooks", new JSONArray(hooks));
+        root.put("hooked_callbacks", ALL.size());
+        root.put("hooked_methods", HookDispatcher.hookedMethods());
+        root.put("buckets", BUCKETS);
+        return root;
+    }
+
+    static void reset() {
+        for (Metered m : ALL) m.reset();
+    }
+
+    private static String describe(Member m) {
+        Class<?>[] params = m instanceof Method ? ((Method) m).getParameterTypes()
+                : m instanceof Constructor ? ((Constructor<?>) m).getParameterTypes() : new Class<?>[0];
+        StringBuilder sb = new StringBuilder(m.getDeclaringClass().getName()).append('.').append(m.getName()).append('(');
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(params[i].getSimpleName());
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String callbackName(XC_MethodHook callback) {
+        String name = callback.getClass().getName();
+        return name.startsWith("com.applisto.appcloner.") ? name.substring("com.applisto.appcloner.".length()) : name;
+    }
+}
@@ -0,0 +1,153 @@
+package com.applisto.appcloner;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Every hook {@code DefaultProvider} can install, in install order. The config is evaluated
+ * once and only enabled hooks are scheduled, so the class of a disabled hook is never loaded
+ * or initialised: its setup only runs through a lambda.
+ *
+ * The {@code cloner.json} keys that enable each hook are in {@link HookConditions}, which the
+ * cloner's HookDexShrinker also uses to drop disabled hooks from hook.dex. Each hook still
+ * makes its own check in init.
+ */
+final class HookRegistry {
+    private static final String TAG = "HookRegistry";
+
+    interface Setup {
+        void install(Context context);
+    }
+
+    static final class Hook {
+        final String name;
+        final boolean critical;
+        final boolean mainThread;
+        final Setup setup;
+        final HookConditions.Hook conditions;
+        String[] after = new String[0];
+
+        private Hook(String name, boolean critical, boolean mainThread, Setup setup) {
+            this.name = name;
+            this.critical = critical;
+            this.mainThread = mainThread;
+            this.setup = setup;
+            this.conditions = HookConditions.of(name);
+        }
+
+        /** Installs after these hooks when they are enabled too. */
+        Hook after(String... hooks) {
+            this.after = hooks;
+            return this;
+        }
+
+        boolean isEnabled(JSONObject config) {
+            return conditions.isEnabled(config);
+        }
+    }
+
+    /** Needed before app code runs. */
+    private static Hook critical(String name, Setup setup) {
+        return new Hook(name, true, false, setup);
+    }
+
+    /** Only needed once the app shows UI or uses the camera. */
+    private static Hook optional(String name, Setup setup) {
+        return new Hook(name, false, false, setup);
+    }
+
+    private static Hook onMainThread(String name, Setup setup) {
+        return new Hook(name, true, true, setup);
+    }
+
+    // Dependencies: hooks that hook the same methods or share state install in this order
+    static final Hook[] HOOKS = {
+            critical("Socks5ProxyHook", ctx -> new Socks5ProxyHook().init(ctx)),
+
+            // Device identity, read by app code as early as Application.onCreate
+            critical("AndroidIdHook", ctx -> new AndroidIdHook().init(ctx)),
+            critical("WifiMacHook", ctx -> new WifiMacHook().init(ctx)),
+            critical("BuildPropsHook", ctx -> new BuildPropsHook().init(ctx)),
+            critical("ImsiHook", ctx -> new ImsiHook().init(ctx)),
+            critical("ImeiHook", ctx -> new ImeiHook().init(ctx)),
+            // BuildPropsHook records the real Build.SERIAL, which SerialHook then replaces
+            critical("SerialHook", ctx -> new SerialHook().init(ctx)).after("BuildPropsHook"),
+            // Both hook Settings.Secure.getString
+            critical("BtMacHook", ctx -> new BtMacHook().init(ctx)).after("AndroidIdHook"),
+            critical("SpoofLocationHook", ctx -> new SpoofLocationHook().init(ctx)),
+            // Optional: Set custom location
+            // SpoofLocationHook.setSpoofedLocation(40.7128, -74.0060); // New York
+            // SpoofLocationHook.enableLocationSpoofing(true);
+
+            // Network and WebView; ServiceWorkerController has to be set up on the main thread
+            onMainThread("WebViewUrlDataFilterHook", ctx -> new WebViewUrlDataFilterHook().init(ctx)),
+            critical("UserAgentHook", ctx -> new UserAgentHook().init(ctx)),
+            critical("WebViewFilterHook", ctx -> new WebViewFilterHook().init(ctx)).after("UserAgentHook"),
+            // Rewrites the clone's package name and version back to the original's in HTTP traffic
+            critical("UserAgentWorkaround", ctx -> {
+                        boolean uriSchemeWorkaround = ClonerSettings.get(ctx).raw().optBoolean("uri_scheme_workaround", false);
+                        UserAgentWorkaround.Utils.initPackageNames(ctx);
+                        UserAgentWorkaround.install(ctx, uriSchemeWorkaround);
+                    }).after("UserAgentHook"),
+            // Firebase fails for a renamed package and initialises before Application.onCreate
+            critical("UserAgentWorkaroundWarning", ctx -> {
+                        UserAgentWorkaroundWarning.install();
+                        UserAgentWorkaroundWarning.installAnalyticsWorkaround();
+                        UserAgentWorkaroundWarning.installCrashlyticsWorkaround();
+                    }),
+
+            optional("BackgroundMediaHook", ctx -> new BackgroundMediaHook().init(ctx)).after("UserAgentHook"),
+            optional("FakeCameraHook", ctx -> new FakeCameraHook().init(ctx)),
+            optional("ForcedBackCameraHook", ForcedBackCameraHook::install).after("FakeCameraHook"),
+            // FakeCameraHook (through FakeCameraAppSupport), FakeCalculatorHook and
+            // InternalBrowserHook all register with ExecStartActivityHook; it is thread-safe,
+            // but keep the registration order of the original sequential install
+            optional("FakeCalculatorHook", ctx -> new FakeCalculatorHook(ctx).install(ctx)).after("FakeCameraHook"),
+            optional("InternalBrowserHook", ctx -> new InternalBrowserHook(ctx).init()).after("FakeCalculatorHook"),
+            optional("DialogInterceptHook", ctx -> new DialogInterceptHook().init(ctx)),
+            optional("FloatingAppHook", ctx -> new FloatingAppHook().init(ctx)),
+            optional("AccessibleDataDirHook", ctx -> new AccessibleDataDirHook().init(ctx)),
+            optional("ScreenshotDetectionBlocker", ScreenshotDetectionBlocker::install),
+    };
+
+    private HookRegistry() {}
+
+    /**
+     * Adds the hooks {@code config} enables to {@code installer}. Dependencies on disabled
+     * hooks are dropped.
+     *
+     * @return the names of the scheduled hooks
+     */
+    static List<String> schedule(HookInstaller installer, JSONObject config, Context context) {
+        Set<String> enabled = new HashSet<>();
+        for (Hook h : HOOKS) {
+            if (h.isEnabled(config)) enabled.add(h.name);
+        }
+
+        List<String> scheduled = new ArrayList<>(enabled.size());
+        for (Hook h : HOOKS) {
+            if (!enabled.contains(h.name)) continue;
+            List<String> after = new ArrayList<>(h.after.length);
+            for (String dep : h.after) {
+                if (enabled.contains(dep)) after.add(dep);
+            }
+            String[] deps = after.toArray(new String[0]);
+            Runnable run = () -> h.setup.install(context);
+            if (h.mainThread) {
+                installer.addOnMainThread(h.name, run, deps);
+            } else {
+                installer.add(h.name, h.critical, run, deps);
+            }
+            scheduled.add(h.name);
+        }
+        Log.i(TAG, scheduled.size() + " of " + HOOKS.length + " hooks enabled: " + scheduled);
+        return scheduled;
+    }
+}
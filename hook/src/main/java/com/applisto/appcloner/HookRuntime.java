@@ -0,0 +1,149 @@
+package com.applisto.appcloner;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The background threads of the hook runtime, shared by every hook and by DefaultProvider,
+ * instead of a new Thread per task and a pool per hook.
+ *
+ * There are four pools. {@link #io} is for file, network and provider work, {@link #cpu}
+ * for image work at background priority, and the timer runs delayed and periodic tasks,
+ * handing the actual work to the io pool. {@link #submitLong} runs jobs that take minutes,
+ * e.g. a data export, one at a time on their own thread, so they do not hold an io thread
+ * that provider calls wait for. Threads are only started when work arrives and
+ * exit after {@value #KEEP_ALIVE_SECONDS} s without any. The queues are bounded: when one
+ * is full, {@link #io} and {@link #cpu} drop the task with a warning and {@link #submitIo}
+ * and {@link #submitLong} throw RejectedExecutionException, instead of the work piling up.
+ *
+ * HookInstaller keeps its own pool; it is shut down once the hooks are installed.
+ */
+final class HookRuntime {
+    private static final String TAG = "HookRuntime";
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+    private static final int IO_THREADS = 4;
+    private static final int CPU_THREADS = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static final ThreadPoolExecutor IO = pool("io", IO_THREADS, Process.THREAD_PRIORITY_DEFAULT);
+    private static final ThreadPoolExecutor CPU = pool("cpu", CPU_THREADS, Process.THREAD_PRIORITY_BACKGROUND);
+    private static final ThreadPoolExecutor LONG = pool("long", 1, Process.THREAD_PRIORITY_BACKGROUND);
+    private static final ScheduledThreadPoolExecutor TIMER = timer();
+
+    private HookRuntime() {}
+
+    /** Runs {@code task} on the io pool; false if the queue is full and it was dropped. */
+    static boolean io(Runnable task) {
+        return execute(IO, "io", task);
+    }
+
+    /** Runs {@code task} on the io pool; cancel the future to interrupt it. */
+    static <T> Future<T> submitIo(Callable<T> task) {
+        return IO.submit(task);
+    }
+
+    /**
+     * Runs {@code task} on the thread for long jobs, at background priority, after any long
+     * job already running; cancel the future to interrupt it.
+     */
+    static <T> Future<T> submitLong(Callable<T> task) {
+        return LONG.submit(task);
+    }
+
+    /** Runs {@code task} on the cpu pool, at background priority; false if it was dropped. */
+    static boolean cpu(Runnable task) {
+        return execute(CPU, "cpu", task);
+    }
+
+    /** Runs {@code task} on the io pool after {@code delay}. */
+    static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return TIMER.schedule(() -> io(task), delay, unit);
+    }
+
+    /**
+     * Runs {@code task} on the timer thread itself after {@code delay}, so it cannot be dropped
+     * by a full io queue. Only for short bookkeeping: it holds up every other scheduled task.
+     */
+    static ScheduledFuture<?> onTimer(Runnable task, long delay, TimeUnit unit) {
+        return TIMER.schedule(task, delay, unit);
+    }
+
+    /**
+     * Runs {@code task} on the io pool every {@code delay} after {@code initialDelay}. A run
+     * that is due while the previous one still goes is skipped. Cancel the future to stop.
+     */
+    static ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        AtomicBoolean running = new AtomicBoolean();
+        Runnable once = () -> {
+            try {
+                task.run();
+            } finally {
+                running.set(false);
+            }
+        };
+        return TIMER.scheduleWithFixedDelay(() -> {
+            if (running.compareAndSet(false, true) && !io(once)) running.set(false);
+        }, initialDelay, delay, unit);
+    }
+
+    /** Threads alive and tasks waiting per pool, for diagnostics. */
+    static String describe() {
+        return "io " + IO.getPoolSize() + "/" + IO_THREADS + " threads, " + IO.getQueue().size() + " queued; "
+                + "cpu " + CPU.getPoolSize() + "/" + CPU_THREADS + " threads, " + CPU.getQueue().size() + " queued; "
+                + "long " + LONG.getActiveCount() + " running, " + LONG.getQueue().size() + " queued; "
+                + "timer " + TIMER.getPoolSize() + " threads, " + TIMER.getQueue().size() + " scheduled";
+    }
+
+    private static boolean execute(ThreadPoolExecutor pool, String name, Runnable task) {
+        try {
+            pool.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, name + " queue full, dropping " + task);
+            return false;
+        }
+    }
+
+    private static ThreadPoolExecutor pool(String name, int threads, int priority) {
+        // core == max with core timeout: a thread per task up to the limit, then queueing,
+        // and no threads at all while idle
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY), factory(name, priority));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ScheduledThreadPoolExecutor timer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, factory("timer", Process.THREAD_PRIORITY_DEFAULT));
+        timer.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static ThreadFactory factory(String name, int priority) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(() -> {
+                Process.setThreadPriority(priority);
+                r.run();
+            }, "HookRuntime-" + name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
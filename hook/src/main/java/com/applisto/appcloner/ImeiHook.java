@@ -8,7 +8,6 @@ import android.util.Log;
 import java.lang.reflect.Method;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * Hook for spoofing IMEI (International Mobile Equipment Identity).
@@ -61,7 +60,7 @@ public final class ImeiHook {
     private void hookMethod(String methodName) {
         try {
             Method m = TelephonyManager.class.getDeclaredMethod(methodName);
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     Object orig = param.getResult();
                     param.setResult(sFakeImei);
@@ -79,7 +78,7 @@ public final class ImeiHook {
     private void hookMethodWithInt(String methodName) {
         try {
             Method m = TelephonyManager.class.getDeclaredMethod(methodName, int.class);
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     Object orig = param.getResult();
                     param.setResult(sFakeImei);
@@ -8,7 +8,6 @@ import android.util.Log;
 import java.lang.reflect.Method;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * Hook for spoofing IMSI (International Mobile Subscriber Identity).
@@ -36,7 +35,7 @@ public class ImsiHook {
         // Hook getSubscriberId() - no parameters version
         try {
             Method m = TelephonyManager.class.getDeclaredMethod("getSubscriberId");
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     Object orig = param.getResult();
                     param.setResult(sFakeImsi);
@@ -51,7 +50,7 @@ public class ImsiHook {
         // Hook getSubscriberId(int subId) - subscription variant (API 22+)
         try {
             Method m = TelephonyManager.class.getDeclaredMethod("getSubscriberId", int.class);
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     Object orig = param.getResult();
                     param.setResult(sFakeImsi);
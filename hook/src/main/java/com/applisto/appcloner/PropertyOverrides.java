@@ -0,0 +1,36 @@
+package com.applisto.appcloner;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SystemProperties values BuildPropsHook reports instead of the real ones. Every
+ * SystemProperties read in the process goes through {@link #lookup}, so a key without an
+ * override costs one map lookup and allocates nothing.
+ *
+ * Plain Java, so the :benchmark module can measure the lookup on the JVM.
+ */
+final class PropertyOverrides {
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    /** The value to report for {@code key}, the first argument of SystemProperties.get, or null. */
+    String lookup(Object key) {
+        return key != null ? values.get(key) : null;
+    }
+
+    void put(String key, String value) {
+        values.put(key, value);
+    }
+
+    void remove(String key) {
+        values.remove(key);
+    }
+
+    void clear() {
+        values.clear();
+    }
+
+    int size() {
+        return values.size();
+    }
+}
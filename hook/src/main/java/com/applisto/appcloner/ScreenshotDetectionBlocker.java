@@ -12,7 +12,6 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * Screenshot bypass using Pine hooking framework directly
@@ -56,7 +55,7 @@ public class ScreenshotDetectionBlocker {
         try {
             // public void setRecentsScreenshotEnabled(boolean enabled)
             Method method = Activity.class.getMethod("setRecentsScreenshotEnabled", boolean.class);
-            XposedBridge.hookMethod(method, new XC_MethodHook() {
+            SmartHooking.hookMethod(method, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) {
                     // Force argument to true
@@ -70,7 +69,7 @@ public class ScreenshotDetectionBlocker {
     }
 
     private static void hookWindowSetFlags() throws Throwable {
-        XposedBridge.hookMethod(
+        SmartHooking.hookMethod(
             Window.class.getDeclaredMethod("setFlags", int.class, int.class),
             new XC_MethodHook() {
                 @Override
@@ -92,7 +91,7 @@ public class ScreenshotDetectionBlocker {
     }
 
     private static void hookWindowAddFlags() throws Throwable {
-        XposedBridge.hookMethod(
+        SmartHooking.hookMethod(
             Window.class.getDeclaredMethod("addFlags", int.class),
             new XC_MethodHook() {
                 @Override
@@ -112,7 +111,7 @@ public class ScreenshotDetectionBlocker {
         Class<?> layoutParamsClass = WindowManager.LayoutParams.class;
 
         // Constructor with no args
-        XposedBridge.hookMethod(
+        SmartHooking.hookMethod(
             layoutParamsClass.getDeclaredConstructor(),
             new XC_MethodHook() {
                 @Override
@@ -123,7 +122,7 @@ public class ScreenshotDetectionBlocker {
         );
 
         // Constructor with flags
-        XposedBridge.hookMethod(
+        SmartHooking.hookMethod(
             layoutParamsClass.getDeclaredConstructor(int.class, int.class),
             new XC_MethodHook() {
                 @Override
@@ -136,7 +135,7 @@ public class ScreenshotDetectionBlocker {
     }
 
     private static void hookSurfaceViewSetSecure() throws Throwable {
-        XposedBridge.hookMethod(
+        SmartHooking.hookMethod(
             SurfaceView.class.getDeclaredMethod("setSecure", boolean.class),
             new XC_MethodHook() {
                 @Override
@@ -10,7 +10,6 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * Hook for spoofing Android device serial number.
@@ -34,7 +33,7 @@ public final class SerialHook {
         // Hook Build.getSerial() method (API 26+)
         try {
             Method m = Build.class.getDeclaredMethod("getSerial");
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     Object orig = param.getResult();
                     param.setResult(sFakeSerial);
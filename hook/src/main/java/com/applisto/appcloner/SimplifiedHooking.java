@@ -5,7 +5,6 @@ import android.util.Log;
 import java.lang.reflect.Method;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public class SimplifiedHooking {
     private static final String TAG = "SimplifiedHooking";
@@ -29,7 +28,7 @@ public class SimplifiedHooking {
     public static void hookMethod(Class<?> clazz, String methodName, HookCallback callback, Class<?>... parameterTypes) {
         try {
             Method method = clazz.getDeclaredMethod(methodName, parameterTypes);
-            XposedBridge.hookMethod(method, callback);
+            SmartHooking.hookMethod(method, callback);
             Log.d(TAG, "Hooked method: " + clazz.getName() + "." + methodName);
         } catch (NoSuchMethodException e) {
             Log.e(TAG, "Method not found: " + clazz.getName() + "." + methodName, e);
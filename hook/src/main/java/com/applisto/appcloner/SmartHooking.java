@@ -6,7 +6,6 @@ import android.util.Log;
 import java.lang.reflect.Member;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public final class SmartHooking {
 
@@ -22,13 +21,33 @@ public final class SmartHooking {
     }
 
     /* ----------------------------------------------------------
-       Public API – delegates to AliuHook (XposedBridge)
+       Public API – delegates to AliuHook through HookDispatcher
        ---------------------------------------------------------- */
+
+    /**
+     * Adds {@code callback} to the {@link HookDispatcher} of {@code target}, which hooks the
+     * method once and runs every callback on it. Counted in the {@link StartupProfile} of the
+     * hook being installed and measured by {@link HookMetrics}. Every hook goes through here;
+     * failures are rethrown to the caller.
+     */
+    public static HookDispatcher.Handle hookMethod(Member target, XC_MethodHook callback) {
+        XC_MethodHook metered = HookMetrics.wrap(target, callback);
+        try {
+            HookDispatcher.Handle handle = HookDispatcher.add(target, metered);
+            StartupProfile.countHookMethod(false);
+            return handle;
+        } catch (RuntimeException | Error e) {
+            HookMetrics.remove(metered);
+            StartupProfile.countHookMethod(true);
+            throw e;
+        }
+    }
+
     public static void hook(Member target, XC_MethodHook callback) {
         if (target == null || callback == null) return;
 
         try {
-            XposedBridge.hookMethod(target, callback);
+            hookMethod(target, callback);
             Log.d(TAG, "Hooked: " + target);
         } catch (Throwable t) {
             Log.e(TAG, "Hook failed: " + target, t);
@@ -33,15 +33,12 @@ import java.util.concurrent.ConcurrentHashMap;
 import javax.net.SocketFactory;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public final class Socks5ProxyHook {
 
     private static final String TAG = "Socks5ProxyHook";
-    private static String proxyHost;
-    private static int    proxyPort;
-    private static String proxyUser;
-    private static String proxyPass;
+    // Replaced as a whole when the settings are reloaded; null while the proxy is turned off
+    private static volatile Endpoint sProxy;
 
     // Cache for UDP relays: Key = Local DatagramSocket, Value = RelayWorker
     private static final Map<DatagramSocket, UdpRelayWorker> udpRelays = new ConcurrentHashMap<>();
@@ -51,47 +48,35 @@ public final class Socks5ProxyHook {
 
     public void init(Context context) {
         ClonerSettings settings = ClonerSettings.get(context);
-        boolean enabled = settings.socksProxy();
-        proxyHost = settings.socksProxyHost();
-        proxyPort = settings.socksProxyPort();
-        proxyUser = settings.socksProxyUser();
-        proxyPass = settings.socksProxyPass();
+        Endpoint proxy = Endpoint.from(settings);
 
-        if (!enabled || TextUtils.isEmpty(proxyHost)) {
+        if (proxy == null) {
             Log.i(TAG, "SOCKS5 not configured or disabled – skipping hook");
             return;
         }
 
-        Log.i(TAG, "Installing SOCKS5 proxy → " + proxyHost + ":" + proxyPort);
+        Log.i(TAG, "Installing SOCKS5 proxy → " + proxy.host + ":" + proxy.port);
+        apply(proxy);
 
         // 1. Set Authenticator for global auth
-        if (!TextUtils.isEmpty(proxyUser)) {
-            Authenticator.setDefault(new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    if (getRequestorType() == RequestorType.PROXY) {
-                        return new PasswordAuthentication(proxyUser, proxyPass.toCharArray());
-                    }
-                    return null;
+        Authenticator.setDefault(new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                Endpoint p = sProxy;
+                if (p != null && !TextUtils.isEmpty(p.user) && getRequestorType() == RequestorType.PROXY) {
+                    return new PasswordAuthentication(p.user, p.pass.toCharArray());
                 }
-            });
-        }
-
-        // 2. Set System Properties for WebView / Default Java handling
-        System.setProperty("socksProxyHost", proxyHost);
-        System.setProperty("socksProxyPort", String.valueOf(proxyPort));
-        if (!TextUtils.isEmpty(proxyUser)) {
-            System.setProperty("java.net.socks.username", proxyUser);
-            System.setProperty("java.net.socks.password", proxyPass);
-        }
+                return null;
+            }
+        });
 
-        // 3. Set Default ProxySelector
+        // 2. Set Default ProxySelector
         ProxySelector.setDefault(new ProxySelector() {
             @Override
             public List<Proxy> select(URI uri) {
-                return Collections.singletonList(
-                        new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved(proxyHost, proxyPort))
-                );
+                Endpoint p = sProxy;
+                return Collections.singletonList(p == null ? Proxy.NO_PROXY
+                        : new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved(p.host, p.port)));
             }
 
             @Override
@@ -100,11 +85,18 @@ public final class Socks5ProxyHook {
             }
         });
 
-        // 4. Hook SocketFactory and Socket Constructors
+        // New connections follow a changed proxy; open ones keep theirs
+        ClonerSettings.addListener(s -> {
+            Endpoint p = Endpoint.from(s);
+            apply(p);
+            Log.i(TAG, p == null ? "SOCKS5 proxy turned off" : "SOCKS5 proxy now " + p.host + ":" + p.port);
+        });
+
+        // 3. Hook SocketFactory and Socket Constructors
         hookSocketFactory();
         hookSocketConstructors();
 
-        // 5. Hook DatagramSocket for UDP support
+        // 4. Hook DatagramSocket for UDP support
         hookDatagramSocket();
 
         Log.i(TAG, "SOCKS5 hook installed (TCP + UDP + Auth + RemoteDNS)");
@@ -116,20 +108,22 @@ public final class Socks5ProxyHook {
     private void hookSocketFactory() {
         try {
             Method mSF1 = SocketFactory.class.getDeclaredMethod("createSocket", String.class, int.class);
-            XposedBridge.hookMethod(mSF1, new XC_MethodHook() {
+            SmartHooking.hookMethod(mSF1, new XC_MethodHook() {
                 @Override public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     String host = (String) param.args[0];
                     int    port = (int)    param.args[1];
-                    param.setResult(createProxySocket(host, port));
+                    Socket sock = createProxySocket(host, port);
+                    if (sock != null) param.setResult(sock);
                 }
             });
 
             Method mSF2 = SocketFactory.class.getDeclaredMethod("createSocket", InetAddress.class, int.class);
-            XposedBridge.hookMethod(mSF2, new XC_MethodHook() {
+            SmartHooking.hookMethod(mSF2, new XC_MethodHook() {
                 @Override public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     InetAddress addr = (InetAddress) param.args[0];
                     int         port = (int)        param.args[1];
-                    param.setResult(createProxySocket(addr.getHostAddress(), port));
+                    Socket sock = createProxySocket(addr.getHostAddress(), port);
+                    if (sock != null) param.setResult(sock);
                 }
             });
 
@@ -145,7 +139,7 @@ public final class Socks5ProxyHook {
         try {
             // Hook new Socket() - the default no-arg constructor
             Constructor<?> c1 = Socket.class.getDeclaredConstructor();
-            XposedBridge.hookMethod(c1, new XC_MethodHook() {
+            SmartHooking.hookMethod(c1, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) throws Throwable {
                     Socket socket = (Socket) param.thisObject;
                     // We can't easily change the socket state here to add a proxy.
@@ -166,8 +160,33 @@ public final class Socks5ProxyHook {
         }
     }
 
+    /** Publishes {@code proxy} to the hooks and to the system properties WebView reads. */
+    private static synchronized void apply(Endpoint proxy) {
+        sProxy = proxy;
+        // System properties for WebView / default Java handling
+        if (proxy == null) {
+            System.clearProperty("socksProxyHost");
+            System.clearProperty("socksProxyPort");
+            System.clearProperty("java.net.socks.username");
+            System.clearProperty("java.net.socks.password");
+            return;
+        }
+        System.setProperty("socksProxyHost", proxy.host);
+        System.setProperty("socksProxyPort", String.valueOf(proxy.port));
+        if (!TextUtils.isEmpty(proxy.user)) {
+            System.setProperty("java.net.socks.username", proxy.user);
+            System.setProperty("java.net.socks.password", proxy.pass);
+        } else {
+            System.clearProperty("java.net.socks.username");
+            System.clearProperty("java.net.socks.password");
+        }
+    }
+
+    /** @return null if the proxy was turned off since, and the caller should connect directly */
     private Socket createProxySocket(String host, int port) throws IOException {
-        Socket sock = new Socket(new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(proxyHost, proxyPort)));
+        Endpoint proxy = sProxy;
+        if (proxy == null) return null;
+        Socket sock = new Socket(new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(proxy.host, proxy.port)));
         sock.connect(InetSocketAddress.createUnresolved(host, port));
         return sock;
     }
@@ -180,7 +199,7 @@ public final class Socks5ProxyHook {
         try {
             // Hook send
             Method mSend = DatagramSocket.class.getDeclaredMethod("send", DatagramPacket.class);
-            XposedBridge.hookMethod(mSend, new XC_MethodHook() {
+            SmartHooking.hookMethod(mSend, new XC_MethodHook() {
                 @Override public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     DatagramSocket socket = (DatagramSocket) param.thisObject;
                     if (internalDatagramSockets.contains(socket)) return; // Skip internal sockets
@@ -197,7 +216,7 @@ public final class Socks5ProxyHook {
 
             // Hook receive
             Method mReceive = DatagramSocket.class.getDeclaredMethod("receive", DatagramPacket.class);
-            XposedBridge.hookMethod(mReceive, new XC_MethodHook() {
+            SmartHooking.hookMethod(mReceive, new XC_MethodHook() {
                 @Override public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     DatagramSocket socket = (DatagramSocket) param.thisObject;
                     if (internalDatagramSockets.contains(socket)) return; // Skip internal sockets
@@ -214,7 +233,7 @@ public final class Socks5ProxyHook {
 
             // Hook close to cleanup
             Method mClose = DatagramSocket.class.getDeclaredMethod("close");
-            XposedBridge.hookMethod(mClose, new XC_MethodHook() {
+            SmartHooking.hookMethod(mClose, new XC_MethodHook() {
                  @Override public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                      DatagramSocket socket = (DatagramSocket) param.thisObject;
                      if (internalDatagramSockets.contains(socket)) return;
@@ -235,8 +254,10 @@ public final class Socks5ProxyHook {
         if (udpRelays.containsKey(source)) {
             return udpRelays.get(source);
         }
+        Endpoint proxy = sProxy;
+        if (proxy == null) return null; // Turned off: new sockets send directly
         try {
-            UdpRelayWorker worker = new UdpRelayWorker(proxyHost, proxyPort, proxyUser, proxyPass);
+            UdpRelayWorker worker = new UdpRelayWorker(proxy.host, proxy.port, proxy.user, proxy.pass);
             udpRelays.put(source, worker);
             return worker;
         } catch (Exception e) {
@@ -245,6 +266,28 @@ public final class Socks5ProxyHook {
         }
     }
 
+    /** One proxy configuration, swapped as a whole so hooks never see half of a change. */
+    private static final class Endpoint {
+        final String host;
+        final int port;
+        final String user;
+        final String pass;
+
+        private Endpoint(String host, int port, String user, String pass) {
+            this.host = host;
+            this.port = port;
+            this.user = user;
+            this.pass = pass;
+        }
+
+        /** @return null when the settings turn the proxy off */
+        static Endpoint from(ClonerSettings settings) {
+            if (!settings.socksProxy() || TextUtils.isEmpty(settings.socksProxyHost())) return null;
+            return new Endpoint(settings.socksProxyHost(), settings.socksProxyPort(),
+                    settings.socksProxyUser(), settings.socksProxyPass());
+        }
+    }
+
     /* ----------------------------------------------------------
        Inner Class: UDP Relay Worker
        ---------------------------------------------------------- */
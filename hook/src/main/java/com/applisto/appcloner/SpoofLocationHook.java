@@ -27,7 +27,6 @@ import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public final class SpoofLocationHook {
 
@@ -44,15 +43,16 @@ public final class SpoofLocationHook {
     private static Context sContext;
 
     /* ---------- Settings loaded from cloner.json ---------- */
-    private static boolean ENABLED;
+    // Volatile: replaced while hooks run, by the setters below or a settings reload
+    private static volatile boolean ENABLED;
     private static volatile double LAT;
     private static volatile double LNG;
     private static volatile double ALT = 10.0; // Default altitude
-    private static float ACC;
-    private static boolean RANDOMIZE;
+    private static volatile float ACC;
+    private static volatile boolean RANDOMIZE;
     private static boolean USE_IP;
-    private static float SPEED = 0.0f;
-    private static float BEARING = 0.0f;
+    private static volatile float SPEED = 0.0f;
+    private static volatile float BEARING = 0.0f;
     
     // Random for generating realistic variations
     private static final Random sRandom = new Random();
@@ -79,7 +79,7 @@ public final class SpoofLocationHook {
         }
 
         if (USE_IP) {
-            new Thread(SpoofLocationHook::fetchIpLocation).start();
+            HookRuntime.io(SpoofLocationHook::fetchIpLocation);
         }
 
         try {
@@ -89,6 +89,15 @@ public final class SpoofLocationHook {
             hookGpsStatus();
             hookLastKnownLocation();
             Log.i(TAG, "Spoof active -> " + LAT + ", " + LNG + ", alt=" + ALT);
+
+            // A new cloner.json moves the location, like setLocation() does; overrides saved
+            // at runtime still win over it, as they do at startup
+            ClonerSettings.addListener(settings -> {
+                applySettings(settings.raw());
+                loadRuntimeOverrides();
+                Log.i(TAG, "Settings reloaded -> " + LAT + ", " + LNG + ", enabled=" + ENABLED);
+                sHandler.post(SpoofLocationHook::notifyListenersOfLocationChange);
+            });
         } catch (Exception e) {
             Log.e(TAG, "Hook failed", e);
         }
@@ -97,22 +106,24 @@ public final class SpoofLocationHook {
     /* ---------- 1. Load flat keys ---------- */
     private void loadSettings(Context ctx) {
         try {
-            JSONObject cfg = ClonerSettings.get(ctx).raw();
-
-            ENABLED   = cfg.optBoolean("SpoofLocation", false);
-            LAT       = cfg.optDouble("SpoofLocationLatitude",  0);
-            LNG       = cfg.optDouble("SpoofLocationLongitude", 0);
-            ALT       = cfg.optDouble("SpoofLocationAltitude", 10);
-            ACC       = (float) cfg.optDouble("SpoofLocationAccuracy", 5);
-            RANDOMIZE = cfg.optBoolean("SpoofLocationRandomize", false);
-            USE_IP    = cfg.optBoolean("SpoofLocationUseIp", false);
-            SPEED     = (float) cfg.optDouble("SpoofLocationSpeed", 0);
-            BEARING   = (float) cfg.optDouble("SpoofLocationBearing", 0);
+            applySettings(ClonerSettings.get(ctx).raw());
         } catch (Throwable t) {
             Log.e(TAG, "Cannot read cloner.json – spoof disabled", t);
             ENABLED = false;
         }
     }
+
+    private static void applySettings(JSONObject cfg) {
+        ENABLED   = cfg.optBoolean("SpoofLocation", false);
+        LAT       = cfg.optDouble("SpoofLocationLatitude",  0);
+        LNG       = cfg.optDouble("SpoofLocationLongitude", 0);
+        ALT       = cfg.optDouble("SpoofLocationAltitude", 10);
+        ACC       = (float) cfg.optDouble("SpoofLocationAccuracy", 5);
+        RANDOMIZE = cfg.optBoolean("SpoofLocationRandomize", false);
+        USE_IP    = cfg.optBoolean("SpoofLocationUseIp", false);
+        SPEED     = (float) cfg.optDouble("SpoofLocationSpeed", 0);
+        BEARING   = (float) cfg.optDouble("SpoofLocationBearing", 0);
+    }
     
     /**
      * Load runtime overrides from SharedPreferences.
@@ -193,7 +204,7 @@ public final class SpoofLocationHook {
     private void hookLocationManager() throws Exception {
         Method m = LocationManager.class.getDeclaredMethod(
                 "requestLocationUpdates", String.class, long.class, float.class, LocationListener.class);
-        XposedBridge.hookMethod(m, new XC_MethodHook() {
+        SmartHooking.hookMethod(m, new XC_MethodHook() {
             @Override public void beforeHookedMethod(MethodHookParam f) {
                 LocationListener l = (LocationListener) f.args[3];
                 if (l != null) {
@@ -208,7 +219,7 @@ public final class SpoofLocationHook {
         Method m2 = LocationManager.class.getDeclaredMethod(
                 "requestLocationUpdates", String.class, long.class, float.class,
                 LocationListener.class, Looper.class);
-        XposedBridge.hookMethod(m2, new XC_MethodHook() {
+        SmartHooking.hookMethod(m2, new XC_MethodHook() {
             @Override public void beforeHookedMethod(MethodHookParam f) {
                 LocationListener l = (LocationListener) f.args[3];
                 if (l != null) {
@@ -235,7 +246,7 @@ public final class SpoofLocationHook {
         try {
             Method m = LocationManager.class.getMethod(
                     "registerGnssStatusCallback", GnssStatus.Callback.class);
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam f) {
                     GnssStatus.Callback cb = (GnssStatus.Callback) f.args[0];
                     if (cb != null) {
@@ -254,7 +265,7 @@ public final class SpoofLocationHook {
                         "registerGnssStatusCallback", 
                         java.util.concurrent.Executor.class, 
                         GnssStatus.Callback.class);
-                XposedBridge.hookMethod(m, new XC_MethodHook() {
+                SmartHooking.hookMethod(m, new XC_MethodHook() {
                     @Override public void afterHookedMethod(MethodHookParam f) {
                         GnssStatus.Callback cb = (GnssStatus.Callback) f.args[1];
                         if (cb != null) {
@@ -274,7 +285,7 @@ public final class SpoofLocationHook {
     private void hookGpsStatus() {
         try {
             Method m = LocationManager.class.getMethod("addGpsStatusListener", GpsStatus.Listener.class);
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam f) {
                     f.setResult(true); // Always succeed
                     GpsStatus.Listener listener = (GpsStatus.Listener) f.args[0];
@@ -293,7 +304,7 @@ public final class SpoofLocationHook {
     private void hookLastKnownLocation() {
         try {
             Method m = LocationManager.class.getMethod("getLastKnownLocation", String.class);
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam f) {
                     if (!ENABLED) return;
                     // Replace with fake location
@@ -311,7 +322,7 @@ public final class SpoofLocationHook {
         try {
             // Hook Location.getLatitude()
             Method getLatitude = Location.class.getMethod("getLatitude");
-            XposedBridge.hookMethod(getLatitude, new XC_MethodHook() {
+            SmartHooking.hookMethod(getLatitude, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam f) {
                     if (!ENABLED) return;
                     Location loc = (Location) f.thisObject;
@@ -328,7 +339,7 @@ public final class SpoofLocationHook {
             
             // Hook Location.getLongitude()
             Method getLongitude = Location.class.getMethod("getLongitude");
-            XposedBridge.hookMethod(getLongitude, new XC_MethodHook() {
+            SmartHooking.hookMethod(getLongitude, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam f) {
                     if (!ENABLED) return;
                     Location loc = (Location) f.thisObject;
@@ -344,7 +355,7 @@ public final class SpoofLocationHook {
             
             // Hook Location.getAltitude()
             Method getAltitude = Location.class.getMethod("getAltitude");
-            XposedBridge.hookMethod(getAltitude, new XC_MethodHook() {
+            SmartHooking.hookMethod(getAltitude, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam f) {
                     if (!ENABLED) return;
                     Location loc = (Location) f.thisObject;
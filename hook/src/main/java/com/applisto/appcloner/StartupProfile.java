@@ -0,0 +1,120 @@
+package com.applisto.appcloner;
+
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What each hook cost at startup: wall time, the thread it installed on, how many methods it
+ * hooked and whether it failed. HookInstaller records every hook, DefaultProvider returns the
+ * trace from {@code call("startup_profile")} so the cloner can show it.
+ *
+ * Methods hooked by {@link SmartHooking#hookMethod} are attributed to the hook installing on
+ * the calling thread; hooks installed later, e.g. on the first camera open, count as
+ * {@code lateHookMethods}.
+ */
+final class StartupProfile {
+    static final String INSTALLED = "installed";
+    static final String SKIPPED = "skipped";
+    static final String FAILED = "failed";
+
+    private static final long START = SystemClock.elapsedRealtime();
+    private static final ThreadLocal<Entry> CURRENT = new ThreadLocal<>();
+    private static final List<Entry> ENTRIES = new ArrayList<>();
+    private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+    private static int lateHookMethods;
+    private static int lateHookFailures;
+
+    static final class Entry {
+        final String name;
+        final String thread;
+        final long startMs;
+        long durationMs;
+        int hookMethods;
+        int hookFailures;
+        String status;
+        String error;
+
+        private Entry(String name, String thread, long startMs) {
+            this.name = name;
+            this.thread = thread;
+            this.startMs = startMs;
+        }
+    }
+
+    private StartupProfile() {}
+
+    /** Starts timing {@code name} on the calling thread. */
+    static Entry begin(String name) {
+        Entry e = new Entry(name, Thread.currentThread().getName(), SystemClock.elapsedRealtime() - START);
+        CURRENT.set(e);
+        return e;
+    }
+
+    /** Ends {@code e}; {@code error} is null unless it failed or was skipped. */
+    static void end(Entry e, String status, Throwable error) {
+        CURRENT.remove();
+        e.durationMs = SystemClock.elapsedRealtime() - START - e.startMs;
+        e.status = status;
+        if (error != null) e.error = error.getClass().getSimpleName() + ": " + error.getMessage();
+        synchronized (ENTRIES) {
+            ENTRIES.add(e);
+        }
+    }
+
+    /** Records a milestone, such as all critical hooks being ready, as ms since class load. */
+    static void phase(String name) {
+        synchronized (ENTRIES) {
+            PHASES.put(name, SystemClock.elapsedRealtime() - START);
+        }
+    }
+
+    static void countHookMethod(boolean failed) {
+        Entry e = CURRENT.get();
+        if (e != null) {
+            e.hookMethods++;
+            if (failed) e.hookFailures++;
+            return;
+        }
+        synchronized (ENTRIES) {
+            lateHookMethods++;
+            if (failed) lateHookFailures++;
+        }
+    }
+
+    static JSONObject toJson() throws JSONException {
+        JSONObject root = new JSONObject();
+        JSONArray hooks = new JSONArray();
+        synchronized (ENTRIES) {
+            for (Entry e : ENTRIES) {
+                JSONObject o = new JSONObject();
+                o.put("name", e.name);
+                o.put("status", e.status);
+                o.put("thread", e.thread);
+                o.put("start_ms", e.startMs);
+                o.put("duration_ms", e.durationMs);
+                o.put("hook_methods", e.hookMethods);
+                o.put("hook_failures", e.hookFailures);
+                if (e.error != null) o.put("error", e.error);
+                hooks.put(o);
+            }
+            JSONObject phases = new JSONObject();
+            for (Map.Entry<String, Long> p : PHASES.entrySet()) {
+                phases.put(p.getKey(), p.getValue());
+            }
+            root.put("phases", phases);
+            root.put("late_hook_methods", lateHookMethods);
+            root.put("late_hook_failures", lateHookFailures);
+        }
+        root.put("hooks", hooks);
+        root.put("uptime_ms", SystemClock.elapsedRealtime() - START);
+        return root;
+    }
+}
@@ -11,11 +11,13 @@ import java.net.HttpURLConnection;
 import java.net.URLConnection;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 public class UserAgentHook {
 
     private static final String TAG = "UserAgentHook";
+
+    // Intercepted headers come per request
+    private static final HookLog.Sampler REQUEST_LOG = new HookLog.Sampler(50);
     
     public void init(Context context) {
         try {
@@ -44,23 +46,23 @@ public class UserAgentHook {
         try {
             // Hook WebView constructor - use Constructor type instead of Method
             Constructor<WebView> webViewConstructor = WebView.class.getDeclaredConstructor(Context.class);
-            XposedBridge.hookMethod(webViewConstructor, new XC_MethodHook() {
+            SmartHooking.hookMethod(webViewConstructor, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) throws Throwable {
                     WebView webView = (WebView) param.thisObject;
                     WebSettings settings = webView.getSettings();
                     settings.setUserAgentString(customUserAgent);
-                    Log.d(TAG, "Set WebView user agent");
+                    HookLog.d(TAG, "Set WebView user agent");
                 }
             });
             
             // Hook setUserAgentString to prevent apps from changing it
             Method setUserAgent = WebSettings.class.getDeclaredMethod("setUserAgentString", String.class);
-            XposedBridge.hookMethod(setUserAgent, new XC_MethodHook() {
+            SmartHooking.hookMethod(setUserAgent, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     param.args[0] = customUserAgent;
-                    Log.d(TAG, "Intercepted setUserAgentString call");
+                    HookLog.d(TAG, "Intercepted setUserAgentString call");
                 }
             });
         } catch (Throwable t) {
@@ -74,12 +76,12 @@ public class UserAgentHook {
             Method setRequestProperty = URLConnection.class.getDeclaredMethod(
                     "setRequestProperty", String.class, String.class);
             
-            XposedBridge.hookMethod(setRequestProperty, new XC_MethodHook() {
+            SmartHooking.hookMethod(setRequestProperty, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     if ("User-Agent".equalsIgnoreCase((String) param.args[0])) {
                         param.args[1] = customUserAgent;
-                        Log.d(TAG, "Intercepted HttpURLConnection User-Agent");
+                        REQUEST_LOG.d(TAG, "Intercepted HttpURLConnection User-Agent");
                     }
                 }
             });
@@ -88,12 +90,12 @@ public class UserAgentHook {
             Method addRequestProperty = URLConnection.class.getDeclaredMethod(
                     "addRequestProperty", String.class, String.class);
             
-            XposedBridge.hookMethod(addRequestProperty, new XC_MethodHook() {
+            SmartHooking.hookMethod(addRequestProperty, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     if ("User-Agent".equalsIgnoreCase((String) param.args[0])) {
                         param.args[1] = customUserAgent;
-                        Log.d(TAG, "Intercepted HttpURLConnection addRequestProperty User-Agent");
+                        REQUEST_LOG.d(TAG, "Intercepted HttpURLConnection addRequestProperty User-Agent");
                     }
                 }
             });
@@ -108,24 +110,24 @@ public class UserAgentHook {
             Class<?> requestBuilderClass = Class.forName("okhttp3.Request$Builder");
             Method addHeader = requestBuilderClass.getDeclaredMethod("addHeader", String.class, String.class);
             
-            XposedBridge.hookMethod(addHeader, new XC_MethodHook() {
+            SmartHooking.hookMethod(addHeader, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     if ("User-Agent".equalsIgnoreCase((String) param.args[0])) {
                         param.args[1] = customUserAgent;
-                        Log.d(TAG, "Intercepted OkHttp User-Agent");
+                        REQUEST_LOG.d(TAG, "Intercepted OkHttp User-Agent");
                     }
                 }
             });
             
             // Also hook header() method
             Method header = requestBuilderClass.getDeclaredMethod("header", String.class, String.class);
-            XposedBridge.hookMethod(header, new XC_MethodHook() {
+            SmartHooking.hookMethod(header, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     if ("User-Agent".equalsIgnoreCase((String) param.args[0])) {
                         param.args[1] = customUserAgent;
-                        Log.d(TAG, "Intercepted OkHttp header() User-Agent");
+                        REQUEST_LOG.d(TAG, "Intercepted OkHttp header() User-Agent");
                     }
                 }
             });
@@ -8,10 +8,8 @@ import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
-import java.util.concurrent.atomic.AtomicReference;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * UserAgentWorkaround - Hooks HTTP connections to modify User-Agent headers
@@ -26,6 +24,9 @@ import de.robv.android.xposed.XposedBridge;
 public class UserAgentWorkaround {
     private static final String TAG = "UserAgentWorkaround";
     
+    // Rewritten headers and URIs come per request
+    private static final HookLog.Sampler REQUEST_LOG = new HookLog.Sampler(50);
+    
     /**
      * ThreadLocal to temporarily disable onUriString processing
      * (used to prevent recursive calls or during certain operations)
@@ -39,6 +40,7 @@ public class UserAgentWorkaround {
     
     private static Context sContext;
     private static boolean sUriSchemeWorkaround;
+    private static volatile ValueReplacer sReplacer;
     
     /**
      * Install the User-Agent workaround hooks
@@ -75,38 +77,19 @@ public class UserAgentWorkaround {
      * @return The processed string with replacements
      */
     public static String replaceValue(Context context, String value) {
-        if (TextUtils.isEmpty(value)) {
-            return value;
-        }
-        
-        // Skip if already an App Cloner identifier
-        if (value.startsWith("App Cloner Clone/")) {
-            return value;
-        }
-        
-        // Replace package name with original package name
-        value = Utils.replacePackageNameByOriginalPackageName(value);
-        
-        // Replace version code if different
-        int versionCode = Utils.getMyVersionCode(context);
-        int metaVersionCode = Utils.getMyMetaVersionCode(context);
-        
-        if (versionCode != metaVersionCode) {
-            String metaVersionCodeStr = String.valueOf(metaVersionCode);
-            String versionCodeStr = String.valueOf(versionCode);
-            value = value.replace(metaVersionCodeStr, versionCodeStr);
-        }
-        
-        // Replace version name if different
-        String versionName = Utils.getMyVersionName(context);
-        String metaVersionName = Utils.getMyMetaVersionName(context);
-        
-        if (versionName != null && metaVersionName != null && 
-            !TextUtils.equals(versionName, metaVersionName)) {
-            value = value.replace(metaVersionName, versionName);
+        return replacer(context).replace(value);
+    }
+    
+    /** The strings {@link #replaceValue} looks for, worked out once instead of per call. */
+    private static ValueReplacer replacer(Context context) {
+        ValueReplacer r = sReplacer;
+        if (r == null) {
+            r = new ValueReplacer(Utils.sClonedPackageName, Utils.sOriginalPackageName,
+                    Utils.getMyVersionCode(context), Utils.getMyMetaVersionCode(context),
+                    Utils.getMyVersionName(context), Utils.getMyMetaVersionName(context));
+            sReplacer = r;
         }
-        
-        return value;
+        return r;
     }
     
     /**
@@ -143,7 +126,7 @@ public class UserAgentWorkaround {
                 Method setRequestProperty = URLConnection.class.getDeclaredMethod(
                         "setRequestProperty", String.class, String.class);
                 
-                XposedBridge.hookMethod(setRequestProperty, new XC_MethodHook() {
+                SmartHooking.hookMethod(setRequestProperty, new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                         String key = (String) param.args[0];
@@ -151,9 +134,7 @@ public class UserAgentWorkaround {
                         
                         if (key != null && value != null) {
                             // Process the header value
-                            AtomicReference<String> valueRef = new AtomicReference<>(value);
-                            onHeader(key, valueRef);
-                            param.args[1] = valueRef.get();
+                            param.args[1] = onHeader(key, value);
                         }
                     }
                 });
@@ -162,16 +143,14 @@ public class UserAgentWorkaround {
                 Method addRequestProperty = URLConnection.class.getDeclaredMethod(
                         "addRequestProperty", String.class, String.class);
                 
-                XposedBridge.hookMethod(addRequestProperty, new XC_MethodHook() {
+                SmartHooking.hookMethod(addRequestProperty, new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                         String key = (String) param.args[0];
                         String value = (String) param.args[1];
                         
                         if (key != null && value != null) {
-                            AtomicReference<String> valueRef = new AtomicReference<>(value);
-                            onHeader(key, valueRef);
-                            param.args[1] = valueRef.get();
+                            param.args[1] = onHeader(key, value);
                         }
                     }
                 });
@@ -182,22 +161,21 @@ public class UserAgentWorkaround {
             }
         }
         
-        protected void onHeader(String key, AtomicReference<String> value) {
-            if (context == null || value.get() == null) return;
+        /** Returns {@code value}, or its replacement for the headers that carry app identity. */
+        protected String onHeader(String key, String value) {
+            if (context == null || value == null) return value;
             
             // Process User-Agent and other relevant headers
-            if ("User-Agent".equalsIgnoreCase(key) ||
-                "X-Requested-With".equalsIgnoreCase(key) ||
-                "X-App-Version".equalsIgnoreCase(key)) {
+            if (ValueReplacer.isIdentityHeader(key)) {
                 
-                String original = value.get();
-                String replaced = replaceValue(context, original);
+                String replaced = replaceValue(context, value);
                 
-                if (!TextUtils.equals(original, replaced)) {
-                    Log.d(TAG, "Header modified - " + key + ": " + original + " -> " + replaced);
-                    value.set(replaced);
+                if (!TextUtils.equals(value, replaced)) {
+                    REQUEST_LOG.d(TAG, "Header {} modified to {}", key, replaced);
+                    return replaced;
                 }
             }
+            return value;
         }
     }
     
@@ -216,17 +194,16 @@ public class UserAgentWorkaround {
                 // Hook URL.openConnection
                 Method openConnection = URL.class.getDeclaredMethod("openConnection");
                 
-                XposedBridge.hookMethod(openConnection, new XC_MethodHook() {
+                SmartHooking.hookMethod(openConnection, new XC_MethodHook() {
                     @Override
                     public void afterHookedMethod(MethodHookParam param) throws Throwable {
                         URLConnection connection = (URLConnection) param.getResult();
                         URL url = (URL) param.thisObject;
                         
                         if (connection != null && url != null) {
-                            AtomicReference<String> urlRef = new AtomicReference<>(url.toString());
-                            onUriString(urlRef);
                             // Note: Can't change URL after connection is opened,
                             // but we can log and track
+                            onUriString(url.toString());
                         }
                     }
                 });
@@ -248,17 +225,18 @@ public class UserAgentWorkaround {
                 // Hook getResponseCode to track HTTP responses
                 Method getResponseCode = HttpURLConnection.class.getDeclaredMethod("getResponseCode");
                 
-                XposedBridge.hookMethod(getResponseCode, new XC_MethodHook() {
+                SmartHooking.hookMethod(getResponseCode, new XC_MethodHook() {
                     @Override
                     public void afterHookedMethod(MethodHookParam param) throws Throwable {
+                        // Track response codes for debugging
+                        if (!HookLog.isLoggable(Log.DEBUG)) return;
                         HttpURLConnection conn = (HttpURLConnection) param.thisObject;
                         Integer responseCode = (Integer) param.getResult();
                         
-                        // Track response codes for debugging
                         if (responseCode != null && responseCode >= 400) {
                             URL url = conn.getURL();
-                            Log.d(TAG, "HTTP Error " + responseCode + " for: " + 
-                                       (url != null ? url.toString() : "unknown"));
+                            REQUEST_LOG.d(TAG, "HTTP Error {} for: {}", responseCode,
+                                    url != null ? url : "unknown");
                         }
                     }
                 });
@@ -275,18 +253,17 @@ public class UserAgentWorkaround {
                 // Hook url(String) method
                 Method urlMethod = requestBuilderClass.getDeclaredMethod("url", String.class);
                 
-                XposedBridge.hookMethod(urlMethod, new XC_MethodHook() {
+                SmartHooking.hookMethod(urlMethod, new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                         if (sOnUriStringDisabled.get()) return;
                         
                         String url = (String) param.args[0];
                         if (url != null) {
-                            AtomicReference<String> urlRef = new AtomicReference<>(url);
-                            onUriString(urlRef);
+                            String newUrl = onUriString(url);
                             
-                            if (!TextUtils.equals(url, urlRef.get())) {
-                                param.args[0] = urlRef.get();
+                            if (!TextUtils.equals(url, newUrl)) {
+                                param.args[0] = newUrl;
                             }
                         }
                     }
@@ -296,18 +273,17 @@ public class UserAgentWorkaround {
                 try {
                     Method urlUrlMethod = requestBuilderClass.getDeclaredMethod("url", URL.class);
                     
-                    XposedBridge.hookMethod(urlUrlMethod, new XC_MethodHook() {
+                    SmartHooking.hookMethod(urlUrlMethod, new XC_MethodHook() {
                         @Override
                         public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                             if (sOnUriStringDisabled.get()) return;
                             
                             URL url = (URL) param.args[0];
                             if (url != null) {
-                                AtomicReference<String> urlRef = new AtomicReference<>(url.toString());
-                                onUriString(urlRef);
+                                String urlString = url.toString();
+                                String newUrl = onUriString(urlString);
                                 
-                                String newUrl = urlRef.get();
-                                if (!TextUtils.equals(url.toString(), newUrl)) {
+                                if (!TextUtils.equals(urlString, newUrl)) {
                                     param.args[0] = new URL(newUrl);
                                 }
                             }
@@ -325,17 +301,18 @@ public class UserAgentWorkaround {
             }
         }
         
-        protected void onUriString(AtomicReference<String> uriRef) {
-            if (sOnUriStringDisabled.get()) return;
-            if (context == null || uriRef.get() == null) return;
+        /** Returns {@code uri}, or its replacement if it names the clone. */
+        protected String onUriString(String uri) {
+            if (sOnUriStringDisabled.get()) return uri;
+            if (context == null || uri == null) return uri;
             
-            String original = uriRef.get();
-            String replaced = replaceValue(context, original);
+            String replaced = replaceValue(context, uri);
             
-            if (!TextUtils.equals(original, replaced)) {
-                Log.d(TAG, "URI modified: " + original + " -> " + replaced);
-                uriRef.set(replaced);
+            if (!TextUtils.equals(uri, replaced)) {
+                REQUEST_LOG.d(TAG, "URI modified: {} -> {}", uri, replaced);
+                return replaced;
             }
+            return uri;
         }
     }
     
@@ -356,20 +333,18 @@ public class UserAgentWorkaround {
                 Class<?> uriClass = android.net.Uri.class;
                 Method parseMethod = uriClass.getDeclaredMethod("parse", String.class);
                 
-                XposedBridge.hookMethod(parseMethod, new XC_MethodHook() {
+                SmartHooking.hookMethod(parseMethod, new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                         if (sOnUriStringDisabled.get()) return;
                         
                         String uriString = (String) param.args[0];
                         if (uriString != null && shouldProcessUri(uriString)) {
-                            AtomicReference<String> uriRef = new AtomicReference<>(uriString);
-                            onUriString(uriRef);
+                            String newUri = onUriString(uriString);
                             
-                            String newUri = uriRef.get();
                             if (!TextUtils.equals(uriString, newUri)) {
                                 param.args[0] = newUri;
-                                Log.d(TAG, "URI scheme modified: " + uriString + " -> " + newUri);
+                                REQUEST_LOG.d(TAG, "URI scheme modified: {} -> {}", uriString, newUri);
                             }
                         }
                     }
@@ -390,18 +365,17 @@ public class UserAgentWorkaround {
                 Class<?> intentClass = android.content.Intent.class;
                 Method parseUriMethod = intentClass.getDeclaredMethod("parseUri", String.class, int.class);
                 
-                XposedBridge.hookMethod(parseUriMethod, new XC_MethodHook() {
+                SmartHooking.hookMethod(parseUriMethod, new XC_MethodHook() {
                     @Override
                     public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                         if (sOnUriStringDisabled.get()) return;
                         
                         String uri = (String) param.args[0];
                         if (uri != null) {
-                            AtomicReference<String> uriRef = new AtomicReference<>(uri);
-                            onUriString(uriRef);
+                            String newUri = onUriString(uri);
                             
-                            if (!TextUtils.equals(uri, uriRef.get())) {
-                                param.args[0] = uriRef.get();
+                            if (!TextUtils.equals(uri, newUri)) {
+                                param.args[0] = newUri;
                             }
                         }
                     }
@@ -419,16 +393,12 @@ public class UserAgentWorkaround {
                    uri.contains("package=") || uri.contains("app_id=");
         }
         
-        protected void onUriString(AtomicReference<String> uriRef) {
-            if (sOnUriStringDisabled.get()) return;
-            if (sContext == null || uriRef.get() == null) return;
+        /** Returns {@code uri}, or its replacement if it names the clone. */
+        protected String onUriString(String uri) {
+            if (sOnUriStringDisabled.get()) return uri;
+            if (sContext == null || uri == null) return uri;
             
-            String original = uriRef.get();
-            String replaced = replaceValue(sContext, original);
-            
-            if (!TextUtils.equals(original, replaced)) {
-                uriRef.set(replaced);
-            }
+            return replaceValue(sContext, uri);
         }
     }
     
@@ -529,6 +499,7 @@ public class UserAgentWorkaround {
                 ClonerSettings settings = ClonerSettings.get(context);
                 sOriginalPackageName = settings.raw().optString("original_package_name", 
                                                                  sClonedPackageName);
+                sReplacer = null;
                 Log.d(TAG, "Package names initialized: cloned=" + sClonedPackageName + 
                            ", original=" + sOriginalPackageName);
             } catch (Exception e) {
@@ -8,7 +8,6 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * UserAgentWorkaroundWarning - Provides workarounds for Firebase-related issues
@@ -88,7 +87,7 @@ public class UserAgentWorkaroundWarning {
             Constructor<?>[] constructors = exceptionClass.getDeclaredConstructors();
             for (Constructor<?> constructor : constructors) {
                 try {
-                    XposedBridge.hookMethod(constructor, hook);
+                    SmartHooking.hookMethod(constructor, hook);
                     Log.d(TAG, "Hooked FirebaseInstallationsException constructor: " + 
                                constructor.toString());
                 } catch (Throwable t) {
@@ -114,7 +113,7 @@ public class UserAgentWorkaroundWarning {
             Constructor<?>[] constructors = exceptionClass.getDeclaredConstructors();
             for (Constructor<?> constructor : constructors) {
                 try {
-                    XposedBridge.hookMethod(constructor, hook);
+                    SmartHooking.hookMethod(constructor, hook);
                     Log.d(TAG, "Hooked FirebaseMessagingException constructor");
                 } catch (Throwable t) {
                     // Ignore individual failures
@@ -139,7 +138,7 @@ public class UserAgentWorkaroundWarning {
             Constructor<?>[] constructors = exceptionClass.getDeclaredConstructors();
             for (Constructor<?> constructor : constructors) {
                 try {
-                    XposedBridge.hookMethod(constructor, hook);
+                    SmartHooking.hookMethod(constructor, hook);
                     Log.d(TAG, "Hooked FirebaseAuthException constructor");
                 } catch (Throwable t) {
                     // Ignore individual failures
@@ -184,7 +183,7 @@ public class UserAgentWorkaroundWarning {
             Method getInstance = analyticsClass.getMethod("getInstance", 
                     android.content.Context.class);
             
-            XposedBridge.hookMethod(getInstance, new XC_MethodHook() {
+            SmartHooking.hookMethod(getInstance, new XC_MethodHook() {
                 @Override
                 public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     Log.d(TAG, "FirebaseAnalytics.getInstance() called");
@@ -217,7 +216,7 @@ public class UserAgentWorkaroundWarning {
             
             Method getInstance = crashlyticsClass.getMethod("getInstance");
             
-            XposedBridge.hookMethod(getInstance, new XC_MethodHook() {
+            SmartHooking.hookMethod(getInstance, new XC_MethodHook() {
                 @Override
                 public void afterHookedMethod(MethodHookParam param) throws Throwable {
                     if (param.getThrowable() != null) {
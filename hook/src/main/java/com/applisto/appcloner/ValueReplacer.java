@@ -0,0 +1,72 @@
+package com.applisto.appcloner;
+
+/**
+ * Turns the clone's package name, version code and version name in a header or URL back into
+ * the original app's, for {@link UserAgentWorkaround}. Runs on every request header and URL,
+ * and most contain none of the strings: those are returned as they are, without allocating.
+ *
+ * Plain Java, so the :benchmark module can measure the pass-through on the JVM.
+ */
+final class ValueReplacer {
+    private static final String APP_CLONER_PREFIX = "App Cloner Clone/";
+
+    // null when there is nothing to replace
+    private final String clonedPackageName;
+    private final String originalPackageName;
+    private final String metaVersionCode;
+    private final String versionCode;
+    private final String metaVersionName;
+    private final String versionName;
+
+    /**
+     * @param metaVersionCode the version code the clone reports, replaced by {@code versionCode}
+     * @param metaVersionName the version name the clone reports, replaced by {@code versionName}
+     */
+    ValueReplacer(String clonedPackageName, String originalPackageName,
+                  int versionCode, int metaVersionCode, String versionName, String metaVersionName) {
+        boolean renamed = clonedPackageName != null && originalPackageName != null
+                && !originalPackageName.equals(clonedPackageName);
+        this.clonedPackageName = renamed ? clonedPackageName : null;
+        this.originalPackageName = originalPackageName;
+        this.metaVersionCode = versionCode != metaVersionCode ? String.valueOf(metaVersionCode) : null;
+        this.versionCode = String.valueOf(versionCode);
+        boolean nameDiffers = versionName != null && metaVersionName != null
+                && !versionName.equals(metaVersionName);
+        this.metaVersionName = nameDiffers ? metaVersionName : null;
+        this.versionName = versionName;
+    }
+
+    /** Whether the value of request header {@code name} can name the clone, e.g. User-Agent. */
+    static boolean isIdentityHeader(String name) {
+        return "User-Agent".equalsIgnoreCase(name)
+                || "X-Requested-With".equalsIgnoreCase(name)
+                || "X-App-Version".equalsIgnoreCase(name);
+    }
+
+    /** True if {@link #replace} would change {@code value}. */
+    boolean matches(String value) {
+        return clonedPackageName != null && value.contains(clonedPackageName)
+                || metaVersionCode != null && value.contains(metaVersionCode)
+                || metaVersionName != null && value.contains(metaVersionName);
+    }
+
+    /** {@code value} with the clone's values replaced; the same instance if nothing matches. */
+    String replace(String value) {
+        if (value == null || value.isEmpty() || value.startsWith(APP_CLONER_PREFIX)) {
+            return value;
+        }
+        if (!matches(value)) {
+            return value;
+        }
+        if (clonedPackageName != null) {
+            value = value.replace(clonedPackageName, originalPackageName);
+        }
+        if (metaVersionCode != null) {
+            value = value.replace(metaVersionCode, versionCode);
+        }
+        if (metaVersionName != null) {
+            value = value.replace(metaVersionName, versionName);
+        }
+        return value;
+    }
+}
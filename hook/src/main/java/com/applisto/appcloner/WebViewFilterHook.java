@@ -19,30 +19,46 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /** Intercepts every URL & POST body flowing through any WebView and
  *  applies user-defined regex rules. */
 public final class WebViewFilterHook {
     private static final String TAG = "WebViewFilterHook";
+
+    // Sub-resource blocks come per request
+    private static final HookLog.Sampler RESOURCE_LOG = new HookLog.Sampler(50);
+
     private static final String CFG_KEY = "url_data_filters";
 
+    // Read by the hooks on every call, replaced as a whole when the settings are reloaded
+    private static volatile List<Rule> sRules = Collections.emptyList();
+
     /* ------------------------------ PUBLIC ENTRY ------------------------- */
     public void init(Context ctx) {
         try {
-            List<Rule> rules = loadRules(ctx);
+            List<Rule> rules = loadRules(ClonerSettings.get(ctx));
             if (rules.isEmpty()) {
                 Log.i(TAG, "No URL/data filter rules configured");
                 return;
             }
-            hookLoadUrl(rules);
-            hookPostUrl(rules);
-            hookWebViewClient(rules);
+            sRules = rules;
+            hookLoadUrl();
+            hookPostUrl();
+            hookWebViewClient();
+            ClonerSettings.addListener(settings -> {
+                try {
+                    sRules = loadRules(settings);
+                    Log.i(TAG, "Filter rules reloaded (" + sRules.size() + " rules)");
+                } catch (Exception e) {
+                    Log.e(TAG, "Invalid filter rules, keeping the previous ones", e);
+                }
+            });
             Log.i(TAG, "WebView filter hook installed (" + rules.size() + " rules)");
         } catch (Exception e) {
             Log.e(TAG, "Filter hook init failed", e);
@@ -50,8 +66,8 @@ public final class WebViewFilterHook {
     }
 
     /* ------------------------------ LOAD RULES -------------------------- */
-    private List<Rule> loadRules(Context c) throws Exception {
-        JSONArray arr = ClonerSettings.get(c).raw().optJSONArray(CFG_KEY);
+    private static List<Rule> loadRules(ClonerSettings settings) throws Exception {
+        JSONArray arr = settings.raw().optJSONArray(CFG_KEY);
         List<Rule> list = new ArrayList<>();
         if (arr == null) return list;
 
@@ -95,17 +111,17 @@ public final class WebViewFilterHook {
     }
 
     /* ------------------------------ HOOKS ------------------------------- */
-    private void hookLoadUrl(List<Rule> rules) throws Exception {
+    private void hookLoadUrl() throws Exception {
         Method m1 = WebView.class.getDeclaredMethod("loadUrl", String.class);
         Method m2 = WebView.class.getDeclaredMethod("loadUrl", String.class, Map.class);
 
         XC_MethodHook hook = new XC_MethodHook() {
             @Override public void beforeHookedMethod(MethodHookParam param) {
                 String in = (String) param.args[0];
-                for (Rule r : rules) {
+                for (Rule r : sRules) {
                     if (r.urlPat != null && r.urlPat.matcher(in).find()) {
                         if (r.urlBlock) {
-                            Log.d(TAG, "Blocked URL: " + in);
+                            HookLog.d(TAG, "Blocked URL: {}", in);
                             param.setResult(null);   // cancel load
                             return;
                         }
@@ -113,7 +129,7 @@ public final class WebViewFilterHook {
                             String out = r.urlPat.matcher(in)
                                     .replaceAll(r.urlRepl);
                             if (r.urlEncode) out = Uri.encode(out);
-                            Log.d(TAG, "Rewrote URL: " + in + " -> " + out);
+                            HookLog.d(TAG, "Rewrote URL: {} -> {}", in, out);
                             param.args[0] = out;
                             in = out;  // keep testing next rules on new URL
                         }
@@ -121,15 +137,16 @@ public final class WebViewFilterHook {
                 }
             }
         };
-        XposedBridge.hookMethod(m1, hook);
-        XposedBridge.hookMethod(m2, hook);
+        SmartHooking.hookMethod(m1, hook);
+        SmartHooking.hookMethod(m2, hook);
     }
 
-    private void hookPostUrl(List<Rule> rules) throws Exception {
+    private void hookPostUrl() throws Exception {
         Method post = WebView.class.getDeclaredMethod("postUrl", String.class, byte[].class);
-        XposedBridge.hookMethod(post, new XC_MethodHook() {
+        SmartHooking.hookMethod(post, new XC_MethodHook() {
             @Override public void beforeHookedMethod(MethodHookParam param) {
                 /* 1. Treat URL part exactly like loadUrl */
+                List<Rule> rules = sRules;
                 String url = (String) param.args[0];
                 for (Rule r : rules) {
                     if (r.urlPat != null && r.urlPat.matcher(url).find()) {
@@ -162,24 +179,24 @@ public final class WebViewFilterHook {
 
     /* shouldInterceptRequest gives us every sub-resource, response can be
        replaced with empty stream to BLOCK. */
-    private void hookWebViewClient(List<Rule> rules) throws Exception {
+    private void hookWebViewClient() throws Exception {
         /* We need to wrap whatever WebViewClient the app installs */
         Method setClient = WebView.class.getDeclaredMethod(
                 "setWebViewClient", WebViewClient.class);
 
-        XposedBridge.hookMethod(setClient, new XC_MethodHook() {
+        SmartHooking.hookMethod(setClient, new XC_MethodHook() {
             @Override public void beforeHookedMethod(MethodHookParam param) {
                 WebViewClient orig = (WebViewClient) param.args[0];
-                param.args[0] = new FilteringClient(orig, rules);
+                param.args[0] = new FilteringClient(orig);
             }
         });
 
         /* Also patch already-created WebViews (constructor) */
         Constructor<WebView> ctor = WebView.class.getDeclaredConstructor(Context.class);
-        XposedBridge.hookMethod(ctor, new XC_MethodHook() {
+        SmartHooking.hookMethod(ctor, new XC_MethodHook() {
             @Override public void afterHookedMethod(MethodHookParam param) {
                 WebView vw = (WebView) param.thisObject;
-                vw.setWebViewClient(new FilteringClient(null, rules));
+                vw.setWebViewClient(new FilteringClient(null));
             }
         });
     }
@@ -187,18 +204,17 @@ public final class WebViewFilterHook {
     /* -------------------------------------------------------------------- */
     private static final class FilteringClient extends WebViewClient {
         private final WebViewClient orig;
-        private final List<Rule> rules;
-        FilteringClient(WebViewClient o, List<Rule> r) { orig = o; rules = r; }
+        FilteringClient(WebViewClient o) { orig = o; }
 
         @Override
         public WebResourceResponse shouldInterceptRequest(WebView v, WebResourceRequest req) {
             String url = req.getUrl().toString();
 
             /* ---- URL part ------------------------------------------------ */
-            for (Rule r : rules) {
+            for (Rule r : sRules) {
                 if (r.urlPat != null && r.urlPat.matcher(url).find()) {
                     if (r.urlBlock) {
-                        Log.d(TAG, "Blocked sub-resource: " + url);
+                        RESOURCE_LOG.d(TAG, "Blocked sub-resource: {}", url);
                         return empty();
                     }
                     if (r.urlRepl != null) {
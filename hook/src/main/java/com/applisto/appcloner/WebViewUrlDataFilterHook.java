@@ -39,7 +39,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * WebView URL/data filter with Pine hooks.
@@ -67,6 +66,9 @@ import de.robv.android.xposed.XposedBridge;
 public final class WebViewUrlDataFilterHook {
     private static final String TAG = "WVUrlDataFilterHook";
 
+    // Blocked sub-resources come per request; block and rewrite logs follow HookLog's level
+    private static final HookLog.Sampler RESOURCE_LOG = new HookLog.Sampler(50);
+
     // Config
     private static volatile boolean ENABLED = false;
     private static volatile boolean DEBUG = false;
@@ -96,6 +98,8 @@ public final class WebViewUrlDataFilterHook {
             }
             installHooks();
             installServiceWorkerClientSafely();
+            Context app = ctx.getApplicationContext();
+            ClonerSettings.addListener(settings -> reload(app));
             sInstalled = true;
             if (DEBUG) Log.i(TAG, "Installed hooks. rules=" + RULES.size());
         }
@@ -110,12 +114,12 @@ public final class WebViewUrlDataFilterHook {
                         String url = (String) param.args[0];
                         Action a = applyUrlRules(url);
                         if (a.block) {
-                            if (DEBUG) Log.d(TAG, "Blocked loadUrl: " + url);
+                            HookLog.d(TAG, "Blocked loadUrl: {}", url);
                             param.args[0] = "about:blank";
                             return;
                         }
                         if (a.rewritten != null) {
-                            if (DEBUG) Log.d(TAG, "Rewrite loadUrl: " + url + " -> " + a.rewritten);
+                            HookLog.d(TAG, "Rewrite loadUrl: {} -> {}", url, a.rewritten);
                             param.args[0] = a.rewritten;
                         }
                     }
@@ -127,12 +131,12 @@ public final class WebViewUrlDataFilterHook {
                         String url = (String) param.args[0];
                         Action a = applyUrlRules(url);
                         if (a.block) {
-                            if (DEBUG) Log.d(TAG, "Blocked loadUrl(headers): " + url);
+                            HookLog.d(TAG, "Blocked loadUrl(headers): {}", url);
                             param.args[0] = "about:blank";
                             return;
                         }
                         if (a.rewritten != null) {
-                            if (DEBUG) Log.d(TAG, "Rewrite loadUrl(headers): " + url + " -> " + a.rewritten);
+                            HookLog.d(TAG, "Rewrite loadUrl(headers): {} -> {}", url, a.rewritten);
                             param.args[0] = a.rewritten;
                         }
                     }
@@ -144,7 +148,7 @@ public final class WebViewUrlDataFilterHook {
                         String data = (String) param.args[0];
                         Action a = applyDataRules(data);
                         if (a.block) {
-                            if (DEBUG) Log.d(TAG, "Blocked loadData");
+                            HookLog.d(TAG, "Blocked loadData");
                             param.args[0] = "";
                             return;
                         }
@@ -162,17 +166,17 @@ public final class WebViewUrlDataFilterHook {
                         // Base URL rules
                         Action au = applyUrlRules(baseUrl);
                         if (au.block) {
-                            if (DEBUG) Log.d(TAG, "Blocked loadDataWithBaseURL baseUrl=" + baseUrl);
+                            HookLog.d(TAG, "Blocked loadDataWithBaseURL baseUrl={}", baseUrl);
                             param.args[0] = "about:blank";
                         } else if (au.rewritten != null) {
-                            if (DEBUG) Log.d(TAG, "Rewrite baseUrl: " + baseUrl + " -> " + au.rewritten);
+                            HookLog.d(TAG, "Rewrite baseUrl: {} -> {}", baseUrl, au.rewritten);
                             param.args[0] = au.rewritten;
                         }
 
                         // Data rules
                         Action ad = applyDataRules(data);
                         if (ad.block) {
-                            if (DEBUG) Log.d(TAG, "Blocked loadDataWithBaseURL data");
+                            HookLog.d(TAG, "Blocked loadDataWithBaseURL data");
                             param.args[1] = "";
                             return;
                         }
@@ -186,7 +190,7 @@ public final class WebViewUrlDataFilterHook {
                         String js = (String) param.args[0];
                         Action a = applyDataRules(js);
                         if (a.block) {
-                            if (DEBUG) Log.d(TAG, "Blocked evaluateJavascript");
+                            HookLog.d(TAG, "Blocked evaluateJavascript");
                             param.args[0] = "";
                             return;
                         }
@@ -202,7 +206,7 @@ public final class WebViewUrlDataFilterHook {
 
                         Action au = applyUrlRules(url);
                         if (au.block) {
-                            if (DEBUG) Log.d(TAG, "Blocked postUrl: " + url);
+                            HookLog.d(TAG, "Blocked postUrl: {}", url);
                             param.args[0] = "about:blank";
                             param.args[1] = new byte[0];
                             return;
@@ -215,7 +219,7 @@ public final class WebViewUrlDataFilterHook {
                                 String body = new String(post, Charset.forName("UTF-8"));
                                 Action ad = applyDataRules(body);
                                 if (ad.block) {
-                                    if (DEBUG) Log.d(TAG, "Blocked postUrl body");
+                                    HookLog.d(TAG, "Blocked postUrl body");
                                     param.args[1] = new byte[0];
                                     return;
                                 }
@@ -254,7 +258,7 @@ public final class WebViewUrlDataFilterHook {
                         // URL rules can block here too
                         Action au = applyUrlRules(url);
                         if (au.block) {
-                            if (DEBUG) Log.d(TAG, "[SW] Blocked: " + url);
+                            RESOURCE_LOG.d(TAG, "[SW] Blocked: {}", url);
                             return blockedResponse();
                         }
                         String effectiveUrl = au.rewritten != null ? au.rewritten : url;
@@ -270,7 +274,7 @@ public final class WebViewUrlDataFilterHook {
             // Hook setServiceWorkerClient as well, to wrap app-provided clients.
             Method m = getMethod(ServiceWorkerController.class, "setServiceWorkerClient", ServiceWorkerClient.class);
             if (m != null) {
-                XposedBridge.hookMethod(m, new XC_MethodHook() {
+                SmartHooking.hookMethod(m, new XC_MethodHook() {
                     @Override public void beforeHookedMethod(MethodHookParam param) throws Throwable {
                         ServiceWorkerClient orig = (ServiceWorkerClient) param.args[0];
                         param.args[0] = new ServiceWorkerClient() {
@@ -312,11 +316,11 @@ public final class WebViewUrlDataFilterHook {
             try {
                 Action a = applyUrlRules(url);
                 if (a.block) {
-                    if (DEBUG) Log.d(TAG, "Blocked nav: " + url);
+                    HookLog.d(TAG, "Blocked nav: {}", url);
                     return true; // block
                 }
                 if (a.rewritten != null) {
-                    if (DEBUG) Log.d(TAG, "Rewrite nav: " + url + " -> " + a.rewritten);
+                    HookLog.d(TAG, "Rewrite nav: {} -> {}", url, a.rewritten);
                     view.loadUrl(a.rewritten);
                     return true;
                 }
@@ -332,11 +336,11 @@ public final class WebViewUrlDataFilterHook {
             try {
                 Action a = applyUrlRules(url);
                 if (a.block) {
-                    if (DEBUG) Log.d(TAG, "Blocked nav(req): " + url);
+                    HookLog.d(TAG, "Blocked nav(req): {}", url);
                     return true;
                 }
                 if (a.rewritten != null) {
-                    if (DEBUG) Log.d(TAG, "Rewrite nav(req): " + url + " -> " + a.rewritten);
+                    HookLog.d(TAG, "Rewrite nav(req): {} -> {}", url, a.rewritten);
                     view.loadUrl(a.rewritten);
                     return true;
                 }
@@ -351,7 +355,7 @@ public final class WebViewUrlDataFilterHook {
                 if (!REWRITE_RESPONSES) return orig != null ? orig.shouldInterceptRequest(view, url) : null;
                 Action au = applyUrlRules(url);
                 if (au.block) {
-                    if (DEBUG) Log.d(TAG, "Blocked resource: " + url);
+                    RESOURCE_LOG.d(TAG, "Blocked resource: {}", url);
                     return blockedResponse();
                 }
                 String effectiveUrl = au.rewritten != null ? au.rewritten : url;
@@ -372,7 +376,7 @@ public final class WebViewUrlDataFilterHook {
                 String url = String.valueOf(request.getUrl());
                 Action au = applyUrlRules(url);
                 if (au.block) {
-                    if (DEBUG) Log.d(TAG, "Blocked resource(req): " + url);
+                    RESOURCE_LOG.d(TAG, "Blocked resource(req): {}", url);
                     return blockedResponse();
                 }
                 String effectiveUrl = au.rewritten != null ? au.rewritten : url;
@@ -579,12 +583,16 @@ public final class WebViewUrlDataFilterHook {
     // -------------------- Config loading --------------------
 
     private static void loadConfig(Context ctx) throws Exception {
-        String json = readAssetIfExists(ctx, "cloner.json");
-        if (json == null) {
+        // The config ClonerSettings already parsed at startup
+        JSONObject root = null;
+        try {
+            root = ClonerSettings.get(ctx).raw();
+        } catch (RuntimeException e) {
             // Fallback names if you prefer a different asset file.
-            json = readAssetIfExists(ctx, "appcloner.json");
+            String json = readAssetIfExists(ctx, "appcloner.json");
+            if (json != null) root = new JSONObject(json);
         }
-        if (json == null) {
+        if (root == null) {
             ENABLED = false;
             DEBUG = false;
             REWRITE_RESPONSES = false;
@@ -593,7 +601,6 @@ public final class WebViewUrlDataFilterHook {
             return;
         }
 
-        JSONObject root = new JSONObject(json);
         JSONObject cfg = root.optJSONObject("webview_filter");
         if (cfg == null) {
             ENABLED = false;
@@ -713,7 +720,7 @@ public final class WebViewUrlDataFilterHook {
     private static void safeHook(Method m, XC_MethodHook callback) {
         if (m == null) return;
         try {
-            XposedBridge.hookMethod(m, callback);
+            SmartHooking.hookMethod(m, callback);
         } catch (Throwable t) {
             if (DEBUG) Log.w(TAG, "Hook failed for " + m, t);
         }
@@ -759,7 +766,7 @@ public final class WebViewUrlDataFilterHook {
 
     // -------------------- Public API --------------------
 
-    // Optional: call this if you change cloner.json at runtime and want to re-read rules.
+    // Re-reads the rules from the current ClonerSettings; called when a new config is published.
     public void reload(Context ctx) {
         try {
             loadConfig(ctx.getApplicationContext());
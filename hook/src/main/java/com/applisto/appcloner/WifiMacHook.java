@@ -11,7 +11,6 @@ import java.lang.reflect.Method;
 import java.util.Random;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 
 /**
  * Hook for spoofing WiFi MAC address.
@@ -43,7 +42,7 @@ public final class WifiMacHook {
         // WifiManager.getConnectionInfo() – tweak the returned WifiInfo
         try {
             Method m = WifiManager.class.getDeclaredMethod("getConnectionInfo");
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     WifiInfo info = (WifiInfo) param.getResult();
                     if (info != null) {
@@ -72,7 +71,7 @@ public final class WifiMacHook {
         try {
             Class<?> niClass = Class.forName("java.net.NetworkInterface");
             Method m = niClass.getDeclaredMethod("getHardwareAddress");
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     byte[] orig = (byte[]) param.getResult();
                     if (orig != null && orig.length == 6) {
@@ -94,7 +93,7 @@ public final class WifiMacHook {
     private void hook(Class<?> cls, String name, Class<?>[] params) {
         try {
             Method m = cls.getDeclaredMethod(name, params);
-            XposedBridge.hookMethod(m, new XC_MethodHook() {
+            SmartHooking.hookMethod(m, new XC_MethodHook() {
                 @Override public void afterHookedMethod(MethodHookParam param) {
                     Object orig = param.getResult();
                     param.setResult(sFakeMac);
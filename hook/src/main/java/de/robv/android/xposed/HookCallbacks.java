@@ -0,0 +1,51 @@
+package de.robv.android.xposed;
+
+import java.lang.reflect.Field;
+
+/**
+ * Calls the protected callbacks of an {@link XC_MethodHook}, so com.applisto.appcloner can
+ * wrap hooks it installs. It only works from this package, which AliuHook's XposedBridge
+ * classes share at runtime.
+ */
+public final class HookCallbacks {
+    // MethodHookParam.returnEarly is package-private and not in the compile-time API
+    private static final Field RETURN_EARLY = returnEarlyField();
+
+    private HookCallbacks() {}
+
+    public static void before(XC_MethodHook hook, XC_MethodHook.MethodHookParam param) throws Throwable {
+        hook.beforeHookedMethod(param);
+    }
+
+    public static void after(XC_MethodHook hook, XC_MethodHook.MethodHookParam param) throws Throwable {
+        hook.afterHookedMethod(param);
+    }
+
+    /** Whether a before callback set a result or throwable, so the original method is skipped. */
+    public static boolean returnsEarly(XC_MethodHook.MethodHookParam param) {
+        try {
+            return RETURN_EARLY != null && RETURN_EARLY.getBoolean(param);
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    /** Undoes a result set by a failed before callback, as XposedBridge does. */
+    public static void clearResult(XC_MethodHook.MethodHookParam param) {
+        param.setResult(null);
+        try {
+            if (RETURN_EARLY != null) RETURN_EARLY.setBoolean(param, false);
+        } catch (IllegalAccessException ignored) {
+        }
+    }
+
+    private static Field returnEarlyField() {
+        try {
+            Field f = XC_MethodHook.MethodHookParam.class.getDeclaredField("returnEarly");
+            f.setAccessible(true);
+            return f;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.applisto.appcloner;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The {@code cloner.json} keys that enable each hook, by hook class name. HookRegistry decides
+ * from it which hooks to install, and the cloner's HookDexShrinker which hook classes to drop
+ * from hook.dex, so this file is compiled into both the hook and the cloner app and may only
+ * use org.json.
+ */
+public final class HookConditions {
+
+    /** A {@code cloner.json} check; a hook is enabled when any of its conditions holds. */
+    public static final class Condition {
+        private static final int FLAG = 0;
+        private static final int TEXT = 1;
+        private static final int LIST = 2;
+        private static final int SECTION = 3;
+        private static final int NOT_EQUAL = 4;
+        private static final int ALWAYS = 5;
+
+        final String key;
+        private final int kind;
+        private final boolean defaultOn;
+        private final String value;
+
+        private Condition(String key, int kind, boolean defaultOn, String value) {
+            this.key = key;
+            this.kind = kind;
+            this.defaultOn = defaultOn;
+            this.value = value;
+        }
+
+        public boolean test(JSONObject config) {
+            switch (kind) {
+                case FLAG:
+                    return config.optBoolean(key, defaultOn);
+                case TEXT:
+                    return !config.optString(key, "").trim().isEmpty();
+                case LIST:
+                    JSONArray arr = config.optJSONArray(key);
+                    return arr != null && arr.length() > 0;
+                case SECTION:
+                    JSONObject section = config.optJSONObject(key);
+                    return section != null && section.optBoolean("enabled", false);
+                case NOT_EQUAL:
+                    return !config.optString(key, value).equalsIgnoreCase(value);
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /** A hook class and the conditions that enable it. */
+    public static final class Hook {
+        /** Simple name of the hook class in com.applisto.appcloner. */
+        public final String name;
+        private final Condition[] enabledBy;
+
+        private Hook(String name, Condition... enabledBy) {
+            this.name = name;
+            this.enabledBy = enabledBy;
+        }
+
+        public boolean isEnabled(JSONObject config) {
+            for (Condition c : enabledBy) {
+                if (c.test(config)) return true;
+            }
+            return false;
+        }
+    }
+
+    /** Boolean key, off unless set. */
+    static Condition flag(String key) {
+        return new Condition(key, Condition.FLAG, false, null);
+    }
+
+    static Condition flag(String key, boolean defaultOn) {
+        return new Condition(key, Condition.FLAG, defaultOn, null);
+    }
+
+    /** Non-blank string key. */
+    static Condition text(String key) {
+        return new Condition(key, Condition.TEXT, false, null);
+    }
+
+    /** Non-empty array key. */
+    static Condition list(String key) {
+        return new Condition(key, Condition.LIST, false, null);
+    }
+
+    /** Object key with {@code "enabled": true}. */
+    static Condition section(String key) {
+        return new Condition(key, Condition.SECTION, false, null);
+    }
+
+    /** String key set to something other than {@code defaultValue}. */
+    static Condition notEqual(String key, String defaultValue) {
+        return new Condition(key, Condition.NOT_EQUAL, false, defaultValue);
+    }
+
+    /** For hooks that install defaults when unconfigured, e.g. a fixed IMEI. */
+    static Condition always() {
+        return new Condition(null, Condition.ALWAYS, true, null);
+    }
+
+    private static Hook hook(String name, Condition... enabledBy) {
+        return new Hook(name, enabledBy);
+    }
+
+    public static final Hook[] HOOKS = {
+            hook("Socks5ProxyHook", flag("socks_proxy")),
+            hook("AndroidIdHook", text("android_id")),
+            hook("WifiMacHook", always()),
+            hook("BuildPropsHook", flag("build_props_enabled", true)),
+            hook("ImsiHook", always()),
+            hook("ImeiHook", always()),
+            hook("SerialHook", text("serial_number")),
+            hook("BtMacHook", text("bluetooth_mac")),
+            hook("SpoofLocationHook", flag("SpoofLocation")),
+            hook("WebViewUrlDataFilterHook", section("webview_filter")),
+            hook("UserAgentHook", text("user_agent")),
+            hook("WebViewFilterHook", list("url_data_filters")),
+            hook("UserAgentWorkaround", notEqual("cloning_mode", "replace_original"),
+                    text("original_package_name"), text("original_version_code"),
+                    text("original_version_name"), flag("uri_scheme_workaround")),
+            hook("UserAgentWorkaroundWarning", notEqual("cloning_mode", "replace_original")),
+            hook("BackgroundMediaHook", flag("background_media")),
+            hook("FakeCameraHook", flag("FakeCamera")),
+            hook("ForcedBackCameraHook", flag("ForcedBackCamera")),
+            hook("FakeCalculatorHook", flag("fake_calculator_enabled")),
+            hook("InternalBrowserHook", flag("internal_browser")),
+            hook("DialogInterceptHook", flag("dialog_blocker_enabled")),
+            hook("FloatingAppHook", flag("floating_app")),
+            hook("AccessibleDataDirHook",
+                    flag("accessible_data_dir_internal", true), flag("accessible_data_dir_external", true)),
+            hook("ScreenshotDetectionBlocker", flag("AllowScreenshots")),
+    };
+
+    private HookConditions() {}
+
+    /** The entry for hook class {@code name}; every hook in HookRegistry needs one. */
+    static Hook of(String name) {
+        for (Hook h : HOOKS) {
+            if (h.name.equals(name)) return h;
+        }
+        throw new IllegalArgumentException("No HookConditions entry for " + name);
+    }
+}